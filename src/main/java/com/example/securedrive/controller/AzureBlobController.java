@@ -5,7 +5,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,30 +20,27 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.azure.storage.blob.models.BlobStorageException;
 import com.example.securedrive.dto.FileDeleteSpecificVersionRequestDto;
 import com.example.securedrive.dto.FileDownloadSharedRequestDto;
-import com.example.securedrive.dto.FileDownloadSharedResponseDto;
+import com.example.securedrive.dto.FileDownloadStreamResponseDto;
 import com.example.securedrive.dto.FileDownloadSpecificVersionRequestDto;
 import com.example.securedrive.dto.FileRevokeShareRequestDto;
 import com.example.securedrive.dto.FileShareRequestDto;
 import com.example.securedrive.dto.FileUploadRequestDto;
-import com.example.securedrive.model.File;
 import com.example.securedrive.service.FileFacadeService;
-import com.example.securedrive.service.FileManagementService;
 
 @RestController
 @RequestMapping("files")
 public class AzureBlobController {
 
     private final FileFacadeService fileFacadeService;
-    private final FileManagementService fileManagementService;
 
     @Autowired
-    public AzureBlobController(FileFacadeService fileFacadeService, FileManagementService fileManagementService) {
+    public AzureBlobController(FileFacadeService fileFacadeService) {
         this.fileFacadeService = fileFacadeService;
-        this.fileManagementService = fileManagementService;
     }
 
     @PostMapping("/revoke-share")
@@ -94,15 +90,8 @@ public class AzureBlobController {
         try {
             String username = authentication.getName();
             FileDownloadSharedRequestDto dto = new FileDownloadSharedRequestDto(fileId, username);
-            FileDownloadSharedResponseDto response = fileFacadeService.downloadSharedFile(dto);
-            String fileName = response.getFileName();
-            byte[] originalData = response.getOriginalData();
-            ByteArrayResource resource = response.getResource();
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentLength(originalData.length)
-                    .body(resource);
+            FileDownloadStreamResponseDto response = fileFacadeService.streamSharedFile(dto);
+            return streamingResponse(response);
 
         } catch (BlobStorageException ex) {
             return ResponseEntity.status(404).body("Blob not found: " + ex.getMessage());
@@ -165,14 +154,8 @@ public class AzureBlobController {
                 return ResponseEntity.status(403).build();
             }
             FileDownloadSpecificVersionRequestDto dto = new FileDownloadSpecificVersionRequestDto(username, fileId, versionNumber);
-            ByteArrayResource resource = fileFacadeService.downloadSpecificVersion(dto);
-            File file = fileManagementService.findById(fileId)
-                    .orElseThrow(() -> new RuntimeException("File not found: " + fileId));
-            String originalFileName = file.getFileName();
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"")
-                    .contentLength(resource.contentLength())
-                    .body(resource);
+            FileDownloadStreamResponseDto response = fileFacadeService.streamSpecificVersion(dto);
+            return streamingResponse(response);
         } catch (RuntimeException e) {
             return ResponseEntity.status(403).build();
         } catch (Exception e) {
@@ -202,4 +185,13 @@ public class AzureBlobController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(FileDownloadStreamResponseDto response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + response.getFileName() + "\"");
+        if (response.getContentLength() != null) {
+            builder.contentLength(response.getContentLength());
+        }
+        return builder.body(response.getBody());
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.securedrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class FileDownloadStreamResponseDto {
+    private String fileName;
+    // Null when the length is not known before streaming starts
+    private Long contentLength;
+    private StreamingResponseBody body;
+}
@@ -9,6 +9,7 @@ public record FileVersionDto(
         String hash,
         LocalDateTime timestamp,
         Long size,
-        Long directoryId // <-- Yeni alan
+        Long directoryId, // <-- Yeni alan
+        int chainLength // deltas replayed from the nearest checkpoint, -1 if the chain is broken
 ) {}
 
@@ -5,12 +5,14 @@ import com.example.securedrive.dto.FileShareDto;
 import com.example.securedrive.dto.FileVersionDto;
 import com.example.securedrive.model.File;
 import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.service.util.VersionChainUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component
 public class FileMapper {
@@ -28,11 +30,10 @@ public class FileMapper {
         if (file == null) return null;
 
         // FileVersionDto Listesi
-        List<FileVersionDto> versions = (file.getVersions() != null)
-                ? file.getVersions().stream()
-                .map(this::toVersionDto)
-                .collect(Collectors.toList())
-                : List.of();
+        List<FileVersion> fileVersions = (file.getVersions() != null) ? file.getVersions() : List.of();
+        List<FileVersionDto> versions = IntStream.range(0, fileVersions.size())
+                .mapToObj(i -> toVersionDto(fileVersions.get(i), VersionChainUtil.chainLength(fileVersions, i)))
+                .collect(Collectors.toList());
 
         // FileShareDto Listesi
         List<FileShareDto> fileShares = (file.getFileShares() != null)
@@ -61,7 +62,7 @@ public class FileMapper {
         );
     }
 
-    private FileVersionDto toVersionDto(FileVersion version) {
+    private FileVersionDto toVersionDto(FileVersion version, int chainLength) {
         // directoryId parametresi eklendi:
         Long directoryId = null;
         if (version.getFile() != null && version.getFile().getDirectory() != null) {
@@ -75,7 +76,8 @@ public class FileMapper {
                 version.getHash(),
                 version.getTimestamp(),
                 version.getSize(),
-                directoryId
+                directoryId,
+                chainLength
         );
     }
 }
@@ -27,6 +27,9 @@ public class FileVersion {
     @Column(nullable = false)
     private String hash;
 
+    // Tree hash duplicates are found by when tree-hash dedup is enabled; null for older versions
+    private String dedupHash;
+
     @Column(nullable = false)
     private String versionNumber;
 
@@ -35,6 +38,21 @@ public class FileVersion {
 
     private String deltaPath;
 
+    // Full encrypted copy of this version; reconstruction starts from the nearest one
+    private String snapshotPath;
+
+    // Chunk-store manifest of this version; like a snapshot, it is readable on its own
+    private String manifestPath;
+
+    // Full encrypted copy of a delta version, kept only while it is the latest version
+    private String materializedPath;
+
+    // Stored size of the delta blob, used by the checkpoint policy
+    private Long deltaSize;
+
+    // The delta rebuilds this version from the next one instead of the previous one
+    private Boolean reverseDelta;
+
     @Column(nullable = false)
     private Long size;
 
@@ -0,0 +1,44 @@
+package com.example.securedrive.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One encrypted chunk in the chunk store, shared by every manifest that references it.
+ * The id is a keyed hash of the plaintext, so identical chunks of one owner collapse into a
+ * single blob while chunks of different owners never do.
+ */
+@Entity
+@Table(name = "stored_chunks")
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StoredChunk {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private Integer size;
+
+    // Number of manifest entries pointing at this chunk; the blob is deleted when it reaches 0
+    @Column(nullable = false)
+    private Long refCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Makes save() insert rather than merge, so concurrent first uploads of a chunk collide
+    @Version
+    private Long version;
+}
@@ -16,4 +16,5 @@ public interface FileVersionRepository extends JpaRepository<FileVersion, Long>
     List<FileVersion> findByFile_Directory_User_UsernameOrderByTimestampDesc(String username, Pageable pageable);
     List<FileVersion> findByFile_Directory_User_UsernameOrderByLastAccessedDesc(String username, Pageable pageable);
     List<FileVersion> findByFile_Directory_User_Username(String username);
+    List<FileVersion> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
@@ -0,0 +1,29 @@
+package com.example.securedrive.repository;
+
+import com.example.securedrive.model.StoredChunk;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredChunkRepository extends JpaRepository<StoredChunk, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update StoredChunk c set c.refCount = c.refCount + :count where c.id = :id")
+    int addReferences(@Param("id") String id, @Param("count") long count);
+
+    @Query("select c.path from StoredChunk c where c.id = :id")
+    Optional<String> findPathById(@Param("id") String id);
+
+    // Matching the path deletes only the generation of the chunk that was looked up
+    @Transactional
+    @Modifying
+    @Query("delete from StoredChunk c where c.id = :id and c.path = :path and c.refCount <= 0")
+    int deleteIfUnreferenced(@Param("id") String id, @Param("path") String path);
+}
@@ -13,10 +13,10 @@ import java.time.OffsetDateTime;
 @Component
 public class AzureBlobSASTokenGenerator {
 
-    @Value("${azure.storage.connection.string}")
+    @Value("${azure.storage.connection.string:}")
     private String connectionString;
 
-    @Value("${azure.storage.container.name}")
+    @Value("${azure.storage.container.name:}")
     private String containerName;
 
     public String getBlobUrl(String blobPath) {
@@ -0,0 +1,46 @@
+package com.example.securedrive.security;
+
+import com.azure.core.exception.ResourceNotFoundException;
+import com.azure.identity.ClientSecretCredentialBuilder;
+import com.azure.security.keyvault.secrets.SecretClient;
+import com.azure.security.keyvault.secrets.SecretClientBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(name = "securedrive.keyvault.backend", havingValue = "azure", matchIfMissing = true)
+public class AzureKeyVaultSecretStore implements SecretStore {
+
+    private final SecretClient secretClient;
+
+    public AzureKeyVaultSecretStore(@Value("${spring.cloud.azure.keyvault.secret.endpoint}") String keyVaultUri,
+                                    @Value("${b2c.client-id}") String clientId,
+                                    @Value("${b2c.client-secret}") String clientSecret,
+                                    @Value("${b2c.tenant-id}") String tenantId) {
+        this.secretClient = new SecretClientBuilder()
+                .vaultUrl(keyVaultUri)
+                .credential(new ClientSecretCredentialBuilder()
+                        .clientId(clientId)
+                        .clientSecret(clientSecret)
+                        .tenantId(tenantId)
+                        .build())
+                .buildClient();
+    }
+
+    @Override
+    public Optional<String> getSecret(String name) {
+        try {
+            return Optional.ofNullable(secretClient.getSecret(name).getValue());
+        } catch (ResourceNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void setSecret(String name, String value) {
+        secretClient.setSecret(name, value);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.securedrive.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of per-user encryption keys in front of the secret store.
+ *
+ * Entries expire {@code ttl} after they were loaded. The first read of an entry older than
+ * {@code refreshAfter} reloads it on {@code refreshExecutor} while the cached key keeps being
+ * served, so keys in use are renewed before they expire and readers do not wait on the vault; a
+ * failed refresh keeps the old key until it expires. Concurrent misses for one user share a
+ * single load, and keys the store does not have are not cached.
+ *
+ * Keys are held as raw bytes that are overwritten with zeros when their entry is evicted,
+ * expires, is replaced or invalidated, or the cache is cleared. Readers get their own copy and
+ * are expected to clear it once done.
+ */
+public class EncryptionKeyCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EncryptionKeyCache.class);
+
+    private static final String METRIC_PREFIX = "securedrive.key-cache";
+
+    public interface Loader {
+        Optional<byte[]> load(String userId);
+    }
+
+    private static final class Entry {
+        final byte[] key;
+        final long loadedAt;
+        boolean refreshing;
+
+        Entry(byte[] key, long loadedAt) {
+            this.key = key;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final Loader loader;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Optional<byte[]>>> loads = new HashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter loadsFound;
+    private final Counter loadsMissing;
+    private final Counter loadsFailed;
+    private final Counter refreshesSucceeded;
+    private final Counter refreshesFailed;
+    private final Counter evictions;
+
+    public EncryptionKeyCache(Loader loader, Duration ttl, Duration refreshAfter, int maxEntries,
+                              Executor refreshExecutor, LongSupplier clock, MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+
+        hits = Counter.builder(METRIC_PREFIX + ".hits").register(meterRegistry);
+        misses = Counter.builder(METRIC_PREFIX + ".misses").register(meterRegistry);
+        loadsFound = Counter.builder(METRIC_PREFIX + ".loads").tag("result", "found").register(meterRegistry);
+        loadsMissing = Counter.builder(METRIC_PREFIX + ".loads").tag("result", "missing").register(meterRegistry);
+        loadsFailed = Counter.builder(METRIC_PREFIX + ".loads").tag("result", "failed").register(meterRegistry);
+        refreshesSucceeded = Counter.builder(METRIC_PREFIX + ".refreshes").tag("result", "success").register(meterRegistry);
+        refreshesFailed = Counter.builder(METRIC_PREFIX + ".refreshes").tag("result", "failed").register(meterRegistry);
+        evictions = Counter.builder(METRIC_PREFIX + ".evictions").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, EncryptionKeyCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns a copy of the user's key, loading it if it is not cached or has expired.
+     */
+    public Optional<byte[]> get(String userId) {
+        CompletableFuture<Optional<byte[]>> load;
+        boolean loading = false;
+        synchronized (this) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                long age = clock.getAsLong() - entry.loadedAt;
+                if (age < ttlNanos) {
+                    hits.increment();
+                    byte[] copy = entry.key.clone();
+                    if (age >= refreshAfterNanos && !entry.refreshing) {
+                        entry.refreshing = true;
+                        scheduleRefresh(userId, entry);
+                    }
+                    return Optional.of(copy);
+                }
+                entries.remove(userId);
+                Arrays.fill(entry.key, (byte) 0);
+            }
+            misses.increment();
+            load = loads.get(userId);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                loads.put(userId, load);
+                loading = true;
+            }
+        }
+
+        if (loading) {
+            load(userId, load);
+        }
+        try {
+            return load.join().map(byte[]::clone);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Caches {@code key} for the user, replacing any cached or loading key. The array is copied.
+     */
+    public synchronized void put(String userId, byte[] key) {
+        loads.remove(userId);
+        store(userId, key.clone());
+    }
+
+    public synchronized void invalidate(String userId) {
+        loads.remove(userId);
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            Arrays.fill(entry.key, (byte) 0);
+        }
+    }
+
+    public synchronized void clear() {
+        loads.clear();
+        for (Entry entry : entries.values()) {
+            Arrays.fill(entry.key, (byte) 0);
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void load(String userId, CompletableFuture<Optional<byte[]>> load) {
+        Optional<byte[]> key;
+        try {
+            key = loader.load(userId);
+        } catch (RuntimeException e) {
+            loadsFailed.increment();
+            synchronized (this) {
+                loads.remove(userId, load);
+            }
+            load.completeExceptionally(e);
+            return;
+        }
+        (key.isPresent() ? loadsFound : loadsMissing).increment();
+        synchronized (this) {
+            // A put or invalidate while loading wins over the loaded key
+            if (loads.remove(userId, load) && key.isPresent()) {
+                store(userId, key.get().clone());
+            }
+        }
+        load.complete(key);
+    }
+
+    // Called with the lock held; the refresh itself takes it only to swap the entry
+    private void scheduleRefresh(String userId, Entry entry) {
+        try {
+            refreshExecutor.execute(() -> refresh(userId, entry));
+        } catch (RejectedExecutionException e) {
+            entry.refreshing = false;
+        }
+    }
+
+    private void refresh(String userId, Entry entry) {
+        Optional<byte[]> key;
+        try {
+            key = loader.load(userId);
+        } catch (RuntimeException e) {
+            refreshesFailed.increment();
+            logger.warn("Refreshing the encryption key of user {} failed, keeping the cached key: {}", userId, e.getMessage());
+            synchronized (this) {
+                entry.refreshing = false;
+            }
+            return;
+        }
+        refreshesSucceeded.increment();
+        synchronized (this) {
+            if (entries.get(userId) != entry) {
+                key.ifPresent(stale -> Arrays.fill(stale, (byte) 0));
+                return;
+            }
+            if (key.isPresent()) {
+                store(userId, key.get());
+            } else {
+                entries.remove(userId);
+                Arrays.fill(entry.key, (byte) 0);
+            }
+        }
+    }
+
+    private void store(String userId, byte[] key) {
+        if (ttlNanos <= 0 || maxEntries <= 0) {
+            Arrays.fill(key, (byte) 0);
+            return;
+        }
+        Entry previous = entries.put(userId, new Entry(key, clock.getAsLong()));
+        if (previous != null) {
+            Arrays.fill(previous.key, (byte) 0);
+        }
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            Arrays.fill(eldest.next().key, (byte) 0);
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.securedrive.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Secret store that lives in this process, for local runs and tests without Key Vault. Secrets
+ * are lost when the application stops, and with them everything encrypted under them.
+ */
+@Component
+@ConditionalOnProperty(name = "securedrive.keyvault.backend", havingValue = "in-memory")
+public class InMemorySecretStore implements SecretStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemorySecretStore.class);
+
+    private final Map<String, String> secrets = new ConcurrentHashMap<>();
+    private final AtomicLong reads = new AtomicLong();
+
+    public InMemorySecretStore() {
+        logger.warn("Using the in-memory secret store; encryption keys will not survive a restart");
+    }
+
+    @Override
+    public Optional<String> getSecret(String name) {
+        reads.incrementAndGet();
+        return Optional.ofNullable(secrets.get(name));
+    }
+
+    @Override
+    public void setSecret(String name, String value) {
+        secrets.put(name, value);
+    }
+
+    /**
+     * Number of {@link #getSecret} calls so far, the equivalent of Key Vault round-trips.
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+}
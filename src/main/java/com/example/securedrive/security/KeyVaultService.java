@@ -1,42 +1,76 @@
 package com.example.securedrive.security;
 
-import com.azure.identity.ClientSecretCredentialBuilder;
-import com.azure.security.keyvault.secrets.SecretClient;
-import com.azure.security.keyvault.secrets.SecretClientBuilder;
-import com.azure.core.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Per-user encryption keys, kept in the {@link SecretStore} and cached in memory by
+ * {@link EncryptionKeyCache} so that uploads and downloads do not each make a Key Vault call.
+ */
 @Service
 public class KeyVaultService {
 
-    private final SecretClient secretClient;
-
-    public KeyVaultService(@Value("${spring.cloud.azure.keyvault.secret.endpoint}") String keyVaultUri,
-                           @Value("${b2c.client-id}") String clientId,
-                           @Value("${b2c.client-secret}") String clientSecret,
-                           @Value("${b2c.tenant-id}") String tenantId) {
-        this.secretClient = new SecretClientBuilder()
-                .vaultUrl(keyVaultUri)
-                .credential(new ClientSecretCredentialBuilder()
-                        .clientId(clientId)
-                        .clientSecret(clientSecret)
-                        .tenantId(tenantId)
-                        .build())
-                .buildClient();
+    private final SecretStore secretStore;
+    private final ExecutorService refreshExecutor;
+    private final EncryptionKeyCache keyCache;
+
+    public KeyVaultService(SecretStore secretStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${securedrive.key-cache.ttl-seconds:900}") long ttlSeconds,
+                           @Value("${securedrive.key-cache.refresh-after-seconds:600}") long refreshAfterSeconds,
+                           @Value("${securedrive.key-cache.max-entries:10000}") int maxEntries) {
+        this.secretStore = secretStore;
+        this.refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "key-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.keyCache = new EncryptionKeyCache(this::loadKey, Duration.ofSeconds(ttlSeconds),
+                Duration.ofSeconds(refreshAfterSeconds), maxEntries, refreshExecutor, System::nanoTime, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        keyCache.clear();
     }
 
     public void saveEncryptionKeyToKeyVault(String userId, String encryptionKey) {
-        String secretName = "aes-key-" + userId;
-        secretClient.setSecret(secretName, encryptionKey);
+        secretStore.setSecret(secretName(userId), encryptionKey);
+        byte[] key = Base64.getDecoder().decode(encryptionKey);
+        keyCache.put(userId, key);
+        Arrays.fill(key, (byte) 0);
     }
 
     public String getEncryptionKeyFromKeyVault(String userId) {
-        String secretName = "aes-key-" + userId;
-        try {
-            return secretClient.getSecret(secretName).getValue();
-        } catch (ResourceNotFoundException e) {
-            throw new IllegalStateException("Encryption key not found in Key Vault for user: " + userId, e);
-        }
+        return findEncryptionKey(userId)
+                .orElseThrow(() -> new IllegalStateException("Encryption key not found in Key Vault for user: " + userId));
+    }
+
+    private Optional<String> findEncryptionKey(String userId) {
+        return keyCache.get(userId).map(key -> {
+            try {
+                return Base64.getEncoder().encodeToString(key);
+            } finally {
+                Arrays.fill(key, (byte) 0);
+            }
+        });
+    }
+
+    private Optional<byte[]> loadKey(String userId) {
+        return secretStore.getSecret(secretName(userId)).map(Base64.getDecoder()::decode);
+    }
+
+    private static String secretName(String userId) {
+        return "aes-key-" + userId;
     }
 }
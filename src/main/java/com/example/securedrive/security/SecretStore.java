@@ -0,0 +1,12 @@
+package com.example.securedrive.security;
+
+import java.util.Optional;
+
+/**
+ * Named secrets such as the per-user encryption keys. The store in use is chosen with
+ * {@code securedrive.keyvault.backend} ({@code azure} or {@code in-memory}).
+ */
+public interface SecretStore {
+    Optional<String> getSecret(String name);
+    void setSecret(String name, String value);
+}
@@ -0,0 +1,6 @@
+package com.example.securedrive.service;
+
+public interface BlobFormatMigrationService {
+    int migrateBatch();
+    boolean isCompleted();
+}
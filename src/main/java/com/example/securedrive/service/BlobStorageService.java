@@ -0,0 +1,49 @@
+package com.example.securedrive.service;
+
+import com.example.securedrive.exception.AzureBlobStorageException;
+import com.example.securedrive.model.Storage;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Blob storage backend. Paths are '/'-separated names relative to the backend's container or
+ * root; the backend in use is chosen with {@code securedrive.storage.backend} ({@code azure} or
+ * {@code local}).
+ */
+public interface BlobStorageService {
+
+    void write(Storage storage) throws AzureBlobStorageException;
+    OutputStream openOutputStream(String path) throws AzureBlobStorageException;
+    byte[] read(Storage storage) throws AzureBlobStorageException;
+    Optional<byte[]> readIfExists(Storage storage) throws AzureBlobStorageException;
+    byte[] readRange(String path, long offset, int length) throws AzureBlobStorageException;
+    InputStream openInputStream(String path) throws AzureBlobStorageException;
+    long transferTo(String path, WritableByteChannel target) throws AzureBlobStorageException;
+    void delete(Storage storage) throws AzureBlobStorageException;
+    boolean deleteIfExists(Storage storage) throws AzureBlobStorageException;
+    int deleteAll(Collection<String> paths) throws AzureBlobStorageException;
+    boolean exists(Storage storage) throws AzureBlobStorageException;
+    List<String> list(String prefix) throws AzureBlobStorageException;
+    void createDirectory(String directoryPath) throws AzureBlobStorageException;
+
+    /**
+     * Reads a blob together with the ETag of the content that was read, or empty if it is
+     * missing.
+     */
+    Optional<TaggedBlob> readTaggedIfExists(String path) throws AzureBlobStorageException;
+
+    /**
+     * Replaces a blob only if it still has {@code eTag}; returns false, without writing, if it
+     * was replaced or deleted since it was read.
+     */
+    boolean writeIfMatch(String path, byte[] data, String eTag) throws AzureBlobStorageException;
+
+    /** Blob content and an opaque ETag identifying that content. */
+    record TaggedBlob(byte[] data, String eTag) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.securedrive.service;
+
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Content-addressed store for binary versions. Content is split into content-defined chunks,
+ * each chunk is stored once per owner, encrypted, and a version is the manifest of its chunks.
+ */
+public interface ChunkStoreService {
+    boolean isEnabled();
+
+    /**
+     * Chunks {@code content}, uploads the chunks that are not stored yet and takes a reference
+     * on every chunk of the returned manifest. The stream is not closed.
+     */
+    List<ChunkRef> store(InputStream content, AesKey aesKey) throws Exception;
+
+    /**
+     * Streams the content of a manifest; chunks are fetched one at a time as they are read.
+     */
+    InputStream openContent(List<ChunkRef> chunks, AesKey aesKey);
+
+    void saveManifest(String path, List<ChunkRef> chunks) throws Exception;
+    List<ChunkRef> loadManifest(String path) throws IOException;
+
+    /**
+     * Drops the references taken by {@link #store}; chunks nothing refers to any more are deleted.
+     */
+    void release(List<ChunkRef> chunks);
+}
@@ -10,8 +10,10 @@ public interface FileFacadeService {
     void revokeShare(FileRevokeShareRequestDto dto, Authentication authentication);
     void shareFile(FileShareRequestDto dto, Authentication authentication) throws Exception;
     FileDownloadSharedResponseDto downloadSharedFile(FileDownloadSharedRequestDto dto) throws Exception;
+    FileDownloadStreamResponseDto streamSharedFile(FileDownloadSharedRequestDto dto) throws Exception;
     String uploadFile(FileUploadRequestDto dto);
     String deleteSpecificVersion(FileDeleteSpecificVersionRequestDto dto);
     ByteArrayResource downloadSpecificVersion(FileDownloadSpecificVersionRequestDto dto) throws Exception;
+    FileDownloadStreamResponseDto streamSpecificVersion(FileDownloadSpecificVersionRequestDto dto) throws Exception;
     int getRemainingShares(Long fileId) ;
 }
@@ -1,5 +1,6 @@
 package com.example.securedrive.service;
 
+import com.example.securedrive.dto.FileDownloadStreamResponseDto;
 import com.example.securedrive.model.File;
 import com.example.securedrive.model.FileVersion;
 import com.example.securedrive.model.User;
@@ -13,5 +14,10 @@ public interface FileVersionManagementService {
     String generateNextVersion(File file);
     String getLatestContent(File file, User user) throws Exception;
     String reconstructFileContent(File file, String versionNumber, User user) throws Exception;
+    byte[] reconstructFileBytes(File file, String versionNumber, User user) throws Exception;
+    FileDownloadStreamResponseDto streamFileContent(File file, String versionNumber, User user) throws Exception;
+    boolean isCheckpointDue(File file, long nextDeltaSize, long nextContentSize);
+    boolean isReverseCheckpointDue(File file, long reverseDeltaSize, long previousContentSize);
+    int getChainLength(File file, String versionNumber);
     List<FileVersion> getVersionsUpTo(File file, String versionNumber);
 }
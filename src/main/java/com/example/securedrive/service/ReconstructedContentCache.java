@@ -0,0 +1,13 @@
+package com.example.securedrive.service;
+
+import java.util.Optional;
+
+/**
+ * Cache of reconstructed version plaintext, keyed by (fileId, versionNumber, hash).
+ * Returned arrays are shared with the cache and must not be modified by callers.
+ */
+public interface ReconstructedContentCache {
+    Optional<byte[]> get(Long fileId, String versionNumber, String hash);
+    void put(Long fileId, String versionNumber, String hash, byte[] content);
+    void invalidateFile(Long fileId);
+}
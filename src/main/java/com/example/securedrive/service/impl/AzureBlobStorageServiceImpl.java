@@ -2,27 +2,114 @@ package com.example.securedrive.service.impl;
 
 import com.example.securedrive.exception.AzureBlobStorageException;
 import com.example.securedrive.model.Storage;
-import com.example.securedrive.service.AzureBlobStorageService;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.util.BlockBlobStore;
+import com.example.securedrive.service.util.BlockTransfer;
+import com.example.securedrive.service.util.OrderedPrefetcher;
+import com.azure.core.http.rest.PagedResponse;
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.models.BlobDownloadHeaders;
+import com.azure.storage.blob.models.BlobDownloadResponse;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.BlobRequestConditions;
 import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
 import io.micrometer.common.util.StringUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
+@ConditionalOnProperty(name = "securedrive.storage.backend", havingValue = "azure", matchIfMissing = true)
 @Slf4j
-public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
+public class AzureBlobStorageServiceImpl implements BlobStorageService {
 
+    // Streamed uploads buffer at most STREAM_BLOCK_SIZE * STREAM_MAX_CONCURRENCY bytes per blob
+    private static final long STREAM_BLOCK_SIZE = 4L * 1024 * 1024;
+    private static final int STREAM_MAX_CONCURRENCY = 2;
+    private static final int NOT_FOUND = 404;
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+    private static final int PRECONDITION_FAILED = 412;
+    private static final String METRIC_PREFIX = "securedrive.blob";
 
     private final BlobContainerClient blobContainerClient;
+    private final ExecutorService transferExecutor;
+    private final BlockTransfer blockTransfer;
+    private final BlockBlobStore blockStore = new AzureBlockStore();
+    private final int transferConcurrency;
+    private final long blockUploadThreshold;
+
+    // One count per call that reaches Blob Storage, tagged by operation
+    private final Counter writeRequests;
+    private final Counter readRequests;
+    private final Counter deleteRequests;
+    private final Counter existsRequests;
+    private final Counter openInputRequests;
+    private final Counter openOutputRequests;
+    private final Counter stageBlockRequests;
+    private final Counter commitBlocksRequests;
+    private final Counter listRequests;
 
     @Autowired
-    public AzureBlobStorageServiceImpl(BlobContainerClient blobContainerClient) {
+    public AzureBlobStorageServiceImpl(BlobContainerClient blobContainerClient,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${securedrive.blob.transfer.block-size-bytes:8388608}") int blockSize,
+                                       @Value("${securedrive.blob.transfer.concurrency:8}") int concurrency,
+                                       @Value("${securedrive.blob.transfer.threads:16}") int transferThreads,
+                                       @Value("${securedrive.blob.transfer.block-upload-threshold-bytes:33554432}") long blockUploadThreshold) {
         this.blobContainerClient = blobContainerClient;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.transferExecutor = Executors.newFixedThreadPool(Math.max(1, transferThreads), runnable -> {
+            Thread thread = new Thread(runnable, "blob-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.blockTransfer = new BlockTransfer(blockSize, concurrency, transferExecutor);
+        this.transferConcurrency = Math.max(1, concurrency);
+        this.blockUploadThreshold = blockUploadThreshold;
+        this.writeRequests = requestCounter(meterRegistry, "write");
+        this.readRequests = requestCounter(meterRegistry, "read");
+        this.deleteRequests = requestCounter(meterRegistry, "delete");
+        this.existsRequests = requestCounter(meterRegistry, "exists");
+        this.openInputRequests = requestCounter(meterRegistry, "open-input");
+        this.openOutputRequests = requestCounter(meterRegistry, "open-output");
+        this.stageBlockRequests = requestCounter(meterRegistry, "stage-block");
+        this.commitBlocksRequests = requestCounter(meterRegistry, "commit-blocks");
+        this.listRequests = requestCounter(meterRegistry, "list");
+    }
+
+    @PreDestroy
+    public void shutdownTransfers() {
+        transferExecutor.shutdownNow();
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String operation) {
+        return Counter.builder(METRIC_PREFIX + ".requests").tag("operation", operation).register(meterRegistry);
     }
 
 
@@ -35,11 +122,16 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
             }
             BlobClient blob = blobContainerClient.getBlobClient(path);
 
-            if (storage.getData() != null) {
-                blob.upload(new ByteArrayInputStream(storage.getData()), storage.getData().length, true);
-            } else {
+            if (storage.getData() == null) {
                 throw new AzureBlobStorageException("Storage has no data to upload");
             }
+            if (storage.getData().length > blockUploadThreshold) {
+                // Large blobs are staged block by block in parallel and committed as one blob
+                blockTransfer.upload(blockStore, path, storage.getData());
+            } else {
+                writeRequests.increment();
+                blob.upload(new ByteArrayInputStream(storage.getData()), storage.getData().length, true);
+            }
             log.info("Successfully uploaded blob to path: {}", path);
         } catch (BlobStorageException e) {
             throw new AzureBlobStorageException(e.getServiceMessage());
@@ -49,21 +141,26 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
         }
     }
 
-    public boolean checkBlobExists(String path) {
+    @Override
+    public OutputStream openOutputStream(String path) throws AzureBlobStorageException {
         try {
             if (StringUtils.isBlank(path)) {
-                log.warn("Invalid path provided for existence check: {}", path);
-                return false;
+                throw new AzureBlobStorageException("Storage path is null or invalid");
             }
-
-            BlobClient blobClient = blobContainerClient.getBlobClient(path);
-            return blobClient.exists();
+            ParallelTransferOptions transferOptions = new ParallelTransferOptions()
+                    .setBlockSizeLong(STREAM_BLOCK_SIZE)
+                    .setMaxConcurrency(STREAM_MAX_CONCURRENCY);
+            BlobClient blob = blobContainerClient.getBlobClient(path);
+            log.info("Opening streamed upload to path: {}", path);
+            openOutputRequests.increment();
+            return blob.getBlockBlobClient().getBlobOutputStream(transferOptions, null, null, null, null);
         } catch (BlobStorageException e) {
-            log.error("Error while checking blob existence for path '{}': {}", path, e.getServiceMessage());
-            return false;
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Unexpected error while checking blob existence for path '{}': {}", path, e.getMessage());
-            return false;
+            log.error("General exception while opening blob output stream: {}", e.getMessage());
+            throw new AzureBlobStorageException("Blob upload failed: " + e.getMessage());
         }
     }
 
@@ -75,6 +172,7 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
                 return false;
             }
             BlobClient blobClient = blobContainerClient.getBlobClient(path);
+            existsRequests.increment();
             return blobClient.exists();
         } catch (BlobStorageException e) {
             throw new AzureBlobStorageException("Error checking blob existence: " + e.getServiceMessage());
@@ -90,12 +188,137 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
             if (StringUtils.isBlank(path)) {
                 throw new AzureBlobStorageException("Storage path is null or invalid");
             }
-            BlobClient client = blobContainerClient.getBlobClient(path);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            client.downloadStream(outputStream);
+            return download(path);
+        } catch (BlobStorageException e) {
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a blob that may be missing in a single request: a 404 is returned as an empty result
+     * instead of being checked for with a separate exists call first.
+     */
+    @Override
+    public Optional<byte[]> readIfExists(Storage storage) throws AzureBlobStorageException {
+        try {
+            String path = storage.getFullPath();
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            return Optional.of(download(path));
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<TaggedBlob> readTaggedIfExists(String path) throws AzureBlobStorageException {
+        try {
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            BlockTransfer.Download download = blockTransfer.downloadWithETag(blockStore, path);
+            return Optional.of(new TaggedBlob(download.content(), download.eTag()));
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean writeIfMatch(String path, byte[] data, String eTag) throws AzureBlobStorageException {
+        try {
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            // Empty blobs are read without an ETag; "*" still fails if the blob was deleted
+            BlobRequestConditions conditions = new BlobRequestConditions().setIfMatch(eTag != null ? eTag : "*");
+            writeRequests.increment();
+            blobContainerClient.getBlobClient(path).uploadWithResponse(
+                    new BlobParallelUploadOptions(BinaryData.fromBytes(data)).setRequestConditions(conditions),
+                    null, Context.NONE);
+            log.info("Successfully uploaded blob to path: {}", path);
+            return true;
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == PRECONDITION_FAILED || e.getStatusCode() == NOT_FOUND) {
+                return false;
+            }
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("General exception during blob upload: {}", e.getMessage());
+            throw new AzureBlobStorageException("Blob upload failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] readRange(String path, long offset, int length) throws AzureBlobStorageException {
+        try {
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length);
+            blockStore.readRange(path, offset, length, null, outputStream);
             return outputStream.toByteArray();
         } catch (BlobStorageException e) {
             throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    @Override
+    public long transferTo(String path, WritableByteChannel target) throws AzureBlobStorageException {
+        try {
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            BlobClient client = blobContainerClient.getBlobClient(path);
+            readRequests.increment();
+            BlobDownloadResponse response = client.downloadStreamWithResponse(
+                    Channels.newOutputStream(target), null, null, null, false, null, Context.NONE);
+            return response.getDeserializedHeaders().getContentLength();
+        } catch (BlobStorageException e) {
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    // Blobs larger than one block are read as parallel ranges into an array of the exact size
+    private byte[] download(String path) throws Exception {
+        return blockTransfer.download(blockStore, path);
+    }
+
+    @Override
+    public InputStream openInputStream(String path) throws AzureBlobStorageException {
+        try {
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            BlobClient client = blobContainerClient.getBlobClient(path);
+            openInputRequests.increment();
+            return client.openInputStream();
+        } catch (BlobStorageException e) {
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
         } catch (Exception e) {
             throw new AzureBlobStorageException(e.getMessage());
         }
@@ -109,6 +332,7 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
                 throw new AzureBlobStorageException("Storage path is null or invalid");
             }
             BlobClient client = blobContainerClient.getBlobClient(path);
+            deleteRequests.increment();
             client.delete();
             log.info("Blob is deleted successfully at path: {}", path);
         } catch (BlobStorageException e) {
@@ -118,6 +342,71 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
         }
     }
 
+    /**
+     * Deletes a blob that may be missing in a single request and reports whether it existed.
+     */
+    @Override
+    public boolean deleteIfExists(Storage storage) throws AzureBlobStorageException {
+        try {
+            String path = storage.getFullPath();
+            if (StringUtils.isBlank(path)) {
+                throw new AzureBlobStorageException("Storage path is null or invalid");
+            }
+            BlobClient client = blobContainerClient.getBlobClient(path);
+            deleteRequests.increment();
+            boolean deleted = client.deleteIfExists();
+            if (deleted) {
+                log.info("Blob is deleted successfully at path: {}", path);
+            }
+            return deleted;
+        } catch (BlobStorageException e) {
+            throw new AzureBlobStorageException(e.getServiceMessage());
+        } catch (AzureBlobStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AzureBlobStorageException(e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the given blobs, up to {@code concurrency} at a time, and returns how many existed.
+     */
+    @Override
+    public int deleteAll(Collection<String> paths) throws AzureBlobStorageException {
+        List<String> targets = List.copyOf(paths);
+        int deleted = 0;
+        try (OrderedPrefetcher<Boolean> results = new OrderedPrefetcher<>(targets.size(), transferConcurrency, transferExecutor,
+                index -> deleteIfExists(new Storage(targets.get(index), null)))) {
+            while (results.hasNext()) {
+                if (results.next()) {
+                    deleted++;
+                }
+            }
+        } catch (AzureBlobStorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AzureBlobStorageException("Batch delete failed: " + e.getMessage());
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<String> list(String prefix) throws AzureBlobStorageException {
+        try {
+            List<String> names = new ArrayList<>();
+            ListBlobsOptions options = new ListBlobsOptions().setPrefix(prefix);
+            for (PagedResponse<BlobItem> page : blobContainerClient.listBlobs(options, null).iterableByPage()) {
+                listRequests.increment();
+                page.getValue().forEach(item -> names.add(item.getName()));
+            }
+            return names;
+        } catch (BlobStorageException e) {
+            throw new AzureBlobStorageException("Error listing blobs: " + e.getServiceMessage());
+        } catch (Exception e) {
+            throw new AzureBlobStorageException("Unexpected error listing blobs: " + e.getMessage());
+        }
+    }
+
     @Override
     public void createDirectory(String directoryPath) throws AzureBlobStorageException {
         try {
@@ -127,6 +416,7 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
             String markerFilePath = directoryPath + ".marker";
             BlobClient blobClient = blobContainerClient.getBlobClient(markerFilePath);
             byte[] emptyContent = new byte[0];
+            writeRequests.increment();
             blobClient.upload(new ByteArrayInputStream(emptyContent), emptyContent.length, true);
             log.info("Directory created with marker at path: {}", markerFilePath);
         } catch (BlobStorageException e) {
@@ -137,4 +427,50 @@ public class AzureBlobStorageServiceImpl implements AzureBlobStorageService {
             throw new AzureBlobStorageException("Directory creation failed: " + e.getMessage());
         }
     }
+
+    private final class AzureBlockStore implements BlockBlobStore {
+
+        @Override
+        public void stageBlock(String path, String blockId, byte[] data, int offset, int length) {
+            stageBlockRequests.increment();
+            blobContainerClient.getBlobClient(path).getBlockBlobClient()
+                    .stageBlock(blockId, new ByteArrayInputStream(data, offset, length), length);
+        }
+
+        @Override
+        public void commitBlocks(String path, List<String> blockIds) {
+            commitBlocksRequests.increment();
+            blobContainerClient.getBlobClient(path).getBlockBlobClient().commitBlockList(blockIds, true);
+        }
+
+        @Override
+        public RangeRead readRange(String path, long offset, int length, String ifMatch, OutputStream target) throws IOException {
+            readRequests.increment();
+            BlobRequestConditions conditions = (ifMatch != null) ? new BlobRequestConditions().setIfMatch(ifMatch) : null;
+            try {
+                BlobDownloadResponse response = blobContainerClient.getBlobClient(path).downloadStreamWithResponse(
+                        target, new BlobRange(offset, (long) length), null, conditions, false, null, Context.NONE);
+                BlobDownloadHeaders headers = response.getDeserializedHeaders();
+                return new RangeRead(blobSize(headers), headers.getETag());
+            } catch (BlobStorageException e) {
+                // A ranged read of an empty blob has no satisfiable range
+                if (offset == 0 && e.getStatusCode() == RANGE_NOT_SATISFIABLE) {
+                    return new RangeRead(0, null);
+                }
+                if (ifMatch != null && e.getStatusCode() == PRECONDITION_FAILED) {
+                    throw new BlobChangedException("Blob changed while it was read: " + path);
+                }
+                throw e;
+            }
+        }
+
+        // Content-Range is "bytes <first>-<last>/<total>"
+        private long blobSize(BlobDownloadHeaders headers) {
+            String contentRange = headers.getContentRange();
+            if (contentRange == null) {
+                return headers.getContentLength();
+            }
+            return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.model.File;
+import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.repository.FileVersionRepository;
+import com.example.securedrive.service.BlobFormatMigrationService;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.BlobStorageService.TaggedBlob;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Background job that rewrites legacy Base64 blobs into the raw {@link BlobFormatUtil} format.
+ * Payloads are moved over byte for byte, so no encryption keys are needed.
+ */
+@Service
+public class BlobFormatMigrationServiceImpl implements BlobFormatMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobFormatMigrationServiceImpl.class);
+    private static final String FIRST_VERSION = "v1";
+
+    private final FileVersionRepository fileVersionRepository;
+    private final BlobStorageService blobStorage;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private volatile long lastMigratedId = 0;
+    private volatile boolean completed = false;
+
+    public BlobFormatMigrationServiceImpl(FileVersionRepository fileVersionRepository,
+                                          BlobStorageService blobStorage,
+                                          @Value("${securedrive.blob-migration.enabled:false}") boolean enabled,
+                                          @Value("${securedrive.blob-migration.batch-size:100}") int batchSize) {
+        this.fileVersionRepository = fileVersionRepository;
+        this.blobStorage = blobStorage;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${securedrive.blob-migration.interval-ms:60000}")
+    public void runScheduledMigration() {
+        if (!enabled || completed) {
+            return;
+        }
+        int migrated = migrateBatch();
+        logger.info("Blob format migration batch finished. Migrated blobs: {}, cursor: {}", migrated, lastMigratedId);
+    }
+
+    @Override
+    @Transactional
+    public synchronized int migrateBatch() {
+        List<FileVersion> batch = fileVersionRepository.findByIdGreaterThanOrderByIdAsc(lastMigratedId, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            completed = true;
+            logger.info("Blob format migration completed.");
+            return 0;
+        }
+
+        int migrated = 0;
+        for (FileVersion version : batch) {
+            String snapshotPath = legacySnapshotPath(version);
+            if (snapshotPath != null && migrateBlob(snapshotPath, BlobCipher.AES_ECB)) {
+                migrated++;
+            }
+            if (version.getDeltaPath() != null && migrateBlob(version.getDeltaPath(), BlobCipher.NONE)) {
+                migrated++;
+            }
+            lastMigratedId = version.getId();
+        }
+        return migrated;
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    // Only the first version was stored whole at the derived path before snapshot paths were recorded
+    private static String legacySnapshotPath(FileVersion version) {
+        if (version.getSnapshotPath() != null) {
+            return version.getSnapshotPath();
+        }
+        if (!FIRST_VERSION.equals(version.getVersionNumber())) {
+            return null;
+        }
+        File file = version.getFile();
+        return String.format("%s/versions/%s/%s", file.getPath(), version.getVersionNumber(), file.getFileName());
+    }
+
+    // Written back only if the blob is unchanged, so one deleted or replaced meanwhile is left alone
+    private boolean migrateBlob(String path, BlobCipher legacyCipher) {
+        try {
+            Optional<TaggedBlob> stored = blobStorage.readTaggedIfExists(path);
+            if (stored.isEmpty()) {
+                return false;
+            }
+            byte[] blob = stored.get().data();
+            if (BlobFormatUtil.hasHeader(blob)) {
+                return false;
+            }
+            byte[] migrated = BlobFormatUtil.migrateLegacy(blob, legacyCipher);
+            if (!blobStorage.writeIfMatch(path, migrated, stored.get().eTag())) {
+                logger.info("Skipped blob changed during migration: {}", path);
+                return false;
+            }
+            logger.info("Migrated legacy blob: {} ({} -> {} bytes)", path, blob.length, migrated.length);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to migrate blob {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.model.StoredChunk;
+import com.example.securedrive.repository.StoredChunkRepository;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.ChunkStoreService;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import com.example.securedrive.service.util.ChunkManifestCodec;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+import com.example.securedrive.service.util.FastCdcChunker;
+import com.example.securedrive.service.util.HashUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Chunk store on top of blob storage. Chunk ids are HMAC-SHA256 of the plaintext under a key
+ * derived from the owner's AES key, so deduplication works across all files of one owner but
+ * ids reveal nothing about content to anyone without that key. Reference counts live in the
+ * database; a chunk blob is deleted once no manifest refers to it.
+ *
+ * Every time a chunk is stored anew it gets a blob path of its own, recorded in its row. A
+ * release that deletes the row at zero references and an upload that stores the same chunk
+ * again in the meantime therefore never share a blob, and the release only deletes the blob of
+ * the row it removed.
+ */
+@Service
+public class ChunkStoreServiceImpl implements ChunkStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkStoreServiceImpl.class);
+
+    private static final String METRIC_PREFIX = "securedrive.chunkstore";
+    private static final String CHUNK_ID_ALGORITHM = "HmacSHA256";
+    private static final byte[] CHUNK_ID_CONTEXT = "securedrive-chunk-id".getBytes(StandardCharsets.UTF_8);
+
+    private final BlobStorageService blobStorage;
+    private final StoredChunkRepository storedChunkRepository;
+    private final FastCdcChunker chunker;
+    private final boolean enabled;
+    private final String pathPrefix;
+
+    private final Counter storedChunks;
+    private final Counter deduplicatedChunks;
+    private final Counter storedBytes;
+    private final Counter deduplicatedBytes;
+
+    public ChunkStoreServiceImpl(BlobStorageService blobStorage,
+                                 StoredChunkRepository storedChunkRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${securedrive.chunk-store.enabled:false}") boolean enabled,
+                                 @Value("${securedrive.chunk-store.min-chunk-bytes:16384}") int minChunkBytes,
+                                 @Value("${securedrive.chunk-store.avg-chunk-bytes:65536}") int avgChunkBytes,
+                                 @Value("${securedrive.chunk-store.max-chunk-bytes:262144}") int maxChunkBytes,
+                                 @Value("${securedrive.chunk-store.path-prefix:chunks}") String pathPrefix) {
+        this.blobStorage = blobStorage;
+        this.storedChunkRepository = storedChunkRepository;
+        this.chunker = new FastCdcChunker(minChunkBytes, avgChunkBytes, maxChunkBytes);
+        this.enabled = enabled;
+        this.pathPrefix = pathPrefix;
+
+        this.storedChunks = Counter.builder(METRIC_PREFIX + ".chunks").tag("result", "stored").register(meterRegistry);
+        this.deduplicatedChunks = Counter.builder(METRIC_PREFIX + ".chunks").tag("result", "deduplicated").register(meterRegistry);
+        this.storedBytes = Counter.builder(METRIC_PREFIX + ".bytes").tag("result", "stored").register(meterRegistry);
+        this.deduplicatedBytes = Counter.builder(METRIC_PREFIX + ".bytes").tag("result", "deduplicated").register(meterRegistry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public List<ChunkRef> store(InputStream content, AesKey key) throws Exception {
+        Mac mac = chunkIdMac(key);
+        List<ChunkRef> chunks = new ArrayList<>();
+        try {
+            chunker.split(content, (data, offset, length) -> {
+                mac.update(data, offset, length);
+                String id = HashUtil.toHex(mac.doFinal());
+                reference(id, data, offset, length, key);
+                chunks.add(new ChunkRef(id, length));
+            });
+        } catch (Exception e) {
+            // Give back the references taken so far, nothing will point at them
+            release(chunks);
+            throw e;
+        }
+        logger.info("Stored {} chunks ({} bytes)", chunks.size(), ChunkManifestCodec.contentLength(chunks));
+        return chunks;
+    }
+
+    // Takes one reference on the chunk, storing it first if no row exists
+    private void reference(String id, byte[] data, int offset, int length, AesKey key) throws IOException {
+        byte[] plaintext = null;
+        while (storedChunkRepository.addReferences(id, 1) == 0) {
+            if (plaintext == null) {
+                plaintext = Arrays.copyOfRange(data, offset, offset + length);
+            }
+            if (storeNewChunk(id, plaintext, key)) {
+                return;
+            }
+            // Another upload inserted the row first; reference that one
+        }
+        deduplicatedChunks.increment();
+        deduplicatedBytes.increment(length);
+    }
+
+    // Returns false if another upload stored the chunk first, in which case nothing is kept
+    private boolean storeNewChunk(String id, byte[] plaintext, AesKey key) throws IOException {
+        String path = chunkPath(id) + "." + UUID.randomUUID();
+        try {
+            blobStorage.write(new Storage(path, BlobFormatUtil.encode(plaintext, BlobCipher.AES_GCM_ENVELOPE, BlobCompression.NONE, key)));
+        } catch (Exception e) {
+            throw new IOException("Failed to store chunk " + id + ": " + e.getMessage(), e);
+        }
+        try {
+            storedChunkRepository.saveAndFlush(new StoredChunk(id, path, plaintext.length, 1L, LocalDateTime.now(), null));
+            storedChunks.increment();
+            storedBytes.increment(plaintext.length);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            deleteBlob(id, path);
+            return false;
+        } catch (RuntimeException e) {
+            deleteBlob(id, path);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openContent(List<ChunkRef> chunks, AesKey key) {
+        return new ChunkSequenceInputStream(chunks.iterator(), key);
+    }
+
+    @Override
+    public void saveManifest(String path, List<ChunkRef> chunks) throws Exception {
+        byte[] manifest = ChunkManifestCodec.encode(chunks);
+        blobStorage.write(new Storage(path, BlobFormatUtil.encode(manifest, BlobCipher.NONE, BlobCompression.NONE, null)));
+    }
+
+    @Override
+    public List<ChunkRef> loadManifest(String path) throws IOException {
+        try {
+            byte[] blob = blobStorage.read(new Storage(path, null));
+            return ChunkManifestCodec.decode(BlobFormatUtil.decode(blob, null, BlobCipher.NONE));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read chunk manifest at path: " + path, e);
+        }
+    }
+
+    @Override
+    public void release(List<ChunkRef> chunks) {
+        Map<String, Long> references = new LinkedHashMap<>();
+        for (ChunkRef chunk : chunks) {
+            references.merge(chunk.id(), 1L, Long::sum);
+        }
+        for (Map.Entry<String, Long> entry : references.entrySet()) {
+            String id = entry.getKey();
+            storedChunkRepository.addReferences(id, -entry.getValue());
+            Optional<String> path = storedChunkRepository.findPathById(id);
+            if (path.isPresent() && storedChunkRepository.deleteIfUnreferenced(id, path.get()) > 0) {
+                deleteBlob(id, path.get());
+            }
+        }
+    }
+
+    private void deleteBlob(String id, String path) {
+        try {
+            blobStorage.delete(new Storage(path, null));
+        } catch (Exception e) {
+            logger.warn("Could not delete unreferenced chunk {}: {}", id, e.getMessage());
+        }
+    }
+
+    private String chunkPath(String id) {
+        return pathPrefix + "/" + id.substring(0, 2) + "/" + id;
+    }
+
+    private byte[] readChunk(ChunkRef chunk, AesKey key, Mac mac) throws IOException {
+        byte[] plaintext;
+        try {
+            String path = storedChunkRepository.findPathById(chunk.id())
+                    .orElseThrow(() -> new IOException("No stored chunk with this id"));
+            plaintext = BlobFormatUtil.decode(blobStorage.read(new Storage(path, null)), key, BlobCipher.AES_ECB);
+        } catch (Exception e) {
+            throw new IOException("Failed to read chunk " + chunk.id() + ": " + e.getMessage(), e);
+        }
+        // The id doubles as an integrity check of the decrypted chunk
+        if (plaintext.length != chunk.length() || !HashUtil.toHex(mac.doFinal(plaintext)).equals(chunk.id())) {
+            throw new IOException("Chunk " + chunk.id() + " does not match its manifest entry");
+        }
+        return plaintext;
+    }
+
+    private static Mac chunkIdMac(AesKey key) throws GeneralSecurityException {
+        // Derive a separate key so the AES key is never used directly as a MAC key
+        Mac derive = Mac.getInstance(CHUNK_ID_ALGORITHM);
+        byte[] raw = key.spec().getEncoded();
+        try {
+            derive.init(new SecretKeySpec(raw, CHUNK_ID_ALGORITHM));
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+        Mac mac = Mac.getInstance(CHUNK_ID_ALGORITHM);
+        mac.init(new SecretKeySpec(derive.doFinal(CHUNK_ID_CONTEXT), CHUNK_ID_ALGORITHM));
+        return mac;
+    }
+
+    /**
+     * Concatenation of the chunks of a manifest, fetching and verifying each chunk only when
+     * the previous one has been read.
+     */
+    private class ChunkSequenceInputStream extends InputStream {
+
+        private final Iterator<ChunkRef> remaining;
+        private final AesKey key;
+        private Mac mac;
+        private ByteArrayInputStream current = new ByteArrayInputStream(new byte[0]);
+
+        ChunkSequenceInputStream(Iterator<ChunkRef> remaining, AesKey key) {
+            this.remaining = remaining;
+            this.key = key;
+        }
+
+        private boolean advance() throws IOException {
+            while (current.available() == 0) {
+                if (!remaining.hasNext()) {
+                    return false;
+                }
+                if (mac == null) {
+                    try {
+                        mac = chunkIdMac(key);
+                    } catch (GeneralSecurityException e) {
+                        throw new IOException("Cannot verify chunks: " + e.getMessage(), e);
+                    }
+                }
+                current = new ByteArrayInputStream(readChunk(remaining.next(), key, mac));
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return advance() ? current.read() : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return advance() ? current.read(b, off, len) : -1;
+        }
+    }
+}
@@ -9,15 +9,20 @@ import com.example.securedrive.mapper.DirectoryMapper;
 import com.example.securedrive.model.*;
 import com.example.securedrive.repository.*;
 import com.example.securedrive.security.AzureBlobSASTokenGenerator;
-import com.example.securedrive.service.AzureBlobStorageService;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.ChunkStoreService;
 import com.example.securedrive.service.DirectoryService;
 import com.example.securedrive.service.UserManagementService;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,7 +33,7 @@ public class DirectoryServiceImpl implements DirectoryService {
     private static final Logger logger = LoggerFactory.getLogger(DirectoryServiceImpl.class);
 
     private final DirectoryRepository directoryRepository;
-    private final AzureBlobStorageService azureBlobStorageService;
+    private final BlobStorageService blobStorageService;
     private final FileRepository fileRepository;
     private final FileVersionRepository fileVersionRepository;
     private final DirectoryMapper directoryMapper;
@@ -37,10 +42,11 @@ public class DirectoryServiceImpl implements DirectoryService {
     private final FileShareRepository fileShareRepository;
     private final AzureBlobSASTokenGenerator azureBlobSASTokenGenerator;
     private final UserRepository userRepository;
+    private final ChunkStoreService chunkStoreService;
 
     @Autowired
     public DirectoryServiceImpl(DirectoryRepository directoryRepository,
-                                AzureBlobStorageService azureBlobStorageService,
+                                BlobStorageService blobStorageService,
                                 FileRepository fileRepository,
                                 FileVersionRepository fileVersionRepository,
                                 DirectoryMapper directoryMapper,
@@ -48,9 +54,10 @@ public class DirectoryServiceImpl implements DirectoryService {
                                 DirectoryShareRepository directoryShareRepository,
                                 FileShareRepository fileShareRepository,
                                 AzureBlobSASTokenGenerator azureBlobSASTokenGenerator,
-                                UserRepository userRepository) {
+                                UserRepository userRepository,
+                                ChunkStoreService chunkStoreService) {
         this.directoryRepository = directoryRepository;
-        this.azureBlobStorageService = azureBlobStorageService;
+        this.blobStorageService = blobStorageService;
         this.fileRepository = fileRepository;
         this.fileVersionRepository = fileVersionRepository;
         this.directoryMapper = directoryMapper;
@@ -59,6 +66,7 @@ public class DirectoryServiceImpl implements DirectoryService {
         this.fileShareRepository = fileShareRepository;
         this.azureBlobSASTokenGenerator = azureBlobSASTokenGenerator;
         this.userRepository = userRepository;
+        this.chunkStoreService = chunkStoreService;
     }
 
     @Override
@@ -83,7 +91,7 @@ public class DirectoryServiceImpl implements DirectoryService {
         }
 
         try {
-            azureBlobStorageService.createDirectory(path);
+            blobStorageService.createDirectory(path);
             logger.info("Directory created with marker at path: {}", path);
         } catch (AzureBlobStorageException e) {
             logger.error("Error for directory creation in Blob Storage: {}", e.getMessage());
@@ -173,8 +181,14 @@ public class DirectoryServiceImpl implements DirectoryService {
         List<File> files = directory.getFiles();
         for (File file : files) {
             try {
+                List<String> manifestPaths = fileVersionRepository.findAllByFile(file).stream()
+                        .map(FileVersion::getManifestPath)
+                        .filter(Objects::nonNull)
+                        .toList();
                 fileVersionRepository.deleteAllByFile(file);
                 fileRepository.delete(file);
+                // Blobs go only once the rows are gone for good, so a rollback never leaves rows without content
+                afterCommit(() -> deleteFileBlobs(file, manifestPaths));
             } catch (Exception e) {
                 logger.error("Error for file deletion: {} - {}", file.getId(), e.getMessage());
             }
@@ -188,6 +202,39 @@ public class DirectoryServiceImpl implements DirectoryService {
         }
     }
 
+    private void deleteFileBlobs(File file, List<String> manifestPaths) {
+        try {
+            // The manifests live under the file's path, so read them before its blobs are deleted
+            List<ChunkRef> chunks = new ArrayList<>();
+            for (String manifestPath : manifestPaths) {
+                try {
+                    chunks.addAll(chunkStoreService.loadManifest(manifestPath));
+                } catch (IOException e) {
+                    logger.warn("Could not read chunk manifest {}: {}", manifestPath, e.getMessage());
+                }
+            }
+            // Every version blob of the file lives under its path
+            int deleted = blobStorageService.deleteAll(blobStorageService.list(file.getPath() + "/"));
+            chunkStoreService.release(chunks);
+            logger.info("Deleted {} blobs and released {} chunks of file {}", deleted, chunks.size(), file.getId());
+        } catch (Exception e) {
+            logger.error("Error for blob deletion of file: {} - {}", file.getId(), e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     @Override
     public List<DirectoryDto> getDirectoriesByUsername(String username) {
         User user = userManagementService.findByUsername(username)
@@ -8,28 +8,46 @@ import com.example.securedrive.repository.FileRepository;
 import com.example.securedrive.repository.FileShareRepository;
 import com.example.securedrive.repository.FileVersionRepository;
 import com.example.securedrive.repository.UserRepository;
-import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.BinaryDeltaCodec;
 import com.example.securedrive.service.util.BinaryDeltaUtil;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import com.example.securedrive.service.util.ChunkManifestCodec;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+import com.example.securedrive.service.util.ContentHash;
 import com.example.securedrive.service.util.DeltaUtil;
 import com.example.securedrive.service.util.HashUtil;
+import com.example.securedrive.service.util.HashingInputStream;
+import com.example.securedrive.service.util.LargeFileDeltaEngine;
+import com.example.securedrive.service.util.TempFileUtil;
+import com.example.securedrive.service.util.TreeHash;
+import com.example.securedrive.service.util.VersionChainUtil;
 import com.example.securedrive.security.KeyVaultService;
 import com.example.securedrive.service.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Stream;
 
 
 @Service
 public class FileFacadeServiceImpl implements FileFacadeService {
 
-    private final AzureBlobStorageServiceImpl azureBlobStorage;
+    private final BlobStorageService blobStorage;
     private final UserManagementService userManagementService;
     private final FileManagementService fileManagementService;
     private final FileVersionManagementService fileVersionManagementService;
@@ -40,11 +58,20 @@ public class FileFacadeServiceImpl implements FileFacadeService {
     private final FileRepository fileRepository;
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final ReconstructedContentCache reconstructedContentCache;
+    private final ChunkStoreService chunkStoreService;
+    private final boolean compressText;
+    private final long largeFileThreshold;
+    private final String tempDirectory;
+    private final long matchIndexBudget;
+    private final int deltaParallelism;
+    private final boolean reverseDeltas;
+    private final boolean treeHashDedup;
 
     private static final Logger logger = LoggerFactory.getLogger(FileFacadeServiceImpl.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
 
-    public FileFacadeServiceImpl(AzureBlobStorageServiceImpl azureBlobStorage,
+    public FileFacadeServiceImpl(BlobStorageService blobStorage,
                                  UserManagementService userManagementService,
                                  FileManagementService fileManagementService,
                                  FileVersionManagementService fileVersionManagementService,
@@ -54,8 +81,17 @@ public class FileFacadeServiceImpl implements FileFacadeService {
                                  FileVersionRepository fileVersionRepository,
                                  FileRepository fileRepository,
                                  UserRepository userRepository,
-                                 UserMapper userMapper) {
-        this.azureBlobStorage = azureBlobStorage;
+                                 UserMapper userMapper,
+                                 ReconstructedContentCache reconstructedContentCache,
+                                 ChunkStoreService chunkStoreService,
+                                 @Value("${securedrive.storage.compress-text:true}") boolean compressText,
+                                 @Value("${securedrive.versioning.large-file-threshold-bytes:1073741824}") long largeFileThreshold,
+                                 @Value("${securedrive.versioning.temp-directory:}") String tempDirectory,
+                                 @Value("${securedrive.versioning.match-index-budget-bytes:268435456}") long matchIndexBudget,
+                                 @Value("${securedrive.versioning.delta-parallelism:0}") int deltaParallelism,
+                                 @Value("${securedrive.versioning.reverse-deltas:false}") boolean reverseDeltas,
+                                 @Value("${securedrive.dedup.hash-algorithm:sha-256}") String dedupHashAlgorithm) {
+        this.blobStorage = blobStorage;
         this.userManagementService = userManagementService;
         this.fileManagementService = fileManagementService;
         this.fileVersionManagementService = fileVersionManagementService;
@@ -66,6 +102,20 @@ public class FileFacadeServiceImpl implements FileFacadeService {
         this.fileRepository = fileRepository;
         this.userRepository = userRepository;
         this.userMapper = userMapper;
+        this.reconstructedContentCache = reconstructedContentCache;
+        this.chunkStoreService = chunkStoreService;
+        this.compressText = compressText;
+        // Binary uploads at or below the threshold are read into a single array
+        this.largeFileThreshold = Math.min(largeFileThreshold, LargeFileDeltaEngine.MAX_IN_MEMORY_BYTES);
+        this.tempDirectory = tempDirectory;
+        this.matchIndexBudget = matchIndexBudget;
+        this.deltaParallelism = deltaParallelism > 0 ? deltaParallelism : Runtime.getRuntime().availableProcessors();
+        this.reverseDeltas = reverseDeltas;
+        this.treeHashDedup = switch (dedupHashAlgorithm.toLowerCase(Locale.ROOT)) {
+            case "sha-256" -> false;
+            case "tree" -> true;
+            default -> throw new IllegalArgumentException("Unknown securedrive.dedup.hash-algorithm: " + dedupHashAlgorithm);
+        };
     }
     @Override
     public void revokeShare(FileRevokeShareRequestDto dto, Authentication authentication) {
@@ -127,6 +177,24 @@ public class FileFacadeServiceImpl implements FileFacadeService {
 
     @Override
     public FileDownloadSharedResponseDto downloadSharedFile(FileDownloadSharedRequestDto dto) throws Exception {
+        FileShare fileShare = resolveSharedFile(dto);
+        File file = fileShare.getFile();
+
+        // Shared content is encrypted with the owner's key, not the recipient's
+        byte[] originalData = fileVersionManagementService.reconstructFileBytes(file, fileShare.getVersion(), file.getUser());
+        ByteArrayResource resource = new ByteArrayResource(originalData);
+
+        return new FileDownloadSharedResponseDto(originalData, file.getFileName(), resource);
+    }
+
+    @Override
+    public FileDownloadStreamResponseDto streamSharedFile(FileDownloadSharedRequestDto dto) throws Exception {
+        FileShare fileShare = resolveSharedFile(dto);
+        File file = fileShare.getFile();
+        return fileVersionManagementService.streamFileContent(file, fileShare.getVersion(), file.getUser());
+    }
+
+    private FileShare resolveSharedFile(FileDownloadSharedRequestDto dto) {
         String username = dto.getUsername();
         Long sharedFileId = dto.getFileId();
 
@@ -142,33 +210,10 @@ public class FileFacadeServiceImpl implements FileFacadeService {
             logger.error("User {} does not have access to FileShare id: {}", username, sharedFileId);
             throw new RuntimeException("You do not have access to this file.");
         }
-        File file = fileShare.getFile();
-        if (file == null) {
+        if (fileShare.getFile() == null) {
             throw new RuntimeException("File not found for FileShare id: " + sharedFileId);
         }
-        User owner = file.getUser();
-        String fileName = file.getFileName();
-        String version = fileShare.getVersion();
-        String fileNameLower = fileName.toLowerCase();
-        boolean isBinary = fileNameLower.matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
-
-        byte[] originalData;
-        String encryptionKey = keyVaultService.getEncryptionKeyFromKeyVault(owner.getUsername());
-        if (encryptionKey == null || encryptionKey.isEmpty()) {
-            throw new RuntimeException("Encryption key not found.");
-        }
-
-        if (isBinary) {
-            String reconstructedContentBase64 = fileVersionManagementService.reconstructFileContent(file, version, sharedWithUser);
-            originalData = Base64.getDecoder().decode(reconstructedContentBase64);
-        } else {
-            String reconstructedContent = fileVersionManagementService.reconstructFileContent(file, version, owner);
-            originalData = reconstructedContent.getBytes(StandardCharsets.UTF_8);
-        }
-
-        ByteArrayResource resource = new ByteArrayResource(originalData);
-
-        return new FileDownloadSharedResponseDto(originalData, fileName, resource);
+        return fileShare;
     }
 
 
@@ -181,7 +226,7 @@ public class FileFacadeServiceImpl implements FileFacadeService {
                     .orElseThrow(() -> new RuntimeException("User not found: " + dto.getUsername()));
             logger.info("User verified: {}", currentUser.getUsername());
 
-            String aesKey = resolveOrCreateAESKey(dto.getUsername());
+            AesKey aesKey = AesKey.fromBase64(keyVaultService.getEncryptionKeyFromKeyVault(dto.getUsername()));
 
             Directory directory = null;
             if (dto.getDirectoryId() != null) {
@@ -200,11 +245,15 @@ public class FileFacadeServiceImpl implements FileFacadeService {
                     : fileManagementService.findByFileNameAndUserDirectoryNull(dto.getFile().getOriginalFilename(), currentUser);
             logger.info("File check completed.");
 
-            String fileHash = HashUtil.calculateHash(dto.getFile().getBytes());
+            // Existing files need the hash up front for the duplicate check; new files get it
+            // while the upload is streamed into storage. Whatever is hashed here is not hashed again.
+            ContentHash uploadHash = ContentHash.NONE;
 
             if (userFile != null) {
+                uploadHash = hashForDuplicateCheck(dto.getFile(), userFile.getVersions());
+                ContentHash knownHash = uploadHash;
                 Optional<FileVersion> duplicateVersion = userFile.getVersions().stream()
-                        .filter(version -> version.getHash().equals(fileHash))
+                        .filter(version -> isSameContent(version, knownHash))
                         .findFirst();
                 if (duplicateVersion.isPresent()) {
                     String existingVersion = duplicateVersion.get().getVersionNumber();
@@ -226,7 +275,7 @@ public class FileFacadeServiceImpl implements FileFacadeService {
                     : fileVersionManagementService.generateNextVersion(userFile);
             logger.info("Version number generated: {}", versionNumber);
 
-            processFile(dto, aesKey, uniqueFilePath, userFile, versionNumber);
+            processFile(dto, aesKey, uniqueFilePath, userFile, versionNumber, uploadHash);
 
             return "File uploaded successfully. Version: " + versionNumber;
 
@@ -257,19 +306,39 @@ public class FileFacadeServiceImpl implements FileFacadeService {
         }
 
         try {
-            String versionFilePath = String.format("%s/versions/%s/%s", file.getPath(), dto.getVersionNumber(), file.getFileName());
-            if (azureBlobStorage.exists(new Storage(versionFilePath, null))) {
-                azureBlobStorage.delete(new Storage(versionFilePath, null));
+            // A reverse delta directly below and a forward delta directly above are rebuilt
+            // through this version, so store them whole first
+            List<FileVersion> versions = fileVersionRepository.findAllByFile(file);
+            for (int i = 0; i < versions.size(); i++) {
+                if (!versions.get(i).getVersionNumber().equals(dto.getVersionNumber())) {
+                    continue;
+                }
+                if (i > 0 && VersionChainUtil.isReverseDelta(versions.get(i - 1))) {
+                    storeWhole(file, versions.get(i - 1), user);
+                }
+                if (i + 1 < versions.size() && isForwardDelta(versions.get(i + 1))) {
+                    storeWhole(file, versions.get(i + 1), user);
+                }
             }
 
-            if (versionToDelete.getDeltaPath() != null) {
-                String deltaFilePath = versionToDelete.getDeltaPath();
-                if (azureBlobStorage.exists(new Storage(deltaFilePath, null))) {
-                    azureBlobStorage.delete(new Storage(deltaFilePath, null));
-                }
+            if (versionToDelete.getManifestPath() != null) {
+                String manifestPath = versionToDelete.getManifestPath();
+                List<ChunkRef> chunks = chunkStoreService.loadManifest(manifestPath);
+                blobStorage.delete(new Storage(manifestPath, null));
+                chunkStoreService.release(chunks);
             }
 
+            // The version's snapshot, delta and materialized copy go in one batch
+            Set<String> versionBlobs = new LinkedHashSet<>();
+            versionBlobs.add(String.format("%s/versions/%s/%s", file.getPath(), dto.getVersionNumber(), file.getFileName()));
+            Stream.of(versionToDelete.getSnapshotPath(), versionToDelete.getDeltaPath(), versionToDelete.getMaterializedPath())
+                    .filter(Objects::nonNull)
+                    .forEach(versionBlobs::add);
+            blobStorage.deleteAll(versionBlobs);
+
             fileVersionRepository.delete(versionToDelete);
+            // Later versions were rebuilt through the deleted one, so drop everything cached for the file
+            reconstructedContentCache.invalidateFile(file.getId());
 
             if (fileVersionRepository.findAllByFile(file).isEmpty()) {
                 fileRepository.delete(file);
@@ -281,39 +350,130 @@ public class FileFacadeServiceImpl implements FileFacadeService {
     }
 
 
+    private static boolean isForwardDelta(FileVersion version) {
+        return version.getDeltaPath() != null && !VersionChainUtil.isReverseDelta(version);
+    }
+
+    // Replaces the delta of a version with a snapshot of its content
+    private void storeWhole(File file, FileVersion version, User user) throws Exception {
+        AesKey aesKey = AesKey.fromBase64(keyVaultService.getEncryptionKeyFromKeyVault(user.getUsername()));
+        String snapshotPath = String.format("%s/versions/%s/%s", file.getPath(), version.getVersionNumber(), file.getFileName());
+        FileDownloadStreamResponseDto content = fileVersionManagementService.streamFileContent(file, version.getVersionNumber(), user);
+        try (OutputStream out = BlobFormatUtil.encodingStream(blobStorage.openOutputStream(snapshotPath),
+                BlobCipher.AES_GCM_ENVELOPE, compressionFor(isBinaryFileName(file.getFileName())), aesKey)) {
+            content.getBody().writeTo(out);
+        }
+
+        String deltaPath = version.getDeltaPath();
+        version.setSnapshotPath(snapshotPath);
+        version.setDeltaPath(null);
+        version.setDeltaSize(null);
+        version.setReverseDelta(null);
+        fileVersionManagementService.saveFileVersion(version);
+        if (!deltaPath.equals(snapshotPath)) {
+            blobStorage.delete(new Storage(deltaPath, null));
+        }
+        logger.info("Delta of version {} replaced by a snapshot", version.getVersionNumber());
+    }
+
     @Override
     public ByteArrayResource downloadSpecificVersion(FileDownloadSpecificVersionRequestDto dto) throws Exception {
+        User user = resolveDownloadUser(dto);
+        File file = resolveDownloadFile(dto, user);
+        return new ByteArrayResource(fileVersionManagementService.reconstructFileBytes(file, dto.getVersionNumber(), user));
+    }
+
+    @Override
+    public FileDownloadStreamResponseDto streamSpecificVersion(FileDownloadSpecificVersionRequestDto dto) throws Exception {
+        User user = resolveDownloadUser(dto);
+        File file = resolveDownloadFile(dto, user);
+        return fileVersionManagementService.streamFileContent(file, dto.getVersionNumber(), user);
+    }
+
+    private User resolveDownloadUser(FileDownloadSpecificVersionRequestDto dto) {
         User user = userManagementService.findByUsername(dto.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found: " + dto.getUsername()));
         logger.info("User verified: {}", user.getUsername());
+        return user;
+    }
 
+    private File resolveDownloadFile(FileDownloadSpecificVersionRequestDto dto, User user) {
         File file = fileManagementService.findByIdAndUser(dto.getFileId(), user)
                 .orElseThrow(() -> new RuntimeException("File not found: " + dto.getFileId()));
         logger.info("File verified: {}", file.getFileName());
+        return file;
+    }
 
-        String fileName = file.getFileName();
-        boolean isBinary = fileName.toLowerCase().matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
-
-        byte[] originalData;
+    /**
+     * With tree-hash dedup the upload is compared by its tree hash, which is hashed in parallel,
+     * and the SHA-256 is left to the pass that stores it; only versions stored before tree
+     * hashes were recorded still need the SHA-256 here. Both are computed in one read.
+     */
+    private ContentHash hashForDuplicateCheck(MultipartFile file, List<FileVersion> versions) throws Exception {
+        boolean sha256 = !treeHashDedup || versions.stream().anyMatch(version -> version.getDedupHash() == null);
+        try (HashingInputStream in = new HashingInputStream(file.getInputStream(), sha256, treeHashDedup)) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return in.contentHash();
+        }
+    }
 
-        if (isBinary) {
-            String reconstructedContentBase64 = fileVersionManagementService.reconstructFileContent(file, dto.getVersionNumber(), user);
-            originalData = Base64.getDecoder().decode(reconstructedContentBase64);
-        } else {
-            String reconstructedContent = fileVersionManagementService.reconstructFileContent(file, dto.getVersionNumber(), user);
-            originalData = reconstructedContent.getBytes(StandardCharsets.UTF_8);
+    private static boolean isSameContent(FileVersion version, ContentHash hash) {
+        if (hash.treeHash() != null && version.getDedupHash() != null) {
+            return version.getDedupHash().equals(hash.treeHash());
         }
+        return version.getHash().equals(hash.sha256());
+    }
 
-        return new ByteArrayResource(originalData);
+    /**
+     * Wraps {@code in} to compute the hashes not in {@code knownHash} while it is read.
+     */
+    private HashingInputStream hashing(InputStream in, ContentHash knownHash) {
+        return new HashingInputStream(in, knownHash.sha256() == null, treeHashDedup && knownHash.treeHash() == null);
     }
 
-    private void processFile(FileUploadRequestDto dto, String aesKey, String uniqueFilePath, File userFile, String versionNumber) throws Exception {
-        String fileNameLower = Objects.requireNonNull(dto.getFile().getOriginalFilename()).toLowerCase();
-        byte[] fileData = dto.getFile().getBytes();
-        String fileHash = HashUtil.calculateHash(fileData);
+    private ContentHash hashOf(byte[] data, ContentHash knownHash) {
+        return knownHash.or(new ContentHash(
+                knownHash.sha256() == null ? HashUtil.calculateHash(data) : null,
+                treeHashDedup && knownHash.treeHash() == null ? TreeHash.hashHex(data) : null));
+    }
+
+    private static void setContentHash(FileVersion version, ContentHash hash) {
+        version.setHash(hash.sha256());
+        version.setDedupHash(hash.treeHash());
+    }
+
+    private void processFile(FileUploadRequestDto dto, AesKey aesKey, String uniqueFilePath, File userFile, String versionNumber, ContentHash knownHash) throws Exception {
+        MultipartFile file = dto.getFile();
+        String fileNameLower = Objects.requireNonNull(file.getOriginalFilename()).toLowerCase();
 
         // Determine whether the file is binary or text
-        boolean isBinaryFile = fileNameLower.matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
+        boolean isBinaryFile = isBinaryFileName(fileNameLower);
+
+        if (isBinaryFile && chunkStoreService.isEnabled()) {
+            processChunkedFile(file, aesKey, uniqueFilePath, userFile, versionNumber, knownHash);
+            return;
+        }
+
+        if (versionNumber.equals("v1")) {
+            // First version: stream the upload straight into the encrypted blob
+            storeStreamedSnapshot(file, aesKey, uniqueFilePath, userFile, versionNumber, isBinaryFile, knownHash);
+            return;
+        }
+
+        if (file.getSize() > largeFileThreshold || isLargeVersion(latestVersion(userFile))) {
+            // Too large to diff in memory
+            if (isBinaryFile) {
+                processLargeBinaryFile(file, aesKey, uniqueFilePath, userFile, versionNumber, knownHash);
+            } else {
+                // Text deltas are only computed in memory, so the version is stored whole instead
+                storeStreamedSnapshot(file, aesKey, uniqueFilePath, userFile, versionNumber, false, knownHash);
+                dropMaterializedCopies(userFile, versionNumber);
+            }
+            return;
+        }
+
+        byte[] fileData = file.getBytes();
+        ContentHash fileHash = hashOf(fileData, knownHash);
 
         if (isBinaryFile) {
             // Process binary file
@@ -324,97 +484,342 @@ public class FileFacadeServiceImpl implements FileFacadeService {
         }
     }
 
-    private void processBinaryFile(byte[] fileData, String aesKey, String uniqueFilePath, File userFile, String versionNumber, String fileHash) throws Exception {
+    private void storeStreamedSnapshot(MultipartFile file, AesKey aesKey, String uniqueFilePath, File userFile, String versionNumber,
+                                       boolean isBinaryFile, ContentHash knownHash) throws Exception {
+        String versionedFilePath = uniqueFilePath + "/versions/" + versionNumber + "/" + userFile.getFileName();
+        ContentHash fileHash = streamEncryptedToAzure(file, aesKey, versionedFilePath, compressionFor(isBinaryFile), knownHash);
+
+        FileVersion version = fileVersionManagementService.createVersion(userFile, versionNumber, null);
+        version.setSnapshotPath(versionedFilePath);
+        setContentHash(version, fileHash);
+        version.setSize(file.getSize());
+        fileVersionManagementService.saveFileVersion(version);
+    }
+
+    private FileVersion latestVersion(File userFile) {
         List<FileVersion> versions = fileVersionManagementService.getAllVersions(userFile);
-        byte[] previousData = null;
-        String deltaPath = null;
+        return versions.get(versions.size() - 1);
+    }
 
-        if (!versions.isEmpty()) { // If not the first version
-            FileVersion previousVersion = versions.get(versions.size() - 1);
-            String previousFilePath = String.format("%s/versions/%s/%s",
-                    userFile.getPath(),
-                    previousVersion.getVersionNumber(),
-                    userFile.getFileName());
-
-            if (azureBlobStorage.checkBlobExists(previousFilePath)) {
-                byte[] previousEncryptedDataBase64 = azureBlobStorage.read(new Storage(previousFilePath, null));
-                byte[] previousEncryptedData = Base64.getDecoder().decode(previousEncryptedDataBase64);
-                previousData = AESUtil.decrypt(previousEncryptedData, aesKey);
+    // The previous version is rebuilt in full to diff against, so its size counts as much as the upload's
+    private boolean isLargeVersion(FileVersion version) {
+        return version.getSize() != null && version.getSize() > largeFileThreshold;
+    }
+
+    /**
+     * Reads the upload once and pipes it through the hashes, AES and the blob writer using a
+     * fixed-size buffer, so memory use does not depend on the file size.
+     *
+     * @return hashes of the plaintext
+     */
+    private ContentHash streamEncryptedToAzure(MultipartFile file, AesKey aesKey, String path, BlobCompression compression,
+                                               ContentHash knownHash) throws Exception {
+        logger.info("Starting streamed Azure Blob write operation. Path: {}, Data size: {}", path, file.getSize());
+        ContentHash fileHash;
+        try (HashingInputStream in = hashing(file.getInputStream(), knownHash)) {
+            copyToBlob(in, path, BlobCipher.AES_GCM_ENVELOPE, compression, aesKey);
+            fileHash = knownHash.or(in.contentHash());
+        }
+        logger.info("Blob successfully written: {}", path);
+        return fileHash;
+    }
+
+    private void copyToBlob(InputStream in, String path, BlobCipher cipher, BlobCompression compression, AesKey key) throws Exception {
+        try (OutputStream out = BlobFormatUtil.encodingStream(blobStorage.openOutputStream(path), cipher, compression, key)) {
+            byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
             }
         }
+    }
 
-        if (versionNumber.equals("v1")) {
-            byte[] encryptedData = AESUtil.encrypt(fileData, aesKey);
-            logger.info("Encrypted data length: {}", encryptedData.length);
+    /**
+     * Versions above the large-file threshold are diffed on disk: the upload and the previous
+     * version are written to a scratch directory and compared memory-mapped, and the resulting
+     * delta or snapshot is streamed to storage, so heap use does not depend on the file size.
+     * In reverse-delta mode the delta is computed backwards and replaces the previous snapshot.
+     */
+    private void processLargeBinaryFile(MultipartFile file, AesKey aesKey, String uniqueFilePath, File userFile,
+                                        String versionNumber, ContentHash knownHash) throws Exception {
+        List<FileVersion> versions = fileVersionManagementService.getAllVersions(userFile);
+        FileVersion previousVersion = versions.get(versions.size() - 1);
+        String versionDirectory = uniqueFilePath + "/versions/" + versionNumber + "/";
 
-            String versionedFilePath = uniqueFilePath + "/versions/" + versionNumber + "/" + userFile.getFileName();
-            saveBlobToAzure(versionedFilePath, encryptedData);
-        } else {
-            // Subsequent versions: Save only delta.json
-            if (previousData != null) {
-                List<BinaryDeltaUtil.DeltaCommand> deltaCommands = BinaryDeltaUtil.calculateDelta(previousData, fileData);
-                if (!deltaCommands.isEmpty()) {
-                    deltaPath = uniqueFilePath + "/versions/" + versionNumber + "/delta.json";
-                    saveBinaryDeltaCommands(deltaCommands, deltaPath);
+        Path workDirectory = TempFileUtil.createWorkDirectory(tempDirectory, "upload-");
+        try {
+            Path modified = workDirectory.resolve("modified");
+            ContentHash fileHash = knownHash;
+            if (knownHash.sha256() != null && (!treeHashDedup || knownHash.treeHash() != null)) {
+                file.transferTo(modified);
+            } else {
+                try (HashingInputStream in = hashing(file.getInputStream(), knownHash);
+                     OutputStream out = Files.newOutputStream(modified)) {
+                    in.transferTo(out);
+                    fileHash = knownHash.or(in.contentHash());
+                }
+            }
+
+            Path previous = workDirectory.resolve("previous");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(previous))) {
+                fileVersionManagementService.streamFileContent(userFile, previousVersion.getVersionNumber(), userFile.getUser())
+                        .getBody().writeTo(out);
+            }
+
+            Path delta = workDirectory.resolve("delta");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(delta))) {
+                if (reverseDeltas) {
+                    LargeFileDeltaEngine.diff(modified, previous, out);
+                } else {
+                    LargeFileDeltaEngine.diff(previous, modified, out);
+                }
+            }
+
+            long contentSize = Files.size(modified);
+            long deltaSize = Files.size(delta);
+            boolean keepPrevious = !reverseDeltas || keepsPreviousWhole(userFile, previousVersion, deltaSize, Files.size(previous));
+            FileVersion version;
+            if (reverseDeltas || fileVersionManagementService.isCheckpointDue(userFile, deltaSize, contentSize)) {
+                String snapshotPath = versionDirectory + userFile.getFileName();
+                try (InputStream in = Files.newInputStream(modified)) {
+                    copyToBlob(in, snapshotPath, BlobCipher.AES_GCM_ENVELOPE, compressionFor(true), aesKey);
+                }
+                logger.info("Checkpoint snapshot stored for version: {}", versionNumber);
+
+                version = fileVersionManagementService.createVersion(userFile, versionNumber, null);
+                version.setSnapshotPath(snapshotPath);
+            } else {
+                String deltaPath = versionDirectory + "delta.bin";
+                try (InputStream in = Files.newInputStream(delta)) {
+                    copyToBlob(in, deltaPath, BlobCipher.AES_GCM_ENVELOPE, compressionFor(false), aesKey);
+                }
+                logger.info("Delta stored for version: {}, delta size: {}", versionNumber, deltaSize);
+
+                String materializedPath = materializedPathOf(versionDirectory, userFile);
+                try (InputStream in = Files.newInputStream(modified)) {
+                    copyToBlob(in, materializedPath, BlobCipher.AES_GCM_ENVELOPE, compressionFor(true), aesKey);
+                }
+
+                version = fileVersionManagementService.createVersion(userFile, versionNumber, deltaPath);
+                version.setDeltaSize(deltaSize);
+                version.setMaterializedPath(materializedPath);
+            }
+            setContentHash(version, fileHash);
+            version.setSize(contentSize);
+            fileVersionManagementService.saveFileVersion(version);
+            dropMaterializedCopies(userFile, versionNumber);
+
+            if (!keepPrevious) {
+                String deltaPath = reverseDeltaPath(uniqueFilePath, previousVersion, "delta.bin");
+                try (InputStream in = Files.newInputStream(delta)) {
+                    copyToBlob(in, deltaPath, BlobCipher.AES_GCM_ENVELOPE, compressionFor(false), aesKey);
                 }
+                replaceSnapshotWithReverseDelta(previousVersion, deltaPath, deltaSize);
+            }
+        } finally {
+            if (!TempFileUtil.deleteRecursively(workDirectory)) {
+                logger.warn("Could not remove upload work directory {}", workDirectory);
             }
         }
+    }
 
-        FileVersion version = fileVersionManagementService.createVersion(userFile, versionNumber, deltaPath);
-        version.setHash(fileHash);
-        version.setSize((long) fileData.length);
+    /**
+     * Chunk-store mode: every version is a manifest of content-defined chunks, and only chunks
+     * the owner has not stored before are uploaded. No previous version has to be rebuilt.
+     */
+    private void processChunkedFile(MultipartFile file, AesKey aesKey, String uniqueFilePath, File userFile,
+                                    String versionNumber, ContentHash knownHash) throws Exception {
+        List<ChunkRef> chunks;
+        ContentHash fileHash;
+        try (HashingInputStream in = hashing(file.getInputStream(), knownHash)) {
+            chunks = chunkStoreService.store(in, aesKey);
+            fileHash = knownHash.or(in.contentHash());
+        }
+
+        String manifestPath = uniqueFilePath + "/versions/" + versionNumber + "/manifest.bin";
+        try {
+            chunkStoreService.saveManifest(manifestPath, chunks);
+        } catch (Exception e) {
+            chunkStoreService.release(chunks);
+            throw e;
+        }
+        logger.info("Manifest stored for version: {}, chunks: {}", versionNumber, chunks.size());
+
+        FileVersion version = fileVersionManagementService.createVersion(userFile, versionNumber, null);
+        version.setManifestPath(manifestPath);
+        setContentHash(version, fileHash);
+        version.setSize(ChunkManifestCodec.contentLength(chunks));
         fileVersionManagementService.saveFileVersion(version);
+        dropMaterializedCopies(userFile, versionNumber);
     }
 
+    private void processBinaryFile(byte[] fileData, AesKey aesKey, String uniqueFilePath, File userFile, String versionNumber, ContentHash fileHash) throws Exception {
+        List<FileVersion> versions = fileVersionManagementService.getAllVersions(userFile);
+        byte[] deltaData = null;
 
+        if (!versions.isEmpty()) { // If not the first version
+            // Diff against the previous version, rebuilt from its nearest checkpoint
+            FileVersion previousVersion = versions.get(versions.size() - 1);
+            byte[] previousData = fileVersionManagementService.reconstructFileBytes(
+                    userFile, previousVersion.getVersionNumber(), userFile.getUser());
+
+            if (reverseDeltas) {
+                List<BinaryDeltaUtil.DeltaCommand> reverseCommands = BinaryDeltaUtil.calculateDeltaParallel(fileData, previousData, matchIndexBudget, deltaParallelism);
+                storeReverseVersion(fileData, previousVersion, previousData.length, BinaryDeltaCodec.encode(reverseCommands),
+                        "delta.bin", true, aesKey, uniqueFilePath, userFile, versionNumber, fileHash);
+                return;
+            }
+            List<BinaryDeltaUtil.DeltaCommand> deltaCommands = BinaryDeltaUtil.calculateDeltaParallel(previousData, fileData, matchIndexBudget, deltaParallelism);
+            deltaData = BinaryDeltaCodec.encode(deltaCommands);
+        }
 
-    private void processTextFile(byte[] fileData, String aesKey, String uniqueFilePath, File userFile, String versionNumber, String fileHash) throws Exception {
+        storeVersion(fileData, deltaData, "delta.bin", true, aesKey, uniqueFilePath, userFile, versionNumber, fileHash);
+    }
+
+
+
+    private void processTextFile(byte[] fileData, AesKey aesKey, String uniqueFilePath, File userFile, String versionNumber, ContentHash fileHash) throws Exception {
         String newContent = new String(fileData, StandardCharsets.UTF_8);
-        logger.info("New content: {}", newContent);
 
-        if (versionNumber.equals("v1")) {
-            // First version: Encrypt and save
-            byte[] encryptedData = AESUtil.encrypt(newContent.getBytes(StandardCharsets.UTF_8), aesKey);
-            String versionedFilePath = uniqueFilePath + "/versions/" + versionNumber + "/" + userFile.getFileName();
-            saveBlobToAzure(versionedFilePath, encryptedData);
-
-            FileVersion version = fileVersionManagementService.createVersion(userFile, versionNumber, null);
-            version.setHash(fileHash);
-            version.setSize((long) fileData.length);
-            fileVersionManagementService.saveFileVersion(version);
+        // The latest version is kept whole (materialized copy or snapshot), so this is a single blob read
+        String latestContent = fileVersionManagementService.getLatestContent(userFile, userFile.getUser());
+
+        if (reverseDeltas) {
+            List<FileVersion> versions = fileVersionManagementService.getAllVersions(userFile);
+            byte[] reverseDelta = DeltaUtil.calculateDelta(newContent, latestContent).getBytes(StandardCharsets.UTF_8);
+            storeReverseVersion(fileData, versions.get(versions.size() - 1), latestContent.getBytes(StandardCharsets.UTF_8).length,
+                    reverseDelta, "delta", false, aesKey, uniqueFilePath, userFile, versionNumber, fileHash);
+            return;
+        }
+
+        String delta = DeltaUtil.calculateDelta(latestContent, newContent);
+        storeVersion(fileData, delta.getBytes(StandardCharsets.UTF_8), "delta", false, aesKey, uniqueFilePath, userFile, versionNumber, fileHash);
+    }
+
+    /**
+     * Stores a version as a delta against its predecessor or, when the checkpoint policy asks
+     * for it, as a full encrypted snapshot that later reconstructions can start from. Deltas
+     * carry the inserted content, so they are encrypted under the same key.
+     */
+    private void storeVersion(byte[] fileData, byte[] deltaData, String deltaFileName, boolean isBinaryFile, AesKey aesKey,
+                              String uniqueFilePath, File userFile, String versionNumber, ContentHash fileHash) throws Exception {
+        String versionDirectory = uniqueFilePath + "/versions/" + versionNumber + "/";
+        byte[] deltaBlob = (deltaData != null)
+                ? BlobFormatUtil.encode(deltaData, BlobCipher.AES_GCM_ENVELOPE, compressionFor(false), aesKey)
+                : null;
+
+        FileVersion version;
+        if (deltaBlob == null || fileVersionManagementService.isCheckpointDue(userFile, deltaBlob.length, fileData.length)) {
+            String snapshotPath = versionDirectory + userFile.getFileName();
+            byte[] snapshotBlob = BlobFormatUtil.encode(fileData, BlobCipher.AES_GCM_ENVELOPE, compressionFor(isBinaryFile), aesKey);
+            saveBlobToAzure(snapshotPath, snapshotBlob, fileData.length);
+            logger.info("Checkpoint snapshot stored for version: {}", versionNumber);
+
+            version = fileVersionManagementService.createVersion(userFile, versionNumber, null);
+            version.setSnapshotPath(snapshotPath);
         } else {
-            // Retrieve latest content and calculate delta
-            String latestContent = fileVersionManagementService.getLatestContent(userFile, userFile.getUser());
-            logger.info("Latest content: {}", latestContent);
+            String deltaPath = versionDirectory + deltaFileName;
+            saveBlobToAzure(deltaPath, deltaBlob, deltaData.length);
 
-            String delta = DeltaUtil.calculateDelta(latestContent, newContent);
-            String deltaPath = uniqueFilePath + "/versions/" + versionNumber + "/delta";
-            saveBlobToAzure(deltaPath, delta.getBytes(StandardCharsets.UTF_8));
+            String materializedPath = materializedPathOf(versionDirectory, userFile);
+            byte[] materializedBlob = BlobFormatUtil.encode(fileData, BlobCipher.AES_GCM_ENVELOPE, compressionFor(isBinaryFile), aesKey);
+            saveBlobToAzure(materializedPath, materializedBlob, fileData.length);
 
-            FileVersion version = fileVersionManagementService.createVersion(userFile, versionNumber, deltaPath);
-            version.setHash(fileHash);
-            version.setSize((long) fileData.length);
+            version = fileVersionManagementService.createVersion(userFile, versionNumber, deltaPath);
+            version.setDeltaSize((long) deltaBlob.length);
+            version.setMaterializedPath(materializedPath);
+        }
+        setContentHash(version, fileHash);
+        version.setSize((long) fileData.length);
+        fileVersionManagementService.saveFileVersion(version);
+        reconstructedContentCache.put(userFile.getId(), versionNumber, fileHash.sha256(), fileData);
+        dropMaterializedCopies(userFile, versionNumber);
+    }
+
+    private static String materializedPathOf(String versionDirectory, File userFile) {
+        return versionDirectory + "materialized/" + userFile.getFileName();
+    }
+
+    /**
+     * Removes the materialized copies of all versions but {@code latestVersionNumber}. Older
+     * versions are rebuilt from their checkpoints again, as only the latest is read on uploads.
+     */
+    private void dropMaterializedCopies(File userFile, String latestVersionNumber) {
+        for (FileVersion version : fileVersionManagementService.getAllVersions(userFile)) {
+            String materializedPath = version.getMaterializedPath();
+            if (materializedPath == null || version.getVersionNumber().equals(latestVersionNumber)) {
+                continue;
+            }
+            version.setMaterializedPath(null);
             fileVersionManagementService.saveFileVersion(version);
+            try {
+                blobStorage.delete(new Storage(materializedPath, null));
+            } catch (Exception e) {
+                logger.warn("Could not delete materialized copy {}: {}", materializedPath, e.getMessage());
+            }
         }
     }
 
 
 
-    private void saveBlobToAzure(String path, byte[] data) throws Exception {
-        String base64EncodedData = Base64.getEncoder().encodeToString(data);
-        logger.info("Starting Azure Blob write operation. Path: {}, Data size: {}", path, data.length);
-        azureBlobStorage.write(new Storage(path, base64EncodedData.getBytes(StandardCharsets.UTF_8)));
+    /**
+     * Reverse-delta mode: the new version is always stored whole, and the previous version, if it
+     * is a snapshot, is replaced by a delta that rebuilds it from the new one. Reading the latest
+     * version, and diffing the next upload against it, is then a single blob read. The delta is
+     * encrypted like the snapshot it replaces.
+     */
+    private void storeReverseVersion(byte[] fileData, FileVersion previousVersion, long previousSize, byte[] reverseDelta,
+                                     String deltaFileName, boolean isBinaryFile, AesKey aesKey, String uniqueFilePath,
+                                     File userFile, String versionNumber, ContentHash fileHash) throws Exception {
+        byte[] deltaBlob = BlobFormatUtil.encode(reverseDelta, BlobCipher.AES_GCM_ENVELOPE, compressionFor(false), aesKey);
+        boolean keepPrevious = keepsPreviousWhole(userFile, previousVersion, deltaBlob.length, previousSize);
+
+        storeVersion(fileData, null, deltaFileName, isBinaryFile, aesKey, uniqueFilePath, userFile, versionNumber, fileHash);
+
+        if (!keepPrevious) {
+            String deltaPath = reverseDeltaPath(uniqueFilePath, previousVersion, deltaFileName);
+            saveBlobToAzure(deltaPath, deltaBlob, reverseDelta.length);
+            replaceSnapshotWithReverseDelta(previousVersion, deltaPath, deltaBlob.length);
+        }
+    }
+
+    // Versions that are not plain snapshots, and the checkpoints the policy keeps, stay as they are
+    private boolean keepsPreviousWhole(File userFile, FileVersion previousVersion, long reverseDeltaSize, long previousSize) {
+        return previousVersion.getSnapshotPath() == null
+                || fileVersionManagementService.isReverseCheckpointDue(userFile, reverseDeltaSize, previousSize);
+    }
+
+    private String reverseDeltaPath(String uniqueFilePath, FileVersion previousVersion, String deltaFileName) {
+        String path = uniqueFilePath + "/versions/" + previousVersion.getVersionNumber() + "/" + deltaFileName;
+        // A file named like the delta blob would otherwise have its snapshot overwritten
+        return path.equals(previousVersion.getSnapshotPath()) ? path + ".reverse" : path;
+    }
+
+    // The snapshot is deleted only once the version row points at the delta
+    private void replaceSnapshotWithReverseDelta(FileVersion previousVersion, String deltaPath, long deltaSize) throws Exception {
+        String snapshotPath = previousVersion.getSnapshotPath();
+        previousVersion.setDeltaPath(deltaPath);
+        previousVersion.setDeltaSize(deltaSize);
+        previousVersion.setReverseDelta(true);
+        previousVersion.setSnapshotPath(null);
+        fileVersionManagementService.saveFileVersion(previousVersion);
+        blobStorage.delete(new Storage(snapshotPath, null));
+        logger.info("Version {} replaced by a reverse delta, delta size: {}", previousVersion.getVersionNumber(), deltaSize);
+    }
+
+    private void saveBlobToAzure(String path, byte[] blob, long dataSize) throws Exception {
+        logger.info("Starting Azure Blob write operation. Path: {}, Data size: {}, Stored size: {}", path, dataSize, blob.length);
+        blobStorage.write(new Storage(path, blob));
         logger.info("Blob successfully written: {}", path);
     }
 
-    private String resolveOrCreateAESKey(String username) throws NoSuchAlgorithmException {
-        String aesKey = keyVaultService.getEncryptionKeyFromKeyVault(username);
-        if (aesKey == null || aesKey.isEmpty()) {
-            aesKey = AESUtil.generateAESKey();
-            keyVaultService.saveEncryptionKeyToKeyVault(username, aesKey);
-            logger.info("New AES key created for user: {}", username);
-        }
-        return aesKey;
+    private static boolean isBinaryFileName(String fileName) {
+        return fileName.toLowerCase().matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
+    }
+
+    private BlobCompression compressionFor(boolean isBinaryFile) {
+        // Binary formats in the whitelist are already compressed; text and delta payloads are not
+        return (!isBinaryFile && compressText) ? BlobCompression.DEFLATE : BlobCompression.NONE;
     }
 
     private String getDirectoryPath(Directory directory, String fileName) {
@@ -427,22 +832,4 @@ public class FileFacadeServiceImpl implements FileFacadeService {
         path.append(fileName);
         return path.toString();
     }
-
-
-    private void saveBinaryDeltaCommands(List<BinaryDeltaUtil.DeltaCommand> deltaCommands, String deltaPath) throws Exception {
-        // Serialize deltaCommands to JSON
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(deltaCommands);
-
-        // Convert JSON to bytes
-        byte[] jsonData = json.getBytes(StandardCharsets.UTF_8);
-
-        // Encode JSON data to Base64
-        byte[] base64EncodedData = Base64.getEncoder().encode(jsonData);
-
-        // Save Base64-encoded JSON to Azure Blob Storage
-        azureBlobStorage.write(new Storage(deltaPath, base64EncodedData));
-
-        logger.info("Delta commands successfully saved: {}", deltaPath);
-    }
 }
-
@@ -15,6 +15,7 @@ import com.example.securedrive.security.AzureBlobSASTokenGenerator;
 import com.example.securedrive.service.FileManagementService;
 import com.example.securedrive.service.UserManagementService;
 import com.example.securedrive.service.util.FileSizeUtil;
+import com.example.securedrive.service.util.VersionChainUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -198,7 +199,8 @@ public class FileManagementServiceImpl implements FileManagementService {
                         // directoryId'yi set ediyoruz:
                         version.getFile().getDirectory() != null
                                 ? version.getFile().getDirectory().getId()
-                                : null
+                                : null,
+                        chainLengthOf(version)
                 ))
                 .collect(Collectors.toList());
     }
@@ -220,12 +222,18 @@ public class FileManagementServiceImpl implements FileManagementService {
                         version.getSize(),
                         version.getFile().getDirectory() != null
                                 ? version.getFile().getDirectory().getId()
-                                : null
+                                : null,
+                        chainLengthOf(version)
                 ))
                 .collect(Collectors.toList());
     }
 
 
+    private int chainLengthOf(FileVersion version) {
+        List<FileVersion> fileVersions = version.getFile().getVersions();
+        return VersionChainUtil.chainLength(fileVersions, fileVersions.indexOf(version));
+    }
+
     @Override
     public String getFileNameByVersionId(Long versionId) {
         return fileVersionRepository.findById(versionId)
@@ -1,44 +1,111 @@
 // com/example/securedrive/service/impl/FileVersionManagementServiceImpl.java
 package com.example.securedrive.service.impl;
 
+import com.example.securedrive.dto.FileDownloadStreamResponseDto;
 import com.example.securedrive.exception.AzureBlobStorageException;
 import com.example.securedrive.model.File;
 import com.example.securedrive.model.FileVersion;
 import com.example.securedrive.model.Storage;
 import com.example.securedrive.model.User;
 import com.example.securedrive.repository.FileVersionRepository;
-import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.BinaryDeltaCodec;
 import com.example.securedrive.service.util.BinaryDeltaUtil;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
 import com.example.securedrive.service.util.DeltaUtil;
+import com.example.securedrive.service.util.DirectBufferPool;
+import com.example.securedrive.service.util.LargeFileDeltaEngine;
+import com.example.securedrive.service.util.OrderedPrefetcher;
+import com.example.securedrive.service.util.TempFileUtil;
+import com.example.securedrive.service.util.VersionChainUtil;
 import com.example.securedrive.security.KeyVaultService;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.ChunkStoreService;
 import com.example.securedrive.service.FileVersionManagementService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.securedrive.service.ReconstructedContentCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class FileVersionManagementServiceImpl implements FileVersionManagementService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileVersionManagementServiceImpl.class);
+
     private final FileVersionRepository fileVersionRepository;
-    private final AzureBlobStorageServiceImpl azureBlobStorage;
+    private final BlobStorageService blobStorage;
     private final KeyVaultService keyVaultService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReconstructedContentCache reconstructedContentCache;
+    private final ChunkStoreService chunkStoreService;
+    private final int checkpointInterval;
+    private final double checkpointDeltaRatio;
+    private final long streamingThreshold;
+    private final long largeFileThreshold;
+    private final String tempDirectory;
+    private final DirectBufferPool bufferPool;
+    private final int prefetchDepth;
+    private final ExecutorService prefetchExecutor;
 
     @Autowired
     public FileVersionManagementServiceImpl(
             FileVersionRepository fileVersionRepository,
-            AzureBlobStorageServiceImpl azureBlobStorage,
-            KeyVaultService keyVaultService
+            BlobStorageService blobStorage,
+            KeyVaultService keyVaultService,
+            ReconstructedContentCache reconstructedContentCache,
+            ChunkStoreService chunkStoreService,
+            @Value("${securedrive.versioning.checkpoint-interval:20}") int checkpointInterval,
+            @Value("${securedrive.versioning.checkpoint-delta-ratio:1.0}") double checkpointDeltaRatio,
+            @Value("${securedrive.reconstruction.streaming-threshold-bytes:67108864}") long streamingThreshold,
+            @Value("${securedrive.reconstruction.buffer-pool-bytes:536870912}") long bufferPoolBytes,
+            @Value("${securedrive.versioning.large-file-threshold-bytes:1073741824}") long largeFileThreshold,
+            @Value("${securedrive.versioning.temp-directory:}") String tempDirectory,
+            @Value("${securedrive.reconstruction.prefetch-depth:8}") int prefetchDepth,
+            @Value("${securedrive.reconstruction.prefetch-threads:16}") int prefetchThreads
     ) {
         this.fileVersionRepository = fileVersionRepository;
-        this.azureBlobStorage = azureBlobStorage;
+        this.blobStorage = blobStorage;
         this.keyVaultService = keyVaultService;
+        this.reconstructedContentCache = reconstructedContentCache;
+        this.chunkStoreService = chunkStoreService;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointDeltaRatio = checkpointDeltaRatio;
+        this.streamingThreshold = streamingThreshold;
+        this.bufferPool = new DirectBufferPool(bufferPoolBytes);
+        // Versions handled by the in-memory path must fit in a single buffer
+        this.largeFileThreshold = Math.min(largeFileThreshold, LargeFileDeltaEngine.MAX_IN_MEMORY_BYTES);
+        this.tempDirectory = tempDirectory;
+        this.prefetchDepth = prefetchDepth;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, prefetchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "delta-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdownPrefetch() {
+        prefetchExecutor.shutdownNow();
     }
 
     @Override
@@ -74,188 +141,360 @@ public class FileVersionManagementServiceImpl implements FileVersionManagementSe
         if (versions.isEmpty()) {
             return "";
         }
+        return reconstructFileContent(file, versions.get(versions.size() - 1).getVersionNumber(), user);
+    }
 
-        StringBuilder content = new StringBuilder();
-        String initialVersionFullPath = "uploads/" + user.getUsername() + "/" + file.getFileName()
-                + "/versions/v1/" + file.getFileName();
 
-        // İlk versiyonu oku ve şifreyi çöz
-        if (!azureBlobStorage.checkBlobExists(initialVersionFullPath)) {
-            throw new AzureBlobStorageException("Initial version blob not found at path: " + initialVersionFullPath);
+    @Override
+    public String reconstructFileContent(File file, String versionNumber, User user) throws Exception {
+        byte[] contentBytes = reconstructFileBytes(file, versionNumber, user);
+        if (isBinary(file)) {
+            return Base64.getEncoder().encodeToString(contentBytes); // İkili veriyi Base64 ile encode ederek döndür
         }
+        return new String(contentBytes, StandardCharsets.UTF_8);
+    }
 
-        byte[] initialEncryptedDataBase64 = azureBlobStorage.read(new Storage(initialVersionFullPath, null));
-        if (initialEncryptedDataBase64 == null) {
-            throw new Exception("Failed to read initial version blob");
+    @Override
+    public byte[] reconstructFileBytes(File file, String versionNumber, User user) throws Exception {
+        List<FileVersion> versions = getAllVersions(file);
+        if (versions.isEmpty()) {
+            throw new Exception("No versions found up to version: " + versionNumber);
         }
 
-        byte[] initialEncryptedData = Base64.getDecoder().decode(initialEncryptedDataBase64);
-        String encryptionKey = keyVaultService.getEncryptionKeyFromKeyVault(user.getUsername());
-        byte[] decryptedData = AESUtil.decrypt(initialEncryptedData, encryptionKey);
+        // Start from the nearest whole version the target's deltas lead to (older for forward
+        // deltas, newer for reverse deltas), or from a version in between if its reconstructed
+        // content is still cached
+        int targetIndex = indexOfVersion(versions, versionNumber);
+        int baseIndex = VersionChainUtil.findBaseIndex(versions, targetIndex);
+        List<FileVersion> chain = VersionChainUtil.deltaChain(versions, baseIndex, targetIndex);
+        FileVersion start = versions.get(baseIndex);
+        byte[] decryptedData = null;
+        for (int i = chain.size() - 1; i >= -1 && decryptedData == null; i--) {
+            FileVersion candidate = (i >= 0) ? chain.get(i) : versions.get(baseIndex);
+            Optional<byte[]> cached = getCached(file, candidate);
+            if (cached.isPresent()) {
+                decryptedData = cached.get();
+                start = candidate;
+                chain = chain.subList(i + 1, chain.size());
+            }
+        }
+        if (chain.isEmpty() && decryptedData != null) {
+            return decryptedData;
+        }
 
-        String fileNameLower = file.getFileName().toLowerCase();
-        boolean isBinary = fileNameLower.matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
+        logger.info("Reconstructing {} {} from {} {} with chain length {}",
+                file.getFileName(), versions.get(targetIndex).getVersionNumber(),
+                decryptedData != null ? "cached" : "checkpoint",
+                start.getVersionNumber(), chain.size());
 
-        if (isBinary) {
-            // Binary dosya işlemleri
-            byte[] contentBytes = decryptedData;
+        // Deltas are encrypted under the same key as snapshots
+        AesKey encryptionKey = userKey(user);
+        if (decryptedData == null) {
+            decryptedData = readSnapshot(file, versions.get(baseIndex), encryptionKey);
+        }
 
-            // Tüm versiyonların deltalarını uygula (sadece delta.json varsa)
-            for (int i = 1; i < versions.size(); i++) {
-                FileVersion version = versions.get(i);
-                String deltaPath = version.getDeltaPath();
+        byte[] contentBytes = applyChain(file, decryptedData, chain, encryptionKey);
+        putCached(file, versions.get(targetIndex), contentBytes);
+        return contentBytes;
+    }
 
-                if (deltaPath == null) {
-                    throw new Exception("Delta path is null for version: " + version.getVersionNumber());
-                }
+    // Same lookup as getVersionsUpTo: an unknown version number resolves to the latest version
+    private static int indexOfVersion(List<FileVersion> versions, String versionNumber) {
+        for (int i = 0; i < versions.size(); i++) {
+            if (versions.get(i).getVersionNumber().equals(versionNumber)) {
+                return i;
+            }
+        }
+        return versions.size() - 1;
+    }
 
-                if (!azureBlobStorage.checkBlobExists(deltaPath)) {
-                    throw new AzureBlobStorageException("Delta blob not found at path: " + deltaPath);
-                }
+    /**
+     * Delta blobs of a chain are independent reads, so they are fetched up to
+     * {@code prefetchDepth} ahead on the prefetch pool while earlier deltas are applied, and a
+     * long chain costs roughly one round trip plus apply time instead of one round trip per delta.
+     */
+    private OrderedPrefetcher<byte[]> prefetchDeltas(List<FileVersion> chain, AesKey encryptionKey) {
+        return new OrderedPrefetcher<>(chain.size(), prefetchDepth, prefetchExecutor, index -> readDelta(chain.get(index), encryptionKey));
+    }
 
-                byte[] deltaBase64Data = azureBlobStorage.read(new Storage(deltaPath, null));
-                if (deltaBase64Data == null) {
-                    throw new Exception("Failed to read delta blob for version: " + version.getVersionNumber());
-                }
+    private byte[] applyChain(File file, byte[] base, List<FileVersion> chain, AesKey encryptionKey) throws Exception {
+        try (OrderedPrefetcher<byte[]> deltas = prefetchDeltas(chain, encryptionKey)) {
+            return applyChain(file, base, deltas);
+        }
+    }
 
-                byte[] deltaData = Base64.getDecoder().decode(deltaBase64Data);
+    private byte[] applyChain(File file, byte[] base, OrderedPrefetcher<byte[]> deltas) throws Exception {
+        if (isBinary(file)) {
+            // Binary dosya işlemleri
+            byte[] contentBytes = base;
+            while (deltas.hasNext()) {
+                byte[] deltaData = deltas.next();
 
-                // Delta komutlarını JSON'dan deserialize et
-                List<BinaryDeltaUtil.DeltaCommand> deltaCommands = Arrays.asList(
-                        objectMapper.readValue(deltaData, BinaryDeltaUtil.DeltaCommand[].class)
-                );
+                // Delta komutlarını çöz (compact binary ya da eski JSON formatı)
+                List<BinaryDeltaUtil.DeltaCommand> deltaCommands = BinaryDeltaCodec.decode(deltaData);
 
                 // BinaryDeltaUtil ile delta uygulama
                 contentBytes = BinaryDeltaUtil.applyDelta(contentBytes, deltaCommands);
             }
+            return contentBytes;
+        }
 
-            return Base64.getEncoder().encodeToString(contentBytes); // İkili veriyi Base64 ile encode ederek döndür
-        } else {
-            // Metin dosya işlemleri
-            String initialContent = new String(decryptedData, StandardCharsets.UTF_8);
-            content.append(initialContent);
-
-            // Tüm versiyonların deltalarını uygula
-            for (int i = 1; i < versions.size(); i++) {
-                FileVersion version = versions.get(i);
-                String deltaPath = version.getDeltaPath();
-
-                if (deltaPath == null) {
-                    throw new Exception("Delta path is null for version: " + version.getVersionNumber());
-                }
+        // Metin dosya işlemleri
+        String content = new String(base, StandardCharsets.UTF_8);
+        while (deltas.hasNext()) {
+            String delta = new String(deltas.next(), StandardCharsets.UTF_8);
+            content = DeltaUtil.applyDelta(content, delta);
+        }
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
 
-                if (!azureBlobStorage.checkBlobExists(deltaPath)) {
-                    throw new AzureBlobStorageException("Delta blob not found at path: " + deltaPath);
-                }
+    /**
+     * Small versions and text files are rebuilt in memory (and cached). Larger binary versions
+     * are streamed: the checkpoint is read into a pooled off-heap buffer, intermediate deltas
+     * are applied between two such buffers, and the final delta is written straight to the
+     * response, so no full-size heap array is ever allocated. Chains with versions above the
+     * large-file threshold are rebuilt through memory-mapped temp files instead. A checkpoint
+     * that is a chunk-store manifest is streamed chunk by chunk. Reverse deltas are applied the
+     * same way, starting from the newer version they lead back from.
+     */
+    @Override
+    public FileDownloadStreamResponseDto streamFileContent(File file, String versionNumber, User user) throws Exception {
+        List<FileVersion> versions = getAllVersions(file);
+        if (versions.isEmpty()) {
+            throw new Exception("No versions found up to version: " + versionNumber);
+        }
+        int targetIndex = indexOfVersion(versions, versionNumber);
+        FileVersion target = versions.get(targetIndex);
+
+        int checkpointIndex = VersionChainUtil.findBaseIndex(versions, targetIndex);
+        FileVersion checkpoint = versions.get(checkpointIndex);
+        if (!isBinary(file) || target.getSize() == null || target.getSize() <= streamingThreshold || checkpoint.getSize() == null) {
+            byte[] content = reconstructFileBytes(file, versionNumber, user);
+            return new FileDownloadStreamResponseDto(file.getFileName(), (long) content.length, out -> out.write(content));
+        }
+
+        AesKey encryptionKey = userKey(user);
+        List<FileVersion> chain = List.copyOf(VersionChainUtil.deltaChain(versions, checkpointIndex, targetIndex));
+        logger.info("Streaming {} {} from checkpoint {} with chain length {}",
+                file.getFileName(), target.getVersionNumber(), checkpoint.getVersionNumber(), chain.size());
 
-                byte[] deltaBase64Data = azureBlobStorage.read(new Storage(deltaPath, null));
-                if (deltaBase64Data == null) {
-                    throw new Exception("Failed to read delta blob for version: " + version.getVersionNumber());
+        if (chain.isEmpty()) {
+            return new FileDownloadStreamResponseDto(file.getFileName(), checkpoint.getSize(), out -> {
+                try (InputStream in = openCheckpointStream(file, checkpoint, encryptionKey)) {
+                    in.transferTo(out);
                 }
+            });
+        }
 
-                byte[] deltaData = Base64.getDecoder().decode(deltaBase64Data);
-                String delta = new String(deltaData, StandardCharsets.UTF_8);
+        if (chain.stream().anyMatch(version -> version.getSize() == null || version.getSize() > largeFileThreshold)
+                || checkpoint.getSize() > largeFileThreshold) {
+            // Too large for in-memory buffers: rebuild intermediate versions in memory-mapped temp files
+            return new FileDownloadStreamResponseDto(file.getFileName(), target.getSize(),
+                    out -> writeReconstructedFromDisk(file, checkpoint, encryptionKey, chain, out));
+        }
 
-                content = new StringBuilder(DeltaUtil.applyDelta(content.toString(), delta));
+        // Only the last delta is decoded up front, so the response length is known before streaming
+        List<BinaryDeltaUtil.DeltaCommand> finalDelta = BinaryDeltaCodec.decode(readDelta(chain.get(chain.size() - 1), encryptionKey));
+        int baseSize = checkpoint.getSize().intValue();
+        return new FileDownloadStreamResponseDto(file.getFileName(), BinaryDeltaUtil.outputLength(finalDelta),
+                out -> writeReconstructed(file, checkpoint, encryptionKey, baseSize, chain, finalDelta, out));
+    }
+
+    private void writeReconstructed(File file, FileVersion checkpoint, AesKey encryptionKey, int baseSize, List<FileVersion> chain,
+                                    List<BinaryDeltaUtil.DeltaCommand> finalDelta, OutputStream out) throws IOException {
+        ByteBuffer base = bufferPool.acquire(baseSize);
+        ByteBuffer spare = null;
+        List<FileVersion> intermediate = chain.subList(0, chain.size() - 1);
+        try (OrderedPrefetcher<byte[]> deltas = prefetchDeltas(intermediate, encryptionKey)) {
+            try (InputStream in = openCheckpointStream(file, checkpoint, encryptionKey)) {
+                readFully(in, base);
             }
+            for (FileVersion version : intermediate) {
+                List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaCodec.decode(deltas.next());
+                long length = BinaryDeltaUtil.outputLength(delta);
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Version too large to buffer: " + version.getVersionNumber());
+                }
+                if (spare == null || spare.capacity() < length) {
+                    bufferPool.release(spare);
+                    spare = bufferPool.acquire((int) length);
+                }
+                spare.clear().limit((int) length);
+                BinaryDeltaUtil.applyDelta(base, delta, spare);
 
-            return content.toString();
+                ByteBuffer applied = spare;
+                spare = base;
+                base = applied;
+            }
+            BinaryDeltaUtil.applyDelta(base, finalDelta, out);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to reconstruct file content: " + e.getMessage(), e);
+        } finally {
+            bufferPool.release(base);
+            bufferPool.release(spare);
         }
     }
 
-
-    @Override
-    public String reconstructFileContent(File file, String versionNumber, User user) throws Exception {
-        List<FileVersion> versions = getVersionsUpTo(file, versionNumber);
-        if (versions.isEmpty()) {
-            throw new Exception("No versions found up to version: " + versionNumber);
+    private void writeReconstructedFromDisk(File file, FileVersion checkpoint, AesKey encryptionKey, List<FileVersion> chain,
+                                            OutputStream out) throws IOException {
+        Path workDirectory = TempFileUtil.createWorkDirectory(tempDirectory, "reconstruct-");
+        try {
+            Path base = workDirectory.resolve("base");
+            try (InputStream in = openCheckpointStream(file, checkpoint, encryptionKey)) {
+                Files.copy(in, base);
+            }
+            for (int i = 0; i < chain.size() - 1; i++) {
+                Path next = workDirectory.resolve("version-" + i);
+                try (InputStream delta = openDeltaStream(chain.get(i), encryptionKey);
+                     OutputStream versionOut = new BufferedOutputStream(Files.newOutputStream(next))) {
+                    LargeFileDeltaEngine.apply(base, delta, versionOut);
+                }
+                Files.delete(base);
+                base = next;
+            }
+            try (InputStream delta = openDeltaStream(chain.get(chain.size() - 1), encryptionKey)) {
+                LargeFileDeltaEngine.apply(base, delta, out);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to reconstruct file content: " + e.getMessage(), e);
+        } finally {
+            if (!TempFileUtil.deleteRecursively(workDirectory)) {
+                logger.warn("Could not remove reconstruction work directory {}", workDirectory);
+            }
         }
+    }
 
-        StringBuilder content = new StringBuilder();
-        String initialVersionFullPath = "uploads/" + user.getUsername() + "/" + file.getFileName()
-                + "/versions/v1/" + file.getFileName();
+    // Deltas stored before they were encrypted have a NONE header, or no header at all, and still decode
+    private InputStream openDeltaStream(FileVersion version, AesKey encryptionKey) throws Exception {
+        if (version.getDeltaPath() == null) {
+            throw new Exception("Delta path is null for version: " + version.getVersionNumber());
+        }
+        return BlobFormatUtil.decodingStream(blobStorage.openInputStream(version.getDeltaPath()), encryptionKey, BlobCipher.NONE);
+    }
 
-        if (!azureBlobStorage.checkBlobExists(initialVersionFullPath)) {
-            throw new AzureBlobStorageException("Initial version blob not found at path: " + initialVersionFullPath);
+    private InputStream openCheckpointStream(File file, FileVersion checkpoint, AesKey encryptionKey) throws IOException {
+        if (checkpoint.getManifestPath() != null) {
+            return chunkStoreService.openContent(chunkStoreService.loadManifest(checkpoint.getManifestPath()), encryptionKey);
         }
+        return openSnapshotStream(snapshotPathOf(file, checkpoint), encryptionKey);
+    }
 
-        byte[] initialEncryptedDataBase64 = azureBlobStorage.read(new Storage(initialVersionFullPath, null));
-        if (initialEncryptedDataBase64 == null) {
-            throw new Exception("Failed to read initial version blob");
+    private InputStream openSnapshotStream(String snapshotPath, AesKey encryptionKey) throws IOException {
+        try {
+            return BlobFormatUtil.decodingStream(blobStorage.openInputStream(snapshotPath), encryptionKey, BlobCipher.AES_ECB);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to open snapshot blob at path: " + snapshotPath, e);
         }
+    }
 
-        byte[] initialEncryptedData = Base64.getDecoder().decode(initialEncryptedDataBase64);
-        String encryptionKey = keyVaultService.getEncryptionKeyFromKeyVault(user.getUsername());
-        byte[] decryptedData = AESUtil.decrypt(initialEncryptedData, encryptionKey);
+    private static void readFully(InputStream in, ByteBuffer target) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            if (n > target.remaining()) {
+                throw new IOException("Snapshot is larger than its recorded size");
+            }
+            target.put(chunk, 0, n);
+        }
+        if (target.hasRemaining()) {
+            throw new IOException("Snapshot is smaller than its recorded size");
+        }
+        target.flip();
+    }
 
-        String fileNameLower = file.getFileName().toLowerCase();
-        boolean isBinary = fileNameLower.matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
+    @Override
+    public boolean isCheckpointDue(File file, long nextDeltaSize, long nextContentSize) {
+        List<FileVersion> versions = getAllVersions(file);
+        if (versions.isEmpty()) {
+            return true;
+        }
+        int lastIndex = versions.size() - 1;
+        // Stored chain only: a materialized copy of the latest version does not count as a checkpoint
+        int nextChainLength = lastIndex - VersionChainUtil.findCheckpointIndex(versions, lastIndex) + 1;
+        long pendingDeltaBytes = VersionChainUtil.deltaBytesSinceCheckpoint(versions, lastIndex) + nextDeltaSize;
+
+        boolean intervalReached = checkpointInterval > 0 && nextChainLength >= checkpointInterval;
+        boolean deltaSizeReached = checkpointDeltaRatio > 0 && pendingDeltaBytes >= checkpointDeltaRatio * nextContentSize;
+        return intervalReached || deltaSizeReached;
+    }
 
-        if (isBinary) {
-            // Binary dosya işlemleri
-            byte[] contentBytes = decryptedData;
+    @Override
+    public boolean isReverseCheckpointDue(File file, long reverseDeltaSize, long previousContentSize) {
+        List<FileVersion> versions = getAllVersions(file);
+        int previousIndex = versions.size() - 1;
+        // Replacing the previous version with a reverse delta lengthens the chain of every
+        // reverse delta below it by one
+        int longestChain = VersionChainUtil.reverseRunBelow(versions, previousIndex) + 1;
+        long pendingDeltaBytes = VersionChainUtil.reverseDeltaBytesBelow(versions, previousIndex) + reverseDeltaSize;
+
+        boolean intervalReached = checkpointInterval > 0 && longestChain >= checkpointInterval;
+        boolean deltaSizeReached = checkpointDeltaRatio > 0 && pendingDeltaBytes >= checkpointDeltaRatio * previousContentSize;
+        return intervalReached || deltaSizeReached;
+    }
 
-            for (int i = 1; i < versions.size(); i++) {
-                FileVersion version = versions.get(i);
-                String deltaPath = version.getDeltaPath();
+    @Override
+    public int getChainLength(File file, String versionNumber) {
+        List<FileVersion> versions = getAllVersions(file);
+        return VersionChainUtil.chainLength(versions, indexOfVersion(versions, versionNumber));
+    }
 
-                if (deltaPath == null) {
-                    throw new Exception("Delta path is null for version: " + version.getVersionNumber());
-                }
+    // Decoded once per call, so every blob of a chain is decrypted with the same key object
+    private AesKey userKey(User user) {
+        return AesKey.fromBase64(keyVaultService.getEncryptionKeyFromKeyVault(user.getUsername()));
+    }
 
-                if (!azureBlobStorage.checkBlobExists(deltaPath)) {
-                    throw new AzureBlobStorageException("Delta blob not found at path: " + deltaPath);
-                }
+    private Optional<byte[]> getCached(File file, FileVersion version) {
+        return reconstructedContentCache.get(file.getId(), version.getVersionNumber(), version.getHash());
+    }
 
-                byte[] deltaBase64Data = azureBlobStorage.read(new Storage(deltaPath, null));
-                if (deltaBase64Data == null) {
-                    throw new Exception("Failed to read delta blob for version: " + version.getVersionNumber());
-                }
+    private void putCached(File file, FileVersion version, byte[] content) {
+        reconstructedContentCache.put(file.getId(), version.getVersionNumber(), version.getHash(), content);
+    }
 
-                byte[] deltaData = Base64.getDecoder().decode(deltaBase64Data);
+    private String snapshotPathOf(File file, FileVersion version) {
+        if (version.getSnapshotPath() != null) {
+            return version.getSnapshotPath();
+        }
+        if (version.getMaterializedPath() != null) {
+            return version.getMaterializedPath();
+        }
+        return String.format("%s/versions/%s/%s", file.getPath(), version.getVersionNumber(), file.getFileName());
+    }
 
-                // Delta komutlarını JSON'dan deserialize et
-                List<BinaryDeltaUtil.DeltaCommand> deltaCommands = Arrays.asList(
-                        objectMapper.readValue(deltaData, BinaryDeltaUtil.DeltaCommand[].class)
-                );
+    private byte[] readSnapshot(File file, FileVersion version, AesKey encryptionKey) throws Exception {
+        if (version.getManifestPath() != null) {
+            // Chunk-store versions are read chunk by chunk, in O(chunks), with no delta chain
+            try (InputStream in = openCheckpointStream(file, version, encryptionKey)) {
+                return in.readAllBytes();
+            }
+        }
+        String snapshotPath = snapshotPathOf(file, version);
 
-                // BinaryDeltaUtil ile delta uygulama
-                contentBytes = BinaryDeltaUtil.applyDelta(contentBytes, deltaCommands);
+        byte[] snapshotBlob = blobStorage.readIfExists(new Storage(snapshotPath, null))
+                .orElseThrow(() -> new AzureBlobStorageException("Snapshot blob not found at path: " + snapshotPath));
+        return BlobFormatUtil.decode(snapshotBlob, encryptionKey, BlobCipher.AES_ECB);
+    }
 
-                if (version.getVersionNumber().equals(versionNumber)) {
-                    break;
-                }
-            }
-            return Base64.getEncoder().encodeToString(contentBytes); // İkili veriyi Base64 ile encode ederek döndür
-        } else {
-            // Metin dosya işlemleri
-            String initialContent = new String(decryptedData, StandardCharsets.UTF_8);
-            content.append(initialContent);
-            for (int i = 1; i < versions.size(); i++) {
-                FileVersion version = versions.get(i);
-                String deltaPath = version.getDeltaPath();
-
-                if (deltaPath == null) {
-                    throw new Exception("Delta path is null for version: " + version.getVersionNumber());
-                }
-                if (!azureBlobStorage.checkBlobExists(deltaPath)) {
-                    throw new AzureBlobStorageException("Delta blob not found at path: " + deltaPath);
-                }
-                byte[] deltaBase64Data = azureBlobStorage.read(new Storage(deltaPath, null));
-                if (deltaBase64Data == null) {
-                    throw new Exception("Failed to read delta blob for version: " + version.getVersionNumber());
-                }
-                byte[] deltaData = Base64.getDecoder().decode(deltaBase64Data);
-                String delta = new String(deltaData, StandardCharsets.UTF_8);
-                content = new StringBuilder(DeltaUtil.applyDelta(content.toString(), delta));
-                if (version.getVersionNumber().equals(versionNumber)) {
-                    break;
-                }
-            }
-            return content.toString();
+    private byte[] readDelta(FileVersion version, AesKey encryptionKey) throws Exception {
+        String deltaPath = version.getDeltaPath();
+        if (deltaPath == null) {
+            throw new Exception("Delta path is null for version: " + version.getVersionNumber());
         }
+
+        byte[] deltaBlob = blobStorage.readIfExists(new Storage(deltaPath, null))
+                .orElseThrow(() -> new AzureBlobStorageException("Delta blob not found at path: " + deltaPath));
+        return BlobFormatUtil.decode(deltaBlob, encryptionKey, BlobCipher.NONE);
     }
 
+    private boolean isBinary(File file) {
+        return file.getFileName().toLowerCase().matches(".*\\.(jpg|png|mp4|docx?|xlsx|pdf|pptx|mkv)$");
+    }
 
 
     @Override
@@ -0,0 +1,383 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.exception.AzureBlobStorageException;
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.service.BlobStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Blob storage on the local filesystem, for on-premises deployments and load tests without
+ * Azure.
+ *
+ * Each blob is a file {@code root/<shard>/<path>.blob}, where the shard is derived from a hash
+ * of the path, so flat namespaces such as the chunk store are spread over many directories
+ * instead of filling one. The suffix keeps a blob and the blobs nested under its name, such as a
+ * file and its versions, from colliding as file and directory.
+ *
+ * Writes go to a temporary file in the target directory that is renamed over the blob once
+ * complete, so readers never see a partial blob; with {@code fsync} enabled the file is forced
+ * to disk before the rename. Reads go through {@link FileChannel}: whole blobs into arrays of the
+ * exact size, ranges with positional reads, and {@link #transferTo} with
+ * {@link FileChannel#transferTo}, which the kernel performs without copying through the heap when
+ * the target is a file or socket channel.
+ */
+@Service
+@ConditionalOnProperty(name = "securedrive.storage.backend", havingValue = "local")
+public class LocalFileStorageServiceImpl implements BlobStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageServiceImpl.class);
+
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final Path root;
+    private final int shardCount;
+    private final int shardDigits;
+    private final boolean fsync;
+
+    public LocalFileStorageServiceImpl(@Value("${securedrive.storage.local.root:storage}") String root,
+                                       @Value("${securedrive.storage.local.shard-count:256}") int shardCount,
+                                       @Value("${securedrive.storage.local.fsync:true}") boolean fsync) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.shardCount = Math.max(1, shardCount);
+        this.shardDigits = Integer.toHexString(this.shardCount - 1).length();
+        this.fsync = fsync;
+        Files.createDirectories(this.root);
+        logger.info("Local blob storage at {} with {} shards, fsync {}", this.root, this.shardCount, fsync);
+    }
+
+    @Override
+    public void write(Storage storage) throws AzureBlobStorageException {
+        String path = storage.getFullPath();
+        if (storage.getData() == null) {
+            throw new AzureBlobStorageException("Storage has no data to upload");
+        }
+        Path target = resolve(path);
+        try {
+            Path temp = writeTemp(target, storage.getData());
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The ETag is checked just before the rename, with conditional writes serialized, so only an
+     * unconditional write or delete landing between the check and the rename goes unnoticed.
+     */
+    @Override
+    public synchronized boolean writeIfMatch(String path, byte[] data, String eTag) throws AzureBlobStorageException {
+        Path target = resolve(path);
+        try {
+            Path temp = writeTemp(target, data);
+            try {
+                if (!eTagOf(target).map(eTag::equals).orElse(false)) {
+                    return false;
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob upload failed: " + e.getMessage());
+        }
+    }
+
+    private Path writeTemp(Path target, byte[] data) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    // Every write renames a new file over the blob, so the file key and modification time change with it
+    private static Optional<String> eTagOf(Path blob) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(blob, BasicFileAttributes.class);
+            return Optional.of(attributes.fileKey() + "/" + attributes.lastModifiedTime() + "/" + attributes.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public OutputStream openOutputStream(String path) throws AzureBlobStorageException {
+        Path target = resolve(path);
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, ".tmp");
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            return new AtomicFileOutputStream(channel, temp, target);
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob upload failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] read(Storage storage) throws AzureBlobStorageException {
+        return readIfExists(storage)
+                .orElseThrow(() -> new AzureBlobStorageException("Blob not found: " + storage.getFullPath()));
+    }
+
+    @Override
+    public Optional<byte[]> readIfExists(Storage storage) throws AzureBlobStorageException {
+        Path source = resolve(storage.getFullPath());
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_ARRAY_SIZE) {
+                throw new AzureBlobStorageException("Blob too large to read into memory: " + storage.getFullPath());
+            }
+            return Optional.of(readFully(channel, 0, (int) size));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob read failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The ETag is taken before the blob is opened, so content replaced in between is paired with
+     * the older ETag and fails the conditional write instead of passing it.
+     */
+    @Override
+    public Optional<TaggedBlob> readTaggedIfExists(String path) throws AzureBlobStorageException {
+        try {
+            Optional<String> eTag = eTagOf(resolve(path));
+            if (eTag.isEmpty()) {
+                return Optional.empty();
+            }
+            return readIfExists(new Storage(path, null)).map(data -> new TaggedBlob(data, eTag.get()));
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob read failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] readRange(String path, long offset, int length) throws AzureBlobStorageException {
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long available = Math.max(0, channel.size() - offset);
+            return readFully(channel, offset, (int) Math.min(length, available));
+        } catch (NoSuchFileException e) {
+            throw new AzureBlobStorageException("Blob not found: " + path);
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob read failed: " + e.getMessage());
+        }
+    }
+
+    private static byte[] readFully(FileChannel channel, long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Blob shrank while being read");
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public InputStream openInputStream(String path) throws AzureBlobStorageException {
+        try {
+            return Channels.newInputStream(FileChannel.open(resolve(path), StandardOpenOption.READ));
+        } catch (NoSuchFileException e) {
+            throw new AzureBlobStorageException("Blob not found: " + path);
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob read failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long transferTo(String path, WritableByteChannel target) throws AzureBlobStorageException {
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        } catch (NoSuchFileException e) {
+            throw new AzureBlobStorageException("Blob not found: " + path);
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob read failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(Storage storage) throws AzureBlobStorageException {
+        if (!deleteIfExists(storage)) {
+            throw new AzureBlobStorageException("Blob not found: " + storage.getFullPath());
+        }
+    }
+
+    @Override
+    public boolean deleteIfExists(Storage storage) throws AzureBlobStorageException {
+        try {
+            return Files.deleteIfExists(resolve(storage.getFullPath()));
+        } catch (IOException e) {
+            throw new AzureBlobStorageException("Blob delete failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<String> paths) throws AzureBlobStorageException {
+        int deleted = 0;
+        for (String path : paths) {
+            if (deleteIfExists(new Storage(path, null))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean exists(Storage storage) throws AzureBlobStorageException {
+        return Files.isRegularFile(resolve(storage.getFullPath()));
+    }
+
+    /**
+     * Lists blobs whose path starts with {@code prefix}. Only the directory the prefix names is
+     * walked in each shard.
+     */
+    @Override
+    public List<String> list(String prefix) throws AzureBlobStorageException {
+        String directory = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        List<String> names = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            Path shardRoot = shardRoot(shard);
+            Path start = shardRoot.resolve(directory).normalize();
+            if (!start.startsWith(shardRoot)) {
+                throw new AzureBlobStorageException("Storage prefix is outside the storage root: " + prefix);
+            }
+            if (!Files.isDirectory(start)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(start)) {
+                files.filter(Files::isRegularFile)
+                        .map(file -> shardRoot.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))
+                        .filter(name -> name.endsWith(BLOB_SUFFIX))
+                        .map(name -> name.substring(0, name.length() - BLOB_SUFFIX.length()))
+                        .filter(name -> name.startsWith(prefix))
+                        .forEach(names::add);
+            } catch (IOException e) {
+                throw new AzureBlobStorageException("Error listing blobs: " + e.getMessage());
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    @Override
+    public void createDirectory(String directoryPath) throws AzureBlobStorageException {
+        write(new Storage(directoryPath + ".marker", new byte[0]));
+    }
+
+    private Path resolve(String path) throws AzureBlobStorageException {
+        if (path == null || path.isBlank() || path.startsWith("/") || path.endsWith("/")) {
+            throw new AzureBlobStorageException("Storage path is null or invalid");
+        }
+        Path shardRoot = shardRoot(shardOf(path));
+        Path resolved = shardRoot.resolve(path + BLOB_SUFFIX).normalize();
+        if (!resolved.startsWith(shardRoot) || resolved.equals(shardRoot)) {
+            throw new AzureBlobStorageException("Storage path is outside the storage root: " + path);
+        }
+        return resolved;
+    }
+
+    private int shardOf(String path) {
+        CRC32 crc = new CRC32();
+        crc.update(path.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    private Path shardRoot(int shard) {
+        if (shardCount == 1) {
+            return root;
+        }
+        String name = Integer.toHexString(shard);
+        return root.resolve("0".repeat(shardDigits - name.length()) + name);
+    }
+
+    // Publishes the blob by renaming the finished temporary file over it on close
+    private final class AtomicFileOutputStream extends FilterOutputStream {
+        private final FileChannel channel;
+        private final Path temp;
+        private final Path target;
+        private boolean closed;
+
+        AtomicFileOutputStream(FileChannel channel, Path temp, Path target) {
+            super(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            this.channel = channel;
+            this.temp = temp;
+            this.target = target;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.flush();
+                if (fsync) {
+                    channel.force(true);
+                }
+                out.close();
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
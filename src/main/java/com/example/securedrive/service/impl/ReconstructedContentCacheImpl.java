@@ -0,0 +1,332 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.service.ReconstructedContentCache;
+import com.example.securedrive.service.util.CipherPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier LRU cache of reconstructed plaintext. The memory tier is bounded by the total size
+ * of the cached arrays; entries evicted from it are spilled to a local directory when one is
+ * configured. Spilled files are encrypted with a key that only lives in this process, so they
+ * are unreadable once the application stops.
+ */
+@Service
+public class ReconstructedContentCacheImpl implements ReconstructedContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconstructedContentCacheImpl.class);
+
+    private static final String METRIC_PREFIX = "securedrive.reconstruction.cache";
+    private static final String SPILL_CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    record CacheKey(Long fileId, String versionNumber, String hash) {
+    }
+
+    private record SpilledEntry(Path path, long size) {
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long spillMaxBytes;
+    private final Path spillDirectory;
+    private final SecretKey spillKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<CacheKey, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<CacheKey, SpilledEntry> spilledEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long spilledBytes;
+    // Bumped on every invalidation so spills racing with it can be discarded
+    private long invalidationEpoch;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public ReconstructedContentCacheImpl(MeterRegistry meterRegistry,
+                                         @Value("${securedrive.reconstruction-cache.max-bytes:268435456}") long maxBytes,
+                                         @Value("${securedrive.reconstruction-cache.max-entry-bytes:67108864}") long maxEntryBytes,
+                                         @Value("${securedrive.reconstruction-cache.spill-directory:}") String spillDirectory,
+                                         @Value("${securedrive.reconstruction-cache.spill-max-bytes:2147483648}") long spillMaxBytes) throws IOException, GeneralSecurityException {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.spillMaxBytes = spillMaxBytes;
+
+        if (spillDirectory != null && !spillDirectory.isBlank() && spillMaxBytes > 0) {
+            Path root = Files.createDirectories(Paths.get(spillDirectory));
+            this.spillDirectory = Files.createTempDirectory(root, "reconstructed-");
+            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+            keyGen.init(256);
+            this.spillKey = keyGen.generateKey();
+            logger.info("Reconstruction cache spill tier enabled at {}", this.spillDirectory);
+        } else {
+            this.spillDirectory = null;
+            this.spillKey = null;
+        }
+
+        memoryHits = Counter.builder(METRIC_PREFIX + ".hits").tag("tier", "memory").register(meterRegistry);
+        diskHits = Counter.builder(METRIC_PREFIX + ".hits").tag("tier", "disk").register(meterRegistry);
+        misses = Counter.builder(METRIC_PREFIX + ".misses").register(meterRegistry);
+        memoryEvictions = Counter.builder(METRIC_PREFIX + ".evictions").tag("tier", "memory").register(meterRegistry);
+        diskEvictions = Counter.builder(METRIC_PREFIX + ".evictions").tag("tier", "disk").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, cache -> cache.currentBytes(false))
+                .tag("tier", "memory").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, cache -> cache.currentBytes(true))
+                .tag("tier", "disk").baseUnit("bytes").register(meterRegistry);
+    }
+
+    @Override
+    public Optional<byte[]> get(Long fileId, String versionNumber, String hash) {
+        if (maxBytes <= 0 || fileId == null) {
+            return Optional.empty();
+        }
+        CacheKey key = new CacheKey(fileId, versionNumber, hash);
+        SpilledEntry spilled;
+        long epoch;
+        synchronized (this) {
+            byte[] content = memoryEntries.get(key);
+            if (content != null) {
+                memoryHits.increment();
+                return Optional.of(content);
+            }
+            spilled = spilledEntries.get(key);
+            epoch = invalidationEpoch;
+        }
+
+        if (spilled != null) {
+            byte[] content = readSpill(key, spilled);
+            if (content != null) {
+                diskHits.increment();
+                promote(key, spilled, content, epoch);
+                return Optional.of(content);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(Long fileId, String versionNumber, String hash, byte[] content) {
+        if (maxBytes <= 0 || fileId == null || content == null || content.length > maxEntryBytes) {
+            return;
+        }
+        CacheKey key = new CacheKey(fileId, versionNumber, hash);
+        List<Map.Entry<CacheKey, byte[]>> evicted;
+        long epoch;
+        SpilledEntry replaced;
+        synchronized (this) {
+            byte[] previous = memoryEntries.put(key, content);
+            memoryBytes += content.length - (previous != null ? previous.length : 0);
+            replaced = removeSpilled(key);
+            evicted = evictMemoryOverflow();
+            epoch = invalidationEpoch;
+        }
+        deleteSpillFile(replaced);
+        spill(evicted, epoch);
+    }
+
+    @Override
+    public void invalidateFile(Long fileId) {
+        List<SpilledEntry> removedSpills = new ArrayList<>();
+        synchronized (this) {
+            invalidationEpoch++;
+            Iterator<Map.Entry<CacheKey, byte[]>> memory = memoryEntries.entrySet().iterator();
+            while (memory.hasNext()) {
+                Map.Entry<CacheKey, byte[]> entry = memory.next();
+                if (entry.getKey().fileId().equals(fileId)) {
+                    memoryBytes -= entry.getValue().length;
+                    memory.remove();
+                }
+            }
+            Iterator<Map.Entry<CacheKey, SpilledEntry>> disk = spilledEntries.entrySet().iterator();
+            while (disk.hasNext()) {
+                Map.Entry<CacheKey, SpilledEntry> entry = disk.next();
+                if (entry.getKey().fileId().equals(fileId)) {
+                    spilledBytes -= entry.getValue().size();
+                    removedSpills.add(entry.getValue());
+                    disk.remove();
+                }
+            }
+        }
+        removedSpills.forEach(this::deleteSpillFile);
+    }
+
+    @PreDestroy
+    public void clearSpillDirectory() {
+        if (spillDirectory == null) {
+            return;
+        }
+        synchronized (this) {
+            spilledEntries.clear();
+            spilledBytes = 0;
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            files.forEach(path -> deleteSpillFile(new SpilledEntry(path, 0)));
+            Files.deleteIfExists(spillDirectory);
+        } catch (IOException e) {
+            logger.warn("Could not clear reconstruction cache spill directory {}: {}", spillDirectory, e.getMessage());
+        }
+    }
+
+    synchronized long currentBytes(boolean disk) {
+        return disk ? spilledBytes : memoryBytes;
+    }
+
+    private void promote(CacheKey key, SpilledEntry spilled, byte[] content, long epoch) {
+        List<Map.Entry<CacheKey, byte[]>> evicted;
+        synchronized (this) {
+            if (epoch != invalidationEpoch || spilledEntries.get(key) != spilled) {
+                return;
+            }
+            spilledEntries.remove(key);
+            spilledBytes -= spilled.size();
+            memoryEntries.put(key, content);
+            memoryBytes += content.length;
+            evicted = evictMemoryOverflow();
+        }
+        deleteSpillFile(spilled);
+        spill(evicted, epoch);
+    }
+
+    // Caller holds the lock
+    private List<Map.Entry<CacheKey, byte[]>> evictMemoryOverflow() {
+        List<Map.Entry<CacheKey, byte[]>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<CacheKey, byte[]>> iterator = memoryEntries.entrySet().iterator();
+        while (memoryBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<CacheKey, byte[]> eldest = iterator.next();
+            iterator.remove();
+            memoryBytes -= eldest.getValue().length;
+            memoryEvictions.increment();
+            evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+        }
+        return evicted;
+    }
+
+    // Caller holds the lock
+    private SpilledEntry removeSpilled(CacheKey key) {
+        SpilledEntry removed = spilledEntries.remove(key);
+        if (removed != null) {
+            spilledBytes -= removed.size();
+        }
+        return removed;
+    }
+
+    private void spill(List<Map.Entry<CacheKey, byte[]>> evicted, long epoch) {
+        if (spillDirectory == null) {
+            return;
+        }
+        for (Map.Entry<CacheKey, byte[]> entry : evicted) {
+            byte[] content = entry.getValue();
+            if (content.length > spillMaxBytes) {
+                continue;
+            }
+            SpilledEntry spilled = writeSpill(content);
+            if (spilled == null) {
+                continue;
+            }
+
+            List<SpilledEntry> dropped = new ArrayList<>();
+            synchronized (this) {
+                if (epoch != invalidationEpoch) {
+                    // The file may have been invalidated while this entry was being written
+                    dropped.add(spilled);
+                } else {
+                    SpilledEntry replaced = removeSpilled(entry.getKey());
+                    if (replaced != null) {
+                        dropped.add(replaced);
+                    }
+                    spilledEntries.put(entry.getKey(), spilled);
+                    spilledBytes += spilled.size();
+                    Iterator<Map.Entry<CacheKey, SpilledEntry>> iterator = spilledEntries.entrySet().iterator();
+                    while (spilledBytes > spillMaxBytes && iterator.hasNext()) {
+                        SpilledEntry eldest = iterator.next().getValue();
+                        iterator.remove();
+                        spilledBytes -= eldest.size();
+                        diskEvictions.increment();
+                        dropped.add(eldest);
+                    }
+                }
+            }
+            dropped.forEach(this::deleteSpillFile);
+        }
+    }
+
+    private SpilledEntry writeSpill(byte[] content) {
+        Path path = spillDirectory.resolve(UUID.randomUUID().toString());
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = CipherPool.get(SPILL_CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, spillKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] encrypted = new byte[GCM_IV_LENGTH + cipher.getOutputSize(content.length)];
+            System.arraycopy(iv, 0, encrypted, 0, GCM_IV_LENGTH);
+            cipher.doFinal(content, 0, content.length, encrypted, GCM_IV_LENGTH);
+            Files.write(path, encrypted);
+            return new SpilledEntry(path, content.length);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Could not spill reconstructed content to {}: {}", path, e.getMessage());
+            deleteSpillFile(new SpilledEntry(path, 0));
+            return null;
+        }
+    }
+
+    private byte[] readSpill(CacheKey key, SpilledEntry spilled) {
+        try {
+            byte[] encrypted = Files.readAllBytes(spilled.path());
+            Cipher cipher = CipherPool.get(SPILL_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, spillKey, new GCMParameterSpec(GCM_TAG_BITS, encrypted, 0, GCM_IV_LENGTH));
+            return cipher.doFinal(encrypted, GCM_IV_LENGTH, encrypted.length - GCM_IV_LENGTH);
+        } catch (IOException | GeneralSecurityException e) {
+            // Missing or tampered spill file: forget it and rebuild from storage
+            logger.warn("Discarding unreadable spilled cache entry {}: {}", spilled.path(), e.getMessage());
+            synchronized (this) {
+                if (spilledEntries.get(key) == spilled) {
+                    removeSpilled(key);
+                }
+            }
+            deleteSpillFile(spilled);
+            return null;
+        }
+    }
+
+    private void deleteSpillFile(SpilledEntry spilled) {
+        if (spilled == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spilled.path());
+        } catch (IOException e) {
+            logger.warn("Could not delete spilled cache file {}: {}", spilled.path(), e.getMessage());
+        }
+    }
+}
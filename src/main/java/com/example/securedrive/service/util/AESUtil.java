@@ -1,14 +1,19 @@
 package com.example.securedrive.service.util;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 
 public class AESUtil {
 
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+
     public static String generateAESKey() throws NoSuchAlgorithmException {
         KeyGenerator keyGen = KeyGenerator.getInstance("AES");
         keyGen.init(256);
@@ -17,16 +22,52 @@ public class AESUtil {
     }
 
     public static byte[] encrypt(byte[] data, String key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(Base64.getDecoder().decode(key), "AES");
-        cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+        return encrypt(data, AesKey.fromBase64(key));
+    }
+
+    public static byte[] encrypt(byte[] data, AesKey key) throws Exception {
+        Cipher cipher = CipherPool.get(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key.spec());
         return cipher.doFinal(data);
     }
 
     public static byte[] decrypt(byte[] encryptedData, String key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(Base64.getDecoder().decode(key), "AES");
-        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
+        return decrypt(encryptedData, AesKey.fromBase64(key));
+    }
+
+    public static byte[] decrypt(byte[] encryptedData, AesKey key) throws Exception {
+        Cipher cipher = CipherPool.get(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key.spec());
         return cipher.doFinal(encryptedData);
     }
+
+    /**
+     * Wraps {@code out} so that everything written to the returned stream is encrypted
+     * with the same cipher as {@link #encrypt(byte[], String)}. Closing the returned
+     * stream writes the final padded block and closes {@code out}.
+     */
+    public static OutputStream encryptingStream(OutputStream out, String key) throws Exception {
+        return encryptingStream(out, AesKey.fromBase64(key));
+    }
+
+    public static OutputStream encryptingStream(OutputStream out, AesKey key) throws Exception {
+        // The stream keeps its cipher, so it gets its own instance rather than a pooled one
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key.spec());
+        return new CipherOutputStream(out, cipher);
+    }
+
+    /**
+     * Wraps {@code in} so that reading from the returned stream yields the plaintext of data
+     * encrypted by {@link #encrypt(byte[], String)}.
+     */
+    public static InputStream decryptingStream(InputStream in, String key) throws Exception {
+        return decryptingStream(in, AesKey.fromBase64(key));
+    }
+
+    public static InputStream decryptingStream(InputStream in, AesKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key.spec());
+        return new CipherInputStream(in, cipher);
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.securedrive.service.util;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+
+/**
+ * A user's AES key, decoded from the Base64 form it is stored in once so that code encrypting
+ * many blobs or chunks with it does not decode it and build a new {@link SecretKeySpec} each time.
+ */
+public final class AesKey {
+
+    private final SecretKeySpec spec;
+
+    private AesKey(byte[] raw) {
+        this.spec = new SecretKeySpec(raw, "AES");
+    }
+
+    public static AesKey fromBase64(String key) {
+        return new AesKey(Base64.getDecoder().decode(key));
+    }
+
+    public static AesKey of(byte[] raw) {
+        return new AesKey(raw);
+    }
+
+    public SecretKeySpec spec() {
+        return spec;
+    }
+
+    @Override
+    public String toString() {
+        return "AesKey[hidden]";
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.BinaryDeltaUtil.CommandType;
+import com.example.securedrive.service.util.BinaryDeltaUtil.DeltaCommand;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link DeltaCommand} lists.
+ *
+ * <pre>
+ * 4 bytes  magic 0x00 'D' 'L' 'T'
+ * 1 byte   codec version
+ * then one entry per command, terminated by OP_END:
+ *   OP_COPY     varint zigzag(offset - end of previous COPY), varint length
+ *   OP_LITERAL  varint length, raw bytes
+ * </pre>
+ *
+ * COPY offsets are relative to where the previous COPY ended, so runs of nearby blocks encode
+ * in one or two bytes. Compression is left to the blob header. Deltas stored before this codec
+ * existed are JSON arrays and are still accepted by {@link #decode(byte[])}.
+ */
+public class BinaryDeltaCodec {
+
+    public static final int CODEC_VERSION = 1;
+
+    private static final byte[] MAGIC = {0x00, 'D', 'L', 'T'};
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_LITERAL = 2;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static boolean isCompact(byte[] delta) {
+        if (delta == null || delta.length < MAGIC.length + 1) {
+            return false;
+        }
+        return Arrays.equals(delta, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    public static byte[] encode(List<DeltaCommand> commands) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        write(commands, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes {@code commands} to {@code out} and flushes it; {@code out} is left open.
+     */
+    public static void write(List<DeltaCommand> commands, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        for (DeltaCommand command : commands) {
+            if (command.type() == CommandType.COPY) {
+                writer.copy(command.offset(), command.length());
+            } else {
+                writer.literal(command.data(), 0, command.length());
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Decodes a delta in either the compact format or the legacy JSON format.
+     */
+    public static List<DeltaCommand> decode(byte[] delta) throws IOException {
+        if (!isCompact(delta)) {
+            return Arrays.asList(objectMapper.readValue(delta, DeltaCommand[].class));
+        }
+        return read(new ByteArrayInputStream(delta));
+    }
+
+    /**
+     * Reads one compact delta from {@code in}, which must start at the magic bytes.
+     */
+    public static List<DeltaCommand> read(InputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        List<DeltaCommand> commands = new ArrayList<>();
+        DeltaCommand command;
+        while ((command = reader.next()) != null) {
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    /**
+     * Writes commands one at a time, so deltas of any size can be produced without holding them
+     * in memory. {@link #finish()} writes the end marker and flushes, leaving the stream open.
+     */
+    public static class Writer {
+
+        private final OutputStream out;
+        private long copyEnd;
+
+        public Writer(OutputStream out) throws IOException {
+            this.out = new BufferedOutputStream(out, STREAM_BUFFER_SIZE);
+            this.out.write(MAGIC);
+            this.out.write(CODEC_VERSION);
+        }
+
+        public void copy(long offset, int length) throws IOException {
+            out.write(OP_COPY);
+            writeVarLong(out, zigZag(offset - copyEnd));
+            writeVarLong(out, length);
+            copyEnd = offset + length;
+        }
+
+        public void literal(byte[] data, int offset, int length) throws IOException {
+            out.write(OP_LITERAL);
+            writeVarLong(out, length);
+            out.write(data, offset, length);
+        }
+
+        public void finish() throws IOException {
+            out.write(OP_END);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads commands one at a time; {@link #next()} returns null once the end marker is reached.
+     */
+    public static class Reader {
+
+        private final InputStream in;
+        private long copyEnd;
+        private boolean finished;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = (in instanceof ByteArrayInputStream || in instanceof BufferedInputStream)
+                    ? in : new BufferedInputStream(in, STREAM_BUFFER_SIZE);
+            byte[] magic = this.in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a compact binary delta");
+            }
+            int version = readByte(this.in);
+            if (version > CODEC_VERSION) {
+                throw new IOException("Unsupported binary delta version: " + version);
+            }
+        }
+
+        public DeltaCommand next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            int op = readByte(in);
+            if (op == OP_END) {
+                finished = true;
+                return null;
+            } else if (op == OP_COPY) {
+                long offset = copyEnd + unZigZag(readVarLong(in));
+                int length = toLength(readVarLong(in));
+                if (offset < 0) {
+                    throw new IOException("Negative COPY offset in binary delta");
+                }
+                copyEnd = offset + length;
+                return new DeltaCommand(CommandType.COPY, offset, length, null);
+            } else if (op == OP_LITERAL) {
+                int length = toLength(readVarLong(in));
+                byte[] data = in.readNBytes(length);
+                if (data.length != length) {
+                    throw new EOFException("Truncated LITERAL in binary delta");
+                }
+                return new DeltaCommand(CommandType.LITERAL, 0, length, data);
+            }
+            throw new IOException("Unknown binary delta opcode: " + op);
+        }
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary delta");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated binary delta");
+        }
+        return b;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int toLength(long value) throws IOException {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Binary delta length out of range: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -1,27 +1,37 @@
 package com.example.securedrive.service.util;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
-import java.util.zip.CRC32;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 public class BinaryDeltaUtil {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
 
     private static final String STRONG_HASH_ALGO = "SHA-256";
 
+    /** Heap allowed for the index used to refine literal regions, unless the caller passes one. */
+    public static final long DEFAULT_MATCH_INDEX_BUDGET_BYTES = 256L * 1024 * 1024;
+
+    // Smaller regions of the modified data are not worth a task of their own
+    private static final int MIN_REGION_SIZE = 2 * 1024 * 1024;
+
+    private static final ForkJoinPool DIFF_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     public enum CommandType {
         COPY,
         LITERAL
@@ -29,7 +39,7 @@ public class BinaryDeltaUtil {
 
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
-    public record DeltaCommand(CommandType type, int offset, int length, byte[] data) {
+    public record DeltaCommand(CommandType type, long offset, int length, byte[] data) {
 
         @Override
         public String toString() {
@@ -43,7 +53,7 @@ public class BinaryDeltaUtil {
     }
 
 
-    private static int determineBlockSize(long fileSize) {
+    static int determineBlockSize(long fileSize) {
         if (fileSize < 1_000_000) {
             return 512;
         } else if (fileSize < 10_000_000) {
@@ -57,6 +67,14 @@ public class BinaryDeltaUtil {
 
 
     public static List<DeltaCommand> calculateDelta(byte[] original, byte[] modified) {
+        return calculateDelta(original, modified, DEFAULT_MATCH_INDEX_BUDGET_BYTES);
+    }
+
+    /**
+     * Same as {@link #calculateDelta(byte[], byte[])}, with literal regions refined by the
+     * most precise matcher over {@code original} that fits in {@code matchIndexBudgetBytes}.
+     */
+    public static List<DeltaCommand> calculateDelta(byte[] original, byte[] modified, long matchIndexBudgetBytes) {
         if (original.length == modified.length) {
             byte[] origHash = strongHash(original);
             byte[] modHash = strongHash(modified);
@@ -69,60 +87,165 @@ public class BinaryDeltaUtil {
         }
 
         List<DeltaCommand> coarseDelta = blockBasedDiff(original, modified);
+        if (coarseDelta.stream().noneMatch(cmd -> cmd.type() == CommandType.LITERAL)) {
+            return mergeCommands(coarseDelta);
+        }
 
-        for (DeltaCommand cmd : coarseDelta) {
-            System.out.println(cmd);
+        LongestMatchFinder matchFinder = matchFinderFor(original, matchIndexBudgetBytes);
+        if (matchFinder == null) {
+            return mergeCommands(coarseDelta);
         }
+        return mergeCommands(refineLiterals(matchFinder, coarseDelta));
+    }
 
-        SuffixAutomaton suffixAutomaton = new SuffixAutomaton(original);
-        List<DeltaCommand> fineDelta = refineWithSuffixAutomaton(suffixAutomaton, coarseDelta);
+    /**
+     * Same result format as {@link #calculateDelta(byte[], byte[], long)}, computed on up to
+     * {@code parallelism} threads of a shared pool.
+     */
+    public static List<DeltaCommand> calculateDeltaParallel(byte[] original, byte[] modified,
+                                                            long matchIndexBudgetBytes, int parallelism) {
+        return calculateDeltaParallel(original, modified, matchIndexBudgetBytes, DIFF_POOL, parallelism);
+    }
 
-        for (DeltaCommand cmd : fineDelta) {
-            System.out.println(cmd);
+    /**
+     * Splits {@code modified} into up to {@code parallelism} regions and diffs them on
+     * {@code executor} against one shared, read-only block index and match index. A region scan
+     * may finish a block match past its end; the next region's commands are trimmed by that
+     * overlap when the lists are stitched, and commands meeting at a boundary are merged.
+     */
+    public static List<DeltaCommand> calculateDeltaParallel(byte[] original, byte[] modified, long matchIndexBudgetBytes,
+                                                            ExecutorService executor, int parallelism) {
+        int regionSize = (int) Math.max(MIN_REGION_SIZE, ((long) modified.length + parallelism - 1) / Math.max(parallelism, 1));
+        int regions = (int) (((long) modified.length + regionSize - 1) / regionSize);
+        if (regions <= 1) {
+            return calculateDelta(original, modified, matchIndexBudgetBytes);
+        }
+        if (Arrays.equals(original, modified)) {
+            return new ArrayList<>(List.of(new DeltaCommand(CommandType.COPY, 0, original.length, null)));
         }
 
-        List<DeltaCommand> merged = mergeCommands(fineDelta);
+        int blockSize = determineBlockSize(original.length);
+        BlockIndex originalIndex = BlockIndex.build(original, blockSize);
 
-        for (DeltaCommand cmd : merged) {
-            System.out.println(cmd);
+        List<Callable<List<DeltaCommand>>> scans = new ArrayList<>(regions);
+        for (int r = 0; r < regions; r++) {
+            int from = r * regionSize;
+            int to = (int) Math.min((long) from + regionSize, modified.length);
+            scans.add(() -> scanRegion(original, originalIndex, blockSize, modified, from, to));
         }
-        return merged;
+        List<List<DeltaCommand>> coarse = runAll(executor, scans);
+
+        boolean hasLiterals = coarse.stream().flatMap(List::stream).anyMatch(cmd -> cmd.type() == CommandType.LITERAL);
+        LongestMatchFinder matchFinder = hasLiterals ? matchFinderFor(original, matchIndexBudgetBytes) : null;
+
+        List<Callable<List<DeltaCommand>>> refinements = new ArrayList<>(regions);
+        for (List<DeltaCommand> region : coarse) {
+            refinements.add(() -> mergeCommands(matchFinder == null ? region : refineLiterals(matchFinder, region)));
+        }
+        List<List<DeltaCommand>> fine = runAll(executor, refinements);
+
+        List<DeltaCommand> stitched = new ArrayList<>();
+        long covered = 0;
+        for (int r = 0; r < regions; r++) {
+            long regionStart = (long) r * regionSize;
+            long overlap = covered - regionStart;
+            for (DeltaCommand cmd : fine.get(r)) {
+                if (overlap >= cmd.length()) {
+                    overlap -= cmd.length();
+                    continue;
+                }
+                if (overlap > 0) {
+                    cmd = dropPrefix(cmd, (int) overlap);
+                    overlap = 0;
+                }
+                int last = stitched.size() - 1;
+                if (last >= 0 && canMerge(stitched.get(last), cmd)) {
+                    stitched.set(last, mergeTwo(stitched.get(last), cmd));
+                } else {
+                    stitched.add(cmd);
+                }
+            }
+            covered = Math.max(covered, regionStart + outputLength(fine.get(r)));
+        }
+        return stitched;
+    }
+
+    private static <T> List<T> runAll(ExecutorService executor, List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Delta computation was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Delta computation failed", e.getCause());
+        }
+    }
+
+    private static DeltaCommand dropPrefix(DeltaCommand cmd, int count) {
+        if (cmd.type() == CommandType.COPY) {
+            return new DeltaCommand(CommandType.COPY, cmd.offset() + count, cmd.length() - count, null);
+        }
+        return new DeltaCommand(CommandType.LITERAL, 0, cmd.length() - count, slice(cmd.data(), count, cmd.length() - count));
+    }
+
+    /**
+     * Picks the suffix automaton when its worst case fits the budget, the hash-chain matcher
+     * when that does, and otherwise nothing, leaving the block-level delta unrefined.
+     */
+    static LongestMatchFinder matchFinderFor(byte[] original, long budgetBytes) {
+        if (SuffixAutomaton.estimateBytes(original.length) <= budgetBytes) {
+            return new SuffixAutomaton(original);
+        }
+        if (HashChainMatcher.estimateBytes(original.length) <= budgetBytes) {
+            return new HashChainMatcher(original);
+        }
+        return null;
     }
 
 
 
-    private static List<DeltaCommand> blockBasedDiff(byte[] original, byte[] modified) {
+    /**
+     * Finds blocks of {@code original} inside {@code modified}. The weak checksum of the current
+     * window is rolled forward one byte at a time on a mismatch, and candidate blocks are only
+     * verified byte for byte, in place, when their weak checksum matches.
+     */
+    static List<DeltaCommand> blockBasedDiff(byte[] original, byte[] modified) {
         int blockSize = determineBlockSize(original.length);
 
 
-        Map<Long, List<Integer>> originalMap = buildIndexParallel(original, blockSize);
+        BlockIndex originalIndex = BlockIndex.build(original, blockSize);
+        return scanRegion(original, originalIndex, blockSize, modified, 0, modified.length);
+    }
 
+    /**
+     * Covers {@code modified} from {@code from} to at least {@code to}. A block match that starts
+     * before {@code to} is kept whole, so the commands may run up to a block past it.
+     */
+    private static List<DeltaCommand> scanRegion(byte[] original, BlockIndex originalIndex, int blockSize,
+                                                 byte[] modified, int from, int to) {
         List<DeltaCommand> commands = new ArrayList<>();
-        int mPos = 0;
-        int literalStart = 0;
-
-        while (mPos < modified.length) {
-            int size = Math.min(blockSize, modified.length - mPos);
-            byte[] window = slice(modified, mPos, size);
+        int mPos = from;
+        int literalStart = from;
 
-            long crc = crc32(window);
-            List<Integer> candidates = originalMap.get(crc);
+        RollingChecksum window = new RollingChecksum();
+        window.reset(modified, from, Math.min(blockSize, modified.length - from));
 
+        while (mPos < to) {
+            int size = Math.min(blockSize, modified.length - mPos);
             int matchedIndex = -1;
-            int matchedLength = 0;
-
-            if (candidates != null) {
-                byte[] strongWin = strongHash(window);
-                for (int cPos : candidates) {
-                    if (cPos + size <= original.length) {
-                        byte[] origBlock = slice(original, cPos, size);
-                        byte[] strongOrig = strongHash(origBlock);
-                        if (Arrays.equals(strongWin, strongOrig)) {
-                            matchedIndex = cPos;
-                            matchedLength = size;
-                            break;
-                        }
-                    }
+            for (int c = originalIndex.firstCandidate(window.value()); c >= 0; c = originalIndex.nextCandidate(c)) {
+                int cPos = (int) originalIndex.offsetAt(c);
+                if (cPos + size <= original.length
+                        && Arrays.equals(modified, mPos, mPos + size, original, cPos, cPos + size)) {
+                    matchedIndex = cPos;
+                    break;
                 }
             }
 
@@ -132,17 +255,25 @@ public class BinaryDeltaUtil {
                     byte[] litData = slice(modified, literalStart, litLen);
                     commands.add(new DeltaCommand(CommandType.LITERAL, 0, litLen, litData));
                 }
-                commands.add(new DeltaCommand(CommandType.COPY, matchedIndex, matchedLength, null));
+                commands.add(new DeltaCommand(CommandType.COPY, matchedIndex, size, null));
 
-                mPos += matchedLength;
+                mPos += size;
                 literalStart = mPos;
+                if (mPos < modified.length) {
+                    window.reset(modified, mPos, Math.min(blockSize, modified.length - mPos));
+                }
             } else {
+                // Slide the window by one byte; near the end it shrinks instead
+                window.remove(modified[mPos]);
+                if (mPos + size < modified.length) {
+                    window.add(modified[mPos + size]);
+                }
                 mPos++;
             }
         }
 
-        if (literalStart < modified.length) {
-            int len = modified.length - literalStart;
+        if (literalStart < mPos) {
+            int len = mPos - literalStart;
             byte[] litData = slice(modified, literalStart, len);
             commands.add(new DeltaCommand(CommandType.LITERAL, 0, len, litData));
         }
@@ -151,35 +282,7 @@ public class BinaryDeltaUtil {
     }
 
 
-    private static Map<Long, List<Integer>> buildIndexParallel(byte[] original, int blockSize) {
-        int numBlocks = (int) Math.ceil((double) original.length / blockSize);
-
-        ConcurrentHashMap<Long, List<Integer>> map = new ConcurrentHashMap<>();
-
-        int parallelism = Runtime.getRuntime().availableProcessors();
-        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
-
-        try {
-            forkJoinPool.submit(() ->
-                    IntStream.range(0, numBlocks).parallel().forEach(blockNum -> {
-                        int pos = blockNum * blockSize;
-                        int len = Math.min(blockSize, original.length - pos);
-                        byte[] block = slice(original, pos, len);
-                        long crc = crc32(block);
-                        map.computeIfAbsent(crc, k -> Collections.synchronizedList(new ArrayList<>())).add(pos);
-                    })
-            ).get();
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException("Error during parallel index building", e);
-        } finally {
-            forkJoinPool.shutdown();
-        }
-
-        return map;
-    }
-
-
-    private static List<DeltaCommand> refineWithSuffixAutomaton(SuffixAutomaton suffixAutomaton, List<DeltaCommand> coarseDelta) {
+    private static List<DeltaCommand> refineLiterals(LongestMatchFinder matchFinder, List<DeltaCommand> coarseDelta) {
         List<DeltaCommand> refined = new ArrayList<>();
 
         for (DeltaCommand cmd : coarseDelta) {
@@ -191,7 +294,7 @@ public class BinaryDeltaUtil {
                 int last = 0;
 
                 while (current < data.length) {
-                    SuffixAutomaton.MatchResult match = suffixAutomaton.findLongestMatch(data, current);
+                    SuffixAutomaton.MatchResult match = matchFinder.findLongestMatch(data, current);
                     if (match.getLength() > 4) {
                         if (current > last) {
                             byte[] litData = slice(data, last, current - last);
@@ -241,6 +344,8 @@ public class BinaryDeltaUtil {
 
     private static boolean canMerge(DeltaCommand c1, DeltaCommand c2) {
         if (c1.type() != c2.type()) return false;
+        // Lengths stay int, so very long runs are kept as several commands
+        if ((long) c1.length() + c2.length() > Integer.MAX_VALUE) return false;
         if (c1.type() == CommandType.COPY) {
             return (c1.offset() + c1.length() == c2.offset());
         } else {
@@ -264,31 +369,85 @@ public class BinaryDeltaUtil {
     public static byte[] applyDelta(byte[] original, List<DeltaCommand> commands) {
         int totalSize = commands.stream().mapToInt(DeltaCommand::length).sum();
         byte[] result = new byte[totalSize];
-        AtomicInteger pos = new AtomicInteger(0);
+        int pos = 0;
 
         for (DeltaCommand cmd : commands) {
             if (cmd.type() == CommandType.COPY) {
-                if (cmd.offset() < 0 || cmd.offset() + cmd.length() > original.length) {
-                    throw new IllegalArgumentException("Invalid COPY command: " + cmd);
-                }
-                System.arraycopy(original, cmd.offset(), result, pos.get(), cmd.length());
+                validateCopy(cmd, original.length);
+                System.arraycopy(original, (int) cmd.offset(), result, pos, cmd.length());
             } else if (cmd.type() == CommandType.LITERAL) {
-                if (cmd.data() == null || cmd.data().length != cmd.length()) {
-                    throw new IllegalArgumentException("Invalid LITERAL command: " + cmd);
-                }
-                System.arraycopy(cmd.data(), 0, result, pos.get(), cmd.length());
+                validateLiteral(cmd);
+                System.arraycopy(cmd.data(), 0, result, pos, cmd.length());
             }
-            pos.addAndGet(cmd.length());
+            pos += cmd.length();
         }
         return result;
     }
 
-    private static long crc32(byte[] data) {
-        CRC32 crc = new CRC32();
-        crc.update(data);
-        return crc.getValue();
+    public static long outputLength(List<DeltaCommand> commands) {
+        return commands.stream().mapToLong(DeltaCommand::length).sum();
+    }
+
+    /**
+     * Applies {@code commands} to the bytes of {@code original} up to its limit and writes the
+     * result into {@code target} starting at index 0, so two buffers can be reused in turn along
+     * a delta chain. Returns the number of bytes written.
+     */
+    public static int applyDelta(ByteBuffer original, List<DeltaCommand> commands, ByteBuffer target) {
+        int pos = 0;
+        for (DeltaCommand cmd : commands) {
+            if (cmd.type() == CommandType.COPY) {
+                validateCopy(cmd, original.limit());
+                target.put(pos, original, (int) cmd.offset(), cmd.length());
+            } else if (cmd.type() == CommandType.LITERAL) {
+                validateLiteral(cmd);
+                target.put(pos, cmd.data(), 0, cmd.length());
+            }
+            pos += cmd.length();
+        }
+        return pos;
+    }
+
+    /**
+     * Applies {@code commands} to the bytes of {@code original} up to its limit and writes the
+     * result straight to {@code out}, without materializing it. Returns the number of bytes written.
+     */
+    public static long applyDelta(ByteBuffer original, List<DeltaCommand> commands, OutputStream out) throws IOException {
+        byte[] transfer = original.hasArray() ? null : new byte[STREAM_CHUNK_SIZE];
+        long written = 0;
+        for (DeltaCommand cmd : commands) {
+            if (cmd.type() == CommandType.COPY) {
+                validateCopy(cmd, original.limit());
+                if (transfer == null) {
+                    out.write(original.array(), original.arrayOffset() + (int) cmd.offset(), cmd.length());
+                } else {
+                    for (int done = 0; done < cmd.length(); ) {
+                        int n = Math.min(transfer.length, cmd.length() - done);
+                        original.get((int) cmd.offset() + done, transfer, 0, n);
+                        out.write(transfer, 0, n);
+                        done += n;
+                    }
+                }
+            } else if (cmd.type() == CommandType.LITERAL) {
+                validateLiteral(cmd);
+                out.write(cmd.data(), 0, cmd.length());
+            }
+            written += cmd.length();
+        }
+        return written;
+    }
+
+    private static void validateCopy(DeltaCommand cmd, int originalLength) {
+        if (cmd.offset() < 0 || cmd.offset() + cmd.length() > originalLength) {
+            throw new IllegalArgumentException("Invalid COPY command: " + cmd);
+        }
     }
 
+    private static void validateLiteral(DeltaCommand cmd) {
+        if (cmd.data() == null || cmd.data().length != cmd.length()) {
+            throw new IllegalArgumentException("Invalid LITERAL command: " + cmd);
+        }
+    }
 
     private static byte[] strongHash(byte[] data) {
         try {
@@ -324,7 +483,6 @@ public class BinaryDeltaUtil {
     public static void saveBinaryDeltaCommands(List<DeltaCommand> deltaCommands, String filePath) throws IOException {
         Path deltaPath = Path.of(filePath);
         Files.createDirectories(deltaPath.getParent());
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(deltaCommands);
-        Files.writeString(deltaPath, json, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        Files.write(deltaPath, BinaryDeltaCodec.encode(deltaCommands), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 }
@@ -0,0 +1,297 @@
+package com.example.securedrive.service.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Raw binary blob format used for everything written to storage.
+ *
+ * <pre>
+ * offset 0  4 bytes  magic 0x00 'S' 'F' 'D'
+ * offset 4  1 byte   format version
+ * offset 5  1 byte   cipher id       (see {@link BlobCipher})
+ * offset 6  1 byte   compression id  (see {@link BlobCompression})
+ * offset 7  1 byte   reserved, always 0
+ * offset 8  ...      payload: plaintext -> compression -> cipher
+ * </pre>
+ *
+ * Version 2 added the {@link BlobCipher#AES_GCM} cipher, whose payload is the chunked format of
+ * {@link ChunkedAesGcm}; version 1 blobs, written with AES-ECB or no cipher, are read unchanged.
+ * Version 3 added {@link BlobCipher#AES_GCM_ENVELOPE}, the same payload under a per-blob data key
+ * that precedes it wrapped under the user's key (see {@link DataKeyUtil}).
+ *
+ * Blobs written before this format existed are the Base64 text of the payload. Base64 text
+ * never contains a 0x00 byte, so the first magic byte is enough to tell the two apart.
+ */
+public class BlobFormatUtil {
+
+    public static final int FORMAT_VERSION = 3;
+    public static final int HEADER_LENGTH = 8;
+    // Header plus wrapped data key of AES_GCM_ENVELOPE blobs, the part rewritten by rewrapKey
+    public static final int ENVELOPE_PREFIX_LENGTH = HEADER_LENGTH + DataKeyUtil.WRAPPED_KEY_LENGTH;
+
+    private static final byte[] MAGIC = {0x00, 'S', 'F', 'D'};
+    private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+    public enum BlobCipher {
+        NONE(0),
+        AES_ECB(1),
+        AES_GCM(2),
+        AES_GCM_ENVELOPE(3);
+
+        private final int id;
+
+        BlobCipher(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        static BlobCipher fromId(int id) {
+            for (BlobCipher cipher : values()) {
+                if (cipher.id == id) {
+                    return cipher;
+                }
+            }
+            throw new IllegalArgumentException("Unknown blob cipher id: " + id);
+        }
+    }
+
+    public enum BlobCompression {
+        NONE(0),
+        DEFLATE(1);
+
+        private final int id;
+
+        BlobCompression(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        static BlobCompression fromId(int id) {
+            for (BlobCompression compression : values()) {
+                if (compression.id == id) {
+                    return compression;
+                }
+            }
+            throw new IllegalArgumentException("Unknown blob compression id: " + id);
+        }
+    }
+
+    public record Header(int version, BlobCipher cipher, BlobCompression compression) {
+    }
+
+    public static boolean hasHeader(byte[] blob) {
+        if (blob == null || blob.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (blob[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Header readHeader(byte[] blob) {
+        if (!hasHeader(blob)) {
+            throw new IllegalArgumentException("Blob does not start with a format header");
+        }
+        int version = blob[4] & 0xFF;
+        if (version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported blob format version: " + version);
+        }
+        return new Header(version, BlobCipher.fromId(blob[5] & 0xFF), BlobCompression.fromId(blob[6] & 0xFF));
+    }
+
+    public static byte[] headerBytes(BlobCipher cipher, BlobCompression compression) {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[4] = (byte) FORMAT_VERSION;
+        header[5] = (byte) cipher.getId();
+        header[6] = (byte) compression.getId();
+        return header;
+    }
+
+    public static byte[] encode(byte[] plaintext, BlobCipher cipher, BlobCompression compression, AesKey key) throws Exception {
+        if (cipher == BlobCipher.AES_GCM_ENVELOPE && compression == BlobCompression.NONE) {
+            // Whole chunks are encrypted in parallel straight into the result
+            byte[] header = headerBytes(cipher, compression);
+            byte[] dataKey = DataKeyUtil.generate();
+            try {
+                byte[] wrapped = DataKeyUtil.wrap(dataKey, key.spec(), header);
+                byte[] payload = ChunkedAesGcm.encrypt(plaintext, DataKeyUtil.keySpec(dataKey),
+                        ChunkedAesGcm.Params.create(header, ChunkedAesGcm.DEFAULT_CHUNK_SIZE));
+                byte[] blob = Arrays.copyOf(header, ENVELOPE_PREFIX_LENGTH + payload.length);
+                System.arraycopy(wrapped, 0, blob, HEADER_LENGTH, wrapped.length);
+                System.arraycopy(payload, 0, blob, ENVELOPE_PREFIX_LENGTH, payload.length);
+                return blob;
+            } finally {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER_LENGTH + plaintext.length + 16);
+        try (OutputStream out = encodingStream(buffer, cipher, compression, key)) {
+            out.write(plaintext);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes the header to {@code raw} and returns a stream that compresses and encrypts
+     * everything written to it. Closing the returned stream closes {@code raw}.
+     */
+    public static OutputStream encodingStream(OutputStream raw, BlobCipher cipher, BlobCompression compression, AesKey key) throws Exception {
+        byte[] header = headerBytes(cipher, compression);
+        raw.write(header);
+        OutputStream out = switch (cipher) {
+            case AES_ECB -> AESUtil.encryptingStream(raw, key);
+            case AES_GCM -> ChunkedAesGcm.encryptingStream(raw, header, key.spec(), ChunkedAesGcm.DEFAULT_CHUNK_SIZE);
+            case AES_GCM_ENVELOPE -> {
+                byte[] dataKey = DataKeyUtil.generate();
+                try {
+                    raw.write(DataKeyUtil.wrap(dataKey, key.spec(), header));
+                    yield ChunkedAesGcm.encryptingStream(raw, header, DataKeyUtil.keySpec(dataKey), ChunkedAesGcm.DEFAULT_CHUNK_SIZE);
+                } finally {
+                    Arrays.fill(dataKey, (byte) 0);
+                }
+            }
+            case NONE -> raw;
+        };
+        if (compression == BlobCompression.DEFLATE) {
+            out = new DeflaterOutputStream(out);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the plaintext stored in {@code blob}. Legacy Base64 blobs carry no header, so
+     * {@code legacyCipher} says whether their decoded payload still has to be decrypted.
+     */
+    public static byte[] decode(byte[] blob, AesKey key, BlobCipher legacyCipher) throws Exception {
+        if (!hasHeader(blob)) {
+            byte[] payload = Base64.getDecoder().decode(blob);
+            return (legacyCipher == BlobCipher.AES_ECB) ? AESUtil.decrypt(payload, key) : payload;
+        }
+        Header header = readHeader(blob);
+        byte[] head = Arrays.copyOf(blob, HEADER_LENGTH);
+        byte[] payload;
+        if (header.cipher() == BlobCipher.AES_GCM) {
+            payload = ChunkedAesGcm.decrypt(blob, HEADER_LENGTH, head, key.spec());
+        } else if (header.cipher() == BlobCipher.AES_GCM_ENVELOPE) {
+            byte[] dataKey = DataKeyUtil.unwrap(blob, HEADER_LENGTH, key.spec(), head);
+            try {
+                payload = ChunkedAesGcm.decrypt(blob, ENVELOPE_PREFIX_LENGTH, head, DataKeyUtil.keySpec(dataKey));
+            } finally {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        } else {
+            payload = Arrays.copyOfRange(blob, HEADER_LENGTH, blob.length);
+            if (header.cipher() == BlobCipher.AES_ECB) {
+                payload = AESUtil.decrypt(payload, key);
+            }
+        }
+        if (header.compression() == BlobCompression.DEFLATE) {
+            payload = inflate(payload);
+        }
+        return payload;
+    }
+
+    /**
+     * Streaming counterpart of {@link #decode(byte[], AesKey, BlobCipher)}: returns a stream of the
+     * plaintext stored in the blob read from {@code raw}. Closing it closes {@code raw}.
+     */
+    public static InputStream decodingStream(InputStream raw, AesKey key, BlobCipher legacyCipher) throws Exception {
+        BufferedInputStream in = new BufferedInputStream(raw, INFLATE_BUFFER_SIZE);
+        in.mark(HEADER_LENGTH);
+        byte[] head = in.readNBytes(HEADER_LENGTH);
+        if (!hasHeader(head)) {
+            in.reset();
+            InputStream payload = Base64.getDecoder().wrap(in);
+            return (legacyCipher == BlobCipher.AES_ECB) ? AESUtil.decryptingStream(payload, key) : payload;
+        }
+        Header header = readHeader(head);
+        InputStream payload = switch (header.cipher()) {
+            case AES_ECB -> AESUtil.decryptingStream(in, key);
+            case AES_GCM -> ChunkedAesGcm.decryptingStream(in, head, key.spec());
+            case AES_GCM_ENVELOPE -> {
+                byte[] dataKey = DataKeyUtil.unwrap(in.readNBytes(DataKeyUtil.WRAPPED_KEY_LENGTH), 0, key.spec(), head);
+                try {
+                    yield ChunkedAesGcm.decryptingStream(in, head, DataKeyUtil.keySpec(dataKey));
+                } finally {
+                    Arrays.fill(dataKey, (byte) 0);
+                }
+            }
+            case NONE -> in;
+        };
+        if (header.compression() == BlobCompression.DEFLATE) {
+            payload = new InflaterInputStream(payload);
+        }
+        return payload;
+    }
+
+    /**
+     * Rewraps the data key of an {@link BlobCipher#AES_GCM_ENVELOPE} blob from {@code oldKey} to
+     * {@code newKey}. Only the first {@link #ENVELOPE_PREFIX_LENGTH} bytes change, so
+     * {@code blob} may also be just that prefix; the payload is neither decrypted nor copied.
+     */
+    public static byte[] rewrapKey(byte[] blob, String oldKey, String newKey) throws IOException {
+        if (!hasHeader(blob) || readHeader(blob).cipher() != BlobCipher.AES_GCM_ENVELOPE) {
+            throw new IllegalArgumentException("Only envelope-encrypted blobs carry a data key to rewrap");
+        }
+        byte[] prefix = Arrays.copyOf(blob, ENVELOPE_PREFIX_LENGTH);
+        DataKeyUtil.rewrap(prefix, HEADER_LENGTH, ChunkedAesGcm.keySpec(oldKey), ChunkedAesGcm.keySpec(newKey),
+                Arrays.copyOf(blob, HEADER_LENGTH));
+        return prefix;
+    }
+
+    /**
+     * Converts a legacy Base64 blob into the raw format without touching its payload, so no
+     * key is needed. Blobs that already have a header are returned unchanged.
+     */
+    public static byte[] migrateLegacy(byte[] blob, BlobCipher legacyCipher) {
+        if (hasHeader(blob)) {
+            return blob;
+        }
+        byte[] payload = Base64.getDecoder().decode(blob);
+        byte[] migrated = new byte[HEADER_LENGTH + payload.length];
+        System.arraycopy(headerBytes(legacyCipher, BlobCompression.NONE), 0, migrated, 0, HEADER_LENGTH);
+        System.arraycopy(payload, 0, migrated, HEADER_LENGTH, payload.length);
+        return migrated;
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 2);
+            byte[] buffer = new byte[INFLATE_BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed blob payload");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed blob payload: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.securedrive.service.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The block-level requests {@link BlockTransfer} needs from a blob store: staged block uploads
+ * committed as one blob, and ranged reads. Azure Blob Storage implements it in production; tests
+ * use an in-process stand-in.
+ */
+public interface BlockBlobStore {
+
+    /**
+     * Uploads {@code length} bytes of {@code data} from {@code offset} as an uncommitted block of
+     * the blob at {@code path}.
+     */
+    void stageBlock(String path, String blockId, byte[] data, int offset, int length) throws Exception;
+
+    /**
+     * Replaces the blob at {@code path} with the given staged blocks, in order.
+     */
+    void commitBlocks(String path, List<String> blockIds) throws Exception;
+
+    /**
+     * Writes up to {@code length} bytes of the blob starting at {@code offset} to {@code target}
+     * and returns the total size and ETag of the blob, so the first read also sizes the rest and
+     * pins the version they are read from. With a non-null {@code ifMatch} the read fails with
+     * {@link BlobChangedException} unless the blob still has that ETag.
+     */
+    RangeRead readRange(String path, long offset, int length, String ifMatch, OutputStream target) throws Exception;
+
+    /**
+     * Total size and ETag of the blob a range was read from; the ETag is null if the store has none.
+     */
+    record RangeRead(long blobSize, String eTag) {
+    }
+
+    /**
+     * The blob was replaced since the ETag a conditional read was pinned to.
+     */
+    class BlobChangedException extends IOException {
+        public BlobChangedException(String message) {
+            super(message);
+        }
+    }
+}
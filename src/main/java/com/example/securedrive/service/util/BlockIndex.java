@@ -0,0 +1,92 @@
+package com.example.securedrive.service.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Weak-checksum index over the fixed-size blocks of an input. Each block is one packed
+ * {@code long} (checksum in the high 32 bits, block number in the low 32 bits) in a sorted array,
+ * so the index costs 8 bytes per block and lookups are a binary search. Storing block numbers
+ * rather than offsets keeps the packing valid for inputs larger than 2 GB.
+ */
+final class BlockIndex {
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final long BLOCK_MASK = 0xFFFFFFFFL;
+
+    // Shared by all index builds so concurrent diffs don't each spin up a pool
+    private static final ForkJoinPool INDEX_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final long[] entries;
+    private final int blockSize;
+
+    private BlockIndex(long[] entries, int blockSize) {
+        this.entries = entries;
+        this.blockSize = blockSize;
+    }
+
+    static BlockIndex build(byte[] data, int blockSize) {
+        int numBlocks = (int) ((data.length + (long) blockSize - 1) / blockSize);
+        return build(numBlocks, blockSize, block -> {
+            int pos = block * blockSize;
+            return RollingChecksum.of(data, pos, Math.min(blockSize, data.length - pos));
+        });
+    }
+
+    /**
+     * Builds an index from a function returning the weak checksum of each block, for inputs that
+     * are not held in a single array.
+     */
+    static BlockIndex build(int numBlocks, int blockSize, IntToLongFunction blockChecksum) {
+        long[] entries = new long[numBlocks];
+
+        if (numBlocks < PARALLEL_THRESHOLD) {
+            for (int block = 0; block < numBlocks; block++) {
+                entries[block] = (blockChecksum.applyAsLong(block) << 32) | block;
+            }
+            Arrays.sort(entries);
+        } else {
+            // Forks made by parallelSort from inside the pool stay in the pool
+            INDEX_POOL.submit(() -> {
+                IntStream.range(0, numBlocks).parallel()
+                        .forEach(block -> entries[block] = (blockChecksum.applyAsLong(block) << 32) | block);
+                Arrays.parallelSort(entries);
+            }).join();
+        }
+        return new BlockIndex(entries, blockSize);
+    }
+
+    /**
+     * Returns the position of the first block with checksum {@code weak}, or -1 if there is none.
+     * Blocks sharing a checksum are visited in ascending offset order via {@link #nextCandidate}.
+     */
+    int firstCandidate(long weak) {
+        long key = weak << 32;
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (low < entries.length && (entries[low] >>> 32) == weak) ? low : -1;
+    }
+
+    int nextCandidate(int position) {
+        int next = position + 1;
+        return (next < entries.length && (entries[next] >>> 32) == (entries[position] >>> 32)) ? next : -1;
+    }
+
+    long offsetAt(int position) {
+        return (entries[position] & BLOCK_MASK) * blockSize;
+    }
+
+    int size() {
+        return entries.length;
+    }
+}
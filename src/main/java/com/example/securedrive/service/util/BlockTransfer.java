@@ -0,0 +1,155 @@
+package com.example.securedrive.service.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Moves whole blobs as fixed-size blocks, with up to {@code concurrency} block requests of one
+ * transfer in flight at a time.
+ *
+ * Uploads stage every block from the caller's array without copying and commit the block list
+ * once all blocks are stored. Downloads read the first block, learn the blob size from it, and
+ * read the remaining ranges in parallel straight into one array of the exact size, so a blob
+ * that fits in one block still costs a single request and a large one is never copied through a
+ * growing buffer. The remaining ranges are read only if the blob still has the ETag of the first
+ * response, and the download starts over when it was replaced in between, so it never returns a
+ * mix of two versions.
+ */
+public final class BlockTransfer {
+
+    // Leaves headroom below Integer.MAX_VALUE for JVMs that reserve array header words
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    // Downloads of a blob that is replaced this often in a row give up
+    private static final int MAX_DOWNLOAD_ATTEMPTS = 5;
+
+    private final int blockSize;
+    private final int concurrency;
+    private final Executor executor;
+
+    public BlockTransfer(int blockSize, int concurrency, Executor executor) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.concurrency = Math.max(1, concurrency);
+        this.executor = executor;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void upload(BlockBlobStore store, String path, byte[] data) throws Exception {
+        int blockCount = (int) ((data.length + (long) blockSize - 1) / blockSize);
+        List<String> blockIds = new ArrayList<>(blockCount);
+        try (OrderedPrefetcher<String> staged = new OrderedPrefetcher<>(blockCount, concurrency, executor, index -> {
+            int offset = index * blockSize;
+            String blockId = blockId(index);
+            store.stageBlock(path, blockId, data, offset, Math.min(blockSize, data.length - offset));
+            return blockId;
+        })) {
+            while (staged.hasNext()) {
+                blockIds.add(staged.next());
+            }
+        }
+        store.commitBlocks(path, blockIds);
+    }
+
+    public byte[] download(BlockBlobStore store, String path) throws Exception {
+        return downloadWithETag(store, path).content();
+    }
+
+    /**
+     * Like {@link #download} but also returns the ETag every range was read under, for writes
+     * that must not overwrite a blob replaced since it was read.
+     */
+    public Download downloadWithETag(BlockBlobStore store, String path) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return downloadOnce(store, path);
+            } catch (BlockBlobStore.BlobChangedException e) {
+                if (attempt == MAX_DOWNLOAD_ATTEMPTS) {
+                    throw new IOException("Blob kept changing while it was read: " + path, e);
+                }
+            }
+        }
+    }
+
+    private Download downloadOnce(BlockBlobStore store, String path) throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        BlockBlobStore.RangeRead firstRead = store.readRange(path, 0, blockSize, null, first);
+        long size = firstRead.blobSize();
+        String eTag = firstRead.eTag();
+        if (size <= first.size()) {
+            return new Download(first.toByteArray(), eTag);
+        }
+        if (size > MAX_ARRAY_SIZE) {
+            throw new IOException("Blob too large to read into memory: " + path + " (" + size + " bytes)");
+        }
+
+        byte[] content = Arrays.copyOf(first.toByteArray(), (int) size);
+        int firstLength = first.size();
+        int rangeCount = (int) ((size - firstLength + blockSize - 1) / blockSize);
+        try (OrderedPrefetcher<Integer> ranges = new OrderedPrefetcher<>(rangeCount, concurrency, executor, index -> {
+            int offset = firstLength + index * blockSize;
+            int length = (int) Math.min(blockSize, size - offset);
+            SliceOutputStream target = new SliceOutputStream(content, offset, length);
+            store.readRange(path, offset, length, eTag, target);
+            if (target.remaining() != 0) {
+                throw new IOException("Short read of " + path + " at offset " + offset);
+            }
+            return length;
+        })) {
+            while (ranges.hasNext()) {
+                ranges.next();
+            }
+        }
+        return new Download(content, eTag);
+    }
+
+    /** Content of a downloaded blob and its ETag, which is null if the store has none. */
+    public record Download(byte[] content, String eTag) {
+    }
+
+    // Block ids of one blob must all have the same length
+    static String blockId(int index) {
+        return Base64.getEncoder().encodeToString(String.format("%010d", index).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static final class SliceOutputStream extends OutputStream {
+        private final byte[] target;
+        private int position;
+        private final int end;
+
+        SliceOutputStream(byte[] target, int offset, int length) {
+            this.target = target;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        int remaining() {
+            return end - position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > end - position) {
+                throw new IOException("Range returned more bytes than requested");
+            }
+            System.arraycopy(b, off, target, position, len);
+            position += len;
+        }
+    }
+}
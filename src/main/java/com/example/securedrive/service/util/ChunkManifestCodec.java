@@ -0,0 +1,84 @@
+package com.example.securedrive.service.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Encoding of a chunk-store version: the ordered list of chunks that make up its content.
+ *
+ * <pre>
+ * 4 bytes  magic 0x00 'C' 'M' 'F'
+ * 1 byte   codec version
+ * 4 bytes  chunk count
+ * then per chunk: 32-byte chunk id, 4-byte plaintext length
+ * </pre>
+ */
+public class ChunkManifestCodec {
+
+    public static final int CODEC_VERSION = 1;
+    public static final int CHUNK_ID_LENGTH = 32;
+
+    private static final byte[] MAGIC = {0x00, 'C', 'M', 'F'};
+    private static final HexFormat HEX = HexFormat.of();
+
+    public record ChunkRef(String id, int length) {
+    }
+
+    public static byte[] encode(List<ChunkRef> chunks) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(MAGIC.length + 5 + chunks.size() * (CHUNK_ID_LENGTH + 4));
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.write(MAGIC);
+            out.write(CODEC_VERSION);
+            out.writeInt(chunks.size());
+            for (ChunkRef chunk : chunks) {
+                byte[] id = HEX.parseHex(chunk.id());
+                if (id.length != CHUNK_ID_LENGTH) {
+                    throw new IllegalArgumentException("Invalid chunk id: " + chunk.id());
+                }
+                out.write(id);
+                out.writeInt(chunk.length());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public static List<ChunkRef> decode(byte[] manifest) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(manifest));
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a chunk manifest");
+        }
+        int version = in.readUnsignedByte();
+        if (version > CODEC_VERSION) {
+            throw new IOException("Unsupported chunk manifest version: " + version);
+        }
+        int count = in.readInt();
+        if (count < 0 || (long) count * (CHUNK_ID_LENGTH + 4) > in.available()) {
+            throw new IOException("Corrupt chunk manifest: " + count + " chunks");
+        }
+        List<ChunkRef> chunks = new ArrayList<>(count);
+        byte[] id = new byte[CHUNK_ID_LENGTH];
+        for (int i = 0; i < count; i++) {
+            in.readFully(id);
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Negative chunk length in manifest");
+            }
+            chunks.add(new ChunkRef(HEX.formatHex(id), length));
+        }
+        return chunks;
+    }
+
+    public static long contentLength(List<ChunkRef> chunks) {
+        return chunks.stream().mapToLong(ChunkRef::length).sum();
+    }
+}
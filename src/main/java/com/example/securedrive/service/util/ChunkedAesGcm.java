@@ -0,0 +1,390 @@
+package com.example.securedrive.service.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Chunked AES-GCM payload of {@link BlobFormatUtil.BlobCipher#AES_GCM} and
+ * {@link BlobFormatUtil.BlobCipher#AES_GCM_ENVELOPE} blobs.
+ *
+ * <pre>
+ * offset 0   4 bytes  plaintext bytes per chunk
+ * offset 4   7 bytes  random nonce prefix
+ * offset 11  1 byte   reserved, always 0
+ * offset 12  ...      records: the ciphertext of one chunk followed by its 16-byte tag
+ * </pre>
+ *
+ * Chunk {@code i} is encrypted with the nonce {@code prefix || i (4 bytes) || last (1 byte)} and
+ * the blob header plus these parameters as associated data. Every record except the last holds a
+ * full chunk and an empty payload is a single empty last record, so records that are dropped,
+ * reordered, truncated or moved to another blob fail authentication. Records have a fixed size,
+ * so any chunk can be located and decrypted on its own, and chunks are encrypted and decrypted
+ * in parallel batches.
+ */
+public final class ChunkedAesGcm {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int PARAMS_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    // Chunks buffered per parallel batch by the streams
+    private static final int BATCH_CHUNKS = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ChunkedAesGcm() {
+    }
+
+    /**
+     * Chunk size and nonce prefix of one payload, plus the associated data every chunk is bound to.
+     */
+    public static final class Params {
+        private final int chunkSize;
+        private final byte[] noncePrefix;
+        private final byte[] associatedData;
+
+        private Params(int chunkSize, byte[] noncePrefix, byte[] blobHeader) {
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            this.noncePrefix = noncePrefix;
+            this.associatedData = new byte[blobHeader.length + PARAMS_LENGTH];
+            System.arraycopy(blobHeader, 0, associatedData, 0, blobHeader.length);
+            System.arraycopy(bytes(), 0, associatedData, blobHeader.length, PARAMS_LENGTH);
+        }
+
+        public static Params create(byte[] blobHeader, int chunkSize) {
+            byte[] prefix = new byte[PREFIX_LENGTH];
+            RANDOM.nextBytes(prefix);
+            return new Params(chunkSize, prefix, blobHeader);
+        }
+
+        public static Params read(byte[] blobHeader, byte[] params, int offset) throws IOException {
+            if (params.length - offset < PARAMS_LENGTH) {
+                throw new IOException("Truncated AES-GCM blob parameters");
+            }
+            int chunkSize = ByteBuffer.wrap(params, offset, 4).getInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid AES-GCM chunk size: " + chunkSize);
+            }
+            return new Params(chunkSize, Arrays.copyOfRange(params, offset + 4, offset + 4 + PREFIX_LENGTH), blobHeader);
+        }
+
+        public int chunkSize() {
+            return chunkSize;
+        }
+
+        public byte[] bytes() {
+            ByteBuffer params = ByteBuffer.allocate(PARAMS_LENGTH);
+            params.putInt(chunkSize).put(noncePrefix);
+            return params.array();
+        }
+
+        /**
+         * Offset of the record of chunk {@code index} from the start of the payload.
+         */
+        public long recordOffset(long index) {
+            return PARAMS_LENGTH + index * (chunkSize + (long) TAG_LENGTH);
+        }
+
+        public int recordLength() {
+            return chunkSize + TAG_LENGTH;
+        }
+
+        private byte[] nonce(long index, boolean last) {
+            if (index > 0xFFFFFFFFL) {
+                throw new IllegalStateException("Too many chunks for one blob: " + index);
+            }
+            byte[] nonce = new byte[NONCE_LENGTH];
+            System.arraycopy(noncePrefix, 0, nonce, 0, PREFIX_LENGTH);
+            nonce[7] = (byte) (index >>> 24);
+            nonce[8] = (byte) (index >>> 16);
+            nonce[9] = (byte) (index >>> 8);
+            nonce[10] = (byte) index;
+            nonce[11] = (byte) (last ? 1 : 0);
+            return nonce;
+        }
+    }
+
+    public static SecretKeySpec keySpec(String key) {
+        return AesKey.fromBase64(key).spec();
+    }
+
+    /**
+     * Encrypts {@code plaintext} into a complete payload, parameters included.
+     */
+    public static byte[] encrypt(byte[] plaintext, SecretKeySpec key, Params params) throws IOException {
+        int chunkSize = params.chunkSize();
+        int chunkCount = Math.max(1, (int) ((plaintext.length + (long) chunkSize - 1) / chunkSize));
+        byte[] payload = new byte[PARAMS_LENGTH + plaintext.length + chunkCount * TAG_LENGTH];
+        System.arraycopy(params.bytes(), 0, payload, 0, PARAMS_LENGTH);
+        inParallel(chunkCount, index -> {
+            int offset = index * chunkSize;
+            int length = Math.min(chunkSize, plaintext.length - offset);
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key, params, index, index == chunkCount - 1);
+            cipher.doFinal(plaintext, offset, length, payload, PARAMS_LENGTH + offset + index * TAG_LENGTH);
+        });
+        return payload;
+    }
+
+    /**
+     * Decrypts a complete payload that starts at {@code offset} of {@code blob}.
+     */
+    public static byte[] decrypt(byte[] blob, int offset, byte[] blobHeader, SecretKeySpec key) throws IOException {
+        Params params = Params.read(blobHeader, blob, offset);
+        int recordsStart = offset + PARAMS_LENGTH;
+        int recordsLength = blob.length - recordsStart;
+        int recordLength = params.recordLength();
+        int chunkCount = (recordsLength + recordLength - 1) / recordLength;
+        int lastLength = recordsLength - (chunkCount - 1) * recordLength;
+        if (chunkCount == 0 || lastLength < TAG_LENGTH) {
+            throw new IOException("Truncated AES-GCM blob");
+        }
+        byte[] plaintext = new byte[recordsLength - chunkCount * TAG_LENGTH];
+        inParallel(chunkCount, index -> {
+            boolean last = index == chunkCount - 1;
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, key, params, index, last);
+            cipher.doFinal(blob, recordsStart + index * recordLength, last ? lastLength : recordLength,
+                    plaintext, index * params.chunkSize());
+        });
+        return plaintext;
+    }
+
+    /**
+     * Decrypts the record of one chunk, read on its own at {@link Params#recordOffset(long)}.
+     * {@code last} says whether it is the final record of the payload.
+     */
+    public static byte[] decryptChunk(SecretKeySpec key, Params params, long index, byte[] record, boolean last) throws IOException {
+        try {
+            return cipher(Cipher.DECRYPT_MODE, key, params, index, last).doFinal(record);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM chunk " + index + " failed authentication", e);
+        }
+    }
+
+    /**
+     * Writes the parameters to {@code out} and returns a stream that encrypts everything written
+     * to it. Closing the returned stream writes the last record and closes {@code out}.
+     */
+    public static OutputStream encryptingStream(OutputStream out, byte[] blobHeader, SecretKeySpec key, int chunkSize) throws IOException {
+        Params params = Params.create(blobHeader, chunkSize);
+        out.write(params.bytes());
+        return new EncryptingOutputStream(out, key, params);
+    }
+
+    /**
+     * Reads the parameters from {@code in} and returns a stream of the plaintext. Closing it
+     * closes {@code in}.
+     */
+    public static InputStream decryptingStream(InputStream in, byte[] blobHeader, SecretKeySpec key) throws IOException {
+        Params params = Params.read(blobHeader, in.readNBytes(PARAMS_LENGTH), 0);
+        return new DecryptingInputStream(in, key, params);
+    }
+
+    private static Cipher cipher(int mode, SecretKeySpec key, Params params, long index, boolean last) throws GeneralSecurityException {
+        Cipher cipher = CipherPool.get(TRANSFORMATION);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, params.nonce(index, last)));
+        cipher.updateAAD(params.associatedData);
+        return cipher;
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int index) throws GeneralSecurityException;
+    }
+
+    private static void inParallel(int count, ChunkTask task) throws IOException {
+        try {
+            IntStream.range(0, count).parallel().forEach(index -> {
+                try {
+                    task.run(index);
+                } catch (GeneralSecurityException e) {
+                    throw new UncheckedIOException(new IOException("AES-GCM chunk " + index + " failed: " + e.getMessage(), e));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final SecretKeySpec key;
+        private final Params params;
+        private final byte[][] chunks = new byte[BATCH_CHUNKS][];
+        private int filled;
+        private int position;
+        private long nextIndex;
+        private boolean closed;
+
+        EncryptingOutputStream(OutputStream out, SecretKeySpec key, Params params) {
+            this.out = out;
+            this.key = key;
+            this.params = params;
+            this.chunks[0] = new byte[params.chunkSize()];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (position == params.chunkSize()) {
+                    // Only start a new chunk once more data arrives, so the last chunk is known on close
+                    if (++filled == BATCH_CHUNKS) {
+                        writeBatch(filled, false);
+                        filled = 0;
+                    }
+                    if (chunks[filled] == null) {
+                        chunks[filled] = new byte[params.chunkSize()];
+                    }
+                    position = 0;
+                }
+                int n = Math.min(len, params.chunkSize() - position);
+                System.arraycopy(b, off, chunks[filled], position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void writeBatch(int count, boolean endsWithLast) throws IOException {
+            byte[][] records = new byte[count][];
+            long firstIndex = nextIndex;
+            int lastLength = position;
+            inParallel(count, i -> {
+                boolean last = endsWithLast && i == count - 1;
+                Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key, params, firstIndex + i, last);
+                records[i] = cipher.doFinal(chunks[i], 0, last ? lastLength : params.chunkSize());
+            });
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            nextIndex += count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeBatch(filled + 1, true);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final SecretKeySpec key;
+        private final Params params;
+        private final byte[][] records = new byte[BATCH_CHUNKS][];
+        private byte[] next;
+        private long nextIndex;
+        private byte[][] plaintext = new byte[0][];
+        private int chunk;
+        private int position;
+
+        DecryptingInputStream(InputStream in, SecretKeySpec key, Params params) throws IOException {
+            this.in = in;
+            this.key = key;
+            this.params = params;
+            this.next = readRecord();
+            if (next == null) {
+                throw new IOException("Truncated AES-GCM blob");
+            }
+        }
+
+        private byte[] readRecord() throws IOException {
+            byte[] record = in.readNBytes(params.recordLength());
+            if (record.length == 0) {
+                return null;
+            }
+            if (record.length < TAG_LENGTH) {
+                throw new IOException("Truncated AES-GCM blob");
+            }
+            return record;
+        }
+
+        // Reads one record past the batch, so the last record of the blob is known when it is decrypted
+        private boolean fill() throws IOException {
+            int count = 0;
+            while (count < BATCH_CHUNKS && next != null) {
+                records[count++] = next;
+                next = readRecord();
+            }
+            if (count == 0) {
+                return false;
+            }
+            byte[][] decrypted = new byte[count][];
+            long firstIndex = nextIndex;
+            int batchSize = count;
+            inParallel(count, i -> {
+                boolean last = next == null && i == batchSize - 1;
+                decrypted[i] = cipher(Cipher.DECRYPT_MODE, key, params, firstIndex + i, last).doFinal(records[i]);
+            });
+            nextIndex += count;
+            plaintext = decrypted;
+            chunk = 0;
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (chunk == plaintext.length || position == plaintext[chunk].length) {
+                if (chunk < plaintext.length) {
+                    chunk++;
+                    position = 0;
+                    continue;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, plaintext[chunk].length - position);
+            System.arraycopy(plaintext[chunk], position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
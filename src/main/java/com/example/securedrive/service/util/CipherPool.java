@@ -0,0 +1,34 @@
+package com.example.securedrive.service.util;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread {@link Cipher} instances, one per transformation.
+ *
+ * {@link Cipher#getInstance} resolves the provider on every call, which shows up when thousands
+ * of chunks are encrypted or decrypted concurrently. A pooled instance must be initialized
+ * before every use, used only within the call that obtained it and never handed to another
+ * thread or wrapped in a stream that outlives that call; stream ciphers should keep using their
+ * own instances. Reusing an instance also lets the provider skip the key schedule when it is
+ * re-initialized with the same key.
+ */
+public final class CipherPool {
+
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+
+    private CipherPool() {
+    }
+
+    public static Cipher get(String transformation) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.securedrive.service.util;
+
+/**
+ * Hashes of an upload: the SHA-256 kept for integrity and, when tree-hash dedup is enabled, the
+ * {@link TreeHash} duplicates are found by. Either may be null while it is not computed yet.
+ */
+public record ContentHash(String sha256, String treeHash) {
+
+    public static final ContentHash NONE = new ContentHash(null, null);
+
+    /**
+     * Returns these hashes with the missing ones taken from {@code other}.
+     */
+    public ContentHash or(ContentHash other) {
+        return new ContentHash(sha256 != null ? sha256 : other.sha256(), treeHash != null ? treeHash : other.treeHash());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.securedrive.service.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Data keys for envelope encryption. Every {@link BlobFormatUtil.BlobCipher#AES_GCM_ENVELOPE}
+ * blob is encrypted under its own random AES-256 data key, which is stored in front of the
+ * payload wrapped under the user's key:
+ *
+ * <pre>
+ * offset 0   12 bytes  random nonce
+ * offset 12  32 bytes  data key encrypted with AES-GCM under the user's key
+ * offset 44  16 bytes  tag, with the blob header as associated data
+ * </pre>
+ *
+ * The user's key only ever encrypts data keys, so changing it means rewrapping these 60 bytes
+ * per blob with {@link #rewrap} rather than decrypting and re-encrypting the payloads.
+ */
+public final class DataKeyUtil {
+
+    public static final int DATA_KEY_LENGTH = 32;
+    public static final int WRAPPED_KEY_LENGTH = 12 + DATA_KEY_LENGTH + 16;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private DataKeyUtil() {
+    }
+
+    public static byte[] generate() {
+        byte[] dataKey = new byte[DATA_KEY_LENGTH];
+        RANDOM.nextBytes(dataKey);
+        return dataKey;
+    }
+
+    public static byte[] wrap(byte[] dataKey, SecretKeySpec wrappingKey, byte[] associatedData) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        byte[] wrapped = Arrays.copyOf(nonce, WRAPPED_KEY_LENGTH);
+        try {
+            Cipher cipher = CipherPool.get(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_BITS, wrapped, 0, NONCE_LENGTH));
+            cipher.updateAAD(associatedData);
+            cipher.doFinal(dataKey, 0, dataKey.length, wrapped, NONCE_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Data key wrapping failed", e);
+        }
+        return wrapped;
+    }
+
+    /**
+     * Returns the data key wrapped at {@code offset} of {@code blob}. Fails if the wrapping key is
+     * wrong or the wrapped key or associated data were changed.
+     */
+    public static byte[] unwrap(byte[] blob, int offset, SecretKeySpec wrappingKey, byte[] associatedData) throws IOException {
+        if (blob.length - offset < WRAPPED_KEY_LENGTH) {
+            throw new IOException("Truncated wrapped data key");
+        }
+        try {
+            Cipher cipher = CipherPool.get(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_BITS, blob, offset, NONCE_LENGTH));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(blob, offset + NONCE_LENGTH, WRAPPED_KEY_LENGTH - NONCE_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Data key could not be unwrapped; wrong key or tampered blob", e);
+        }
+    }
+
+    /**
+     * Rewraps the data key at {@code offset} of {@code blob} from {@code oldKey} to {@code newKey}
+     * in place.
+     */
+    public static void rewrap(byte[] blob, int offset, SecretKeySpec oldKey, SecretKeySpec newKey, byte[] associatedData) throws IOException {
+        byte[] dataKey = unwrap(blob, offset, oldKey, associatedData);
+        try {
+            System.arraycopy(wrap(dataKey, newKey, associatedData), 0, blob, offset, WRAPPED_KEY_LENGTH);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    public static SecretKeySpec keySpec(byte[] dataKey) {
+        return new SecretKeySpec(dataKey, "AES");
+    }
+}
@@ -1,55 +1,126 @@
 package com.example.securedrive.service.util;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.CRC32;
 
 
+/**
+ * Line deltas for text versions.
+ *
+ * <pre>
+ * {@literal @}D1 &lt;old line count&gt; &lt;CRC32 of old text, hex&gt;
+ * {@literal @@} &lt;old start&gt; &lt;deleted lines&gt; &lt;inserted lines&gt;
+ * &lt;inserted lines, one per line&gt;
+ * ...
+ * </pre>
+ *
+ * Hunks come from {@link LineDiff} in ascending order. Lines are split on {@code \n} only and
+ * joined back the same way, so the new text is rebuilt exactly, line endings included. Both
+ * directions work on {@link TextLines} offsets into the inputs rather than on split strings.
+ * Deltas written before this format are lists of {@code A:line:content} /
+ * {@code R:line:content} commands and are still applied by {@link #applyDelta(String, String)}.
+ */
 public class DeltaUtil {
 
+    private static final String HEADER = "@D1";
+    private static final String HUNK_PREFIX = "@@ ";
+    private static final int CRC_BUFFER_SIZE = 8 * 1024;
+
 
     private static String[] splitLines(String data) {
         if (data == null) {
             throw new IllegalArgumentException("Data cannot be null");
         }
-        String normalized = data.replaceAll("\\r?\\n", "\n").trim();
+        String normalized = data.replace("\r\n", "\n").trim();
         return normalized.split("\n");
     }
 
 
-
     public static String calculateDelta(String oldData, String newData) {
-        String[] oldLines = splitLines(oldData);
-        String[] newLines = splitLines(newData);
-
-        List<String> delta = new ArrayList<>();
-        int oldIndex = 0, newIndex = 0;
-        int lineNumber = 0;
-
-        while (oldIndex < oldLines.length || newIndex < newLines.length) {
-            if (oldIndex >= oldLines.length) {
-                delta.add("A:" + lineNumber + ":" + newLines[newIndex]);
-                newIndex++;
-                lineNumber++;
-            } else if (newIndex >= newLines.length) {
-                delta.add("R:" + lineNumber + ":" + oldLines[oldIndex]);
-                oldIndex++;
-            } else if (!oldLines[oldIndex].equals(newLines[newIndex])) {
-                delta.add("A:" + lineNumber + ":" + newLines[newIndex]);
-                delta.add("R:" + lineNumber + ":" + oldLines[oldIndex]);
-                oldIndex++;
-                newIndex++;
-                lineNumber++;
-            } else {
-                oldIndex++;
-                newIndex++;
-                lineNumber++;
-            }
-        }
-        return String.join("\n", delta);
+        if (oldData == null || newData == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        TextLines oldLines = TextLines.of(oldData);
+        TextLines newLines = TextLines.of(newData);
+
+        StringBuilder delta = new StringBuilder();
+        delta.append(HEADER).append(' ').append(oldLines.count()).append(' ').append(Long.toHexString(crc32(oldData)));
+        for (LineDiff.Hunk hunk : LineDiff.diff(oldLines, newLines)) {
+            delta.append('\n').append(HUNK_PREFIX)
+                    .append(hunk.oldStart()).append(' ')
+                    .append(hunk.oldEnd() - hunk.oldStart()).append(' ')
+                    .append(hunk.newEnd() - hunk.newStart());
+            if (hunk.newStart() < hunk.newEnd()) {
+                delta.append('\n');
+                newLines.appendTo(delta, hunk.newStart(), hunk.newEnd());
+            }
+        }
+        return delta.toString();
     }
 
 
     public static String applyDelta(String oldData, String delta) {
+        if (delta != null && delta.startsWith(HEADER + " ")) {
+            return applyHunks(oldData, delta);
+        }
+        return applyLegacyDelta(oldData, delta);
+    }
+
+    /**
+     * Applies a hunk delta in one pass over {@code delta}: numbers are parsed in place and
+     * unchanged and inserted lines are appended as ranges of the two inputs.
+     */
+    private static String applyHunks(String oldData, CharSequence delta) {
+        if (oldData == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        TextLines oldLines = TextLines.of(oldData);
+        DeltaReader reader = new DeltaReader(delta, HEADER.length() + 1);
+
+        int expectedLines = reader.readInt(' ');
+        long expectedCrc = reader.readHex();
+        if (expectedLines != oldLines.count() || expectedCrc != crc32(oldData)) {
+            throw new IllegalStateException("Delta and data mismatch: delta was computed against different content");
+        }
+
+        LineJoiner result = new LineJoiner(oldData.length() + delta.length());
+        int oldIndex = 0;
+        while (reader.hasLine()) {
+            int hunkStart = reader.position();
+            if (!reader.skipPrefix(HUNK_PREFIX)) {
+                throw new IllegalArgumentException("Invalid delta format " + reader.lineAt(hunkStart));
+            }
+            int oldStart = reader.readInt(' ');
+            int deleted = reader.readInt(' ');
+            int inserted = reader.readInt('\n');
+            if (oldStart < oldIndex || deleted < 0 || inserted < 0 || oldStart + deleted > oldLines.count()) {
+                throw new IllegalStateException("Hunk out of range: " + reader.lineAt(hunkStart));
+            }
+
+            result.appendLines(oldLines, oldIndex, oldStart);
+            oldIndex = oldStart + deleted;
+            if (inserted > 0) {
+                int insertStart = reader.position();
+                int insertEnd = reader.skipLines(inserted);
+                if (insertEnd < 0) {
+                    throw new IllegalStateException("Hunk out of range: " + reader.lineAt(hunkStart));
+                }
+                result.append(delta, insertStart, insertEnd);
+            }
+        }
+        result.appendLines(oldLines, oldIndex, oldLines.count());
+
+        return result.toString();
+    }
+
+    private static String applyLegacyDelta(String oldData, String delta) {
         String[] oldLines = splitLines(oldData);
         String[] deltaLines = splitLines(delta);
 
@@ -107,7 +178,160 @@ public class DeltaUtil {
         return String.join("\n", resultLines);
     }
 
+    /**
+     * CRC32 of the UTF-8 encoding of {@code data}, encoded through a small buffer instead of
+     * into one array the size of the document. Malformed surrogates are replaced the way
+     * {@link String#getBytes(java.nio.charset.Charset)} replaces them, so checksums of existing
+     * deltas still match.
+     */
+    private static long crc32(CharSequence data) {
+        CRC32 crc = new CRC32();
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(data);
+        ByteBuffer out = ByteBuffer.allocate(CRC_BUFFER_SIZE);
+        CoderResult result;
+        do {
+            result = encoder.encode(in, out, true);
+            drain(out, crc);
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(out);
+            drain(out, crc);
+        } while (result.isOverflow());
+        return crc.getValue();
+    }
+
+    private static void drain(ByteBuffer out, CRC32 crc) {
+        out.flip();
+        crc.update(out);
+        out.clear();
+    }
 
+    /** Output of a hunk delta: runs of lines joined by {@code \n}. */
+    private static final class LineJoiner {
+        private final StringBuilder out;
+        private boolean empty = true;
 
+        LineJoiner(int capacity) {
+            out = new StringBuilder(capacity);
+        }
 
+        void appendLines(TextLines lines, int from, int to) {
+            if (from < to) {
+                separate();
+                lines.appendTo(out, from, to);
+            }
+        }
+
+        void append(CharSequence text, int start, int end) {
+            separate();
+            out.append(text, start, end);
+        }
+
+        private void separate() {
+            if (!empty) {
+                out.append('\n');
+            }
+            empty = false;
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+
+    /**
+     * Cursor over a hunk delta. A position one past the end of the text means no line is left,
+     * so a trailing {@code \n} still leaves one (empty) line to read, as with {@code split("\n", -1)}.
+     */
+    private static final class DeltaReader {
+        private final CharSequence text;
+        private int pos;
+
+        DeltaReader(CharSequence text, int pos) {
+            this.text = text;
+            this.pos = pos;
+        }
+
+        int position() {
+            return pos;
+        }
+
+        boolean hasLine() {
+            return pos <= text.length();
+        }
+
+        boolean skipPrefix(String prefix) {
+            if (pos + prefix.length() > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (text.charAt(pos + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            pos += prefix.length();
+            return true;
+        }
+
+        /** Reads a decimal number ending at {@code terminator}, or at the line end for {@code \n}. */
+        int readInt(char terminator) {
+            int start = pos;
+            int end = fieldEnd(terminator);
+            try {
+                return Integer.parseInt(text, start, end, 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid delta format " + lineAt(start), e);
+            }
+        }
+
+        long readHex() {
+            int start = pos;
+            int end = fieldEnd('\n');
+            try {
+                return Long.parseLong(text, start, end, 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid delta header " + lineAt(0), e);
+            }
+        }
+
+        private int fieldEnd(char terminator) {
+            int end = pos;
+            while (end < text.length() && text.charAt(end) != terminator && text.charAt(end) != '\n') {
+                end++;
+            }
+            boolean terminated = end < text.length() ? text.charAt(end) == terminator : terminator == '\n';
+            if (!terminated) {
+                throw new IllegalArgumentException("Invalid delta format " + lineAt(pos));
+            }
+            pos = end + 1;
+            return end;
+        }
+
+        /** Skips {@code lines} lines and returns the end of the last one, or -1 if the text ends first. */
+        int skipLines(int lines) {
+            int end = -1;
+            for (int i = 0; i < lines; i++) {
+                if (!hasLine()) {
+                    return -1;
+                }
+                end = lineEnd(pos);
+                pos = end + 1;
+            }
+            return end;
+        }
+
+        String lineAt(int start) {
+            int from = Math.min(start, text.length());
+            return text.subSequence(from, lineEnd(from)).toString();
+        }
+
+        private int lineEnd(int from) {
+            int newline = TextLines.indexOfNewline(text, from);
+            return newline < 0 ? text.length() : newline;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.example.securedrive.service.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pool of off-heap buffers used to hold intermediate versions while a delta chain is applied,
+ * so large reconstructions neither grow the heap nor pay for a fresh direct allocation every
+ * time. At most {@code maxPooledBytes} of idle buffers are kept; anything beyond that is left
+ * to the garbage collector.
+ */
+public class DirectBufferPool {
+
+    private final long maxPooledBytes;
+    private final List<ByteBuffer> idle = new ArrayList<>();
+    private long idleBytes;
+
+    public DirectBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * Returns a buffer with position 0 and limit {@code size}. Its contents are undefined, so
+     * callers must only read bytes they have written.
+     */
+    public ByteBuffer acquire(int size) {
+        synchronized (this) {
+            ByteBuffer best = null;
+            for (ByteBuffer candidate : idle) {
+                if (candidate.capacity() >= size && (best == null || candidate.capacity() < best.capacity())) {
+                    best = candidate;
+                }
+            }
+            if (best != null) {
+                idle.remove(best);
+                idleBytes -= best.capacity();
+                best.clear().limit(size);
+                return best;
+            }
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        // Prefer keeping large buffers: drop smaller idle ones to make room
+        Iterator<ByteBuffer> iterator = idle.iterator();
+        while (idleBytes + buffer.capacity() > maxPooledBytes && iterator.hasNext()) {
+            ByteBuffer smaller = iterator.next();
+            if (smaller.capacity() < buffer.capacity()) {
+                iterator.remove();
+                idleBytes -= smaller.capacity();
+            }
+        }
+        if (idleBytes + buffer.capacity() <= maxPooledBytes) {
+            idle.add(buffer);
+            idleBytes += buffer.capacity();
+        }
+    }
+}
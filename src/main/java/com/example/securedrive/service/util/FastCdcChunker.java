@@ -0,0 +1,117 @@
+package com.example.securedrive.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content-defined chunking (FastCDC). A gear hash is rolled over the input and a chunk ends
+ * where its top bits are all zero, so boundaries follow the content: inserting bytes only
+ * changes the chunks around the edit instead of shifting every later block. Normalized
+ * chunking uses a stricter mask before the average size and a looser one after it, which keeps
+ * chunk sizes close to the average.
+ *
+ * Boundaries must stay stable across releases, otherwise stored chunks stop deduplicating, so
+ * the gear table is generated from a fixed seed with an inlined SplitMix64.
+ */
+public class FastCdcChunker {
+
+    private static final long[] GEAR = gearTable(0x5EC0_D21E_C4C5_2024L);
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskS;
+    private final long maskL;
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(byte[] data, int offset, int length) throws IOException;
+    }
+
+    public FastCdcChunker(int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize || Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= avg <= max with avg a power of two");
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        this.maskS = topBits(Math.min(bits + 2, 63));
+        this.maskL = topBits(Math.max(bits - 2, 1));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Length of the chunk starting at {@code offset}, looking at no more than {@code length}
+     * bytes. Returns {@code length} when no boundary is found before it.
+     */
+    public int nextBoundary(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, avgSize);
+        long fingerprint = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskS) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskL) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Reads {@code in} to the end and hands each chunk to {@code consumer}. The array passed to
+     * the consumer is reused for the next chunk. The stream is not closed.
+     */
+    public void split(InputStream in, ChunkConsumer consumer) throws IOException {
+        byte[] buffer = new byte[maxSize];
+        int filled = 0;
+        boolean eof = false;
+        while (true) {
+            while (!eof && filled < buffer.length) {
+                int read = in.read(buffer, filled, buffer.length - filled);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    filled += read;
+                }
+            }
+            if (filled == 0) {
+                return;
+            }
+            int chunkLength = nextBoundary(buffer, 0, filled);
+            consumer.accept(buffer, 0, chunkLength);
+            System.arraycopy(buffer, chunkLength, buffer, 0, filled - chunkLength);
+            filled -= chunkLength;
+        }
+    }
+
+    private static long topBits(int count) {
+        return -1L << (64 - count);
+    }
+
+    private static long[] gearTable(long seed) {
+        long[] table = new long[256];
+        long state = seed;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+}
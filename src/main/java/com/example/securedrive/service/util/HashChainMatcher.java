@@ -0,0 +1,84 @@
+package com.example.securedrive.service.util;
+
+import java.util.Arrays;
+
+/**
+ * Cheaper alternative to {@link SuffixAutomaton} for large originals. Every position of the
+ * original is chained by a hash of its first {@link #MIN_MATCH} bytes, zlib style, and lookups
+ * walk at most {@link #MAX_CHAIN} candidates, newest first. Matches are not guaranteed to be the
+ * longest, and runs shorter than {@link #MIN_MATCH} bytes are never reported.
+ */
+final class HashChainMatcher implements LongestMatchFinder {
+
+    static final int MIN_MATCH = 5;
+    private static final int MAX_CHAIN = 64;
+    private static final int MIN_HASH_BITS = 10;
+    private static final int MAX_HASH_BITS = 20;
+
+    private final byte[] original;
+    private final int[] head;
+    private final int[] prev;
+    private final int hashShift;
+
+    HashChainMatcher(byte[] original) {
+        this.original = original;
+        int bits = hashBits(original.length);
+        this.hashShift = 32 - bits;
+        this.head = new int[1 << bits];
+        Arrays.fill(head, -1);
+        int positions = Math.max(original.length - MIN_MATCH + 1, 0);
+        this.prev = new int[positions];
+        for (int i = 0; i < positions; i++) {
+            int h = hash(original, i);
+            prev[i] = head[h];
+            head[h] = i;
+        }
+    }
+
+    static long estimateBytes(int length) {
+        return (long) Integer.BYTES * (length + (1 << hashBits(length)));
+    }
+
+    @Override
+    public SuffixAutomaton.MatchResult findLongestMatch(byte[] data, int pos) {
+        if (pos < 0 || pos + MIN_MATCH > data.length) {
+            return new SuffixAutomaton.MatchResult(-1, 0);
+        }
+
+        int bestOffset = -1;
+        int bestLength = 0;
+        int remaining = data.length - pos;
+        int chain = 0;
+        for (int candidate = head[hash(data, pos)]; candidate >= 0 && chain < MAX_CHAIN; candidate = prev[candidate], chain++) {
+            int limit = Math.min(remaining, original.length - candidate);
+            int mismatch = Arrays.mismatch(original, candidate, candidate + limit, data, pos, pos + limit);
+            int length = mismatch < 0 ? limit : mismatch;
+            if (length > bestLength) {
+                bestLength = length;
+                bestOffset = candidate;
+                if (length == remaining) {
+                    break;
+                }
+            }
+        }
+
+        if (bestLength < MIN_MATCH) {
+            return new SuffixAutomaton.MatchResult(-1, 0);
+        }
+        return new SuffixAutomaton.MatchResult(bestOffset, bestLength);
+    }
+
+    private int hash(byte[] data, int pos) {
+        int key = (data[pos] & 0xFF)
+                | (data[pos + 1] & 0xFF) << 8
+                | (data[pos + 2] & 0xFF) << 16
+                | (data[pos + 3] & 0xFF) << 24;
+        key ^= (data[pos + 4] & 0xFF) * 0x9E3779B1;
+        return (key * 0x9E3779B1) >>> hashShift;
+    }
+
+    private static int hashBits(int length) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1));
+        return Math.max(MIN_HASH_BITS, Math.min(MAX_HASH_BITS, bits));
+    }
+}
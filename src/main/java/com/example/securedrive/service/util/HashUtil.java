@@ -1,23 +1,56 @@
 package com.example.securedrive.service.util;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 public class HashUtil {
 
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final HexFormat HEX = HexFormat.of();
+
+    // One digest per thread for whole-array hashes, which never call out while it is in use
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(HashUtil::newDigest);
+
     public static String calculateHash(byte[] data) {
+        return toHex(pooledDigest().digest(data));
+    }
+
+    /**
+     * Computes the SHA-256 hash of {@code in} using a fixed-size buffer, so the
+     * content never has to be held in memory. The stream is not closed.
+     */
+    public static String calculateHash(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static MessageDigest newDigest() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data);
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("To be deleted: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Returns this thread's SHA-256 digest, reset. It must be finished with {@code digest()}
+     * before anything else on the thread can hash with it.
+     */
+    static MessageDigest pooledDigest() {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        return digest;
+    }
+
+    public static String toHex(byte[] hash) {
+        return HEX.formatHex(hash);
+    }
 }
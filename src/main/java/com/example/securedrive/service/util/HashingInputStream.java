@@ -0,0 +1,81 @@
+package com.example.securedrive.service.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * Hashes everything read through it with SHA-256, {@link TreeHash} or both, so content is hashed
+ * in the same pass that stores it. {@link #contentHash()} is available once the stream has been
+ * read to the end.
+ */
+public class HashingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final MessageDigest sha256;
+    private final TreeHash.Hasher treeHash;
+    private boolean eof;
+    private ContentHash result;
+
+    public HashingInputStream(InputStream in, boolean sha256, boolean treeHash) {
+        this.in = in;
+        this.sha256 = sha256 ? HashUtil.newDigest() : null;
+        this.treeHash = treeHash ? TreeHash.newHasher() : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            eof = true;
+        } else {
+            if (sha256 != null) {
+                sha256.update((byte) b);
+            }
+            if (treeHash != null) {
+                treeHash.update((byte) b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read == -1) {
+            eof = true;
+        } else if (read > 0) {
+            if (sha256 != null) {
+                sha256.update(b, off, read);
+            }
+            if (treeHash != null) {
+                treeHash.update(b, off, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Returns the hashes of the content read, with null for the ones not computed.
+     */
+    public ContentHash contentHash() {
+        if (!eof) {
+            throw new IllegalStateException("Stream has not been read to the end");
+        }
+        if (result == null) {
+            result = new ContentHash(sha256 != null ? HashUtil.toHex(sha256.digest()) : null,
+                    treeHash != null ? HashUtil.toHex(treeHash.digest()) : null);
+        }
+        return result;
+    }
+}
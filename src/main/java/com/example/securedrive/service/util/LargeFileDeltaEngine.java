@@ -0,0 +1,197 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.BinaryDeltaUtil.CommandType;
+import com.example.securedrive.service.util.BinaryDeltaUtil.DeltaCommand;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Block-level delta engine for files that do not fit in a {@code byte[]}. Both inputs are
+ * memory-mapped and addressed with {@code long} positions, and deltas are produced and consumed
+ * as {@link BinaryDeltaCodec} streams, so heap use is bounded by the literal chunk size and the
+ * block index (8 bytes per block) regardless of file size.
+ *
+ * Unlike {@link BinaryDeltaUtil#calculateDelta(byte[], byte[])} there is no match-index
+ * refinement of literal regions; matching is at block granularity only.
+ */
+public class LargeFileDeltaEngine {
+
+    // Largest content the in-memory paths can hold in one array; the large-file threshold is capped to it
+    public static final long MAX_IN_MEMORY_BYTES = Integer.MAX_VALUE - 8;
+
+    private static final int LITERAL_CHUNK_SIZE = 1024 * 1024;
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final MappedFile original;
+    private final MappedFile modified;
+    private final BinaryDeltaCodec.Writer writer;
+    private final byte[] literalBuffer = new byte[LITERAL_CHUNK_SIZE];
+
+    // COPY commands for adjacent blocks are coalesced before they are written
+    private long pendingCopyOffset = -1;
+    private int pendingCopyLength;
+
+    private LargeFileDeltaEngine(MappedFile original, MappedFile modified, BinaryDeltaCodec.Writer writer) {
+        this.original = original;
+        this.modified = modified;
+        this.writer = writer;
+    }
+
+    /**
+     * Writes a compact delta that turns {@code originalPath} into {@code modifiedPath} to
+     * {@code deltaOut}. The stream is flushed but left open.
+     */
+    public static void diff(Path originalPath, Path modifiedPath, OutputStream deltaOut) throws IOException {
+        try (MappedFile original = MappedFile.open(originalPath);
+             MappedFile modified = MappedFile.open(modifiedPath)) {
+            new LargeFileDeltaEngine(original, modified, new BinaryDeltaCodec.Writer(deltaOut)).run();
+        }
+    }
+
+    /**
+     * Applies a delta read from {@code delta} to {@code originalPath} and writes the result to
+     * {@code out}. Legacy JSON deltas are accepted as well. Returns the number of bytes written.
+     */
+    public static long apply(Path originalPath, InputStream delta, OutputStream out) throws IOException {
+        try (MappedFile original = MappedFile.open(originalPath)) {
+            CommandSource commands = openCommands(delta);
+            byte[] transfer = new byte[TRANSFER_BUFFER_SIZE];
+            long written = 0;
+            for (DeltaCommand cmd = commands.next(); cmd != null; cmd = commands.next()) {
+                if (cmd.type() == CommandType.COPY) {
+                    if (cmd.offset() < 0 || cmd.offset() + cmd.length() > original.size()) {
+                        throw new IllegalArgumentException("Invalid COPY command: " + cmd);
+                    }
+                    original.writeTo(cmd.offset(), cmd.length(), out, transfer);
+                } else {
+                    if (cmd.data() == null || cmd.data().length != cmd.length()) {
+                        throw new IllegalArgumentException("Invalid LITERAL command: " + cmd);
+                    }
+                    out.write(cmd.data(), 0, cmd.length());
+                }
+                written += cmd.length();
+            }
+            return written;
+        }
+    }
+
+    private void run() throws IOException {
+        int blockSize = BinaryDeltaUtil.determineBlockSize(original.size());
+        long numBlocks = (original.size() + blockSize - 1) / blockSize;
+        if (numBlocks > Integer.MAX_VALUE) {
+            throw new IOException("File too large to index: " + original.size() + " bytes");
+        }
+        BlockIndex index = BlockIndex.build((int) numBlocks, blockSize, block -> {
+            long pos = (long) block * blockSize;
+            return checksum(original, pos, (int) Math.min(blockSize, original.size() - pos));
+        });
+
+        long modifiedSize = modified.size();
+        long mPos = 0;
+        long literalStart = 0;
+        RollingChecksum window = new RollingChecksum();
+        fill(window, modified, 0, (int) Math.min(blockSize, modifiedSize));
+
+        while (mPos < modifiedSize) {
+            int size = (int) Math.min(blockSize, modifiedSize - mPos);
+
+            long matchedOffset = -1;
+            for (int c = index.firstCandidate(window.value()); c >= 0; c = index.nextCandidate(c)) {
+                long cPos = index.offsetAt(c);
+                if (cPos + size <= original.size() && original.rangeEquals(cPos, modified, mPos, size)) {
+                    matchedOffset = cPos;
+                    break;
+                }
+            }
+
+            if (matchedOffset >= 0) {
+                writeLiteral(literalStart, mPos - literalStart);
+                copy(matchedOffset, size);
+                mPos += size;
+                literalStart = mPos;
+                if (mPos < modifiedSize) {
+                    fill(window, modified, mPos, (int) Math.min(blockSize, modifiedSize - mPos));
+                }
+            } else {
+                window.remove(modified.get(mPos));
+                if (mPos + size < modifiedSize) {
+                    window.add(modified.get(mPos + size));
+                }
+                mPos++;
+                // Keep unmatched runs bounded so long literal regions never pile up in memory
+                if (mPos - literalStart == LITERAL_CHUNK_SIZE) {
+                    writeLiteral(literalStart, LITERAL_CHUNK_SIZE);
+                    literalStart = mPos;
+                }
+            }
+        }
+        writeLiteral(literalStart, modifiedSize - literalStart);
+        flushCopy();
+        writer.finish();
+    }
+
+    private void copy(long offset, int length) throws IOException {
+        if (pendingCopyOffset >= 0 && pendingCopyOffset + pendingCopyLength == offset
+                && (long) pendingCopyLength + length <= Integer.MAX_VALUE) {
+            pendingCopyLength += length;
+            return;
+        }
+        flushCopy();
+        pendingCopyOffset = offset;
+        pendingCopyLength = length;
+    }
+
+    private void flushCopy() throws IOException {
+        if (pendingCopyOffset >= 0) {
+            writer.copy(pendingCopyOffset, pendingCopyLength);
+            pendingCopyOffset = -1;
+            pendingCopyLength = 0;
+        }
+    }
+
+    private void writeLiteral(long start, long length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        flushCopy();
+        modified.get(start, literalBuffer, 0, (int) length);
+        writer.literal(literalBuffer, 0, (int) length);
+    }
+
+    private static long checksum(MappedFile file, long pos, int length) {
+        RollingChecksum checksum = new RollingChecksum();
+        fill(checksum, file, pos, length);
+        return checksum.value();
+    }
+
+    private static void fill(RollingChecksum checksum, MappedFile file, long pos, int length) {
+        checksum.clear();
+        for (int i = 0; i < length; i++) {
+            checksum.add(file.get(pos + i));
+        }
+    }
+
+    private interface CommandSource {
+        DeltaCommand next() throws IOException;
+    }
+
+    private static CommandSource openCommands(InputStream delta) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(delta, TRANSFER_BUFFER_SIZE);
+        in.mark(8);
+        byte[] head = in.readNBytes(8);
+        in.reset();
+        if (BinaryDeltaCodec.isCompact(head)) {
+            return new BinaryDeltaCodec.Reader(in)::next;
+        }
+        // Legacy JSON deltas predate large-file support and are small enough to parse whole
+        List<DeltaCommand> commands = BinaryDeltaCodec.decode(in.readAllBytes());
+        Iterator<DeltaCommand> iterator = commands.iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+}
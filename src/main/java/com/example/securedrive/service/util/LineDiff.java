@@ -0,0 +1,256 @@
+package com.example.securedrive.service.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal line diff over interned lines. Common prefix and suffix are trimmed, the rest is
+ * diffed with Myers' O((N+M)D) algorithm. Myers gives up once the edit distance passes a cap
+ * derived from {@link #WORK_BUDGET}; the range is then split at lines that occur exactly once
+ * on each side (patience anchors) and each gap is diffed on its own. A gap without anchors
+ * that is still too expensive is replaced wholesale, so running time stays bounded on
+ * pathological inputs at the cost of a larger, but still correct, delta.
+ */
+final class LineDiff {
+
+    /** One replaced range: old lines [oldStart, oldEnd) become new lines [newStart, newEnd). */
+    record Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+    }
+
+    private static final int MAX_EDIT_COST = 1024;
+    private static final long WORK_BUDGET = 20_000_000L;
+    private static final int MIN_EDIT_COST = 32;
+
+    private final int[] a;
+    private final int[] b;
+    private final List<Hunk> hunks = new ArrayList<>();
+
+    private LineDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    static List<Hunk> diff(TextLines oldLines, TextLines newLines) {
+        LineInterner interner = new LineInterner(oldLines.count() + newLines.count());
+        LineDiff diff = new LineDiff(interner.intern(oldLines), interner.intern(newLines));
+        diff.diffRange(0, oldLines.count(), 0, newLines.count());
+        return diff.hunks;
+    }
+
+    /**
+     * Open-addressing table from line content to a dense id. Slots hold the id of the first
+     * occurrence, whose text is compared only when the line hashes agree.
+     */
+    private static final class LineInterner {
+        private final int[] slots;
+        private final TextLines[] ownerText;
+        private final int[] ownerLine;
+        private int size;
+
+        LineInterner(int maxLines) {
+            int capacity = Integer.highestOneBit(Math.max(16, maxLines) * 2 - 1) << 1;
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            ownerText = new TextLines[maxLines];
+            ownerLine = new int[maxLines];
+        }
+
+        int[] intern(TextLines lines) {
+            int mask = slots.length - 1;
+            int[] ids = new int[lines.count()];
+            for (int line = 0; line < ids.length; line++) {
+                int hash = lines.hash(line);
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (slots[slot] >= 0 && !lines.lineEquals(line, ownerText[slots[slot]], ownerLine[slots[slot]])) {
+                    slot = (slot + 1) & mask;
+                }
+                if (slots[slot] < 0) {
+                    slots[slot] = size;
+                    ownerText[size] = lines;
+                    ownerLine[size] = line;
+                    size++;
+                }
+                ids[line] = slots[slot];
+            }
+            return ids;
+        }
+    }
+
+    private void diffRange(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            addHunk(aLo, aHi, bLo, bHi);
+            return;
+        }
+        long size = (long) (aHi - aLo) + (bHi - bLo);
+        int cap = (int) Math.max(MIN_EDIT_COST, Math.min(MAX_EDIT_COST, WORK_BUDGET / size));
+        if (myers(aLo, aHi, bLo, bHi, cap)) {
+            return;
+        }
+        if (!splitAtAnchors(aLo, aHi, bLo, bHi)) {
+            addHunk(aLo, aHi, bLo, bHi);
+        }
+    }
+
+    /**
+     * Greedy forward Myers with a copy of the frontier per edit step for backtracking, so
+     * memory is O(cap^2). Returns false without emitting anything when the cap is exceeded.
+     */
+    private boolean myers(int aLo, int aHi, int bLo, int bHi, int cap) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int max = Math.min(n + m, cap);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            // Frontier after d - 1 steps, for k in [-d - 1, d + 1]
+            trace.add(Arrays.copyOfRange(v, offset - d - 1, offset + d + 2));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, d, aLo, bLo, n, m);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void backtrack(List<int[]> trace, int edits, int aLo, int bLo, int n, int m) {
+        // Single-line edits, collected from the end: {x, y, 1 = delete a[x] | 0 = insert b[y]}
+        int[][] steps = new int[edits][];
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            int[] frontier = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && frontier[k - 1 + d + 1] < frontier[k + 1 + d + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = frontier[prevK + d + 1];
+            int prevY = prevX - prevK;
+            steps[d - 1] = (prevK == k + 1) ? new int[]{prevX, prevY, 0} : new int[]{prevX, prevY, 1};
+            x = prevX;
+            y = prevY;
+        }
+        for (int[] step : steps) {
+            int ax = aLo + step[0];
+            int by = bLo + step[1];
+            if (step[2] == 1) {
+                addHunk(ax, ax + 1, by, by);
+            } else {
+                addHunk(ax, ax, by, by + 1);
+            }
+        }
+    }
+
+    /**
+     * Patience step: keeps the longest increasing run of lines unique on both sides as
+     * anchors and diffs the gaps between them. Returns false when there is no anchor.
+     */
+    private boolean splitAtAnchors(int aLo, int aHi, int bLo, int bHi) {
+        Map<Integer, int[]> occurrences = new HashMap<>();
+        for (int i = aLo; i < aHi; i++) {
+            int[] entry = occurrences.computeIfAbsent(a[i], key -> new int[]{0, 0, -1, -1});
+            entry[0]++;
+            entry[2] = i;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            int[] entry = occurrences.get(b[j]);
+            if (entry != null) {
+                entry[1]++;
+                entry[3] = j;
+            }
+        }
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = aLo; i < aHi; i++) {
+            int[] entry = occurrences.get(a[i]);
+            if (entry[0] == 1 && entry[1] == 1) {
+                candidates.add(new int[]{i, entry[3]});
+            }
+        }
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        int[][] anchors = longestIncreasingByNewIndex(candidates);
+        int prevA = aLo;
+        int prevB = bLo;
+        for (int[] anchor : anchors) {
+            diffRange(prevA, anchor[0], prevB, anchor[1]);
+            prevA = anchor[0] + 1;
+            prevB = anchor[1] + 1;
+        }
+        diffRange(prevA, aHi, prevB, bHi);
+        return true;
+    }
+
+    private static int[][] longestIncreasingByNewIndex(List<int[]> candidates) {
+        int count = candidates.size();
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int value = candidates.get(i)[1];
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (candidates.get(tails[mid])[1] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        int[][] result = new int[length][];
+        for (int i = length - 1, index = tails[length - 1]; i >= 0; i--, index = previous[index]) {
+            result[i] = candidates.get(index);
+        }
+        return result;
+    }
+
+    private void addHunk(int aLo, int aHi, int bLo, int bHi) {
+        if (aLo == aHi && bLo == bHi) {
+            return;
+        }
+        int last = hunks.size() - 1;
+        if (last >= 0 && hunks.get(last).oldEnd() == aLo && hunks.get(last).newEnd() == bLo) {
+            Hunk previous = hunks.get(last);
+            hunks.set(last, new Hunk(previous.oldStart(), aHi, previous.newStart(), bHi));
+        } else {
+            hunks.add(new Hunk(aLo, aHi, bLo, bHi));
+        }
+    }
+}
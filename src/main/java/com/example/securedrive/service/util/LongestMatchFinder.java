@@ -0,0 +1,10 @@
+package com.example.securedrive.service.util;
+
+/**
+ * Finds the longest run of the indexed original that matches {@code data} starting at
+ * {@code pos}. Used to refine literal regions left by the block-level diff.
+ */
+interface LongestMatchFinder {
+
+    SuffixAutomaton.MatchResult findLongestMatch(byte[] data, int pos);
+}
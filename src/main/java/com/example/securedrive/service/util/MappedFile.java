@@ -0,0 +1,103 @@
+package com.example.securedrive.service.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a file of any size, mapped in 1 GB chunks so positions can be {@code long}.
+ * The mapped pages live outside the heap and are loaded on demand by the OS.
+ */
+final class MappedFile implements Closeable {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private MappedFile(FileChannel channel, MappedByteBuffer[] chunks, long size) {
+        this.channel = channel;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    static MappedFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return new MappedFile(channel, chunks, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].get((int) (pos & CHUNK_MASK));
+    }
+
+    void get(long pos, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            MappedByteBuffer chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+            int index = (int) (pos & CHUNK_MASK);
+            int n = Math.min(length, chunk.limit() - index);
+            chunk.get(index, dst, offset, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Compares {@code length} bytes of this file at {@code pos} with {@code other} at
+     * {@code otherPos}, in place.
+     */
+    boolean rangeEquals(long pos, MappedFile other, long otherPos, int length) {
+        int index = (int) (pos & CHUNK_MASK);
+        int otherIndex = (int) (otherPos & CHUNK_MASK);
+        MappedByteBuffer chunk = chunks[(int) (pos >>> CHUNK_SHIFT)];
+        MappedByteBuffer otherChunk = other.chunks[(int) (otherPos >>> CHUNK_SHIFT)];
+        if (index + length <= chunk.limit() && otherIndex + length <= otherChunk.limit()) {
+            return chunk.slice(index, length).mismatch(otherChunk.slice(otherIndex, length)) < 0;
+        }
+        // The range straddles a chunk boundary on at least one side
+        for (int i = 0; i < length; i++) {
+            if (get(pos + i) != other.get(otherPos + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void writeTo(long pos, long length, OutputStream out, byte[] transfer) throws IOException {
+        while (length > 0) {
+            int n = (int) Math.min(length, transfer.length);
+            get(pos, transfer, 0, n);
+            out.write(transfer, 0, n);
+            pos += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mappings stay valid after the channel is closed and are released by the GC
+        channel.close();
+    }
+}
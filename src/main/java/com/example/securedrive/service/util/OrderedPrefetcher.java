@@ -0,0 +1,102 @@
+package com.example.securedrive.service.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads {@code count} items on an executor and hands them out in index order. At most
+ * {@code depth} loads are started ahead of the consumer, so memory stays bounded while the
+ * latency of independent loads overlaps with each other and with the work done on the items
+ * already returned. A depth of zero loads each item on the calling thread when it is requested.
+ */
+public final class OrderedPrefetcher<T> implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(int index) throws Exception;
+    }
+
+    private final int count;
+    private final int depth;
+    private final Executor executor;
+    private final Loader<T> loader;
+    private final ArrayDeque<CompletableFuture<T>> pending = new ArrayDeque<>();
+    private int nextToStart;
+    private int nextToReturn;
+
+    public OrderedPrefetcher(int count, int depth, Executor executor, Loader<T> loader) {
+        this.count = count;
+        this.depth = depth;
+        this.executor = executor;
+        this.loader = loader;
+        fill();
+    }
+
+    public boolean hasNext() {
+        return nextToReturn < count;
+    }
+
+    /**
+     * Returns the next item, waiting for its load if needed. A failed load is rethrown with its
+     * original exception.
+     */
+    public T next() throws Exception {
+        if (!hasNext()) {
+            throw new IllegalStateException("All " + count + " items have been returned");
+        }
+        int index = nextToReturn++;
+        if (depth <= 0) {
+            return loader.load(index);
+        }
+        CompletableFuture<T> future = pending.removeFirst();
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            // Refill only once the awaited load is done, so no more than depth loads ever run
+            fill();
+        }
+    }
+
+    private void fill() {
+        while (depth > 0 && pending.size() < depth && nextToStart < count) {
+            int index = nextToStart++;
+            pending.addLast(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loader.load(index);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+    }
+
+    private static Exception unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception exception) {
+            return exception;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CancellationException(String.valueOf(cause));
+    }
+
+    /**
+     * Cancels loads that have not been consumed. Loads already running finish in the background
+     * and their results are dropped.
+     */
+    @Override
+    public void close() {
+        pending.forEach(future -> future.cancel(false));
+        pending.clear();
+        nextToStart = count;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.securedrive.service.util;
+
+/**
+ * rsync-style weak checksum over a window of bytes. Sliding the window by one byte is O(1):
+ * {@code a} is the plain byte sum and {@code b} weights each byte by its distance from the
+ * window end, so both can be corrected for the byte leaving and the byte entering.
+ */
+final class RollingChecksum {
+
+    private int a;
+    private int b;
+    private int length;
+
+    static long of(byte[] data, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum();
+        checksum.reset(data, offset, length);
+        return checksum.value();
+    }
+
+    /**
+     * Empties the window; bytes can then be appended one at a time with {@link #add(byte)}.
+     */
+    void clear() {
+        a = 0;
+        b = 0;
+        length = 0;
+    }
+
+    void reset(byte[] data, int offset, int length) {
+        a = 0;
+        b = 0;
+        for (int i = 0; i < length; i++) {
+            a += data[offset + i] & 0xFF;
+            b += a;
+        }
+        this.length = length;
+    }
+
+    /**
+     * Drops the first byte of the window; {@code out} must be that byte.
+     */
+    void remove(byte out) {
+        int x = out & 0xFF;
+        a -= x;
+        b -= length * x;
+        length--;
+    }
+
+    /**
+     * Appends {@code in} to the end of the window.
+     */
+    void add(byte in) {
+        a += in & 0xFF;
+        b += a;
+        length++;
+    }
+
+    long value() {
+        return (a & 0xFFFFL) | ((b & 0xFFFFL) << 16);
+    }
+}
@@ -2,128 +2,145 @@ package com.example.securedrive.service.util;
 
 import lombok.Getter;
 
+import java.util.Arrays;
 
-public class SuffixAutomaton {
 
+/**
+ * Suffix automaton over a byte array, stored as parallel int arrays indexed by state number.
+ * Transitions live in one shared edge pool: each state points at the head of a singly linked
+ * list of (byte, target) edges, so there are no per-state objects or arrays to allocate.
+ */
+public class SuffixAutomaton implements LongestMatchFinder {
 
-    private static class State {
-        int len;
-        int link;
-        int firstPos;
+    // len, link, firstPos and edge head per state; key, target and next per edge
+    private static final int BYTES_PER_STATE = 4 * Integer.BYTES;
+    private static final int BYTES_PER_EDGE = 1 + 2 * Integer.BYTES;
 
+    private final int[] len;
+    private final int[] link;
+    private final int[] firstPos;
+    private final int[] edgeHead;
 
-        private byte[] transKeys;
-        private int[] transValues;
-        private int transSize;
-        State(int len, int link, int firstPos) {
-            this.len = len;
-            this.link = link;
-            this.firstPos = firstPos;
-            this.transKeys = null;
-            this.transValues = null;
-            this.transSize = 0;
-        }
+    private byte[] edgeKey;
+    private int[] edgeTarget;
+    private int[] edgeNext;
+    private int edgeCount;
 
+    private final int maxEdges;
+    private int size;
+    private int last;
 
-        int getNext(int c) {
-            if (transKeys == null) return -1;
-            for (int i = 0; i < transSize; i++) {
-                if ((transKeys[i] & 0xFF) == c) {
-                    return transValues[i];
-                }
-            }
-            return -1;
-        }
 
-        void putTransition(int c, int state) {
-            if (transKeys == null) {
-                transKeys = new byte[2];
-                transValues = new int[2];
-            }
-            for (int i = 0; i < transSize; i++) {
-                if ((transKeys[i] & 0xFF) == c) {
-                    transValues[i] = state;
-                    return;
-                }
-            }
-            if (transSize == transKeys.length) {
-                byte[] newKeys = new byte[transKeys.length * 2];
-                int[] newValues = new int[transValues.length * 2];
-                System.arraycopy(transKeys, 0, newKeys, 0, transKeys.length);
-                System.arraycopy(transValues, 0, newValues, 0, transValues.length);
-                transKeys = newKeys;
-                transValues = newValues;
-            }
-            transKeys[transSize] = (byte) c;
-            transValues[transSize] = state;
-            transSize++;
+    public SuffixAutomaton(byte[] data) {
+        int maxStates = 2 * data.length + 2;
+        len = new int[maxStates];
+        link = new int[maxStates];
+        firstPos = new int[maxStates];
+        edgeHead = new int[maxStates];
+
+        // An automaton over n bytes has at most 3n - 4 transitions; most inputs need far fewer
+        maxEdges = Math.max(3 * data.length, 4);
+        int initialEdges = Math.min(maxEdges, data.length + 16);
+        edgeKey = new byte[initialEdges];
+        edgeTarget = new int[initialEdges];
+        edgeNext = new int[initialEdges];
+
+        newState(0, -1, -1);
+        last = 0;
+
+        for (int i = 0; i < data.length; i++) {
+            extend(data[i], i);
         }
+    }
 
+    /**
+     * Worst-case heap footprint of an automaton over {@code length} bytes, for checking a memory
+     * budget before construction.
+     */
+    public static long estimateBytes(int length) {
+        return (2L * length + 2) * BYTES_PER_STATE + Math.max(3L * length, 4) * BYTES_PER_EDGE;
+    }
 
-        void copyTransitionsFrom(State other) {
-            if (other.transKeys == null) {
-                this.transKeys = null;
-                this.transValues = null;
-                this.transSize = 0;
-            } else {
-                this.transKeys = new byte[other.transSize];
-                this.transValues = new int[other.transSize];
-                System.arraycopy(other.transKeys, 0, this.transKeys, 0, other.transSize);
-                System.arraycopy(other.transValues, 0, this.transValues, 0, other.transSize);
-                this.transSize = other.transSize;
+    private int newState(int length, int suffixLink, int pos) {
+        int state = size++;
+        len[state] = length;
+        link[state] = suffixLink;
+        firstPos[state] = pos;
+        edgeHead[state] = -1;
+        return state;
+    }
+
+    private int getNext(int state, int c) {
+        for (int e = edgeHead[state]; e != -1; e = edgeNext[e]) {
+            if ((edgeKey[e] & 0xFF) == c) {
+                return edgeTarget[e];
             }
         }
+        return -1;
     }
 
-    private final State[] st;
-    private int size;
-    private int last;
-
+    private void putTransition(int state, int c, int target) {
+        for (int e = edgeHead[state]; e != -1; e = edgeNext[e]) {
+            if ((edgeKey[e] & 0xFF) == c) {
+                edgeTarget[e] = target;
+                return;
+            }
+        }
+        addEdge(state, c, target);
+    }
 
-    public SuffixAutomaton(byte[] data) {
-        st = new State[2 * data.length + 2];
-        st[0] = new State(0, -1, -1);
-        size = 1;
-        last = 0;
+    private void addEdge(int state, int c, int target) {
+        if (edgeCount == edgeKey.length) {
+            int capacity = (int) Math.min(maxEdges, edgeKey.length + (edgeKey.length >> 1) + 16L);
+            edgeKey = Arrays.copyOf(edgeKey, capacity);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeNext = Arrays.copyOf(edgeNext, capacity);
+        }
+        int e = edgeCount++;
+        edgeKey[e] = (byte) c;
+        edgeTarget[e] = target;
+        edgeNext[e] = edgeHead[state];
+        edgeHead[state] = e;
+    }
 
-        for (int i = 0; i < data.length; i++) {
-            extend(data[i], i);
+    private void copyTransitions(int from, int to) {
+        for (int e = edgeHead[from]; e != -1; e = edgeNext[e]) {
+            addEdge(to, edgeKey[e] & 0xFF, edgeTarget[e]);
         }
     }
 
 
     private void extend(byte c, int pos) {
         int uc = c & 0xFF;
-        int curr = size++;
-        st[curr] = new State(st[last].len + 1, 0, pos);
+        int curr = newState(len[last] + 1, 0, pos);
 
         int p = last;
-        while (p != -1 && st[p].getNext(uc) == -1) {
-            st[p].putTransition(uc, curr);
-            p = st[p].link;
+        while (p != -1 && getNext(p, uc) == -1) {
+            putTransition(p, uc, curr);
+            p = link[p];
         }
         if (p == -1) {
-            st[curr].link = 0;
+            link[curr] = 0;
         } else {
-            int q = st[p].getNext(uc);
-            if (st[p].len + 1 == st[q].len) {
-                st[curr].link = q;
+            int q = getNext(p, uc);
+            if (len[p] + 1 == len[q]) {
+                link[curr] = q;
             } else {
-                int clone = size++;
-                st[clone] = new State(st[p].len + 1, st[q].link, st[q].firstPos);
-                st[clone].copyTransitionsFrom(st[q]);
-                while (p != -1 && st[p].getNext(uc) == q) {
-                    st[p].putTransition(uc, clone);
-                    p = st[p].link;
+                int clone = newState(len[p] + 1, link[q], firstPos[q]);
+                copyTransitions(q, clone);
+                while (p != -1 && getNext(p, uc) == q) {
+                    putTransition(p, uc, clone);
+                    p = link[p];
                 }
-                st[q].link = clone;
-                st[curr].link = clone;
+                link[q] = clone;
+                link[curr] = clone;
             }
         }
         last = curr;
     }
 
 
+    @Override
     public MatchResult findLongestMatch(byte[] modified, int modPos) {
         if (modPos < 0 || modPos >= modified.length) {
             return new MatchResult(-1, 0);
@@ -131,25 +148,20 @@ public class SuffixAutomaton {
 
         int currentState = 0;
         int matchLength = 0;
-        int bestLength = 0;
-        int bestOffset = -1;
 
         for (int i = modPos; i < modified.length; i++) {
-            int c = modified[i] & 0xFF;
-            int nextState = st[currentState].getNext(c);
-            if (nextState != -1) {
-                currentState = nextState;
-                matchLength++;
-                if (matchLength > bestLength) {
-                    bestLength = matchLength;
-                    bestOffset = st[currentState].firstPos - matchLength + 1;
-                }
-            } else {
+            int nextState = getNext(currentState, modified[i] & 0xFF);
+            if (nextState == -1) {
                 break;
             }
+            currentState = nextState;
+            matchLength++;
         }
 
-        return new MatchResult(bestOffset, bestLength);
+        if (matchLength == 0) {
+            return new MatchResult(-1, 0);
+        }
+        return new MatchResult(firstPos[currentState] - matchLength + 1, matchLength);
     }
 
     @Getter
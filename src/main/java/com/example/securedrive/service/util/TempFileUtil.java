@@ -0,0 +1,48 @@
+package com.example.securedrive.service.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Scratch directories for work that does not fit in memory. Their contents are plaintext, so
+ * callers must always remove them with {@link #deleteRecursively(Path)} once done.
+ */
+public class TempFileUtil {
+
+    /**
+     * Creates a fresh directory under {@code parent}, or under the system temp directory when
+     * {@code parent} is blank.
+     */
+    public static Path createWorkDirectory(String parent, String prefix) throws IOException {
+        if (parent == null || parent.isBlank()) {
+            return Files.createTempDirectory(prefix);
+        }
+        return Files.createTempDirectory(Files.createDirectories(Path.of(parent)), prefix);
+    }
+
+    /**
+     * Deletes {@code directory} and everything below it. Returns false if anything could not be
+     * removed.
+     */
+    public static boolean deleteRecursively(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
+            return true;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.securedrive.service.util;
+
+import java.util.Arrays;
+
+/**
+ * Lines of a text, as offsets into the original {@link CharSequence} plus a hash per line, so
+ * lines can be compared and copied without creating a {@code String} for each of them. Lines are
+ * separated by {@code \n} alone, the same way {@code split("\n", -1)} separates them: a text of
+ * length zero has one empty line and a trailing {@code \n} yields an empty last line.
+ */
+final class TextLines {
+
+    private final CharSequence text;
+    // starts[i] is the first char of line i; starts[count] is one past the final line's end
+    private final int[] starts;
+    private final int count;
+    // Only diffing compares lines, so hashes are computed on first use
+    private int[] hashes;
+
+    private TextLines(CharSequence text, int[] starts, int count) {
+        this.text = text;
+        this.starts = starts;
+        this.count = count;
+    }
+
+    static TextLines of(CharSequence text) {
+        int length = text.length();
+        int[] starts = new int[Math.max(16, length / 32) + 1];
+        int count = 0;
+        int lineStart = 0;
+
+        while (true) {
+            if (count + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[count++] = lineStart;
+            int newline = indexOfNewline(text, lineStart);
+            if (newline < 0) {
+                break;
+            }
+            lineStart = newline + 1;
+        }
+        starts[count] = length + 1;
+        return new TextLines(text, starts, count);
+    }
+
+    static int indexOfNewline(CharSequence text, int from) {
+        if (text instanceof String string) {
+            return string.indexOf('\n', from);
+        }
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int start(int line) {
+        return starts[line];
+    }
+
+    /** End of {@code line}, exclusive of its {@code \n}. */
+    int end(int line) {
+        return starts[line + 1] - 1;
+    }
+
+    /** Same value as {@code String.hashCode()} of the line. */
+    int hash(int line) {
+        if (hashes == null) {
+            hashes = computeHashes();
+        }
+        return hashes[line];
+    }
+
+    private int[] computeHashes() {
+        int[] result = new int[count];
+        for (int line = 0; line < count; line++) {
+            int hash = 0;
+            for (int i = start(line), end = end(line); i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            result[line] = hash;
+        }
+        return result;
+    }
+
+    boolean lineEquals(int line, TextLines other, int otherLine) {
+        if (hash(line) != other.hash(otherLine)) {
+            return false;
+        }
+        int length = end(line) - start(line);
+        if (length != other.end(otherLine) - other.start(otherLine)) {
+            return false;
+        }
+        int offset = start(line);
+        int otherOffset = other.start(otherLine);
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(offset + i) != other.text.charAt(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Appends lines [from, to) with their separating {@code \n}s, but no trailing one. */
+    void appendTo(StringBuilder out, int from, int to) {
+        if (from < to) {
+            out.append(text, start(from), end(to - 1));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.securedrive.service.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.stream.IntStream;
+
+/**
+ * Merkle tree hash in the layout of BLAKE3, built from SHA-256 since the JDK has no BLAKE3.
+ * The content is split into {@link #LEAF_SIZE} leaves, which are hashed independently and
+ * therefore in parallel:
+ *
+ * <pre>
+ * leaf   SHA-256(0x00 || leaf index (8 bytes) || leaf bytes)
+ * parent SHA-256(0x01 || left || right)
+ * root   SHA-256(0x02 || content length (8 bytes) || top node)
+ * </pre>
+ *
+ * The left subtree of every parent holds the largest power of two of leaves below the node's
+ * count, and empty content is a single empty leaf. Leaf indexes, the node prefixes and the
+ * length in the root keep leaves from being moved, reordered or passed off as parents.
+ *
+ * The hash is a dedup key and differs from the SHA-256 of the content; integrity checks keep
+ * using {@link HashUtil}.
+ */
+public final class TreeHash {
+
+    public static final int LEAF_SIZE = 64 * 1024;
+
+    private static final byte LEAF = 0;
+    private static final byte PARENT = 1;
+    private static final byte ROOT = 2;
+    // Leaves buffered per parallel batch by the streaming hasher
+    private static final int BATCH_LEAVES = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private TreeHash() {
+    }
+
+    public static byte[] hash(byte[] data) {
+        int leaves = Math.max(1, (int) ((data.length + (long) LEAF_SIZE - 1) / LEAF_SIZE));
+        byte[][] leafHashes = new byte[leaves][];
+        IntStream.range(0, leaves).parallel().forEach(index -> {
+            int offset = index * LEAF_SIZE;
+            leafHashes[index] = leaf(index, data, offset, Math.min(LEAF_SIZE, data.length - offset));
+        });
+
+        Subtrees subtrees = new Subtrees();
+        for (byte[] leafHash : leafHashes) {
+            subtrees.push(leafHash);
+        }
+        return subtrees.root(data.length);
+    }
+
+    public static String hashHex(byte[] data) {
+        return HashUtil.toHex(hash(data));
+    }
+
+    public static Hasher newHasher() {
+        return new Hasher();
+    }
+
+    /**
+     * Hashes content that arrives in pieces. Leaves are buffered and hashed a batch at a time
+     * in parallel, so a hasher holds up to {@code 2 * processors} leaves.
+     */
+    public static final class Hasher {
+        private final byte[] batch = new byte[BATCH_LEAVES * LEAF_SIZE];
+        private final Subtrees subtrees = new Subtrees();
+        private int buffered;
+        private long length;
+        private long leaves;
+        private boolean finished;
+
+        private Hasher() {
+        }
+
+        public void update(byte b) {
+            checkOpen();
+            if (buffered == batch.length) {
+                flush();
+            }
+            batch[buffered++] = b;
+            length++;
+        }
+
+        public void update(byte[] data, int offset, int count) {
+            checkOpen();
+            while (count > 0) {
+                if (buffered == batch.length) {
+                    flush();
+                }
+                int copied = Math.min(count, batch.length - buffered);
+                System.arraycopy(data, offset, batch, buffered, copied);
+                buffered += copied;
+                offset += copied;
+                count -= copied;
+                length += copied;
+            }
+        }
+
+        /**
+         * Returns the root hash. The hasher cannot be updated afterwards.
+         */
+        public byte[] digest() {
+            checkOpen();
+            finished = true;
+            if (buffered > 0 || length == 0) {
+                flush();
+            }
+            return subtrees.root(length);
+        }
+
+        private void flush() {
+            int count = Math.max(1, (buffered + LEAF_SIZE - 1) / LEAF_SIZE);
+            long firstIndex = leaves;
+            byte[][] leafHashes = new byte[count][];
+            IntStream.range(0, count).parallel().forEach(index -> {
+                int offset = index * LEAF_SIZE;
+                leafHashes[index] = leaf(firstIndex + index, batch, offset, Math.min(LEAF_SIZE, buffered - offset));
+            });
+            for (byte[] leafHash : leafHashes) {
+                subtrees.push(leafHash);
+            }
+            leaves += count;
+            buffered = 0;
+        }
+
+        private void checkOpen() {
+            if (finished) {
+                throw new IllegalStateException("Tree hash already finished");
+            }
+        }
+    }
+
+    /**
+     * Roots of the complete subtrees seen so far, largest first, as in BLAKE3: a new leaf is
+     * merged with the subtrees of its own size until no two share one.
+     */
+    private static final class Subtrees {
+        private final Deque<byte[]> stack = new ArrayDeque<>();
+        private long count;
+
+        void push(byte[] leafHash) {
+            byte[] node = leafHash;
+            count++;
+            for (long merged = count; (merged & 1) == 0; merged >>= 1) {
+                node = parent(stack.pop(), node);
+            }
+            stack.push(node);
+        }
+
+        byte[] root(long length) {
+            byte[] node = stack.pop();
+            while (!stack.isEmpty()) {
+                node = parent(stack.pop(), node);
+            }
+            MessageDigest digest = HashUtil.pooledDigest();
+            digest.update(ROOT);
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(length).array());
+            digest.update(node);
+            return digest.digest();
+        }
+    }
+
+    private static byte[] leaf(long index, byte[] data, int offset, int length) {
+        MessageDigest digest = HashUtil.pooledDigest();
+        digest.update(LEAF);
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(index).array());
+        digest.update(data, offset, Math.max(0, length));
+        return digest.digest();
+    }
+
+    private static byte[] parent(byte[] left, byte[] right) {
+        MessageDigest digest = HashUtil.pooledDigest();
+        digest.update(PARENT);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+}
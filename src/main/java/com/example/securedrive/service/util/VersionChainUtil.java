@@ -0,0 +1,138 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.model.FileVersion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helpers for walking a version chain. Versions are expected in upload order. A forward delta
+ * rebuilds its version from the previous one, a reverse delta from the next one. The first
+ * version is stored whole unless it has become a reverse delta, even when it predates snapshot
+ * paths. Snapshots and chunk-store manifests both count as whole versions. A materialized copy
+ * of the latest version is only a shortcut for reading that version itself; it does not end the
+ * chains of other versions or reset the checkpoint policy.
+ */
+public class VersionChainUtil {
+
+    private static boolean isWhole(FileVersion version) {
+        return version.getSnapshotPath() != null || version.getManifestPath() != null;
+    }
+
+    public static boolean isReverseDelta(FileVersion version) {
+        return Boolean.TRUE.equals(version.getReverseDelta());
+    }
+
+    /**
+     * Index of the version that reconstruction of {@code targetIndex} starts from: the target
+     * itself when it has a materialized copy, the nearest whole version below it for forward
+     * deltas, or the first newer version that is not itself a reverse delta.
+     */
+    public static int findBaseIndex(List<FileVersion> versions, int targetIndex) {
+        int baseIndex = baseIndexOrMissing(versions, targetIndex);
+        if (baseIndex < 0) {
+            throw new IllegalStateException("No newer version to rebuild reverse delta "
+                    + versions.get(targetIndex).getVersionNumber() + " from");
+        }
+        return baseIndex;
+    }
+
+    // -1 when a reverse delta has no newer version that is not a reverse delta too
+    private static int baseIndexOrMissing(List<FileVersion> versions, int targetIndex) {
+        if (versions.get(targetIndex).getMaterializedPath() != null) {
+            return targetIndex;
+        }
+        if (!isReverseDelta(versions.get(targetIndex))) {
+            return findCheckpointIndex(versions, targetIndex);
+        }
+        for (int i = targetIndex + 1; i < versions.size(); i++) {
+            if (!isReverseDelta(versions.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Versions whose deltas turn the content of {@code baseIndex} into that of
+     * {@code targetIndex}, in the order they have to be applied.
+     */
+    public static List<FileVersion> deltaChain(List<FileVersion> versions, int baseIndex, int targetIndex) {
+        if (baseIndex <= targetIndex) {
+            return versions.subList(baseIndex + 1, targetIndex + 1);
+        }
+        List<FileVersion> chain = new ArrayList<>(versions.subList(targetIndex, baseIndex));
+        Collections.reverse(chain);
+        return chain;
+    }
+
+    /**
+     * Index of the nearest version at or below {@code targetIndex} that is stored whole. Only
+     * meaningful for versions that are not reverse deltas.
+     */
+    public static int findCheckpointIndex(List<FileVersion> versions, int targetIndex) {
+        for (int i = targetIndex; i > 0; i--) {
+            if (isWhole(versions.get(i))) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of deltas that have to be applied to rebuild the version at {@code targetIndex}, or
+     * -1 when the version cannot be rebuilt because its reverse-delta chain is broken. Listings
+     * report this, so it does not throw like {@link #findBaseIndex}.
+     */
+    public static int chainLength(List<FileVersion> versions, int targetIndex) {
+        if (targetIndex < 0) {
+            return 0;
+        }
+        int baseIndex = baseIndexOrMissing(versions, targetIndex);
+        return baseIndex < 0 ? -1 : Math.abs(targetIndex - baseIndex);
+    }
+
+    /**
+     * Total stored forward-delta bytes between the nearest checkpoint and {@code targetIndex}.
+     */
+    public static long deltaBytesSinceCheckpoint(List<FileVersion> versions, int targetIndex) {
+        if (targetIndex < 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = findCheckpointIndex(versions, targetIndex) + 1; i <= targetIndex; i++) {
+            Long deltaSize = versions.get(i).getDeltaSize();
+            if (deltaSize != null) {
+                total += deltaSize;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Number of consecutive reverse-delta versions directly below {@code index}, i.e. the
+     * versions whose chains would grow if {@code index} became a reverse delta as well.
+     */
+    public static int reverseRunBelow(List<FileVersion> versions, int index) {
+        int count = 0;
+        for (int i = index - 1; i >= 0 && isReverseDelta(versions.get(i)); i--) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Total stored delta bytes of the reverse-delta versions directly below {@code index}.
+     */
+    public static long reverseDeltaBytesBelow(List<FileVersion> versions, int index) {
+        long total = 0;
+        for (int i = index - 1; i >= 0 && isReverseDelta(versions.get(i)); i--) {
+            Long deltaSize = versions.get(i).getDeltaSize();
+            if (deltaSize != null) {
+                total += deltaSize;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.securedrive.benchmark;
+
+import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypts and decrypts blob-sized payloads through {@link AESUtil} with pooled ciphers and a
+ * key decoded once into an {@link AesKey}, and through a baseline that looks up a new
+ * {@link Cipher} and decodes the Base64 key on every call, as AESUtil did before pooling. The
+ * delta-blob pair decodes an envelope-encrypted blob, as each step of a delta chain does, with
+ * the key decoded once per request and with the key decoded again for every blob.
+ *
+ * {@link #main} runs every benchmark at 1 to 32 threads and reports ops/s for each. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.securedrive.benchmark.CipherPoolBenchmark} or from the IDE.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CipherPoolBenchmark {
+
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    @Param({"1024", "65536"})
+    private int payloadBytes;
+
+    private String base64Key;
+    private AesKey key;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+    private byte[] deltaBlob;
+
+    @Setup
+    public void setUp() throws Exception {
+        base64Key = AESUtil.generateAESKey();
+        key = AesKey.fromBase64(base64Key);
+        plaintext = new byte[payloadBytes];
+        new Random(42).nextBytes(plaintext);
+        ciphertext = AESUtil.encrypt(plaintext, key);
+        deltaBlob = BlobFormatUtil.encode(plaintext, BlobCipher.AES_GCM_ENVELOPE, BlobCompression.NONE, key);
+    }
+
+    @Benchmark
+    public byte[] encryptPooled() throws Exception {
+        return AESUtil.encrypt(plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] encryptBaseline() throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(base64Key), "AES"));
+        return cipher.doFinal(plaintext);
+    }
+
+    @Benchmark
+    public byte[] decryptPooled() throws Exception {
+        return AESUtil.decrypt(ciphertext, key);
+    }
+
+    @Benchmark
+    public byte[] decryptBaseline() throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(base64Key), "AES"));
+        return cipher.doFinal(ciphertext);
+    }
+
+    @Benchmark
+    public byte[] decodeDeltaBlob() throws Exception {
+        return BlobFormatUtil.decode(deltaBlob, key, BlobCipher.NONE);
+    }
+
+    @Benchmark
+    public byte[] decodeDeltaBlobBaseline() throws Exception {
+        return BlobFormatUtil.decode(deltaBlob, AesKey.fromBase64(base64Key), BlobCipher.NONE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(CipherPoolBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
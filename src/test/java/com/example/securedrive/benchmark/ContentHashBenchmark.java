@@ -0,0 +1,78 @@
+package com.example.securedrive.benchmark;
+
+import com.example.securedrive.service.util.HashUtil;
+import com.example.securedrive.service.util.HashingInputStream;
+import com.example.securedrive.service.util.TreeHash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes upload-sized content with plain SHA-256 and with {@link TreeHash}, both as a whole
+ * array and streamed through {@link HashingInputStream}. The tree hash does the same SHA-256
+ * work plus one small hash per leaf, so it only wins where its leaves spread over several cores.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.securedrive.benchmark.ContentHashBenchmark} or from the IDE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentHashBenchmark {
+
+    @Param({"1048576", "67108864"})
+    private int contentBytes;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        content = new byte[contentBytes];
+        new Random(42).nextBytes(content);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return HashUtil.calculateHash(content);
+    }
+
+    @Benchmark
+    public String treeHash() {
+        return TreeHash.hashHex(content);
+    }
+
+    @Benchmark
+    public Object sha256Streamed() throws IOException {
+        return streamed(true, false);
+    }
+
+    @Benchmark
+    public Object treeHashStreamed() throws IOException {
+        return streamed(false, true);
+    }
+
+    private Object streamed(boolean sha256, boolean treeHash) throws IOException {
+        try (HashingInputStream in = new HashingInputStream(new ByteArrayInputStream(content), sha256, treeHash)) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return in.contentHash();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ContentHashBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.securedrive.benchmark;
+
+import com.example.securedrive.service.util.DeltaUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Applies a chain of text deltas the way version reconstruction does, once through
+ * {@link DeltaUtil#applyDelta(String, String)} and once through a baseline that splits the text
+ * and every delta line into strings, as text deltas were applied before the single-pass reader.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.securedrive.benchmark.TextDeltaBenchmark} or from the IDE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextDeltaBenchmark {
+
+    @Param({"20000", "100000"})
+    private int lineCount;
+
+    @Param({"50"})
+    private int chainLength;
+
+    private String base;
+    private List<String> deltas;
+    private String latest;
+
+    @Setup
+    public void setUp() {
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add("    value" + i + " = compute(" + i + ", \"" + Integer.toHexString(i * 31) + "\");");
+        }
+        base = String.join("\n", lines);
+
+        deltas = new ArrayList<>(chainLength);
+        String previous = base;
+        for (int version = 1; version <= chainLength; version++) {
+            for (int i = version; i < lines.size(); i += 997) {
+                lines.set(i, lines.get(i) + " // v" + version);
+            }
+            String next = String.join("\n", lines);
+            deltas.add(DeltaUtil.calculateDelta(previous, next));
+            previous = next;
+        }
+        latest = previous;
+    }
+
+    @Benchmark
+    public String singlePassChain() {
+        String content = base;
+        for (String delta : deltas) {
+            content = DeltaUtil.applyDelta(content, delta);
+        }
+        return content;
+    }
+
+    @Benchmark
+    public String splitBaselineChain() {
+        String content = base;
+        for (String delta : deltas) {
+            content = applyBySplitting(content, delta);
+        }
+        return content;
+    }
+
+    @Benchmark
+    public String calculateDelta() {
+        return DeltaUtil.calculateDelta(base, latest);
+    }
+
+    // Same format, applied by splitting the text and each hunk header into strings
+    private static String applyBySplitting(String oldData, String delta) {
+        String[] oldLines = oldData.split("\n", -1);
+        String[] deltaLines = delta.split("\n", -1);
+        String[] header = deltaLines[0].split(" ");
+        CRC32 crc = new CRC32();
+        crc.update(oldData.getBytes(StandardCharsets.UTF_8));
+        if (Integer.parseInt(header[1]) != oldLines.length || !header[2].equals(Long.toHexString(crc.getValue()))) {
+            throw new IllegalStateException("Delta and data mismatch");
+        }
+        List<String> result = new ArrayList<>(oldLines.length);
+        int oldIndex = 0;
+        int deltaIndex = 1;
+        while (deltaIndex < deltaLines.length) {
+            String[] parts = deltaLines[deltaIndex++].substring(3).split(" ");
+            int oldStart = Integer.parseInt(parts[0]);
+            int deleted = Integer.parseInt(parts[1]);
+            int inserted = Integer.parseInt(parts[2]);
+            while (oldIndex < oldStart) {
+                result.add(oldLines[oldIndex++]);
+            }
+            oldIndex += deleted;
+            for (int i = 0; i < inserted; i++) {
+                result.add(deltaLines[deltaIndex++]);
+            }
+        }
+        while (oldIndex < oldLines.length) {
+            result.add(oldLines[oldIndex++]);
+        }
+        return String.join("\n", result);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TextDeltaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.securedrive.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptionKeyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testCachedKeyIsServedAsCopyWithoutReloading() {
+        // Given
+        EncryptionKeyCache cache = cache(user -> Optional.of(new byte[]{1, 2, 3}), 100);
+
+        // When
+        byte[] first = cache.get("alice").orElseThrow();
+        first[0] = 9;
+        byte[] second = cache.get("alice").orElseThrow();
+
+        // Then
+        assertArrayEquals(new byte[]{1, 2, 3}, second, "Changing a returned key should not change the cached one");
+        assertEquals(1, loads.get(), "The second read should be served from the cache");
+        assertEquals(1.0, meterRegistry.get("securedrive.key-cache.hits").counter().count());
+        assertEquals(1.0, meterRegistry.get("securedrive.key-cache.misses").counter().count());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        EncryptionKeyCache cache = cache(user -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of(new byte[]{7});
+        }, 100);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+
+        try {
+            // When
+            List<Future<Optional<byte[]>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(readers.submit(() -> cache.get("alice")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            // Then
+            for (Future<Optional<byte[]>> result : results) {
+                assertArrayEquals(new byte[]{7}, result.get(5, TimeUnit.SECONDS).orElseThrow());
+            }
+            assertEquals(1, loads.get(), "Concurrent misses should wait for a single load");
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStaleKeyIsServedWhileRefreshing() {
+        // Given
+        AtomicInteger version = new AtomicInteger(1);
+        EncryptionKeyCache cache = cache(user -> Optional.of(new byte[]{(byte) version.get()}), 100);
+        cache.get("alice");
+        version.set(2);
+
+        // When: past refresh-after but before the ttl
+        clock.set(Duration.ofSeconds(70).toNanos());
+        byte[] stale = cache.get("alice").orElseThrow();
+        cache.get("alice");
+
+        // Then
+        assertArrayEquals(new byte[]{1}, stale, "Readers should not wait for the refresh");
+        assertEquals(1, refreshes.size(), "Only one refresh should be queued per entry");
+        refreshes.poll().run();
+        assertArrayEquals(new byte[]{2}, cache.get("alice").orElseThrow(), "The refreshed key should be served");
+        assertEquals(1.0, meterRegistry.get("securedrive.key-cache.misses").counter().count(), "The refresh should avoid a miss");
+    }
+
+    @Test
+    void testFailedRefreshKeepsKeyUntilItExpires() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        EncryptionKeyCache cache = cache(user -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("vault throttled");
+            }
+            return Optional.of(new byte[]{(byte) calls.get()});
+        }, 100);
+        cache.get("alice");
+        clock.set(Duration.ofSeconds(70).toNanos());
+        cache.get("alice");
+
+        // When
+        refreshes.poll().run();
+
+        // Then
+        assertArrayEquals(new byte[]{1}, cache.get("alice").orElseThrow(), "A failed refresh should keep the cached key");
+        assertEquals(1.0, meterRegistry.get("securedrive.key-cache.refreshes").tag("result", "failed").counter().count());
+        clock.set(Duration.ofSeconds(101).toNanos());
+        assertArrayEquals(new byte[]{3}, cache.get("alice").orElseThrow(), "An expired key should be loaded again");
+    }
+
+    @Test
+    void testMissingKeysAndFailedLoadsAreNotCached() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        EncryptionKeyCache cache = cache(user -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("vault unavailable");
+            }
+            return Optional.empty();
+        }, 100);
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> cache.get("alice"), "Load failures should reach the caller");
+        assertTrue(cache.get("alice").isEmpty());
+        assertTrue(cache.get("alice").isEmpty());
+        assertEquals(3, loads.get(), "Neither failures nor missing keys should be cached");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedKeyIsEvicted() {
+        // Given
+        EncryptionKeyCache cache = cache(user -> Optional.of(new byte[]{(byte) user.charAt(0)}), 2);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+
+        // When
+        cache.get("c");
+
+        // Then
+        assertEquals(2, cache.size(), "The cache should stay within max-entries");
+        assertEquals(1.0, meterRegistry.get("securedrive.key-cache.evictions").counter().count());
+        assertEquals(3, loads.get());
+        cache.get("a");
+        assertEquals(3, loads.get(), "The recently used key should have been kept");
+    }
+
+    @Test
+    void testDroppedKeysAreZeroed() {
+        // Given: a refreshed key, which the cache holds as loaded
+        List<byte[]> loaded = new ArrayList<>();
+        EncryptionKeyCache refreshing = cache(user -> {
+            byte[] key = {5, 5};
+            loaded.add(key);
+            return Optional.of(key);
+        }, 2);
+        refreshing.get("d");
+        clock.addAndGet(Duration.ofSeconds(70).toNanos());
+        refreshing.get("d");
+        refreshes.poll().run();
+
+        // When
+        refreshing.invalidate("d");
+
+        // Then
+        assertArrayEquals(new byte[]{0, 0}, loaded.get(1), "Invalidated keys should be overwritten with zeros");
+    }
+
+    @Test
+    void testPutWinsOverLoadInFlight() {
+        // Given
+        EncryptionKeyCache[] holder = new EncryptionKeyCache[1];
+        holder[0] = cache(user -> {
+            holder[0].put(user, new byte[]{2});
+            return Optional.of(new byte[]{1});
+        }, 100);
+
+        // When
+        holder[0].get("alice");
+
+        // Then
+        assertArrayEquals(new byte[]{2}, holder[0].get("alice").orElseThrow(),
+                "A key saved while an older one was loading should be kept");
+    }
+
+    private EncryptionKeyCache cache(Function<String, Optional<byte[]>> loader, int maxEntries) {
+        return new EncryptionKeyCache(user -> {
+            loads.incrementAndGet();
+            return loader.apply(user);
+        }, Duration.ofSeconds(100), Duration.ofSeconds(60), maxEntries, refreshes::add, clock::get, meterRegistry);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.securedrive.security;
+
+import com.example.securedrive.service.util.AESUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyVaultServiceTest {
+
+    private InMemorySecretStore secretStore;
+    private KeyVaultService keyVaultService;
+
+    @BeforeEach
+    void setUp() {
+        secretStore = new InMemorySecretStore();
+        keyVaultService = new KeyVaultService(secretStore, new SimpleMeterRegistry(), 900, 600, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyVaultService.shutdown();
+    }
+
+    @Test
+    void testRepeatedReadsHitTheVaultOnce() throws Exception {
+        // Given
+        String key = AESUtil.generateAESKey();
+        secretStore.setSecret("aes-key-alice", key);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            assertEquals(key, keyVaultService.getEncryptionKeyFromKeyVault("alice"));
+        }
+
+        // Then
+        assertEquals(1, secretStore.getReadCount(), "Only the first read should reach the vault");
+    }
+
+    @Test
+    void testSavedKeyIsStoredAndCached() throws Exception {
+        // Given
+        String key = AESUtil.generateAESKey();
+
+        // When
+        keyVaultService.saveEncryptionKeyToKeyVault("bob", key);
+
+        // Then
+        assertEquals(key, keyVaultService.getEncryptionKeyFromKeyVault("bob"));
+        assertEquals(0, secretStore.getReadCount(), "A freshly saved key should not be read back from the vault");
+        assertEquals(key, secretStore.getSecret("aes-key-bob").orElseThrow());
+    }
+
+    @Test
+    void testMissingKeyFailsUntilCreated() throws Exception {
+        // Then
+        assertThrows(IllegalStateException.class, () -> keyVaultService.getEncryptionKeyFromKeyVault("carol"));
+
+        // When
+        String key = AESUtil.generateAESKey();
+        secretStore.setSecret("aes-key-carol", key);
+
+        // Then
+        assertEquals(key, keyVaultService.getEncryptionKeyFromKeyVault("carol"), "A missing key should not be cached as missing");
+    }
+}
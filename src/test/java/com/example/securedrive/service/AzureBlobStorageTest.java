@@ -14,7 +14,7 @@ import static org.mockito.Mockito.*;
 class AzureBlobStorageTest {
     private AutoCloseable closeable;
     @Mock
-    private AzureBlobStorageService azureBlobStorageService;
+    private BlobStorageService azureBlobStorageService;
 
     @BeforeEach
     void setUp() {
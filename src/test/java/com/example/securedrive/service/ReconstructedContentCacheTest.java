@@ -0,0 +1,91 @@
+package com.example.securedrive.service;
+
+import com.example.securedrive.service.impl.ReconstructedContentCacheImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconstructedContentCacheTest {
+
+    @TempDir
+    Path spillRoot;
+
+    @Test
+    void testEvictsLeastRecentlyUsedByByteSize() throws Exception {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ReconstructedContentCache cache = new ReconstructedContentCacheImpl(registry, 100, 100, "", 0);
+
+        // When
+        cache.put(1L, "v1", "h1", new byte[40]);
+        cache.put(1L, "v2", "h2", new byte[40]);
+        cache.get(1L, "v1", "h1");
+        cache.put(1L, "v3", "h3", new byte[40]);
+
+        // Then
+        assertTrue(cache.get(1L, "v1", "h1").isPresent(), "Recently read entry should survive eviction");
+        assertTrue(cache.get(1L, "v2", "h2").isEmpty(), "Least recently used entry should be evicted");
+        assertTrue(cache.get(1L, "v3", "h3").isPresent());
+        assertEquals(1.0, registry.get("securedrive.reconstruction.cache.evictions").tag("tier", "memory").counter().count());
+        assertEquals(3.0, registry.get("securedrive.reconstruction.cache.hits").tag("tier", "memory").counter().count());
+        assertEquals(1.0, registry.get("securedrive.reconstruction.cache.misses").counter().count());
+    }
+
+    @Test
+    void testSpillsEvictedEntriesToDiskEncrypted() throws Exception {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ReconstructedContentCacheImpl cache = new ReconstructedContentCacheImpl(registry, 100, 100, spillRoot.toString(), 1000);
+        byte[] content = "reconstructed plaintext that should not reach the disk as is".getBytes();
+
+        // When
+        cache.put(1L, "v1", "h1", content);
+        cache.put(1L, "v2", "h2", new byte[90]);
+
+        // Then
+        assertFalse(spilledFilesContain(content), "Spilled files must be encrypted");
+        assertArrayEquals(content, cache.get(1L, "v1", "h1").orElseThrow(), "Spilled entry should be read back from disk");
+        assertEquals(1.0, registry.get("securedrive.reconstruction.cache.hits").tag("tier", "disk").counter().count());
+
+        cache.clearSpillDirectory();
+    }
+
+    @Test
+    void testInvalidateFileDropsAllVersionsOfThatFileOnly() throws Exception {
+        // Given
+        ReconstructedContentCacheImpl cache = new ReconstructedContentCacheImpl(new SimpleMeterRegistry(), 100, 100, spillRoot.toString(), 1000);
+        cache.put(1L, "v1", "h1", new byte[60]);
+        cache.put(1L, "v2", "h2", new byte[60]);
+        cache.put(2L, "v1", "h3", new byte[10]);
+
+        // When
+        cache.invalidateFile(1L);
+
+        // Then
+        assertTrue(cache.get(1L, "v1", "h1").isEmpty(), "Spilled entry of the file should be invalidated");
+        assertTrue(cache.get(1L, "v2", "h2").isEmpty(), "In-memory entry of the file should be invalidated");
+        assertTrue(cache.get(2L, "v1", "h3").isPresent(), "Other files should stay cached");
+
+        cache.clearSpillDirectory();
+    }
+
+    private boolean spilledFilesContain(byte[] content) throws Exception {
+        String needle = new String(content);
+        try (Stream<Path> files = Files.walk(spillRoot)) {
+            return files.filter(Files::isRegularFile).anyMatch(path -> {
+                try {
+                    return new String(Files.readAllBytes(path)).contains(needle);
+                } catch (Exception e) {
+                    return false;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.securedrive.service.impl;
+
+import com.azure.core.util.Context;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.models.BlobDownloadHeaders;
+import com.azure.storage.blob.models.BlobDownloadResponse;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.azure.storage.blob.specialized.BlockBlobClient;
+import com.example.securedrive.exception.AzureBlobStorageException;
+import com.example.securedrive.model.Storage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.*;
+
+class AzureBlobStorageServiceImplTest {
+
+    private BlobClient blobClient;
+    private BlockBlobClient blockBlobClient;
+    private SimpleMeterRegistry meterRegistry;
+    private AzureBlobStorageServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        BlobContainerClient containerClient = mock(BlobContainerClient.class);
+        blobClient = mock(BlobClient.class);
+        blockBlobClient = mock(BlockBlobClient.class);
+        when(containerClient.getBlobClient(any())).thenReturn(blobClient);
+        when(blobClient.getBlockBlobClient()).thenReturn(blockBlobClient);
+        meterRegistry = new SimpleMeterRegistry();
+        // 4-byte blocks, two in flight, block uploads above 8 bytes
+        service = new AzureBlobStorageServiceImpl(containerClient, meterRegistry, 4, 2, 2, 8);
+    }
+
+    @Test
+    void testReadIfExists_ReturnsContentInOneRequest() throws AzureBlobStorageException {
+        // Given
+        serveRanges(new byte[]{1, 2, 3});
+
+        // When
+        Optional<byte[]> content = service.readIfExists(new Storage("path/to/blob", null));
+
+        // Then
+        assertArrayEquals(new byte[]{1, 2, 3}, content.orElseThrow(), "Blob content should be returned");
+        assertEquals(1.0, requests("read"), "A read should be a single request");
+        assertEquals(0.0, requests("exists"), "No existence check should be made");
+        verify(blobClient, never()).exists();
+    }
+
+    @Test
+    void testReadIfExists_MissingBlobIsEmpty() throws AzureBlobStorageException {
+        // Given
+        BlobStorageException notFound = mock(BlobStorageException.class);
+        when(notFound.getStatusCode()).thenReturn(404);
+        doThrow(notFound).when(blobClient).downloadStreamWithResponse(any(OutputStream.class), any(BlobRange.class),
+                isNull(), isNull(), anyBoolean(), isNull(), any(Context.class));
+
+        // When
+        Optional<byte[]> content = service.readIfExists(new Storage("path/to/missing", null));
+
+        // Then
+        assertTrue(content.isEmpty(), "A missing blob should be reported as empty");
+        assertEquals(1.0, requests("read"), "A miss should still cost one request");
+    }
+
+    @Test
+    void testReadIfExists_OtherErrorsAreRethrown() {
+        // Given
+        BlobStorageException forbidden = mock(BlobStorageException.class);
+        when(forbidden.getStatusCode()).thenReturn(403);
+        when(forbidden.getServiceMessage()).thenReturn("Forbidden");
+        doThrow(forbidden).when(blobClient).downloadStreamWithResponse(any(OutputStream.class), any(BlobRange.class),
+                isNull(), isNull(), anyBoolean(), isNull(), any(Context.class));
+
+        // When / Then
+        AzureBlobStorageException exception = assertThrows(AzureBlobStorageException.class,
+                () -> service.readIfExists(new Storage("path/to/blob", null)));
+        assertEquals("Forbidden", exception.getMessage());
+    }
+
+    @Test
+    void testDeleteIfExists_ReportsWhetherTheBlobExisted() throws AzureBlobStorageException {
+        // Given
+        when(blobClient.deleteIfExists()).thenReturn(true, false);
+
+        // When
+        boolean first = service.deleteIfExists(new Storage("path/to/blob", null));
+        boolean second = service.deleteIfExists(new Storage("path/to/blob", null));
+
+        // Then
+        assertTrue(first, "The first delete should remove the blob");
+        assertFalse(second, "A second delete should find nothing");
+        assertEquals(2.0, requests("delete"), "Each delete should be a single request");
+        verify(blobClient, never()).exists();
+    }
+
+    @Test
+    void testRead_LargeBlobIsReadAsRangesIntoOneArray() throws AzureBlobStorageException {
+        // Given: 10 bytes in 4-byte blocks
+        byte[] content = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        serveRanges(content);
+
+        // When
+        byte[] read = service.read(new Storage("path/to/blob", null));
+
+        // Then
+        assertArrayEquals(content, read, "Ranges should be joined in order");
+        assertEquals(3.0, requests("read"), "Each 4-byte range should be one request");
+    }
+
+    @Test
+    void testRead_LaterRangesArePinnedToTheFirstETag() throws AzureBlobStorageException {
+        // Given
+        serveRanges(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, "\"etag-7\"");
+
+        // When
+        service.read(new Storage("path/to/blob", null));
+
+        // Then
+        ArgumentCaptor<BlobRequestConditions> conditions = ArgumentCaptor.forClass(BlobRequestConditions.class);
+        verify(blobClient, times(3)).downloadStreamWithResponse(any(OutputStream.class), any(BlobRange.class),
+                isNull(), conditions.capture(), anyBoolean(), isNull(), any(Context.class));
+        assertNull(conditions.getAllValues().get(0), "The first range should be unconditional");
+        assertEquals("\"etag-7\"", conditions.getAllValues().get(1).getIfMatch(), "Later ranges should require the first ETag");
+        assertEquals("\"etag-7\"", conditions.getAllValues().get(2).getIfMatch());
+    }
+
+    @Test
+    void testRead_BlobReplacedMidReadIsReadAgain() throws AzureBlobStorageException {
+        // Given: the blob is replaced right after the first range, so the pinned ranges fail with 412
+        byte[] original = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        byte[] replacement = {9, 8, 7, 6, 5, 4, 3, 2, 1, 0};
+        AtomicInteger reads = new AtomicInteger();
+        when(blobClient.downloadStreamWithResponse(any(OutputStream.class), any(BlobRange.class),
+                isNull(), nullable(BlobRequestConditions.class), anyBoolean(), isNull(), any(Context.class))).thenAnswer(invocation -> {
+            boolean replaced = reads.getAndIncrement() > 0;
+            byte[] content = replaced ? replacement : original;
+            String eTag = replaced ? "\"etag-2\"" : "\"etag-1\"";
+            BlobRequestConditions conditions = invocation.getArgument(3);
+            if (conditions != null && !eTag.equals(conditions.getIfMatch())) {
+                BlobStorageException preconditionFailed = mock(BlobStorageException.class);
+                when(preconditionFailed.getStatusCode()).thenReturn(412);
+                throw preconditionFailed;
+            }
+            BlobRange range = invocation.getArgument(1);
+            int from = (int) range.getOffset();
+            int to = (int) Math.min(content.length, from + range.getCount());
+            invocation.<OutputStream>getArgument(0).write(content, from, to - from);
+            BlobDownloadResponse response = mock(BlobDownloadResponse.class);
+            when(response.getDeserializedHeaders()).thenReturn(new BlobDownloadHeaders()
+                    .setContentRange("bytes " + from + "-" + (to - 1) + "/" + content.length)
+                    .setETag(eTag));
+            return response;
+        });
+
+        // When
+        byte[] read = service.read(new Storage("path/to/blob", null));
+
+        // Then
+        assertArrayEquals(replacement, read, "The read should restart and return only the new version");
+    }
+
+    @Test
+    void testWrite_LargeBlobIsStagedAsBlocksAndCommittedInOrder() throws AzureBlobStorageException {
+        // When
+        service.write(new Storage("path/to/blob", new byte[10]));
+
+        // Then
+        verify(blockBlobClient, times(3)).stageBlock(anyString(), any(InputStream.class), anyLong());
+        verify(blockBlobClient).commitBlockList(
+                List.of("MDAwMDAwMDAwMA==", "MDAwMDAwMDAwMQ==", "MDAwMDAwMDAwMg=="), true);
+        verify(blobClient, never()).upload(any(InputStream.class), anyLong(), anyBoolean());
+        assertEquals(3.0, requests("stage-block"));
+        assertEquals(1.0, requests("commit-blocks"));
+    }
+
+    @Test
+    void testWrite_SmallBlobIsOneUpload() throws AzureBlobStorageException {
+        // When
+        service.write(new Storage("path/to/blob", new byte[8]));
+
+        // Then
+        verify(blobClient).upload(any(InputStream.class), eq(8L), eq(true));
+        verify(blockBlobClient, never()).commitBlockList(anyList(), anyBoolean());
+        assertEquals(1.0, requests("write"));
+    }
+
+    @Test
+    void testWriteIfMatch_UploadsUnderTheETagThatWasRead() throws AzureBlobStorageException {
+        // Given
+        serveRanges(new byte[]{1, 2, 3}, "\"etag-3\"");
+        String eTag = service.readTaggedIfExists("path/to/blob").orElseThrow().eTag();
+
+        // When
+        boolean written = service.writeIfMatch("path/to/blob", new byte[]{4}, eTag);
+
+        // Then
+        ArgumentCaptor<BlobParallelUploadOptions> options = ArgumentCaptor.forClass(BlobParallelUploadOptions.class);
+        verify(blobClient).uploadWithResponse(options.capture(), isNull(), any(Context.class));
+        assertTrue(written);
+        assertEquals("\"etag-3\"", options.getValue().getRequestConditions().getIfMatch());
+    }
+
+    @Test
+    void testWriteIfMatch_ChangedBlobIsNotWritten() throws AzureBlobStorageException {
+        // Given
+        BlobStorageException preconditionFailed = mock(BlobStorageException.class);
+        when(preconditionFailed.getStatusCode()).thenReturn(412);
+        doThrow(preconditionFailed).when(blobClient).uploadWithResponse(any(BlobParallelUploadOptions.class), isNull(), any(Context.class));
+
+        // When / Then
+        assertFalse(service.writeIfMatch("path/to/blob", new byte[]{4}, "\"etag-1\""));
+    }
+
+    // Answers ranged downloads from content, with the Content-Range and ETag headers the service
+    // sends, and fails reads pinned to another ETag with 412 like the service does
+    private void serveRanges(byte[] content) {
+        serveRanges(content, "\"etag-1\"");
+    }
+
+    private void serveRanges(byte[] content, String eTag) {
+        when(blobClient.downloadStreamWithResponse(any(OutputStream.class), any(BlobRange.class),
+                isNull(), nullable(BlobRequestConditions.class), anyBoolean(), isNull(), any(Context.class))).thenAnswer(invocation -> {
+            BlobRequestConditions conditions = invocation.getArgument(3);
+            if (conditions != null && !eTag.equals(conditions.getIfMatch())) {
+                BlobStorageException preconditionFailed = mock(BlobStorageException.class);
+                when(preconditionFailed.getStatusCode()).thenReturn(412);
+                throw preconditionFailed;
+            }
+            BlobRange range = invocation.getArgument(1);
+            int from = (int) range.getOffset();
+            int to = (int) Math.min(content.length, from + range.getCount());
+            invocation.<OutputStream>getArgument(0).write(content, from, to - from);
+            BlobDownloadResponse response = mock(BlobDownloadResponse.class);
+            when(response.getDeserializedHeaders()).thenReturn(new BlobDownloadHeaders()
+                    .setContentRange("bytes " + from + "-" + (to - 1) + "/" + content.length)
+                    .setETag(eTag));
+            return response;
+        });
+    }
+
+    private double requests(String operation) {
+        return meterRegistry.get("securedrive.blob.requests").tag("operation", operation).counter().count();
+    }
+}
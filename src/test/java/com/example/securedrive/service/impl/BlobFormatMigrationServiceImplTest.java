@@ -0,0 +1,107 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.model.File;
+import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.repository.FileVersionRepository;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BlobFormatMigrationServiceImplTest {
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageServiceImpl blobStorage;
+    private final List<FileVersion> versions = new ArrayList<>();
+    private BlobFormatMigrationServiceImpl migrationService;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStorage = spy(new LocalFileStorageServiceImpl(root.toString(), 1, false));
+        FileVersionRepository fileVersionRepository = mock(FileVersionRepository.class);
+        when(fileVersionRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long lastId = invocation.getArgument(0);
+            return versions.stream().filter(version -> version.getId() > lastId).toList();
+        });
+        migrationService = new BlobFormatMigrationServiceImpl(fileVersionRepository, blobStorage, true, 100);
+
+        file = new File();
+        file.setPath("uploads/user/notes.txt");
+        file.setFileName("notes.txt");
+    }
+
+    @Test
+    void testOnlyRecordedSnapshotsAndTheFirstVersionPathAreProbed() throws Exception {
+        // Given: v1 predates snapshot paths, v2 is a delta and v3 has a recorded snapshot
+        version(1L, "v1", null, null);
+        version(2L, "v2", null, "uploads/user/notes.txt/versions/v2/delta");
+        version(3L, "v3", "uploads/user/notes.txt/versions/v3/snapshot", null);
+        List<String> paths = List.of("uploads/user/notes.txt/versions/v1/notes.txt",
+                "uploads/user/notes.txt/versions/v2/delta", "uploads/user/notes.txt/versions/v3/snapshot");
+        for (String path : paths) {
+            blobStorage.write(new Storage(path, legacyBlob()));
+        }
+
+        // When
+        int migrated = migrationService.migrateBatch();
+
+        // Then
+        assertEquals(3, migrated);
+        for (String path : paths) {
+            assertTrue(BlobFormatUtil.hasHeader(blobStorage.read(new Storage(path, null))), path + " should be migrated");
+        }
+        verify(blobStorage, never()).readTaggedIfExists("uploads/user/notes.txt/versions/v2/notes.txt");
+        verify(blobStorage, never()).readTaggedIfExists("uploads/user/notes.txt/versions/v3/notes.txt");
+    }
+
+    @Test
+    void testBlobDeletedWhileBeingMigratedIsNotRecreated() throws Exception {
+        // Given: the version is deleted right after its blob was read
+        String path = "uploads/user/notes.txt/versions/v1/notes.txt";
+        version(1L, "v1", null, null);
+        blobStorage.write(new Storage(path, legacyBlob()));
+        doAnswer(invocation -> {
+            Object read = invocation.callRealMethod();
+            blobStorage.delete(new Storage(path, null));
+            return read;
+        }).when(blobStorage).readTaggedIfExists(anyString());
+
+        // When
+        int migrated = migrationService.migrateBatch();
+
+        // Then
+        assertEquals(0, migrated);
+        assertFalse(blobStorage.exists(new Storage(path, null)), "The deleted blob should not be written back");
+    }
+
+    private void version(long id, String versionNumber, String snapshotPath, String deltaPath) {
+        FileVersion version = new FileVersion();
+        version.setId(id);
+        version.setFile(file);
+        version.setVersionNumber(versionNumber);
+        version.setSnapshotPath(snapshotPath);
+        version.setDeltaPath(deltaPath);
+        versions.add(version);
+    }
+
+    private static byte[] legacyBlob() {
+        return Base64.getEncoder().encode("legacy payload".getBytes(StandardCharsets.UTF_8));
+    }
+}
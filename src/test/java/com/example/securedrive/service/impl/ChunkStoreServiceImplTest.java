@@ -0,0 +1,175 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.model.StoredChunk;
+import com.example.securedrive.repository.StoredChunkRepository;
+import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the chunk store against local blob storage, with the chunk rows kept in a map that
+ * behaves like the repository's queries.
+ */
+class ChunkStoreServiceImplTest {
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageServiceImpl blobStorage;
+    private StoredChunkRepository repository;
+    private final Map<String, StoredChunk> rows = new ConcurrentHashMap<>();
+    private SimpleMeterRegistry meterRegistry;
+    private ChunkStoreServiceImpl chunkStore;
+    private AesKey aesKey;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStorage = new LocalFileStorageServiceImpl(root.toString(), 1, false);
+        repository = mock(StoredChunkRepository.class);
+        when(repository.addReferences(anyString(), anyLong())).thenAnswer(invocation -> {
+            StoredChunk row = rows.get(invocation.<String>getArgument(0));
+            if (row == null) {
+                return 0;
+            }
+            row.setRefCount(row.getRefCount() + invocation.<Long>getArgument(1));
+            return 1;
+        });
+        when(repository.saveAndFlush(any(StoredChunk.class))).thenAnswer(invocation -> {
+            StoredChunk row = invocation.getArgument(0);
+            if (rows.putIfAbsent(row.getId(), row) != null) {
+                throw new DataIntegrityViolationException("Duplicate chunk " + row.getId());
+            }
+            return row;
+        });
+        when(repository.findPathById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<String>getArgument(0))).map(StoredChunk::getPath));
+        when(repository.deleteIfUnreferenced(anyString(), anyString())).thenAnswer(invocation ->
+                deleteIfUnreferenced(invocation.getArgument(0), invocation.getArgument(1)));
+
+        meterRegistry = new SimpleMeterRegistry();
+        // 256-byte average chunks keep the test content small
+        chunkStore = new ChunkStoreServiceImpl(blobStorage, repository, meterRegistry, true, 64, 256, 1024, "chunks");
+        aesKey = AesKey.fromBase64(AESUtil.generateAESKey());
+    }
+
+    @Test
+    void testStoringTheSameContentTwiceSharesItsChunks() throws Exception {
+        // Given
+        byte[] content = randomBytes(8 * 1024, 1);
+
+        // When
+        List<ChunkRef> first = chunkStore.store(new ByteArrayInputStream(content), aesKey);
+        List<ChunkRef> second = chunkStore.store(new ByteArrayInputStream(content), aesKey);
+
+        // Then
+        assertEquals(first, second, "Identical content should produce the same manifest");
+        assertEquals(first.stream().map(ChunkRef::id).distinct().count(), rows.size(), "Each chunk should be stored once");
+        assertEquals(rows.size(), blobStorage.list("chunks/").size(), "Each chunk should have one blob");
+        rows.values().forEach(row -> assertEquals(2L, row.getRefCount(), "Both manifests should reference every chunk"));
+        assertEquals((double) rows.size(), meterRegistry.counter("securedrive.chunkstore.chunks", "result", "deduplicated").count());
+        assertArrayEquals(content, chunkStore.openContent(second, aesKey).readAllBytes());
+    }
+
+    @Test
+    void testChunkIsDeletedOnlyWhenTheLastReferenceIsReleased() throws Exception {
+        // Given
+        byte[] content = randomBytes(4 * 1024, 2);
+        List<ChunkRef> first = chunkStore.store(new ByteArrayInputStream(content), aesKey);
+        List<ChunkRef> second = chunkStore.store(new ByteArrayInputStream(content), aesKey);
+
+        // When
+        chunkStore.release(first);
+
+        // Then
+        assertArrayEquals(content, chunkStore.openContent(second, aesKey).readAllBytes(), "The other manifest should still read");
+
+        // When
+        chunkStore.release(second);
+
+        // Then
+        assertTrue(rows.isEmpty(), "No chunk rows should be left");
+        assertTrue(blobStorage.list("chunks/").isEmpty(), "No chunk blobs should be left");
+    }
+
+    @Test
+    void testFailedStoreReleasesTheChunksItReferenced() throws Exception {
+        // Given: a stream that fails after several chunks
+        byte[] content = randomBytes(8 * 1024, 3);
+        InputStream failing = new InputStream() {
+            private final InputStream delegate = new ByteArrayInputStream(content);
+
+            @Override
+            public int read() throws IOException {
+                int b = delegate.read();
+                if (b == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return b;
+            }
+        };
+
+        // When / Then
+        assertThrows(IOException.class, () -> chunkStore.store(failing, aesKey));
+        assertTrue(rows.isEmpty(), "References taken before the failure should be released");
+        assertTrue(blobStorage.list("chunks/").isEmpty(), "Chunks stored before the failure should be deleted");
+    }
+
+    @Test
+    void testChunkStoredAgainWhileItsLastReferenceIsReleasedSurvives() throws Exception {
+        // Given: another upload stores the same content right after the release removed the row
+        byte[] content = randomBytes(2 * 1024, 4);
+        List<ChunkRef> released = chunkStore.store(new ByteArrayInputStream(content), aesKey);
+        AtomicReference<List<ChunkRef>> storedAgain = new AtomicReference<>();
+        when(repository.deleteIfUnreferenced(anyString(), anyString())).thenAnswer(invocation -> {
+            int deleted = deleteIfUnreferenced(invocation.getArgument(0), invocation.getArgument(1));
+            if (storedAgain.get() == null) {
+                storedAgain.set(chunkStore.store(new ByteArrayInputStream(content), aesKey));
+            }
+            return deleted;
+        });
+
+        // When
+        chunkStore.release(released);
+
+        // Then
+        assertArrayEquals(content, chunkStore.openContent(storedAgain.get(), aesKey).readAllBytes(),
+                "The release should not delete the blob of the chunk stored again");
+    }
+
+    private int deleteIfUnreferenced(String id, String path) {
+        StoredChunk row = rows.get(id);
+        if (row == null || !row.getPath().equals(path) || row.getRefCount() > 0) {
+            return 0;
+        }
+        rows.remove(id);
+        return 1;
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.mapper.DirectoryMapper;
+import com.example.securedrive.model.Directory;
+import com.example.securedrive.model.File;
+import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.repository.DirectoryRepository;
+import com.example.securedrive.repository.DirectoryShareRepository;
+import com.example.securedrive.repository.FileRepository;
+import com.example.securedrive.repository.FileShareRepository;
+import com.example.securedrive.repository.FileVersionRepository;
+import com.example.securedrive.repository.UserRepository;
+import com.example.securedrive.security.AzureBlobSASTokenGenerator;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.ChunkStoreService;
+import com.example.securedrive.service.UserManagementService;
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class DirectoryServiceImplTest {
+
+    private BlobStorageService blobStorageService;
+    private FileVersionRepository fileVersionRepository;
+    private ChunkStoreService chunkStoreService;
+    private DirectoryServiceImpl directoryService;
+    private Directory directory;
+
+    private final List<ChunkRef> chunks = List.of(new ChunkRef("aa01", 10), new ChunkRef("bb02", 20));
+    private final List<String> fileBlobs = List.of(
+            "uploads/user/report.bin/versions/v1/report.bin",
+            "uploads/user/report.bin/versions/v2/manifest.bin");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStorageService = mock(BlobStorageService.class);
+        fileVersionRepository = mock(FileVersionRepository.class);
+        chunkStoreService = mock(ChunkStoreService.class);
+        directoryService = new DirectoryServiceImpl(mock(DirectoryRepository.class), blobStorageService, mock(FileRepository.class),
+                fileVersionRepository, mock(DirectoryMapper.class), mock(UserManagementService.class),
+                mock(DirectoryShareRepository.class), mock(FileShareRepository.class), mock(AzureBlobSASTokenGenerator.class),
+                mock(UserRepository.class), chunkStoreService);
+
+        // A file with one plain version and one chunked version
+        File file = new File();
+        file.setId(7L);
+        file.setPath("uploads/user/report.bin");
+        FileVersion plain = new FileVersion();
+        plain.setVersionNumber("v1");
+        FileVersion chunked = new FileVersion();
+        chunked.setVersionNumber("v2");
+        chunked.setManifestPath("uploads/user/report.bin/versions/v2/manifest.bin");
+        when(fileVersionRepository.findAllByFile(file)).thenReturn(List.of(plain, chunked));
+        when(chunkStoreService.loadManifest(chunked.getManifestPath())).thenReturn(chunks);
+        when(blobStorageService.list("uploads/user/report.bin/")).thenReturn(fileBlobs);
+
+        directory = new Directory();
+        directory.setId(3L);
+        directory.getFiles().add(file);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testDeletingADirectoryReleasesTheChunksOfItsFiles() throws Exception {
+        // When
+        directoryService.deleteDirectory(directory);
+
+        // Then
+        verify(chunkStoreService).release(chunks);
+        verify(blobStorageService).deleteAll(fileBlobs);
+    }
+
+    @Test
+    void testBlobsAreDeletedOnlyAfterTheTransactionCommits() throws Exception {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        directoryService.deleteDirectory(directory);
+
+        // Then: the rows are gone but the content is kept until the commit
+        verify(fileVersionRepository).deleteAllByFile(any(File.class));
+        verify(blobStorageService, never()).deleteAll(anyCollection());
+        verify(chunkStoreService, never()).release(any());
+
+        // When
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Then
+        verify(chunkStoreService).release(chunks);
+        verify(blobStorageService).deleteAll(fileBlobs);
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.dto.FileDeleteSpecificVersionRequestDto;
+import com.example.securedrive.dto.FileUploadRequestDto;
+import com.example.securedrive.mapper.UserMapper;
+import com.example.securedrive.model.File;
+import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.model.User;
+import com.example.securedrive.repository.FileRepository;
+import com.example.securedrive.repository.FileShareRepository;
+import com.example.securedrive.repository.FileVersionRepository;
+import com.example.securedrive.repository.UserRepository;
+import com.example.securedrive.security.KeyVaultService;
+import com.example.securedrive.service.ChunkStoreService;
+import com.example.securedrive.service.DirectoryService;
+import com.example.securedrive.service.FileManagementService;
+import com.example.securedrive.service.ReconstructedContentCache;
+import com.example.securedrive.service.UserManagementService;
+import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.VersionChainUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Uploads run end to end against local blob storage and the real version service; only the
+ * repositories and the key vault are mocked, with the versions kept in a list.
+ */
+class FileFacadeServiceImplTest {
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageServiceImpl blobStorage;
+    private KeyVaultService keyVaultService;
+    private FileManagementService fileManagementService;
+    private FileVersionRepository fileVersionRepository;
+    private FileVersionManagementServiceImpl fileVersionManagementService;
+    private final List<FileVersion> versions = new ArrayList<>();
+    private String aesKey;
+    private long largeFileThreshold = 1024 * 1024 * 1024;
+    private ReconstructedContentCache contentCache = mock(ReconstructedContentCache.class);
+    private User user;
+    private File storedFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStorage = new LocalFileStorageServiceImpl(root.toString(), 1, false);
+        keyVaultService = mock(KeyVaultService.class);
+        aesKey = AESUtil.generateAESKey();
+        when(keyVaultService.getEncryptionKeyFromKeyVault(anyString())).thenReturn(aesKey);
+
+        user = new User();
+        user.setUsername("user");
+
+        fileVersionRepository = mock(FileVersionRepository.class);
+        when(fileVersionRepository.findAllByFile(any(File.class))).thenAnswer(invocation -> new ArrayList<>(versions));
+        when(fileVersionRepository.save(any(FileVersion.class))).thenAnswer(invocation -> {
+            FileVersion version = invocation.getArgument(0);
+            if (!versions.contains(version)) {
+                version.setId((long) versions.size() + 1);
+                versions.add(version);
+                version.getFile().getVersions().add(version);
+            }
+            return version;
+        });
+        when(fileVersionRepository.findByFileAndVersionNumber(any(File.class), anyString())).thenAnswer(invocation ->
+                versions.stream().filter(version -> version.getVersionNumber().equals(invocation.getArgument(1))).findFirst().orElse(null));
+        doAnswer(invocation -> {
+            FileVersion version = invocation.getArgument(0);
+            versions.remove(version);
+            version.getFile().getVersions().remove(version);
+            return null;
+        }).when(fileVersionRepository).delete(any(FileVersion.class));
+
+        fileManagementService = mock(FileManagementService.class);
+        when(fileManagementService.findByFileNameAndUserDirectoryNull(anyString(), any(User.class))).thenAnswer(invocation -> storedFile);
+        doAnswer(invocation -> {
+            storedFile = invocation.getArgument(0);
+            storedFile.setId(1L);
+            return null;
+        }).when(fileManagementService).saveFile(any(File.class));
+    }
+
+    @Test
+    void testUploadFailsWithoutReplacingAMissingKey() {
+        // Given: the vault cannot return the user's key
+        when(keyVaultService.getEncryptionKeyFromKeyVault("user"))
+                .thenThrow(new IllegalStateException("Encryption key not found in Key Vault for user: user"));
+
+        // When
+        String result = facade(false).uploadFile(upload("notes.txt", "line 1\n"));
+
+        // Then
+        assertTrue(result.startsWith("File upload failed"), "Upload should fail rather than run under a new key");
+        verify(keyVaultService, never()).saveEncryptionKeyToKeyVault(anyString(), anyString());
+        assertTrue(versions.isEmpty(), "No version should be stored");
+    }
+
+    @Test
+    void testForwardDeltaIsStoredEncrypted() throws Exception {
+        // Given
+        FileFacadeServiceImpl facade = facade(false);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+
+        // When
+        facade.uploadFile(upload("notes.txt", "line 1\nsecret two\n"));
+
+        // Then
+        FileVersion v2 = versions.get(1);
+        assertNotNull(v2.getDeltaPath(), "v2 should be stored as a delta");
+        byte[] blob = blobStorage.read(new Storage(v2.getDeltaPath(), null));
+        assertEquals(BlobCipher.AES_GCM_ENVELOPE, BlobFormatUtil.readHeader(blob).cipher(), "Deltas should be encrypted");
+        assertFalse(new String(blob, StandardCharsets.ISO_8859_1).contains("secret two"), "The delta should not hold plaintext");
+        // The materialized copy would serve v2 on its own, so rebuild it from v1 and the delta
+        blobStorage.delete(new Storage(v2.getMaterializedPath(), null));
+        v2.setMaterializedPath(null);
+        assertEquals("line 1\nsecret two\n", read("v2"));
+    }
+
+    @Test
+    void testReverseDeltasAreEncryptedAndEveryVersionReadsBack() throws Exception {
+        // Given
+        FileFacadeServiceImpl facade = facade(true);
+
+        // When
+        facade.uploadFile(upload("notes.txt", "line 1\nsecret one\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\nline 3\n"));
+
+        // Then: the older versions became reverse deltas, encrypted like the snapshots they replaced
+        assertEquals(3, versions.size());
+        for (FileVersion version : versions.subList(0, 2)) {
+            assertTrue(VersionChainUtil.isReverseDelta(version), version.getVersionNumber() + " should be a reverse delta");
+            assertNull(version.getSnapshotPath(), "The snapshot should be replaced");
+            byte[] blob = blobStorage.read(new Storage(version.getDeltaPath(), null));
+            assertEquals(BlobCipher.AES_GCM_ENVELOPE, BlobFormatUtil.readHeader(blob).cipher(), "Reverse deltas should be encrypted");
+        }
+        byte[] oldestDelta = blobStorage.read(new Storage(versions.get(0).getDeltaPath(), null));
+        assertFalse(new String(oldestDelta, StandardCharsets.ISO_8859_1).contains("secret one"), "The delta should not hold plaintext");
+        assertEquals("line 1\nsecret one\n", read("v1"));
+        assertEquals("line 1\nline 2\n", read("v2"));
+        assertEquals("line 1\nline 2\nline 3\n", read("v3"));
+    }
+
+    @Test
+    void testDeletingVersionsAboveReverseDeltasKeepsTheRestReadable() throws Exception {
+        // Given
+        FileFacadeServiceImpl facade = facade(true);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\nline 3\n"));
+        facade.uploadFile(upload("notes.txt", "line 4\n"));
+
+        // When: the newest version goes, so the reverse delta below it is stored whole first
+        String result = facade.deleteSpecificVersion(new FileDeleteSpecificVersionRequestDto("user", 1L, "v4"));
+
+        // Then
+        assertEquals("File and version deleted successfully.", result);
+        FileVersion v3 = versions.get(2);
+        assertFalse(VersionChainUtil.isReverseDelta(v3), "v3 should have been materialized");
+        assertNotNull(v3.getSnapshotPath());
+        assertEquals("line 1\n", read("v1"));
+        assertEquals("line 1\nline 2\n", read("v2"));
+        assertEquals("line 1\nline 2\nline 3\n", read("v3"));
+
+        // When: a middle version goes, with a reverse delta below it
+        result = facade.deleteSpecificVersion(new FileDeleteSpecificVersionRequestDto("user", 1L, "v2"));
+
+        // Then
+        assertEquals("File and version deleted successfully.", result);
+        assertEquals(List.of("v1", "v3"), versions.stream().map(FileVersion::getVersionNumber).toList());
+        assertFalse(VersionChainUtil.isReverseDelta(versions.get(0)), "v1 should have been materialized");
+        assertEquals("line 1\n", read("v1"));
+        assertEquals("line 1\nline 2\nline 3\n", read("v3"));
+    }
+
+    @Test
+    void testDeletingVersionsBelowForwardDeltasKeepsTheRestReadable() throws Exception {
+        // Given: v1 is the checkpoint, v2 to v4 are forward deltas
+        FileFacadeServiceImpl facade = facade(false);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\nline 3\n"));
+        facade.uploadFile(upload("notes.txt", "line 4\n"));
+
+        // When: the checkpoint goes, so the forward delta above it is stored whole first
+        String result = facade.deleteSpecificVersion(new FileDeleteSpecificVersionRequestDto("user", 1L, "v1"));
+
+        // Then
+        assertEquals("File and version deleted successfully.", result);
+        FileVersion v2 = versions.get(0);
+        assertNull(v2.getDeltaPath(), "v2 should have been stored whole");
+        assertNotNull(v2.getSnapshotPath());
+        assertEquals("line 1\nline 2\n", read("v2"));
+        assertEquals("line 1\nline 2\nline 3\n", read("v3"));
+        assertEquals("line 4\n", read("v4"));
+
+        // When: a middle version goes, with a forward delta above it
+        result = facade.deleteSpecificVersion(new FileDeleteSpecificVersionRequestDto("user", 1L, "v3"));
+
+        // Then
+        assertEquals("File and version deleted successfully.", result);
+        assertEquals(List.of("v2", "v4"), versions.stream().map(FileVersion::getVersionNumber).toList());
+        FileVersion v4 = versions.get(1);
+        assertNull(v4.getDeltaPath(), "v4 should have been stored whole");
+        assertNotNull(v4.getSnapshotPath());
+        // Without its materialized copy v4 is read from the snapshot alone
+        blobStorage.delete(new Storage(v4.getMaterializedPath(), null));
+        v4.setMaterializedPath(null);
+        assertEquals("line 1\nline 2\n", read("v2"));
+        assertEquals("line 4\n", read("v4"));
+    }
+
+    @Test
+    void testLargeTextVersionsAreStreamedWholeInsteadOfDiffed() throws Exception {
+        // Given: a 64-byte threshold
+        largeFileThreshold = 64;
+        FileFacadeServiceImpl facade = facade(false);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+        String large = "line 1\n" + "line 2\n".repeat(20);
+        FileUploadRequestDto largeUpload = upload("notes.txt", large);
+        MultipartFile largeFile = spy(largeUpload.getFile());
+        largeUpload = new FileUploadRequestDto("user", null, largeFile, null);
+
+        // When
+        facade.uploadFile(largeUpload);
+        facade.uploadFile(upload("notes.txt", "line 3\n"));
+
+        // Then: neither the large version nor the one diffed against it is a delta
+        verify(largeFile, never()).getBytes();
+        assertEquals(3, versions.size());
+        for (FileVersion version : versions) {
+            assertNull(version.getDeltaPath(), version.getVersionNumber() + " should be stored whole");
+            assertNotNull(version.getSnapshotPath());
+        }
+        assertEquals(large, read("v2"));
+        assertEquals("line 3\n", read("v3"));
+    }
+
+    @Test
+    void testBlobReadsPerUploadDoNotGrowWithTheVersionCount() throws Exception {
+        // Given: no reconstruction cache, so each upload reads the previous version from storage
+        blobStorage = spy(blobStorage);
+        FileFacadeServiceImpl facade = facade(false);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+
+        // When
+        List<Integer> reads = new ArrayList<>();
+        StringBuilder content = new StringBuilder("line 1\n");
+        for (int i = 2; i <= 12; i++) {
+            content.append("line ").append(i).append('\n');
+            reads.add(blobReadsDuring(() -> facade.uploadFile(upload("notes.txt", content.toString()))));
+        }
+
+        // Then: the latest version's materialized copy is the only blob read, however long the chain
+        assertEquals(12, versions.size());
+        assertTrue(versions.get(versions.size() - 1).getDeltaPath() != null, "Later versions should be deltas");
+        assertEquals(Collections.nCopies(reads.size(), 1), reads, "Each upload should read one blob");
+    }
+
+    @Test
+    void testUploadsReadNoBlobsWhileTheLatestVersionIsCached() throws Exception {
+        // Given: a real reconstruction cache, which each stored version seeds
+        contentCache = new ReconstructedContentCacheImpl(new SimpleMeterRegistry(), 1024 * 1024, 1024 * 1024, "", 0);
+        blobStorage = spy(blobStorage);
+        FileFacadeServiceImpl facade = facade(false);
+        facade.uploadFile(upload("notes.txt", "line 1\n"));
+        facade.uploadFile(upload("notes.txt", "line 1\nline 2\n"));
+
+        // When
+        List<Integer> reads = new ArrayList<>();
+        StringBuilder content = new StringBuilder("line 1\nline 2\n");
+        for (int i = 3; i <= 12; i++) {
+            content.append("line ").append(i).append('\n');
+            reads.add(blobReadsDuring(() -> facade.uploadFile(upload("notes.txt", content.toString()))));
+        }
+
+        // Then
+        assertEquals(Collections.nCopies(reads.size(), 0), reads, "The previous version should come from the cache");
+        assertEquals(content.toString(), read("v12"));
+    }
+
+    // Blob reads of any kind made by the spied storage while action runs
+    private int blobReadsDuring(Runnable action) {
+        Set<String> readMethods = Set.of("read", "readIfExists", "readRange", "openInputStream", "transferTo");
+        int before = readCount(readMethods);
+        action.run();
+        return readCount(readMethods) - before;
+    }
+
+    private int readCount(Set<String> readMethods) {
+        return (int) mockingDetails(blobStorage).getInvocations().stream()
+                .filter(invocation -> readMethods.contains(invocation.getMethod().getName()))
+                .count();
+    }
+
+    private FileFacadeServiceImpl facade(boolean reverseDeltas) {
+        fileVersionManagementService = new FileVersionManagementServiceImpl(fileVersionRepository, blobStorage, keyVaultService,
+                contentCache, mock(ChunkStoreService.class), 20, 0, 64 * 1024 * 1024, 0,
+                1024 * 1024 * 1024, root.toString(), 2, 2);
+
+        UserManagementService userManagementService = mock(UserManagementService.class);
+        when(userManagementService.findByUsername("user")).thenReturn(Optional.of(user));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        FileRepository fileRepository = mock(FileRepository.class);
+        when(fileRepository.findByIdAndUser(anyLong(), any(User.class))).thenAnswer(invocation -> Optional.ofNullable(storedFile));
+        when(fileManagementService.findByIdAndUser(anyLong(), any(User.class))).thenAnswer(invocation -> Optional.ofNullable(storedFile));
+
+        return new FileFacadeServiceImpl(blobStorage, userManagementService, fileManagementService, fileVersionManagementService,
+                mock(FileShareRepository.class), keyVaultService, mock(DirectoryService.class), fileVersionRepository,
+                fileRepository, userRepository, mock(UserMapper.class), contentCache,
+                mock(ChunkStoreService.class), false, largeFileThreshold, root.toString(), 64 * 1024 * 1024, 1,
+                reverseDeltas, "sha-256");
+    }
+
+    private String read(String versionNumber) throws Exception {
+        return new String(fileVersionManagementService.reconstructFileBytes(storedFile, versionNumber, user), StandardCharsets.UTF_8);
+    }
+
+    private FileUploadRequestDto upload(String fileName, String content) {
+        return new FileUploadRequestDto("user", null,
+                new MockMultipartFile("file", fileName, "application/octet-stream", content.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.model.File;
+import com.example.securedrive.model.FileVersion;
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.model.User;
+import com.example.securedrive.repository.FileVersionRepository;
+import com.example.securedrive.security.KeyVaultService;
+import com.example.securedrive.service.BlobStorageService;
+import com.example.securedrive.service.ChunkStoreService;
+import com.example.securedrive.service.ReconstructedContentCache;
+import com.example.securedrive.service.util.AESUtil;
+import com.example.securedrive.service.util.AesKey;
+import com.example.securedrive.service.util.BlobFormatUtil;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import com.example.securedrive.service.util.DeltaUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FileVersionManagementServiceImplTest {
+
+    private FileVersionRepository fileVersionRepository;
+    private BlobStorageService blobStorage;
+    private FileVersionManagementServiceImpl service;
+    private final Map<String, byte[]> blobs = new HashMap<>();
+    private String aesKey;
+    private File file;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileVersionRepository = mock(FileVersionRepository.class);
+        blobStorage = mock(BlobStorageService.class);
+        KeyVaultService keyVaultService = mock(KeyVaultService.class);
+        ReconstructedContentCache cache = mock(ReconstructedContentCache.class);
+
+        aesKey = AESUtil.generateAESKey();
+        when(keyVaultService.getEncryptionKeyFromKeyVault(anyString())).thenReturn(aesKey);
+        when(blobStorage.readIfExists(any(Storage.class)))
+                .thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<Storage>getArgument(0).getFullPath())));
+
+        // Checkpoints every 20 versions and a delta ratio that never triggers
+        service = new FileVersionManagementServiceImpl(fileVersionRepository, blobStorage, keyVaultService, cache,
+                mock(ChunkStoreService.class), 20, 0, 64 * 1024 * 1024, 0, 1024 * 1024 * 1024, "", 4, 4);
+
+        user = new User();
+        user.setUsername("user");
+        file = new File();
+        file.setId(1L);
+        file.setFileName("notes.txt");
+        file.setPath("uploads/user/notes.txt");
+        file.setUser(user);
+    }
+
+    @Test
+    void testGetLatestContent_ReadsOneBlobRegardlessOfVersionCount() throws Exception {
+        for (int versionCount : new int[]{5, 15, 19}) {
+            // Given
+            List<FileVersion> versions = storeForwardChain(versionCount, true);
+            when(fileVersionRepository.findAllByFile(file)).thenReturn(versions);
+            clearInvocations(blobStorage);
+
+            // When
+            String latest = service.getLatestContent(file, user);
+
+            // Then
+            assertEquals(contentOf(versionCount), latest, "Latest content should match the last upload");
+            verify(blobStorage, times(1)).readIfExists(any(Storage.class));
+        }
+    }
+
+    @Test
+    void testGetLatestContent_WithoutMaterializedCopyReplaysTheChain() throws Exception {
+        // Given
+        List<FileVersion> versions = storeForwardChain(10, false);
+        when(fileVersionRepository.findAllByFile(file)).thenReturn(versions);
+
+        // When
+        String latest = service.getLatestContent(file, user);
+
+        // Then
+        assertEquals(contentOf(10), latest, "Latest content should match the last upload");
+        verify(blobStorage, times(10)).readIfExists(any(Storage.class));
+    }
+
+    @Test
+    void testReconstructFileContent_OlderVersionIgnoresMaterializedCopy() throws Exception {
+        // Given
+        List<FileVersion> versions = storeForwardChain(8, true);
+        when(fileVersionRepository.findAllByFile(file)).thenReturn(versions);
+
+        // When
+        String content = service.reconstructFileContent(file, "v4", user);
+
+        // Then
+        assertEquals(contentOf(4), content, "Older versions are rebuilt from their checkpoint");
+        verify(blobStorage, times(4)).readIfExists(any(Storage.class));
+    }
+
+    @Test
+    void testReconstructFileContent_MissingDeltaFailsWithoutExistenceChecks() throws Exception {
+        // Given
+        List<FileVersion> versions = storeForwardChain(3, false);
+        blobs.remove(versions.get(1).getDeltaPath());
+        when(fileVersionRepository.findAllByFile(file)).thenReturn(versions);
+
+        // When / Then
+        Exception exception = assertThrows(Exception.class, () -> service.reconstructFileContent(file, "v3", user));
+        assertTrue(exception.getMessage().contains(versions.get(1).getDeltaPath()), "The missing blob should be named");
+        verify(blobStorage, never()).exists(any(Storage.class));
+    }
+
+    // v1 as a snapshot, later versions as forward text deltas, optionally with the latest materialized
+    private List<FileVersion> storeForwardChain(int count, boolean materializeLatest) throws Exception {
+        blobs.clear();
+        List<FileVersion> versions = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            String directory = file.getPath() + "/versions/v" + i + "/";
+            FileVersion version = new FileVersion();
+            version.setFile(file);
+            version.setVersionNumber("v" + i);
+            version.setHash("hash-" + i);
+            byte[] content = contentOf(i).getBytes(StandardCharsets.UTF_8);
+            version.setSize((long) content.length);
+            if (i == 1) {
+                version.setSnapshotPath(directory + file.getFileName());
+                blobs.put(version.getSnapshotPath(), BlobFormatUtil.encode(content, BlobCipher.AES_ECB, BlobCompression.NONE, AesKey.fromBase64(aesKey)));
+            } else {
+                version.setDeltaPath(directory + "delta");
+                byte[] delta = DeltaUtil.calculateDelta(contentOf(i - 1), contentOf(i)).getBytes(StandardCharsets.UTF_8);
+                blobs.put(version.getDeltaPath(), BlobFormatUtil.encode(delta, BlobCipher.NONE, BlobCompression.NONE, null));
+                version.setDeltaSize((long) delta.length);
+            }
+            versions.add(version);
+        }
+        if (materializeLatest) {
+            FileVersion latest = versions.get(count - 1);
+            latest.setMaterializedPath(file.getPath() + "/versions/v" + count + "/materialized/" + file.getFileName());
+            byte[] content = contentOf(count).getBytes(StandardCharsets.UTF_8);
+            blobs.put(latest.getMaterializedPath(), BlobFormatUtil.encode(content, BlobCipher.AES_ECB, BlobCompression.NONE, AesKey.fromBase64(aesKey)));
+        }
+        return versions;
+    }
+
+    private static String contentOf(int version) {
+        StringBuilder content = new StringBuilder();
+        for (int line = 1; line <= version; line++) {
+            content.append("line ").append(line).append('\n');
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.securedrive.service.impl;
+
+import com.example.securedrive.exception.AzureBlobStorageException;
+import com.example.securedrive.model.Storage;
+import com.example.securedrive.service.BlobStorageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileStorageServiceImplTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testWriteAndReadRoundTrip() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(16);
+        byte[] data = "hello local storage".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        storage.write(new Storage("uploads/user/notes.txt/versions/v1/notes.txt", data));
+
+        // Then
+        assertArrayEquals(data, storage.read(new Storage("uploads/user/notes.txt/versions/v1/notes.txt", null)));
+        assertTrue(storage.exists(new Storage("uploads/user/notes.txt/versions/v1/notes.txt", null)));
+    }
+
+    @Test
+    void testMissingBlobIsEmptyOrNotFound() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(16);
+
+        // Then
+        assertTrue(storage.readIfExists(new Storage("missing/blob", null)).isEmpty(), "A missing blob should be empty");
+        assertThrows(AzureBlobStorageException.class, () -> storage.read(new Storage("missing/blob", null)));
+        assertFalse(storage.deleteIfExists(new Storage("missing/blob", null)));
+        assertThrows(AzureBlobStorageException.class, () -> storage.delete(new Storage("missing/blob", null)));
+    }
+
+    @Test
+    void testBlobAndBlobsNestedUnderItsNameCoexist() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(1);
+
+        // When
+        storage.write(new Storage("uploads/user/notes.txt", new byte[]{1}));
+        storage.write(new Storage("uploads/user/notes.txt/versions/v1/delta", new byte[]{2}));
+
+        // Then
+        assertArrayEquals(new byte[]{1}, storage.read(new Storage("uploads/user/notes.txt", null)));
+        assertArrayEquals(new byte[]{2}, storage.read(new Storage("uploads/user/notes.txt/versions/v1/delta", null)));
+    }
+
+    @Test
+    void testStreamedBlobIsPublishedOnlyOnClose() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(16);
+        storage.write(new Storage("blob", "old".getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        OutputStream out = storage.openOutputStream("blob");
+        out.write("new content".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertEquals("old", new String(storage.read(new Storage("blob", null)), StandardCharsets.UTF_8),
+                "Readers should keep seeing the old blob until the stream is closed");
+        out.close();
+        assertEquals("new content", new String(storage.read(new Storage("blob", null)), StandardCharsets.UTF_8));
+        assertEquals(List.of("blob"), storage.list(""), "No temporary files should be left behind");
+    }
+
+    @Test
+    void testListReturnsBlobsUnderPrefixAcrossShards() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(256);
+        for (int i = 0; i < 20; i++) {
+            storage.write(new Storage("chunks/" + i, new byte[]{(byte) i}));
+        }
+        storage.write(new Storage("uploads/user/a.txt/versions/v1/a.txt", new byte[1]));
+        storage.write(new Storage("uploads/user/a.txt/versions/v2/delta", new byte[1]));
+        storage.write(new Storage("uploads/user/a.txt2/versions/v1/a.txt2", new byte[1]));
+
+        // When
+        List<String> versions = storage.list("uploads/user/a.txt/");
+        List<String> chunks = storage.list("chunks/");
+
+        // Then
+        assertEquals(List.of("uploads/user/a.txt/versions/v1/a.txt", "uploads/user/a.txt/versions/v2/delta"), versions);
+        assertEquals(20, chunks.size());
+        try (Stream<Path> shards = Files.list(root)) {
+            assertTrue(shards.count() > 1, "Blobs should be spread over several shard directories");
+        }
+    }
+
+    @Test
+    void testDeleteAllCountsDeletedBlobs() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(16);
+        storage.write(new Storage("a", new byte[1]));
+        storage.write(new Storage("b", new byte[1]));
+
+        // When
+        int deleted = storage.deleteAll(List.of("a", "b", "c"));
+
+        // Then
+        assertEquals(2, deleted, "Only existing blobs should be counted");
+        assertTrue(storage.list("").isEmpty());
+    }
+
+    @Test
+    void testReadRangeAndTransferTo() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(16);
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        storage.write(new Storage("large", data));
+
+        // When
+        byte[] range = storage.readRange("large", 99_990, 100);
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        long transferred = storage.transferTo("large", Channels.newChannel(copy));
+
+        // Then
+        assertEquals(10, range.length, "A range past the end should be cut at the end of the blob");
+        assertEquals((byte) 99_990, range[0]);
+        assertEquals(data.length, transferred);
+        assertArrayEquals(data, copy.toByteArray());
+    }
+
+    @Test
+    void testPathsOutsideTheRootAreRejected() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(1);
+
+        // Then
+        assertThrows(AzureBlobStorageException.class, () -> storage.write(new Storage("../escape", new byte[1])));
+        assertThrows(AzureBlobStorageException.class, () -> storage.write(new Storage("/absolute", new byte[1])));
+        assertThrows(AzureBlobStorageException.class, () -> storage.list("../"));
+    }
+
+    @Test
+    void testConditionalWriteFailsOnceTheBlobChangedOrWasDeleted() throws Exception {
+        // Given
+        LocalFileStorageServiceImpl storage = storage(1);
+        storage.write(new Storage("blob", new byte[]{1}));
+        BlobStorageService.TaggedBlob read = storage.readTaggedIfExists("blob").orElseThrow();
+
+        // When / Then: an unchanged blob is replaced
+        assertArrayEquals(new byte[]{1}, read.data());
+        assertTrue(storage.writeIfMatch("blob", new byte[]{2}, read.eTag()));
+        assertArrayEquals(new byte[]{2}, storage.read(new Storage("blob", null)));
+
+        // When / Then: the ETag read before that write no longer matches
+        assertFalse(storage.writeIfMatch("blob", new byte[]{3}, read.eTag()));
+        assertArrayEquals(new byte[]{2}, storage.read(new Storage("blob", null)));
+
+        // When / Then: a deleted blob is not recreated
+        String eTag = storage.readTaggedIfExists("blob").orElseThrow().eTag();
+        storage.delete(new Storage("blob", null));
+        assertFalse(storage.writeIfMatch("blob", new byte[]{4}, eTag));
+        assertTrue(storage.readTaggedIfExists("blob").isEmpty(), "The deleted blob should stay deleted");
+    }
+
+    private LocalFileStorageServiceImpl storage(int shardCount) throws Exception {
+        return new LocalFileStorageServiceImpl(root.toString(), shardCount, false);
+    }
+}
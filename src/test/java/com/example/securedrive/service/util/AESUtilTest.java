@@ -2,6 +2,9 @@ package com.example.securedrive.service.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 
@@ -72,5 +75,24 @@ class AESUtilTest {
         assertThrows(Exception.class, () -> AESUtil.encrypt(originalData, invalidKey),
                 "Encrypting with an invalid key should throw an exception");
     }
-}
 
+    @Test
+    void testEncryptingStreamMatchesEncrypt() throws Exception {
+        // Given
+        String key = AESUtil.generateAESKey();
+        byte[] originalData = "Streamed content that spans more than one AES block.".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        // When
+        try (OutputStream out = AESUtil.encryptingStream(sink, key)) {
+            out.write(originalData, 0, 10);
+            out.write(originalData, 10, originalData.length - 10);
+        }
+
+        // Then
+        assertArrayEquals(AESUtil.encrypt(originalData, key), sink.toByteArray(),
+                "Streamed encryption should produce the same ciphertext as encrypt()");
+        assertArrayEquals(originalData, AESUtil.decrypt(sink.toByteArray(), key),
+                "Streamed ciphertext should decrypt to the original data");
+    }
+}
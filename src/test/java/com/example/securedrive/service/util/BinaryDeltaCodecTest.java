@@ -0,0 +1,69 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.BinaryDeltaUtil.CommandType;
+import com.example.securedrive.service.util.BinaryDeltaUtil.DeltaCommand;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryDeltaCodecTest {
+
+    @Test
+    void testRoundTripRebuildsSameFile() throws Exception {
+        // Given
+        byte[] original = new byte[200_000];
+        new Random(11).nextBytes(original);
+        byte[] modified = original.clone();
+        System.arraycopy("inserted change".getBytes(StandardCharsets.UTF_8), 0, modified, 100_000, 15);
+        List<DeltaCommand> delta = BinaryDeltaUtil.calculateDelta(original, modified);
+
+        // When
+        byte[] encoded = BinaryDeltaCodec.encode(delta);
+        List<DeltaCommand> decoded = BinaryDeltaCodec.read(new ByteArrayInputStream(encoded));
+
+        // Then
+        assertTrue(BinaryDeltaCodec.isCompact(encoded), "Encoded delta should start with the codec magic");
+        assertEquals(delta.size(), decoded.size());
+        assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, decoded), "Decoded delta should rebuild the modified file");
+    }
+
+    @Test
+    void testCompactEncodingIsMuchSmallerThanJson() throws Exception {
+        // Given: many small COPY runs, the common shape of deltas between close versions
+        List<DeltaCommand> delta = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            delta.add(new DeltaCommand(CommandType.COPY, i * 8192, 8192, null));
+            delta.add(new DeltaCommand(CommandType.LITERAL, 0, 2, new byte[]{1, 2}));
+        }
+
+        // When
+        byte[] compact = BinaryDeltaCodec.encode(delta);
+        byte[] json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(delta);
+
+        // Then
+        assertTrue(compact.length * 10 < json.length, "Compact delta (" + compact.length + " bytes) should be an order of magnitude smaller than JSON (" + json.length + " bytes)");
+    }
+
+    @Test
+    void testLegacyJsonDeltaIsStillDecoded() throws Exception {
+        // Given
+        List<DeltaCommand> delta = List.of(
+                new DeltaCommand(CommandType.COPY, 0, 4, null),
+                new DeltaCommand(CommandType.LITERAL, 0, 3, "new".getBytes(StandardCharsets.UTF_8)));
+        byte[] json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(delta);
+
+        // When
+        List<DeltaCommand> decoded = BinaryDeltaCodec.decode(json);
+
+        // Then
+        assertFalse(BinaryDeltaCodec.isCompact(json));
+        assertArrayEquals("textnew".getBytes(StandardCharsets.UTF_8), BinaryDeltaUtil.applyDelta("text".getBytes(StandardCharsets.UTF_8), decoded));
+    }
+}
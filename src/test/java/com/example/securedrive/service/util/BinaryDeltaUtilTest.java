@@ -3,8 +3,11 @@ package com.example.securedrive.service.util;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -121,4 +124,88 @@ class BinaryDeltaUtilTest {
         }
     }
 
+    @Test
+    void testBufferAndStreamingApplyMatchArrayApply() throws Exception {
+        // Given: a two-step chain, applied the way streamed downloads apply it
+        byte[] v1 = "The quick brown fox jumps over the lazy dog. ".repeat(50).getBytes();
+        byte[] v2 = "The quick red fox jumps over the lazy dog! ".repeat(50).getBytes();
+        byte[] v3 = "A quick red fox jumps over the sleepy dog! ".repeat(50).getBytes();
+        List<BinaryDeltaUtil.DeltaCommand> delta2 = BinaryDeltaUtil.calculateDelta(v1, v2);
+        List<BinaryDeltaUtil.DeltaCommand> delta3 = BinaryDeltaUtil.calculateDelta(v2, v3);
+        DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+
+        // When
+        ByteBuffer base = pool.acquire(v1.length);
+        base.put(v1).flip();
+        ByteBuffer next = pool.acquire((int) BinaryDeltaUtil.outputLength(delta2));
+        int written = BinaryDeltaUtil.applyDelta(base, delta2, next);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long streamed = BinaryDeltaUtil.applyDelta(next, delta3, out);
+
+        // Then
+        assertEquals(v2.length, written);
+        assertEquals(v3.length, streamed);
+        assertArrayEquals(v3, out.toByteArray(), "Streaming the last delta should produce the target version");
+        pool.release(base);
+        pool.release(next);
+    }
+
+    @Test
+    void testMatchFinderFallsBackAsBudgetShrinks() {
+        // Given
+        byte[] original = new byte[100_000];
+        new Random(11).nextBytes(original);
+
+        // When / Then
+        assertInstanceOf(SuffixAutomaton.class, BinaryDeltaUtil.matchFinderFor(original, Long.MAX_VALUE),
+                "Suffix automaton should be used when it fits the budget");
+        assertInstanceOf(HashChainMatcher.class, BinaryDeltaUtil.matchFinderFor(original, 2_000_000),
+                "Hash-chain matcher should be used when the automaton does not fit");
+        assertNull(BinaryDeltaUtil.matchFinderFor(original, 1_000), "No matcher should be built below both estimates");
+    }
+
+    @Test
+    void testDeltaRoundTripsUnderEveryBudget() {
+        // Given: scattered edits that leave sub-block matches for refinement
+        byte[] original = new byte[200_000];
+        new Random(12).nextBytes(original);
+        byte[] modified = original.clone();
+        for (int i = 100; i < modified.length; i += 700) {
+            modified[i] ^= 0x5A;
+        }
+
+        for (long budget : new long[]{Long.MAX_VALUE, 2_000_000, 0}) {
+            // When
+            List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaUtil.calculateDelta(original, modified, budget);
+
+            // Then
+            assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, delta),
+                    "Delta calculated with budget " + budget + " should rebuild the modified data");
+        }
+    }
+
+    @Test
+    void testParallelDeltaStitchesRegionBoundaries() {
+        // Given: 4 regions of 2 MB, with edits straddling each boundary
+        byte[] original = new byte[8 * 1024 * 1024];
+        new Random(13).nextBytes(original);
+        byte[] modified = original.clone();
+        for (int boundary = 2 * 1024 * 1024; boundary < modified.length; boundary += 2 * 1024 * 1024) {
+            for (int i = boundary - 3; i < boundary + 3; i++) {
+                modified[i] ^= 0x33;
+            }
+        }
+
+        // When
+        List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaUtil.calculateDeltaParallel(original, modified,
+                BinaryDeltaUtil.DEFAULT_MATCH_INDEX_BUDGET_BYTES, 4);
+
+        // Then
+        assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, delta), "Stitched delta should rebuild the modified data");
+        long literalBytes = delta.stream()
+                .filter(cmd -> cmd.type() == BinaryDeltaUtil.CommandType.LITERAL)
+                .mapToLong(BinaryDeltaUtil.DeltaCommand::length)
+                .sum();
+        assertTrue(literalBytes < 64 * 1024, "Only the edited bytes around each boundary should be literals");
+    }
 }
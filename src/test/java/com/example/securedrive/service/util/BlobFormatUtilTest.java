@@ -0,0 +1,170 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobFormatUtilTest {
+
+    @Test
+    void testEncodeDecodeWithEncryptionAndCompression() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "line\n".repeat(1_000).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        byte[] blob = BlobFormatUtil.encode(plaintext, BlobCipher.AES_ECB, BlobCompression.DEFLATE, key);
+        byte[] decoded = BlobFormatUtil.decode(blob, key, BlobCipher.AES_ECB);
+
+        // Then
+        assertTrue(BlobFormatUtil.hasHeader(blob), "Encoded blob should carry a format header");
+        BlobFormatUtil.Header header = BlobFormatUtil.readHeader(blob);
+        assertEquals(BlobFormatUtil.FORMAT_VERSION, header.version());
+        assertEquals(BlobCipher.AES_ECB, header.cipher());
+        assertEquals(BlobCompression.DEFLATE, header.compression());
+        assertTrue(blob.length < plaintext.length, "Compressible payload should shrink");
+        assertArrayEquals(plaintext, decoded);
+    }
+
+    @Test
+    void testDecodeLegacyBase64Blobs() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "legacy content".getBytes(StandardCharsets.UTF_8);
+        byte[] legacyEncrypted = Base64.getEncoder().encode(AESUtil.encrypt(plaintext, key));
+        byte[] legacyPlain = Base64.getEncoder().encode(plaintext);
+
+        // Then
+        assertFalse(BlobFormatUtil.hasHeader(legacyEncrypted));
+        assertArrayEquals(plaintext, BlobFormatUtil.decode(legacyEncrypted, key, BlobCipher.AES_ECB));
+        assertArrayEquals(plaintext, BlobFormatUtil.decode(legacyPlain, null, BlobCipher.NONE));
+    }
+
+    @Test
+    void testMigrateLegacyKeepsPayloadReadable() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "to be migrated".getBytes(StandardCharsets.UTF_8);
+        byte[] ciphertext = AESUtil.encrypt(plaintext, key);
+        byte[] legacy = Base64.getEncoder().encode(ciphertext);
+
+        // When
+        byte[] migrated = BlobFormatUtil.migrateLegacy(legacy, BlobCipher.AES_ECB);
+
+        // Then
+        assertEquals(BlobFormatUtil.HEADER_LENGTH + ciphertext.length, migrated.length, "Migration should drop the Base64 overhead");
+        assertArrayEquals(plaintext, BlobFormatUtil.decode(migrated, key, BlobCipher.NONE));
+        assertSame(migrated, BlobFormatUtil.migrateLegacy(migrated, BlobCipher.AES_ECB), "Migrated blobs should be left alone");
+    }
+
+    @Test
+    void testDecodingStreamMatchesDecode() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "streamed line\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        byte[] blob = BlobFormatUtil.encode(plaintext, BlobCipher.AES_ECB, BlobCompression.DEFLATE, key);
+        byte[] legacy = Base64.getEncoder().encode(AESUtil.encrypt(plaintext, key));
+
+        // Then
+        try (InputStream in = BlobFormatUtil.decodingStream(new ByteArrayInputStream(blob), key, BlobCipher.AES_ECB)) {
+            assertArrayEquals(plaintext, in.readAllBytes(), "Streamed decode should match decode for raw blobs");
+        }
+        try (InputStream in = BlobFormatUtil.decodingStream(new ByteArrayInputStream(legacy), key, BlobCipher.AES_ECB)) {
+            assertArrayEquals(plaintext, in.readAllBytes(), "Streamed decode should match decode for legacy blobs");
+        }
+    }
+
+    @Test
+    void testAesGcmBlobsRoundTripWholeAndStreamed() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "gcm line\n".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+
+        for (BlobCipher cipher : new BlobCipher[]{BlobCipher.AES_GCM, BlobCipher.AES_GCM_ENVELOPE}) {
+            for (BlobCompression compression : BlobCompression.values()) {
+                // When
+                byte[] blob = BlobFormatUtil.encode(plaintext, cipher, compression, key);
+                ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+                try (OutputStream out = BlobFormatUtil.encodingStream(streamed, cipher, compression, key)) {
+                    out.write(plaintext);
+                }
+
+                // Then
+                String variant = cipher + "/" + compression;
+                assertEquals(cipher, BlobFormatUtil.readHeader(blob).cipher());
+                assertArrayEquals(plaintext, BlobFormatUtil.decode(blob, key, BlobCipher.AES_ECB),
+                        "The header should override the legacy cipher hint for " + variant);
+                assertArrayEquals(plaintext, BlobFormatUtil.decode(streamed.toByteArray(), key, BlobCipher.AES_ECB),
+                        "Streamed writes should decode as a whole for " + variant);
+                try (InputStream in = BlobFormatUtil.decodingStream(new ByteArrayInputStream(blob), key, BlobCipher.AES_ECB)) {
+                    assertArrayEquals(plaintext, in.readAllBytes(), "Streamed reads should match decode for " + variant);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAesGcmBlobHeaderIsAuthenticated() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] blob = BlobFormatUtil.encode("authenticated".getBytes(StandardCharsets.UTF_8),
+                BlobCipher.AES_GCM_ENVELOPE, BlobCompression.NONE, key);
+
+        // When: claim the payload is compressed
+        byte[] relabelled = blob.clone();
+        System.arraycopy(BlobFormatUtil.headerBytes(BlobCipher.AES_GCM_ENVELOPE, BlobCompression.DEFLATE), 0,
+                relabelled, 0, BlobFormatUtil.HEADER_LENGTH);
+
+        // Then
+        assertThrows(IOException.class, () -> BlobFormatUtil.decode(relabelled, key, BlobCipher.AES_ECB),
+                "Changing the header should break authentication");
+    }
+
+    @Test
+    void testVersionOneEcbBlobsStayReadable() throws Exception {
+        // Given: a blob written before AES-GCM became the default
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "written by version one".getBytes(StandardCharsets.UTF_8);
+        byte[] blob = BlobFormatUtil.encode(plaintext, BlobCipher.AES_ECB, BlobCompression.NONE, key);
+        blob[4] = 1;
+
+        // Then
+        assertEquals(1, BlobFormatUtil.readHeader(blob).version());
+        assertArrayEquals(plaintext, BlobFormatUtil.decode(blob, key, BlobCipher.AES_ECB));
+    }
+
+    @Test
+    void testRewrapKeyChangesOnlyTheEnvelopePrefix() throws Exception {
+        // Given
+        String oldKey = AESUtil.generateAESKey();
+        String newKey = AESUtil.generateAESKey();
+        byte[] plaintext = "rotated without re-encryption".getBytes(StandardCharsets.UTF_8);
+        byte[] blob = BlobFormatUtil.encode(plaintext, BlobCipher.AES_GCM_ENVELOPE, BlobCompression.NONE, AesKey.fromBase64(oldKey));
+
+        // When: only the prefix is read and rewritten
+        byte[] prefix = BlobFormatUtil.rewrapKey(Arrays.copyOf(blob, BlobFormatUtil.ENVELOPE_PREFIX_LENGTH), oldKey, newKey);
+        byte[] rotated = blob.clone();
+        System.arraycopy(prefix, 0, rotated, 0, prefix.length);
+
+        // Then
+        assertEquals(BlobFormatUtil.ENVELOPE_PREFIX_LENGTH, prefix.length);
+        assertArrayEquals(Arrays.copyOfRange(blob, prefix.length, blob.length), Arrays.copyOfRange(rotated, prefix.length, rotated.length),
+                "The encrypted payload should be untouched");
+        assertArrayEquals(plaintext, BlobFormatUtil.decode(rotated, AesKey.fromBase64(newKey), BlobCipher.NONE));
+        assertThrows(IOException.class, () -> BlobFormatUtil.decode(rotated, AesKey.fromBase64(oldKey), BlobCipher.NONE),
+                "The old key should no longer unwrap the data key");
+        assertThrows(IllegalArgumentException.class, () -> BlobFormatUtil.rewrapKey(
+                BlobFormatUtil.encode(plaintext, BlobCipher.AES_GCM, BlobCompression.NONE, AesKey.fromBase64(oldKey)), oldKey, newKey));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockIndexTest {
+
+    @Test
+    void testFindsEveryBlockByItsChecksum() {
+        // Given: enough blocks to take the parallel build path, including a short tail block
+        int blockSize = 64;
+        byte[] data = new byte[blockSize * 10_000 + 17];
+        new Random(3).nextBytes(data);
+
+        // When
+        BlockIndex index = BlockIndex.build(data, blockSize);
+
+        // Then
+        assertEquals(10_001, index.size(), "Every block including the tail should be indexed");
+        for (int block = 0; block < index.size(); block++) {
+            long offset = (long) block * blockSize;
+            int len = (int) Math.min(blockSize, data.length - offset);
+            assertTrue(candidates(index, RollingChecksum.of(data, (int) offset, len)).contains(offset), "Block " + block + " should be found");
+        }
+    }
+
+    @Test
+    void testDuplicateBlocksAreReturnedInOffsetOrder() {
+        // Given
+        int blockSize = 16;
+        byte[] data = new byte[blockSize * 5];
+
+        // When
+        BlockIndex index = BlockIndex.build(data, blockSize);
+
+        // Then
+        assertEquals(List.of(0L, 16L, 32L, 48L, 64L), candidates(index, RollingChecksum.of(data, 0, blockSize)));
+        assertEquals(-1, index.firstCandidate(12345L), "Unknown checksums should have no candidates");
+    }
+
+    private List<Long> candidates(BlockIndex index, long weak) {
+        List<Long> offsets = new ArrayList<>();
+        for (int c = index.firstCandidate(weak); c >= 0; c = index.nextCandidate(c)) {
+            offsets.add(index.offsetAt(c));
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockTransferTest {
+
+    private ExecutorService executor;
+    private InMemoryBlockBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        store = new InMemoryBlockBlobStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRoundTripAcrossBlockBoundaries() throws Exception {
+        // Given
+        BlockTransfer transfer = new BlockTransfer(1024, 4, executor);
+        Random random = new Random(42);
+
+        for (int size : new int[]{0, 1, 1023, 1024, 1025, 4096, 10_000}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            // When
+            transfer.upload(store, "blob-" + size, data);
+            byte[] read = transfer.download(store, "blob-" + size);
+
+            // Then
+            assertArrayEquals(data, read, "Blob of " + size + " bytes should survive the round trip");
+        }
+    }
+
+    @Test
+    void testBlobWithinOneBlockIsOneRangeRequest() throws Exception {
+        // Given
+        BlockTransfer transfer = new BlockTransfer(1024, 4, executor);
+        store.put("small", new byte[1000]);
+
+        // When
+        transfer.download(store, "small");
+
+        // Then
+        assertEquals(1, store.rangeReads.get(), "A blob within one block should be read in one request");
+    }
+
+    @Test
+    void testLargeBlobIsStagedAsOrderedBlocks() throws Exception {
+        // Given
+        BlockTransfer transfer = new BlockTransfer(1000, 4, executor);
+
+        // When
+        transfer.upload(store, "large", new byte[9500]);
+
+        // Then
+        assertEquals(10, store.stagedBlocks.get(), "9500 bytes should take ten 1000-byte blocks");
+        assertEquals(1, store.commits.get(), "Blocks should be committed once");
+        assertEquals(9500, store.get("large").length);
+    }
+
+    @Test
+    void testRangeRequestsInFlightNeverExceedConcurrency() throws Exception {
+        // Given
+        BlockTransfer transfer = new BlockTransfer(100, 3, executor);
+        store.put("blob", new byte[5000]);
+        store.latencyMillis = 5;
+
+        // When
+        transfer.download(store, "blob");
+
+        // Then
+        assertTrue(store.maxInFlight.get() <= 3, "At most 3 ranges should be read at once, was " + store.maxInFlight.get());
+    }
+
+    @Test
+    void testParallelRangesOverlapLatency() throws Exception {
+        // Given: 16 ranges of 40 ms each, about 640 ms when read one by one
+        BlockTransfer transfer = new BlockTransfer(100, 8, executor);
+        store.put("blob", new byte[1600]);
+        store.latencyMillis = 40;
+
+        // When
+        long start = System.nanoTime();
+        transfer.download(store, "blob");
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertTrue(elapsedMillis < 400, "Ranges should be read in parallel, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testFailedBlockIsNotCommitted() {
+        // Given
+        BlockTransfer transfer = new BlockTransfer(100, 4, executor);
+        store.failingBlock = BlockTransfer.blockId(3);
+
+        // When / Then
+        IOException exception = assertThrows(IOException.class, () -> transfer.upload(store, "blob", new byte[1000]));
+        assertTrue(exception.getMessage().contains("stage failed"));
+        assertEquals(0, store.commits.get(), "A partial upload should never be committed");
+        assertNull(store.get("blob"));
+    }
+
+    @Test
+    void testBlobReplacedMidDownloadIsReadAgainWhole() throws Exception {
+        // Given: the blob is rewritten right after the first range was read
+        BlockTransfer transfer = new BlockTransfer(100, 4, executor);
+        byte[] original = new byte[1000];
+        Arrays.fill(original, (byte) 1);
+        byte[] replacement = new byte[1000];
+        Arrays.fill(replacement, (byte) 2);
+        store.put("blob", original);
+        AtomicInteger rewrites = new AtomicInteger();
+        store.afterRead = offset -> {
+            if (offset == 0 && rewrites.getAndIncrement() == 0) {
+                store.put("blob", replacement);
+            }
+        };
+
+        // When
+        byte[] read = transfer.download(store, "blob");
+
+        // Then
+        assertArrayEquals(replacement, read, "The download should restart and return only the new version");
+        assertEquals(2, rewrites.get(), "The download should have started twice");
+    }
+
+    @Test
+    void testBlobThatKeepsChangingFails() {
+        // Given: every download attempt sees a new version after its first range
+        BlockTransfer transfer = new BlockTransfer(100, 4, executor);
+        store.put("blob", new byte[1000]);
+        store.afterRead = offset -> {
+            if (offset == 0) {
+                store.put("blob", new byte[1000]);
+            }
+        };
+
+        // When / Then
+        IOException exception = assertThrows(IOException.class, () -> transfer.download(store, "blob"));
+        assertTrue(exception.getMessage().contains("kept changing"), "The download should give up, was: " + exception.getMessage());
+    }
+
+    @Test
+    void testBlockIdsHaveEqualLength() {
+        // Then
+        assertEquals(BlockTransfer.blockId(0).length(), BlockTransfer.blockId(123_456).length(),
+                "Block ids of one blob must all have the same length");
+    }
+
+    // In-process stand-in for Blob Storage with ETags, per-request counts and optional latency
+    static final class InMemoryBlockBlobStore implements BlockBlobStore {
+        private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+        private final Map<String, String> eTags = new ConcurrentHashMap<>();
+        private final AtomicInteger generation = new AtomicInteger();
+        private final Map<String, byte[]> staged = new ConcurrentHashMap<>();
+        final AtomicInteger stagedBlocks = new AtomicInteger();
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rangeReads = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile long latencyMillis;
+        volatile String failingBlock;
+        volatile LongConsumer afterRead;
+
+        synchronized void put(String path, byte[] data) {
+            blobs.put(path, data);
+            eTags.put(path, "\"" + generation.incrementAndGet() + "\"");
+        }
+
+        byte[] get(String path) {
+            return blobs.get(path);
+        }
+
+        @Override
+        public void stageBlock(String path, String blockId, byte[] data, int offset, int length) throws Exception {
+            request();
+            try {
+                if (blockId.equals(failingBlock)) {
+                    throw new IOException("stage failed: " + blockId);
+                }
+                staged.put(path + "#" + blockId, Arrays.copyOfRange(data, offset, offset + length));
+                stagedBlocks.incrementAndGet();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void commitBlocks(String path, List<String> blockIds) throws Exception {
+            commits.incrementAndGet();
+            int size = 0;
+            for (String blockId : blockIds) {
+                size += staged.get(path + "#" + blockId).length;
+            }
+            byte[] blob = new byte[size];
+            int position = 0;
+            for (String blockId : blockIds) {
+                byte[] block = staged.remove(path + "#" + blockId);
+                System.arraycopy(block, 0, blob, position, block.length);
+                position += block.length;
+            }
+            put(path, blob);
+        }
+
+        @Override
+        public RangeRead readRange(String path, long offset, int length, String ifMatch, OutputStream target) throws Exception {
+            request();
+            RangeRead read;
+            try {
+                rangeReads.incrementAndGet();
+                byte[] blob;
+                String eTag;
+                synchronized (this) {
+                    blob = blobs.get(path);
+                    eTag = eTags.get(path);
+                }
+                if (blob == null) {
+                    throw new IOException("Blob not found: " + path);
+                }
+                if (ifMatch != null && !ifMatch.equals(eTag)) {
+                    throw new BlobChangedException("ETag " + ifMatch + " no longer matches " + path);
+                }
+                int from = (int) Math.min(offset, blob.length);
+                target.write(blob, from, Math.min(length, blob.length - from));
+                read = new RangeRead(blob.length, eTag);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            LongConsumer hook = afterRead;
+            if (hook != null) {
+                hook.accept(offset);
+            }
+            return read;
+        }
+
+        private void request() throws InterruptedException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.ChunkManifestCodec.ChunkRef;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkManifestCodecTest {
+
+    @Test
+    void testManifestRoundTrip() throws Exception {
+        // Given
+        List<ChunkRef> chunks = List.of(
+                new ChunkRef(HashUtil.calculateHash("first".getBytes()), 5),
+                new ChunkRef(HashUtil.calculateHash("second".getBytes()), 6),
+                new ChunkRef(HashUtil.calculateHash("first".getBytes()), 5));
+
+        // When
+        List<ChunkRef> decoded = ChunkManifestCodec.decode(ChunkManifestCodec.encode(chunks));
+
+        // Then
+        assertEquals(chunks, decoded, "Decoded manifest should list the same chunks in order");
+        assertEquals(16, ChunkManifestCodec.contentLength(decoded), "Content length should be the sum of chunk lengths");
+    }
+
+    @Test
+    void testRejectsTruncatedManifest() {
+        // Given
+        byte[] manifest = ChunkManifestCodec.encode(List.of(new ChunkRef(HashUtil.calculateHash(new byte[1]), 1)));
+        byte[] truncated = Arrays.copyOf(manifest, manifest.length - 3);
+
+        // When / Then
+        assertThrows(IOException.class, () -> ChunkManifestCodec.decode(truncated), "Truncated manifest should be rejected");
+        assertThrows(IOException.class, () -> ChunkManifestCodec.decode("not a manifest".getBytes()), "Foreign data should be rejected");
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCipher;
+import com.example.securedrive.service.util.BlobFormatUtil.BlobCompression;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedAesGcmTest {
+
+    private static final byte[] HEADER = BlobFormatUtil.headerBytes(BlobCipher.AES_GCM, BlobCompression.NONE);
+
+    @Test
+    void testRoundTripAcrossChunkBoundaries() throws Exception {
+        // Given
+        SecretKeySpec key = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        Random random = new Random(7);
+
+        for (int size : new int[]{0, 1, 99, 100, 101, 1000, 12_345}) {
+            byte[] plaintext = new byte[size];
+            random.nextBytes(plaintext);
+
+            // When
+            byte[] payload = ChunkedAesGcm.encrypt(plaintext, key, ChunkedAesGcm.Params.create(HEADER, 100));
+            byte[] decrypted = ChunkedAesGcm.decrypt(payload, 0, HEADER, key);
+
+            // Then
+            assertArrayEquals(plaintext, decrypted, "Payload of " + size + " bytes should survive the round trip");
+            int chunks = Math.max(1, (size + 99) / 100);
+            assertEquals(ChunkedAesGcm.PARAMS_LENGTH + size + chunks * ChunkedAesGcm.TAG_LENGTH, payload.length);
+        }
+    }
+
+    @Test
+    void testStreamsMatchWholeArrayFormat() throws Exception {
+        // Given: enough chunks to span several parallel batches
+        SecretKeySpec key = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] plaintext = new byte[100 * 97 + 13];
+        new Random(3).nextBytes(plaintext);
+
+        // When: written in odd-sized pieces, decrypted both ways
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream out = ChunkedAesGcm.encryptingStream(encrypted, HEADER, key, 100)) {
+            for (int offset = 0; offset < plaintext.length; offset += 37) {
+                out.write(plaintext, offset, Math.min(37, plaintext.length - offset));
+            }
+        }
+        byte[] streamed;
+        try (InputStream in = ChunkedAesGcm.decryptingStream(new ByteArrayInputStream(encrypted.toByteArray()), HEADER, key)) {
+            streamed = in.readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(plaintext, streamed, "Streamed round trip should restore the plaintext");
+        assertArrayEquals(plaintext, ChunkedAesGcm.decrypt(encrypted.toByteArray(), 0, HEADER, key),
+                "Streamed and whole-array payloads should share one format");
+    }
+
+    @Test
+    void testFullLastChunkAndEmptyStream() throws Exception {
+        // Given
+        SecretKeySpec key = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+
+        for (int size : new int[]{0, 300}) {
+            byte[] plaintext = new byte[size];
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+            // When
+            try (OutputStream out = ChunkedAesGcm.encryptingStream(encrypted, HEADER, key, 100)) {
+                out.write(plaintext);
+            }
+
+            // Then
+            try (InputStream in = ChunkedAesGcm.decryptingStream(new ByteArrayInputStream(encrypted.toByteArray()), HEADER, key)) {
+                assertArrayEquals(plaintext, in.readAllBytes(), "Stream of " + size + " bytes should round trip");
+            }
+        }
+    }
+
+    @Test
+    void testTamperedPayloadsFailAuthentication() throws Exception {
+        // Given
+        SecretKeySpec key = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] payload = ChunkedAesGcm.encrypt(new byte[1000], key, ChunkedAesGcm.Params.create(HEADER, 100));
+        int record = 100 + ChunkedAesGcm.TAG_LENGTH;
+
+        // When
+        byte[] flipped = payload.clone();
+        flipped[ChunkedAesGcm.PARAMS_LENGTH + 5] ^= 1;
+        byte[] truncated = Arrays.copyOf(payload, payload.length - record);
+        byte[] swapped = payload.clone();
+        System.arraycopy(payload, ChunkedAesGcm.PARAMS_LENGTH, swapped, ChunkedAesGcm.PARAMS_LENGTH + record, record);
+        System.arraycopy(payload, ChunkedAesGcm.PARAMS_LENGTH + record, swapped, ChunkedAesGcm.PARAMS_LENGTH, record);
+        byte[] otherHeader = BlobFormatUtil.headerBytes(BlobCipher.AES_GCM, BlobCompression.DEFLATE);
+
+        // Then
+        assertThrows(IOException.class, () -> ChunkedAesGcm.decrypt(flipped, 0, HEADER, key), "A flipped bit should be detected");
+        assertThrows(IOException.class, () -> ChunkedAesGcm.decrypt(truncated, 0, HEADER, key),
+                "Dropping whole chunks from the end should be detected");
+        assertThrows(IOException.class, () -> ChunkedAesGcm.decrypt(swapped, 0, HEADER, key), "Reordered chunks should be detected");
+        assertThrows(IOException.class, () -> ChunkedAesGcm.decrypt(payload, 0, otherHeader, key),
+                "A payload moved under another header should be detected");
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = ChunkedAesGcm.decryptingStream(new ByteArrayInputStream(truncated), HEADER, key)) {
+                in.readAllBytes();
+            }
+        }, "Streamed reads should detect truncation too");
+    }
+
+    @Test
+    void testSingleChunkCanBeDecryptedOnItsOwn() throws Exception {
+        // Given
+        SecretKeySpec key = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] plaintext = new byte[1050];
+        new Random(11).nextBytes(plaintext);
+        byte[] payload = ChunkedAesGcm.encrypt(plaintext, key, ChunkedAesGcm.Params.create(HEADER, 100));
+        ChunkedAesGcm.Params params = ChunkedAesGcm.Params.read(HEADER, payload, 0);
+
+        // When
+        int middle = (int) params.recordOffset(4);
+        byte[] chunk4 = ChunkedAesGcm.decryptChunk(key, params, 4,
+                Arrays.copyOfRange(payload, middle, middle + params.recordLength()), false);
+        int lastOffset = (int) params.recordOffset(10);
+        byte[] chunk10 = ChunkedAesGcm.decryptChunk(key, params, 10,
+                Arrays.copyOfRange(payload, lastOffset, payload.length), true);
+
+        // Then
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 400, 500), chunk4, "Chunk 4 should decrypt without the others");
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 1000, 1050), chunk10, "The last chunk should decrypt on its own");
+        assertThrows(IOException.class, () -> ChunkedAesGcm.decryptChunk(key, params, 5,
+                Arrays.copyOfRange(payload, middle, middle + params.recordLength()), false), "A chunk read at the wrong index should fail");
+    }
+}
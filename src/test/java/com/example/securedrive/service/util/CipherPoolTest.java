@@ -0,0 +1,47 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CipherPoolTest {
+
+    @Test
+    void testInstancesAreReusedPerThreadAndTransformation() throws Exception {
+        // When
+        Cipher first = CipherPool.get("AES/ECB/PKCS5Padding");
+        Cipher again = CipherPool.get("AES/ECB/PKCS5Padding");
+        Cipher gcm = CipherPool.get("AES/GCM/NoPadding");
+        Cipher otherThread = CompletableFuture.supplyAsync(() -> {
+            try {
+                return CipherPool.get("AES/ECB/PKCS5Padding");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+
+        // Then
+        assertSame(first, again, "A thread should get its own instance back");
+        assertNotSame(first, gcm, "Each transformation should have its own instance");
+        assertNotSame(first, otherThread, "Threads should not share instances");
+    }
+
+    @Test
+    void testPooledCipherRecoversFromFailedDecryption() throws Exception {
+        // Given
+        AesKey key = AesKey.fromBase64(AESUtil.generateAESKey());
+        byte[] plaintext = "pooled".getBytes(StandardCharsets.UTF_8);
+        byte[] ciphertext = AESUtil.encrypt(plaintext, key);
+
+        // When: a truncated ciphertext fails part way through the pooled cipher
+        assertThrows(Exception.class, () -> AESUtil.decrypt(Arrays.copyOf(ciphertext, ciphertext.length - 1), key));
+
+        // Then
+        assertArrayEquals(plaintext, AESUtil.decrypt(ciphertext, key), "A failed call should not poison the pooled cipher");
+    }
+}
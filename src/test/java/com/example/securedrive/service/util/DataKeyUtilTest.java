@@ -0,0 +1,63 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataKeyUtilTest {
+
+    private static final byte[] HEADER = {0, 'S', 'F', 'D', 3, 3, 0, 0};
+
+    @Test
+    void testWrapAndUnwrap() throws Exception {
+        // Given
+        SecretKeySpec userKey = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] dataKey = DataKeyUtil.generate();
+
+        // When
+        byte[] wrapped = DataKeyUtil.wrap(dataKey, userKey, HEADER);
+
+        // Then
+        assertEquals(DataKeyUtil.WRAPPED_KEY_LENGTH, wrapped.length);
+        assertArrayEquals(dataKey, DataKeyUtil.unwrap(wrapped, 0, userKey, HEADER));
+        assertFalse(Arrays.equals(wrapped, DataKeyUtil.wrap(dataKey, userKey, HEADER)),
+                "Each wrap should use a fresh nonce");
+    }
+
+    @Test
+    void testUnwrapFailsWithWrongKeyOrContext() throws Exception {
+        // Given
+        SecretKeySpec userKey = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] wrapped = DataKeyUtil.wrap(DataKeyUtil.generate(), userKey, HEADER);
+        byte[] otherHeader = HEADER.clone();
+        otherHeader[6] = 1;
+
+        // Then
+        assertThrows(IOException.class, () -> DataKeyUtil.unwrap(wrapped, 0,
+                ChunkedAesGcm.keySpec(AESUtil.generateAESKey()), HEADER), "Another user's key should not unwrap it");
+        assertThrows(IOException.class, () -> DataKeyUtil.unwrap(wrapped, 0, userKey, otherHeader),
+                "A changed header should not unwrap it");
+        assertThrows(IOException.class, () -> DataKeyUtil.unwrap(new byte[10], 0, userKey, HEADER));
+    }
+
+    @Test
+    void testRewrapKeepsDataKey() throws Exception {
+        // Given
+        SecretKeySpec oldKey = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        SecretKeySpec newKey = ChunkedAesGcm.keySpec(AESUtil.generateAESKey());
+        byte[] dataKey = DataKeyUtil.generate();
+        byte[] blob = new byte[4 + DataKeyUtil.WRAPPED_KEY_LENGTH];
+        System.arraycopy(DataKeyUtil.wrap(dataKey, oldKey, HEADER), 0, blob, 4, DataKeyUtil.WRAPPED_KEY_LENGTH);
+
+        // When
+        DataKeyUtil.rewrap(blob, 4, oldKey, newKey, HEADER);
+
+        // Then
+        assertArrayEquals(dataKey, DataKeyUtil.unwrap(blob, 4, newKey, HEADER), "The data key should survive rewrapping");
+        assertThrows(IOException.class, () -> DataKeyUtil.unwrap(blob, 4, oldKey, HEADER));
+    }
+}
@@ -3,7 +3,9 @@ package com.example.securedrive.service.util;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.*;
 import java.util.stream.IntStream;
 
@@ -14,7 +16,7 @@ class DeltaUtilLargeDataPerformanceTest {
     private static final int FILE_SIZE = 50_000_000;
 
     @Test
-    void testCalculateDelta_LargeModification_WithThreads() throws InterruptedException, ExecutionException {
+    void testCalculateDelta_LargeModification_WithThreads() {
         // Given
         byte[] original = createLargeData(0);
         byte[] modified = createLargeData(1);
@@ -23,16 +25,18 @@ class DeltaUtilLargeDataPerformanceTest {
             ExecutorService executor = Executors.newFixedThreadPool(threadCount);
 
             // When
-            Callable<List<BinaryDeltaUtil.DeltaCommand>> task = () -> BinaryDeltaUtil.calculateDelta(original, modified);
-            Future<List<BinaryDeltaUtil.DeltaCommand>> future = executor.submit(task);
-            List<BinaryDeltaUtil.DeltaCommand> delta = future.get();
+            long start = System.nanoTime();
+            List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaUtil.calculateDeltaParallel(original, modified,
+                    BinaryDeltaUtil.DEFAULT_MATCH_INDEX_BUDGET_BYTES, executor, threadCount);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
 
             executor.shutdown();
 
             // Then
-            System.out.println("Thread Count: " + threadCount + " | Generated delta commands: " + delta.size());
+            System.out.println("Thread Count: " + threadCount + " | Generated delta commands: " + delta.size() + " | " + elapsedMs + " ms");
             assertNotNull(delta, "Delta should not be null");
             assertFalse(delta.isEmpty(), "Delta should not be empty");
+            assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, delta), "Parallel delta should rebuild the modified file");
         }
     }
 
@@ -86,13 +90,9 @@ class DeltaUtilLargeDataPerformanceTest {
             ExecutorService executor = Executors.newFixedThreadPool(threadCount);
 
             // When
-            Callable<List<BinaryDeltaUtil.DeltaCommand>> task = () -> BinaryDeltaUtil.calculateDelta(original, modified);
-            Future<List<BinaryDeltaUtil.DeltaCommand>> future;
             try {
-                future = executor.submit(task);
-                future.get();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                BinaryDeltaUtil.calculateDeltaParallel(original, modified,
+                        BinaryDeltaUtil.DEFAULT_MATCH_INDEX_BUDGET_BYTES, executor, threadCount);
             } finally {
                 executor.shutdown();
             }
@@ -105,6 +105,72 @@ class DeltaUtilLargeDataPerformanceTest {
         }
     }
 
+    @Test
+    void testBlockBasedDiff_ShiftedRandomData_RollsInsteadOfRehashing() {
+        // Given: pseudo-random content with a byte inserted every 1 MB, so every block after an
+        // insertion is only found again by sliding the window across the whole block
+        byte[] original = createRandomData(FILE_SIZE, 42);
+        byte[] modified = insertEvery(original, 1_000_000);
+
+        // When
+        long start = System.nanoTime();
+        List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaUtil.blockBasedDiff(original, modified);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        System.out.println("Block matching on " + FILE_SIZE + " shifted bytes took " + elapsedMs + " ms | commands: " + delta.size());
+        assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, delta), "Block delta should rebuild the modified file");
+        long literalBytes = delta.stream()
+                .filter(cmd -> cmd.type() == BinaryDeltaUtil.CommandType.LITERAL)
+                .mapToLong(BinaryDeltaUtil.DeltaCommand::length)
+                .sum();
+        assertTrue(literalBytes < FILE_SIZE / 10, "Shifted blocks should be matched as COPY commands");
+    }
+
+    @Test
+    void testCalculateDeltaParallel_ShiftedRandomData_ScalesWithThreads() {
+        // Given
+        byte[] original = createRandomData(FILE_SIZE, 7);
+        byte[] modified = insertEvery(original, 1_000_000);
+
+        for (int threadCount : new int[]{1, 2, 4, 8}) {
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                // When
+                long start = System.nanoTime();
+                List<BinaryDeltaUtil.DeltaCommand> delta = BinaryDeltaUtil.calculateDeltaParallel(original, modified,
+                        BinaryDeltaUtil.DEFAULT_MATCH_INDEX_BUDGET_BYTES, executor, threadCount);
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+                // Then
+                System.out.println("Thread Count: " + threadCount + " | Parallel diff of shifted data took " + elapsedMs + " ms");
+                assertArrayEquals(modified, BinaryDeltaUtil.applyDelta(original, delta),
+                        "Stitched delta should rebuild the modified file with " + threadCount + " threads");
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private byte[] createRandomData(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private byte[] insertEvery(byte[] data, int interval) {
+        int insertions = data.length / interval;
+        byte[] result = new byte[data.length + insertions];
+        int out = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (i > 0 && i % interval == 0) {
+                result[out++] = (byte) i;
+            }
+            result[out++] = data[i];
+        }
+        return Arrays.copyOf(result, out);
+    }
+
     private byte[] createLargeData(int offset) {
         byte[] data = new byte[DeltaUtilLargeDataPerformanceTest.FILE_SIZE];
         IntStream.range(0, DeltaUtilLargeDataPerformanceTest.FILE_SIZE).forEach(i -> data[i] = (byte) ((i + offset) % 256));
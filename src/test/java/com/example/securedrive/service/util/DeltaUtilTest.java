@@ -2,6 +2,10 @@ package com.example.securedrive.service.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DeltaUtilTest {
@@ -16,8 +20,8 @@ class DeltaUtilTest {
         String delta = DeltaUtil.calculateDelta(oldData, newData);
 
         // Then
-        String expectedDelta = "A:2:Line3";
-        assertEquals(expectedDelta, delta);
+        assertEquals(List.of("@@ 2 0 1", "Line3"), hunkLines(delta));
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta));
     }
 
     @Test
@@ -30,8 +34,8 @@ class DeltaUtilTest {
         String delta = DeltaUtil.calculateDelta(oldData, newData);
 
         // Then
-        String expectedDelta = "R:2:Line3";
-        assertEquals(expectedDelta, delta);
+        assertEquals(List.of("@@ 2 1 0"), hunkLines(delta));
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta));
     }
 
     @Test
@@ -44,9 +48,8 @@ class DeltaUtilTest {
         String delta = DeltaUtil.calculateDelta(oldData, newData);
 
         // Then
-        // Artık "Önce ekle, sonra sil" (A -> R) yaklaşımını bekliyoruz:
-        String expectedDelta = "A:1:LineX\nR:1:Line2";
-        assertEquals(expectedDelta, delta);
+        assertEquals(List.of("@@ 1 1 1", "LineX"), hunkLines(delta));
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta));
     }
 
 
@@ -59,14 +62,87 @@ class DeltaUtilTest {
         // When
         String delta = DeltaUtil.calculateDelta(oldData, newData);
 
-        // Debugging: Log the generated delta
-        System.out.println("Generated Delta:\n" + delta);
+        // Then: unchanged lines are kept instead of being re-added and removed
+        assertEquals(List.of("@@ 0 0 1", "Line0", "@@ 1 2 1", "LineX", "@@ 4 0 1", "Line5"), hunkLines(delta),
+                "The generated delta does not match the expected delta.");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta));
+    }
+
+    @Test
+    void testCalculateDelta_InsertNearTopKeepsFollowingLines() {
+        // Given
+        StringBuilder old = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            old.append("line ").append(i).append('\n');
+        }
+        String oldData = old.toString();
+        String newData = "header\n" + oldData;
+
+        // When
+        String delta = DeltaUtil.calculateDelta(oldData, newData);
+
+        // Then
+        assertEquals(List.of("@@ 0 0 1", "header"), hunkLines(delta), "Only the inserted line should be in the delta");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta), "Line endings and trailing newline should be kept");
+    }
+
+    @Test
+    void testCalculateDelta_PreservesLineEndings() {
+        // Given
+        String oldData = "a\r\nb\r\nc\r\n";
+        String newData = "a\r\nB\r\nc\r\n\r\n";
 
-        // Expected Delta
-        String expectedDelta = "A:0:Line0\nR:0:Line1\nA:1:Line1\nR:1:Line2\nA:2:LineX\nR:2:Line3\nA:4:Line5";
+        // When
+        String delta = DeltaUtil.calculateDelta(oldData, newData);
 
         // Then
-        assertEquals(expectedDelta, delta, "The generated delta does not match the expected delta.");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta));
+    }
+
+    @Test
+    void testApplyDelta_RejectsDifferentBase() {
+        // Given
+        String delta = DeltaUtil.calculateDelta("Line1\nLine2", "Line1\nLine2\nLine3");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> DeltaUtil.applyDelta("Line1\nLineY", delta),
+                "A delta must not be applied to content it was not computed against");
+    }
+
+    @Test
+    void testCalculateDelta_ChecksumMatchesTheUtf8BytesOfTheBase() {
+        // Given: multi-byte characters across several encoder buffers and a lone surrogate
+        String oldData = "Satır ğüşiöç €𝄞\n".repeat(2000) + "\uD800 end";
+        CRC32 expected = new CRC32();
+        expected.update(oldData.getBytes(StandardCharsets.UTF_8));
+
+        // When
+        String delta = DeltaUtil.calculateDelta(oldData, oldData + "\nmore");
+
+        // Then: deltas stored before the checksum was streamed still apply
+        assertEquals("@D1 2001 " + Long.toHexString(expected.getValue()), delta.substring(0, delta.indexOf('\n')));
+        assertEquals(oldData + "\nmore", DeltaUtil.applyDelta(oldData, delta));
+    }
+
+    @Test
+    void testCalculateDelta_EmptyAndBlankLinesRoundTrip() {
+        String[] texts = {"", "\n", "\n\nA\n", "A\n\n", "\nB", "A\nB\n\n\nC", "@@ 0 0 1\n@D1 x"};
+        for (String oldData : texts) {
+            for (String newData : texts) {
+                // When
+                String delta = DeltaUtil.calculateDelta(oldData, newData);
+
+                // Then
+                assertEquals(newData, DeltaUtil.applyDelta(oldData, delta),
+                        "Round trip failed for " + oldData.replace("\n", "\\n") + " -> " + newData.replace("\n", "\\n"));
+            }
+        }
+    }
+
+    private static List<String> hunkLines(String delta) {
+        List<String> lines = List.of(delta.split("\n", -1));
+        assertTrue(lines.get(0).startsWith("@D1 "), "Delta should start with the format header");
+        return lines.subList(1, lines.size());
     }
 
 
@@ -0,0 +1,81 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastCdcChunkerTest {
+
+    private final FastCdcChunker chunker = new FastCdcChunker(2 * 1024, 8 * 1024, 32 * 1024);
+
+    @Test
+    void testSplitCoversInputWithinSizeBounds() throws Exception {
+        // Given
+        byte[] data = randomData(1_000_000, 1);
+
+        // When
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        List<Integer> sizes = new ArrayList<>();
+        chunker.split(new ByteArrayInputStream(data), (chunk, offset, length) -> {
+            joined.write(chunk, offset, length);
+            sizes.add(length);
+        });
+
+        // Then
+        assertArrayEquals(data, joined.toByteArray(), "Chunks should concatenate to the input");
+        for (int i = 0; i < sizes.size() - 1; i++) {
+            assertTrue(sizes.get(i) >= 2 * 1024 && sizes.get(i) <= 32 * 1024, "Chunk size out of bounds: " + sizes.get(i));
+        }
+        double average = (double) data.length / sizes.size();
+        assertTrue(average > 4 * 1024 && average < 16 * 1024, "Average chunk size should be near 8 KB, was " + average);
+    }
+
+    @Test
+    void testInsertionOnlyChangesNearbyChunks() throws Exception {
+        // Given: one byte inserted near the start, which would shift every fixed-size block
+        byte[] original = randomData(1_000_000, 2);
+        byte[] modified = new byte[original.length + 1];
+        System.arraycopy(original, 0, modified, 0, 100);
+        modified[100] = 42;
+        System.arraycopy(original, 100, modified, 101, original.length - 100);
+
+        // When
+        List<String> originalChunks = chunkHashes(original);
+        List<String> modifiedChunks = chunkHashes(modified);
+
+        // Then
+        Set<String> shared = new HashSet<>(originalChunks);
+        shared.retainAll(new HashSet<>(modifiedChunks));
+        assertTrue(shared.size() >= originalChunks.size() - 2, "All but the chunks around the insertion should be reused");
+    }
+
+    @Test
+    void testInvalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FastCdcChunker(4096, 3000, 8192),
+                "Average size must be a power of two between min and max");
+        assertThrows(IllegalArgumentException.class, () -> new FastCdcChunker(0, 4096, 8192),
+                "Minimum size must be positive");
+    }
+
+    private List<String> chunkHashes(byte[] data) throws Exception {
+        List<String> hashes = new ArrayList<>();
+        chunker.split(new ByteArrayInputStream(data), (chunk, offset, length) ->
+                hashes.add(HashUtil.calculateHash(Arrays.copyOfRange(chunk, offset, offset + length))));
+        return hashes;
+    }
+
+    private byte[] randomData(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
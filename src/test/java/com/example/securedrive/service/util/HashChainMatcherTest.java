@@ -0,0 +1,59 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashChainMatcherTest {
+
+    @Test
+    void givenRepeatedContent_whenFindingLongestMatch_thenReturnsLongestCandidate() {
+        // Given
+        byte[] original = "abcdefXXabcdefghijYYabcdefgh".getBytes();
+        byte[] modified = "--abcdefghijZZ".getBytes();
+        HashChainMatcher matcher = new HashChainMatcher(original);
+
+        // When
+        SuffixAutomaton.MatchResult result = matcher.findLongestMatch(modified, 2);
+
+        // Then
+        assertEquals(8, result.getOffset(), "Offset should point at the longest of the chained candidates");
+        assertEquals(10, result.getLength(), "Length should cover 'abcdefghij'");
+    }
+
+    @Test
+    void givenShortMatch_whenFindingLongestMatch_thenReportsNoMatch() {
+        // Given
+        byte[] original = "exampledata".getBytes();
+        byte[] modified = "examQ".getBytes();
+        HashChainMatcher matcher = new HashChainMatcher(original);
+
+        // When
+        SuffixAutomaton.MatchResult result = matcher.findLongestMatch(modified, 0);
+
+        // Then
+        assertEquals(-1, result.getOffset(), "Matches shorter than MIN_MATCH should not be reported");
+        assertEquals(0, result.getLength(), "Length should be 0 when nothing is reported");
+    }
+
+    @Test
+    void givenMatcherAndAutomaton_whenMatchingLongRuns_thenLengthsAgree() {
+        // Given
+        byte[] original = new byte[50_000];
+        new Random(3).nextBytes(original);
+        byte[] modified = new byte[2_000];
+        System.arraycopy(original, 12_345, modified, 0, modified.length);
+        HashChainMatcher matcher = new HashChainMatcher(original);
+        SuffixAutomaton automaton = new SuffixAutomaton(original);
+
+        // When
+        SuffixAutomaton.MatchResult fromMatcher = matcher.findLongestMatch(modified, 100);
+        SuffixAutomaton.MatchResult fromAutomaton = automaton.findLongestMatch(modified, 100);
+
+        // Then
+        assertEquals(fromAutomaton.getOffset(), fromMatcher.getOffset(), "Both should locate the copied run");
+        assertEquals(fromAutomaton.getLength(), fromMatcher.getLength(), "Both should match to the end of the input");
+    }
+}
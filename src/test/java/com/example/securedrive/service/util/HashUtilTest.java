@@ -3,6 +3,8 @@ package com.example.securedrive.service.util;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
 public class HashUtilTest {
@@ -41,4 +43,44 @@ public class HashUtilTest {
         // Then
         Assertions.assertEquals(expectedHash, actualHash);
     }
+
+    @Test
+    public void testCalculateHash_StreamMatchesByteArray() throws IOException {
+        // Given
+        byte[] input = new byte[200_000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i * 31);
+        }
+
+        // When
+        String streamedHash = HashUtil.calculateHash(new ByteArrayInputStream(input));
+
+        // Then
+        Assertions.assertEquals(HashUtil.calculateHash(input), streamedHash);
+    }
+
+    @Test
+    public void testToHex_LowercaseWithLeadingZeros() {
+        // Given
+        byte[] bytes = {0x00, 0x0f, (byte) 0xab, (byte) 0xff};
+
+        // When
+        String hex = HashUtil.toHex(bytes);
+
+        // Then
+        Assertions.assertEquals("000fabff", hex, "Every byte should be two lowercase hex digits");
+    }
+
+    @Test
+    public void testCalculateHash_PooledDigestStartsClean() {
+        // Given: a digest left half-used on this thread
+        HashUtil.pooledDigest().update((byte) 1);
+
+        // When
+        String actualHash = HashUtil.calculateHash("hello world".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        Assertions.assertEquals("b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9", actualHash,
+                "The pooled digest should be reset before every hash");
+    }
 }
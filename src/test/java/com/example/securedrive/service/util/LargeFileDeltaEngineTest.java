@@ -0,0 +1,116 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LargeFileDeltaEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDiffAndApplyRebuildModifiedFile() throws Exception {
+        // Given
+        byte[] original = new byte[3_000_000];
+        new Random(5).nextBytes(original);
+        byte[] modified = new byte[original.length + 100];
+        System.arraycopy(original, 0, modified, 0, 1_000_000);
+        System.arraycopy(original, 1_000_000, modified, 1_000_100, original.length - 1_000_000);
+        Path originalPath = Files.write(tempDir.resolve("original"), original);
+        Path modifiedPath = Files.write(tempDir.resolve("modified"), modified);
+
+        // When
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        LargeFileDeltaEngine.diff(originalPath, modifiedPath, delta);
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        long written = LargeFileDeltaEngine.apply(originalPath, new ByteArrayInputStream(delta.toByteArray()), rebuilt);
+
+        // Then
+        assertEquals(modified.length, written);
+        assertArrayEquals(modified, rebuilt.toByteArray(), "Applied delta should rebuild the modified file");
+        assertTrue(delta.size() < 100_000, "Unchanged blocks should be encoded as COPY commands");
+    }
+
+    @Test
+    void testApplyAcceptsDeltasFromBinaryDeltaUtil() throws Exception {
+        // Given
+        byte[] original = "The quick brown fox jumps over the lazy dog".getBytes();
+        byte[] modified = "The quick red fox jumps over the lazy dog".getBytes();
+        List<BinaryDeltaUtil.DeltaCommand> commands = BinaryDeltaUtil.calculateDelta(original, modified);
+        Path originalPath = Files.write(tempDir.resolve("original"), original);
+
+        // When
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        LargeFileDeltaEngine.apply(originalPath, new ByteArrayInputStream(BinaryDeltaCodec.encode(commands)), rebuilt);
+
+        // Then
+        assertArrayEquals(modified, rebuilt.toByteArray());
+    }
+
+    /**
+     * Writes two files of about 2.5 GB, so it only runs when asked for:
+     * {@code mvn test -Dsecuredrive.largeFileTests=true -Dtest=LargeFileDeltaEngineTest}
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "securedrive.largeFileTests", matches = "true")
+    void testFilesLargerThanTwoGigabytes() throws Exception {
+        // Given: an edit past the 2 GB mark and a shifted tail
+        long size = 2_600_000_000L;
+        Path originalPath = tempDir.resolve("original");
+        Path modifiedPath = tempDir.resolve("modified");
+        writePattern(originalPath, size, -1);
+        writePattern(modifiedPath, size, 2_300_000_000L);
+
+        // When
+        Path deltaPath = tempDir.resolve("delta");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(deltaPath))) {
+            LargeFileDeltaEngine.diff(originalPath, modifiedPath, out);
+        }
+        Path rebuiltPath = tempDir.resolve("rebuilt");
+        long written;
+        try (var delta = Files.newInputStream(deltaPath);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(rebuiltPath))) {
+            written = LargeFileDeltaEngine.apply(originalPath, delta, out);
+        }
+
+        // Then
+        assertEquals(Files.size(modifiedPath), written);
+        assertEquals(-1L, Files.mismatch(modifiedPath, rebuiltPath), "Rebuilt file should match the modified file");
+        assertTrue(Files.size(deltaPath) < 10_000_000, "Delta of a small edit should stay small");
+    }
+
+    // Pseudo-random content in 1 MB pages; a few bytes are inserted at insertAt when it is >= 0
+    private void writePattern(Path path, long size, long insertAt) throws IOException {
+        byte[] page = new byte[1024 * 1024];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), page.length)) {
+            long written = 0;
+            long pageNumber = 0;
+            while (written < size) {
+                new Random(pageNumber++).nextBytes(page);
+                int n = (int) Math.min(page.length, size - written);
+                if (insertAt >= written && insertAt < written + n) {
+                    int split = (int) (insertAt - written);
+                    out.write(page, 0, split);
+                    out.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+                    out.write(page, split, n - split);
+                } else {
+                    out.write(page, 0, n);
+                }
+                written += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderedPrefetcherTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testItemsAreReturnedInIndexOrder() throws Exception {
+        // Given: later indexes finish first
+        List<Integer> results = new ArrayList<>();
+
+        // When
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(20, 8, executor, index -> {
+            Thread.sleep((20 - index) * 2L);
+            return index;
+        })) {
+            while (prefetcher.hasNext()) {
+                results.add(prefetcher.next());
+            }
+        }
+
+        // Then
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i), "Item " + i + " should be returned in order");
+        }
+    }
+
+    @Test
+    void testLoadsInFlightNeverExceedDepth() throws Exception {
+        // Given
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        // When
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(30, 3, executor, index -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return index;
+        })) {
+            while (prefetcher.hasNext()) {
+                prefetcher.next();
+            }
+        }
+
+        // Then
+        assertTrue(maxInFlight.get() <= 3, "At most depth loads should run at once, was " + maxInFlight.get());
+    }
+
+    @Test
+    void testFailedLoadIsRethrownWithItsOriginalType() throws Exception {
+        // Given
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(5, 4, executor, index -> {
+            if (index == 2) {
+                throw new IOException("Blob missing: " + index);
+            }
+            return index;
+        })) {
+            assertEquals(Integer.valueOf(0), prefetcher.next());
+            assertEquals(Integer.valueOf(1), prefetcher.next());
+
+            // When / Then
+            IOException exception = assertThrows(IOException.class, prefetcher::next);
+            assertEquals("Blob missing: 2", exception.getMessage());
+        }
+    }
+
+    @Test
+    void testZeroDepthLoadsOnTheCallingThread() throws Exception {
+        // Given
+        Thread caller = Thread.currentThread();
+        List<Thread> loaders = new ArrayList<>();
+
+        // When
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(3, 0, executor, index -> {
+            loaders.add(Thread.currentThread());
+            return index;
+        })) {
+            assertEquals(0, loaders.size(), "Nothing should be loaded before it is requested");
+            while (prefetcher.hasNext()) {
+                prefetcher.next();
+            }
+        }
+
+        // Then
+        assertEquals(List.of(caller, caller, caller), loaders, "Every load should run on the caller");
+    }
+
+    @Test
+    void testPrefetchingOverlapsLoadLatency() throws Exception {
+        // Given: 20 loads of 50 ms each, about one second when read one by one
+        OrderedPrefetcher.Loader<Integer> slowLoad = index -> {
+            Thread.sleep(50);
+            return index;
+        };
+
+        // When
+        long start = System.nanoTime();
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(20, 8, executor, slowLoad)) {
+            while (prefetcher.hasNext()) {
+                prefetcher.next();
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertTrue(elapsedMillis < 500, "Prefetched loads should overlap, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testNextAfterLastItemIsRejected() throws Exception {
+        // Given
+        try (OrderedPrefetcher<Integer> prefetcher = new OrderedPrefetcher<>(1, 2, executor, index -> index)) {
+            prefetcher.next();
+
+            // When / Then
+            assertFalse(prefetcher.hasNext());
+            assertThrows(IllegalStateException.class, prefetcher::next);
+        }
+    }
+}
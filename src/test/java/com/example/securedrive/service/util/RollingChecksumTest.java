@@ -0,0 +1,41 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingChecksumTest {
+
+    @Test
+    void testRollingMatchesFreshChecksumAtEveryOffset() {
+        // Given
+        byte[] data = new byte[4096];
+        new Random(7).nextBytes(data);
+        int window = 512;
+        RollingChecksum rolling = new RollingChecksum();
+        rolling.reset(data, 0, window);
+
+        // When/Then
+        for (int pos = 1; pos + window <= data.length; pos++) {
+            rolling.remove(data[pos - 1]);
+            rolling.add(data[pos + window - 1]);
+            assertEquals(RollingChecksum.of(data, pos, window), rolling.value(), "Rolled checksum differs at offset " + pos);
+        }
+    }
+
+    @Test
+    void testShrinkingWindowMatchesFreshChecksum() {
+        // Given
+        byte[] data = "the tail of a file is shorter than a block".getBytes();
+        RollingChecksum rolling = new RollingChecksum();
+        rolling.reset(data, 0, data.length);
+
+        // When/Then
+        for (int pos = 1; pos < data.length; pos++) {
+            rolling.remove(data[pos - 1]);
+            assertEquals(RollingChecksum.of(data, pos, data.length - pos), rolling.value(), "Shrunk checksum differs at offset " + pos);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDeltaPerformanceTest {
+
+    private static final int LINE_COUNT = 20_000;
+
+    @Test
+    void testCalculateDelta_InsertEveryHundredLines() {
+        // Given
+        List<String> lines = createLines(LINE_COUNT);
+        String oldData = String.join("\n", lines);
+        List<String> edited = new ArrayList<>(lines);
+        for (int i = edited.size() - 1; i > 0; i -= 100) {
+            edited.add(i, "inserted before line " + i);
+        }
+        String newData = String.join("\n", edited);
+
+        // When
+        long start = System.nanoTime();
+        String delta = DeltaUtil.calculateDelta(oldData, newData);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        System.out.println("Insert-heavy edit | Text size: " + newData.length() + " | Delta size: " + delta.length() + " | " + elapsedMs + " ms");
+        assertTrue(delta.length() < newData.length() / 10, "Delta should only carry the inserted lines");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta), "Delta should rebuild the edited text");
+    }
+
+    @Test
+    void testCalculateDelta_ShuffledLines_BoundedTime() {
+        // Given: a permutation leaves no long common subsequence, the worst case for Myers
+        List<String> lines = createLines(LINE_COUNT);
+        String oldData = String.join("\n", lines);
+        List<String> shuffled = new ArrayList<>(lines);
+        Collections.shuffle(shuffled, new Random(7));
+        String newData = String.join("\n", shuffled);
+
+        // When
+        long start = System.nanoTime();
+        String delta = DeltaUtil.calculateDelta(oldData, newData);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        System.out.println("Shuffled lines | Text size: " + newData.length() + " | Delta size: " + delta.length() + " | " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 10_000, "Diff of unrelated texts should stay bounded, took " + elapsedMs + " ms");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta), "Delta should rebuild the shuffled text");
+    }
+
+    @Test
+    void testCalculateDelta_RepetitiveLines_BoundedTime() {
+        // Given: few distinct lines, so there are no unique anchors to split on
+        List<String> oldLines = new ArrayList<>();
+        List<String> newLines = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < LINE_COUNT; i++) {
+            oldLines.add("}" + random.nextInt(3));
+            newLines.add("}" + random.nextInt(3));
+        }
+        String oldData = String.join("\n", oldLines);
+        String newData = String.join("\n", newLines);
+
+        // When
+        long start = System.nanoTime();
+        String delta = DeltaUtil.calculateDelta(oldData, newData);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        System.out.println("Repetitive lines | Text size: " + newData.length() + " | Delta size: " + delta.length() + " | " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 10_000, "Diff of repetitive texts should stay bounded, took " + elapsedMs + " ms");
+        assertEquals(newData, DeltaUtil.applyDelta(oldData, delta), "Delta should rebuild the repetitive text");
+    }
+
+    private List<String> createLines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add("    value" + i + " = compute(" + i + ", \"" + Integer.toHexString(i * 31) + "\");");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextLinesTest {
+
+    @Test
+    void testOf_SplitsLikeSplitWithNegativeLimit() {
+        for (String text : new String[]{"", "a", "a\n", "\n", "a\r\nb", "\n\nx\n\n", "one\ntwo\nthree"}) {
+            // Given
+            String[] expected = text.split("\n", -1);
+
+            // When
+            TextLines lines = TextLines.of(text);
+
+            // Then
+            assertEquals(expected.length, lines.count(), "Line count mismatch for " + text.replace("\n", "\\n"));
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], text.substring(lines.start(i), lines.end(i)), "Line " + i + " mismatch");
+                assertEquals(expected[i].hashCode(), lines.hash(i), "Line hash should match String.hashCode");
+            }
+        }
+    }
+
+    @Test
+    void testLineEquals_ComparesContentAcrossTexts() {
+        // Given
+        TextLines left = TextLines.of("alpha\nbeta\ngamma");
+        TextLines right = TextLines.of("beta\nalphb\nalpha");
+
+        // When / Then
+        assertTrue(left.lineEquals(0, right, 2), "Equal lines should match");
+        assertTrue(left.lineEquals(1, right, 0), "Equal lines should match");
+        assertFalse(left.lineEquals(0, right, 1), "Lines of the same length with different content should differ");
+        assertFalse(left.lineEquals(2, right, 0), "Lines of different length should differ");
+    }
+
+    @Test
+    void testAppendTo_JoinsLineRange() {
+        // Given
+        TextLines lines = TextLines.of("a\nbb\n\nccc");
+        StringBuilder out = new StringBuilder();
+
+        // When
+        lines.appendTo(out, 1, 4);
+
+        // Then
+        assertEquals("bb\n\nccc", out.toString(), "Range should be copied with its inner separators only");
+    }
+}
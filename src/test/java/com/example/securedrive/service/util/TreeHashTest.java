@@ -0,0 +1,125 @@
+package com.example.securedrive.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeHashTest {
+
+    private static final int LEAF = TreeHash.LEAF_SIZE;
+
+    @Test
+    void testStreamingMatchesWholeArray() {
+        // Given: sizes around leaf and parallel batch boundaries
+        Random random = new Random(5);
+        int batch = Math.max(2, Runtime.getRuntime().availableProcessors() * 2) * LEAF;
+
+        for (int size : new int[]{0, 1, LEAF - 1, LEAF, LEAF + 1, 5 * LEAF + 3, batch, batch + 1, 2 * batch + LEAF}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            // When: fed in odd-sized pieces and single bytes
+            TreeHash.Hasher hasher = TreeHash.newHasher();
+            int offset = 0;
+            while (offset < size) {
+                if (offset % 3 == 0) {
+                    hasher.update(data[offset++]);
+                } else {
+                    int length = Math.min(40_009, size - offset);
+                    hasher.update(data, offset, length);
+                    offset += length;
+                }
+            }
+
+            // Then
+            assertArrayEquals(TreeHash.hash(data), hasher.digest(), "Streamed hash of " + size + " bytes should match");
+        }
+    }
+
+    @Test
+    void testTreeLayout() throws Exception {
+        // Given: three leaves, so the root joins a two-leaf subtree with the third leaf
+        byte[] data = new byte[2 * LEAF + 10];
+        new Random(9).nextBytes(data);
+
+        // When
+        byte[] left = parent(leaf(0, Arrays.copyOfRange(data, 0, LEAF)), leaf(1, Arrays.copyOfRange(data, LEAF, 2 * LEAF)));
+        byte[] top = parent(left, leaf(2, Arrays.copyOfRange(data, 2 * LEAF, data.length)));
+        byte[] expected = sha256(new byte[]{2}, ByteBuffer.allocate(8).putLong(data.length).array(), top);
+
+        // Then
+        assertArrayEquals(expected, TreeHash.hash(data), "Root should be built as documented");
+        assertArrayEquals(sha256(new byte[]{2}, new byte[8], leaf(0, new byte[0])), TreeHash.hash(new byte[0]),
+                "Empty content should be a single empty leaf");
+    }
+
+    @Test
+    void testDiffersFromSha256AndDetectsChanges() {
+        // Given
+        byte[] data = new byte[3 * LEAF];
+        new Random(1).nextBytes(data);
+        String original = TreeHash.hashHex(data);
+
+        // When
+        byte[] changed = data.clone();
+        changed[2 * LEAF + 7] ^= 1;
+        byte[] swapped = data.clone();
+        System.arraycopy(data, 0, swapped, LEAF, LEAF);
+        System.arraycopy(data, LEAF, swapped, 0, LEAF);
+
+        // Then
+        assertEquals(64, original.length(), "Tree hash should be 32 bytes of hex");
+        assertNotEquals(HashUtil.calculateHash(data), original, "Tree hash is not the plain SHA-256");
+        assertNotEquals(original, TreeHash.hashHex(changed), "A flipped bit should change the hash");
+        assertNotEquals(original, TreeHash.hashHex(swapped), "Swapped leaves should change the hash");
+        assertNotEquals(TreeHash.hashHex(new byte[0]), TreeHash.hashHex(new byte[1]), "Length should be bound into the root");
+    }
+
+    @Test
+    void testHashingInputStreamComputesBothHashesInOnePass() throws Exception {
+        // Given
+        byte[] data = new byte[3 * LEAF + 123];
+        new Random(4).nextBytes(data);
+
+        // When
+        ContentHash hash;
+        try (HashingInputStream in = new HashingInputStream(new ByteArrayInputStream(data), true, true)) {
+            in.read();
+            in.transferTo(OutputStream.nullOutputStream());
+            hash = in.contentHash();
+        }
+        HashingInputStream treeOnly = new HashingInputStream(new ByteArrayInputStream(data), false, true);
+        treeOnly.readAllBytes();
+        HashingInputStream unread = new HashingInputStream(new ByteArrayInputStream(data), true, false);
+
+        // Then
+        assertEquals(HashUtil.calculateHash(data), hash.sha256(), "SHA-256 should match the whole-array hash");
+        assertEquals(TreeHash.hashHex(data), hash.treeHash(), "Tree hash should match the whole-array hash");
+        assertNull(treeOnly.contentHash().sha256(), "Hashes not asked for should be null");
+        assertEquals(hash.treeHash(), treeOnly.contentHash().treeHash());
+        assertThrows(IllegalStateException.class, unread::contentHash, "Hashes of a partly read stream should not be returned");
+    }
+
+    private static byte[] leaf(long index, byte[] data) throws Exception {
+        return sha256(new byte[]{0}, ByteBuffer.allocate(8).putLong(index).array(), data);
+    }
+
+    private static byte[] parent(byte[] left, byte[] right) throws Exception {
+        return sha256(new byte[]{1}, left, right);
+    }
+
+    private static byte[] sha256(byte[]... parts) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (byte[] part : parts) {
+            digest.update(part);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.securedrive.service.util;
+
+import com.example.securedrive.model.FileVersion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionChainUtilTest {
+
+    @Test
+    void testChainStartsAtFirstVersionWithoutSnapshots() {
+        // Given
+        List<FileVersion> versions = chain(5);
+
+        // Then
+        assertEquals(0, VersionChainUtil.findCheckpointIndex(versions, 4));
+        assertEquals(4, VersionChainUtil.chainLength(versions, 4));
+        assertEquals(40, VersionChainUtil.deltaBytesSinceCheckpoint(versions, 4));
+    }
+
+    @Test
+    void testChainStartsAtNearestSnapshotAtOrBelowTarget() {
+        // Given
+        List<FileVersion> versions = chain(8);
+        versions.get(3).setSnapshotPath("uploads/user/file.txt/versions/v4/file.txt");
+        versions.get(3).setDeltaSize(null);
+
+        // Then
+        assertEquals(0, VersionChainUtil.findCheckpointIndex(versions, 2), "Versions before the snapshot start from v1");
+        assertEquals(3, VersionChainUtil.findCheckpointIndex(versions, 3), "A snapshot version needs no deltas");
+        assertEquals(0, VersionChainUtil.chainLength(versions, 3));
+        assertEquals(4, VersionChainUtil.chainLength(versions, 7));
+        assertEquals(40, VersionChainUtil.deltaBytesSinceCheckpoint(versions, 7));
+    }
+
+    @Test
+    void testReverseDeltasStartFromNewerWholeVersion() {
+        // Given: v1-v2 forward from v1, v3-v5 reverse deltas from v6, v6 stored whole
+        List<FileVersion> versions = chain(6);
+        for (int i = 2; i <= 4; i++) {
+            versions.get(i).setReverseDelta(true);
+        }
+        versions.get(5).setSnapshotPath("uploads/user/file.txt/versions/v6/file.txt");
+        versions.get(5).setDeltaPath(null);
+
+        // Then
+        assertEquals(0, VersionChainUtil.findBaseIndex(versions, 1), "Forward deltas still start from below");
+        assertEquals(5, VersionChainUtil.findBaseIndex(versions, 2), "Reverse deltas start from the newer whole version");
+        assertEquals(3, VersionChainUtil.chainLength(versions, 2));
+        assertEquals(0, VersionChainUtil.chainLength(versions, 5), "The latest version is read whole");
+        assertEquals(List.of("v5", "v4", "v3"), VersionChainUtil.deltaChain(versions, 5, 2).stream()
+                .map(FileVersion::getVersionNumber).toList(), "Reverse deltas are applied newest first");
+        assertEquals(List.of("v2"), VersionChainUtil.deltaChain(versions, 0, 1).stream()
+                .map(FileVersion::getVersionNumber).toList());
+    }
+
+    @Test
+    void testReverseRunBelowCountsOnlyAdjacentReverseDeltas() {
+        // Given
+        List<FileVersion> versions = chain(6);
+        versions.get(1).setReverseDelta(true);
+        versions.get(3).setReverseDelta(true);
+        versions.get(4).setReverseDelta(true);
+
+        // Then
+        assertEquals(2, VersionChainUtil.reverseRunBelow(versions, 5));
+        assertEquals(20, VersionChainUtil.reverseDeltaBytesBelow(versions, 5));
+        assertEquals(0, VersionChainUtil.reverseRunBelow(versions, 3), "A forward delta ends the run");
+    }
+
+    @Test
+    void testReverseDeltaWithoutNewerBaseIsRejected() {
+        // Given
+        List<FileVersion> versions = chain(3);
+        versions.get(2).setReverseDelta(true);
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> VersionChainUtil.findBaseIndex(versions, 2));
+    }
+
+    @Test
+    void testMaterializedLatestIsReadWholeWithoutEndingOtherChains() {
+        // Given
+        List<FileVersion> versions = chain(6);
+        versions.get(5).setMaterializedPath("uploads/user/file.txt/versions/v6/materialized/file.txt");
+
+        // Then
+        assertEquals(5, VersionChainUtil.findBaseIndex(versions, 5), "The latest version is read from its copy");
+        assertEquals(0, VersionChainUtil.chainLength(versions, 5));
+        assertEquals(0, VersionChainUtil.findCheckpointIndex(versions, 5), "The copy is not a checkpoint");
+        assertEquals(50, VersionChainUtil.deltaBytesSinceCheckpoint(versions, 5));
+        assertEquals(4, VersionChainUtil.chainLength(versions, 4));
+    }
+
+    @Test
+    void testBrokenReverseChainReportsMinusOneInsteadOfThrowing() {
+        // Given: the newest version is a reverse delta, so nothing newer can rebuild it
+        List<FileVersion> versions = chain(4);
+        versions.get(2).setReverseDelta(true);
+        versions.get(3).setReverseDelta(true);
+
+        // Then
+        assertEquals(-1, VersionChainUtil.chainLength(versions, 2), "A broken chain should be reported as -1");
+        assertEquals(-1, VersionChainUtil.chainLength(versions, 3));
+        assertEquals(1, VersionChainUtil.chainLength(versions, 1), "Intact versions are unaffected");
+        assertThrows(IllegalStateException.class, () -> VersionChainUtil.findBaseIndex(versions, 2),
+                "Reconstruction should still fail loudly");
+    }
+
+    private List<FileVersion> chain(int length) {
+        List<FileVersion> versions = new ArrayList<>();
+        for (int i = 1; i <= length; i++) {
+            FileVersion version = new FileVersion();
+            version.setVersionNumber("v" + i);
+            if (i > 1) {
+                version.setDeltaPath("uploads/user/file.txt/versions/v" + i + "/delta");
+                version.setDeltaSize(10L);
+            }
+            versions.add(version);
+        }
+        return versions;
+    }
+}